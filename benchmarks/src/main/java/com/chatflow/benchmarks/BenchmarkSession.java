@@ -0,0 +1,59 @@
+package com.chatflow.benchmarks;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.security.Principal;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Session stub that discards outbound frames, counting only their bytes so the
+ * send cannot be optimized away. Unlike the test stub it keeps no per-message state.
+ */
+class BenchmarkSession implements WebSocketSession {
+    private final String id;
+    private final URI uri;
+    private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+    private volatile boolean open = true;
+    private long sentBytes;
+
+    BenchmarkSession(String id, String roomId) {
+        this.id = id;
+        this.uri = URI.create("ws://localhost:8080/chat/" + roomId);
+    }
+
+    long getSentBytes() { return sentBytes; }
+
+    @Override public String getId() { return id; }
+    @Override public URI getUri() { return uri; }
+    @Override public boolean isOpen() { return open; }
+    @Override public Map<String, Object> getAttributes() { return attributes; }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) {
+        sentBytes += message.getPayloadLength();
+    }
+
+    @Override public void close() { open = false; }
+    @Override public void close(CloseStatus status) { open = false; }
+
+    // --- unused interface methods ---
+    @Override public HttpHeaders getHandshakeHeaders() { return new HttpHeaders(); }
+    @Override public Principal getPrincipal() { return null; }
+    @Override public InetSocketAddress getLocalAddress() { return null; }
+    @Override public InetSocketAddress getRemoteAddress() { return null; }
+    @Override public String getAcceptedProtocol() { return null; }
+    @Override public void setTextMessageSizeLimit(int i) {}
+    @Override public int getTextMessageSizeLimit() { return 0; }
+    @Override public void setBinaryMessageSizeLimit(int i) {}
+    @Override public int getBinaryMessageSizeLimit() { return 0; }
+    @Override public List<WebSocketExtension> getExtensions() { return Collections.emptyList(); }
+}
@@ -0,0 +1,74 @@
+package com.chatflow.benchmarks;
+
+import com.chatflow.server.codec.BinaryMessageCodec;
+import com.chatflow.server.codec.ChatMessageDecoder;
+import com.chatflow.server.model.ChatMessage;
+import com.chatflow.server.validation.MessageValidator;
+import com.chatflow.server.validation.MessageValidator.ValidationResult;
+import com.google.gson.Gson;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inbound decoding: Gson data binding (the original path) against the single-pass
+ * decoder and the binary codec, with and without validation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ChatMessageParsingBenchmark {
+
+    private final Gson gson = new Gson();
+    private MessageValidator validator;
+    private ChatMessageDecoder decoder;
+    private BinaryMessageCodec binaryCodec;
+    private ByteBuffer binary;
+
+    @Setup
+    public void setUp() {
+        validator = new MessageValidator();
+        decoder = new ChatMessageDecoder(validator);
+        binaryCodec = new BinaryMessageCodec(validator);
+        binary = ByteBuffer.wrap(Payloads.VALID_BINARY);
+    }
+
+    @Benchmark
+    public ChatMessage gsonParse() {
+        return gson.fromJson(Payloads.VALID_JSON, ChatMessage.class);
+    }
+
+    @Benchmark
+    public ValidationResult gsonParseAndValidate() {
+        return validator.validate(gson.fromJson(Payloads.VALID_JSON, ChatMessage.class));
+    }
+
+    @Benchmark
+    public ValidationResult decoderParseAndValidate() {
+        return decoder.decode(Payloads.VALID_JSON, new ChatMessage());
+    }
+
+    /** What the binary handler does: the text form is only built for JSON recipients. */
+    @Benchmark
+    public ValidationResult binaryValidate() {
+        return binaryCodec.validate(binary);
+    }
+
+    @Benchmark
+    public ValidationResult binaryDecodeAndValidate() {
+        return binaryCodec.decode(binary, new ChatMessage());
+    }
+}
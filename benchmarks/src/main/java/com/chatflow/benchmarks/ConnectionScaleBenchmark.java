@@ -0,0 +1,195 @@
+package com.chatflow.benchmarks;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.WebSocket;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Holds many concurrent connections open against a running server and broadcasts through
+ * them, for comparing the platform and virtual thread modes. Not a JMH benchmark: the
+ * server runs in its own JVM, started with or without {@code spring.threads.virtual.enabled},
+ * so each side gets its own file descriptor limit.
+ *
+ * <p>Each round sends one message into every room and waits until every reading connection
+ * has received its copy. A percentage of connections never read, so the server's writes to
+ * them eventually block, as they would for clients on poor networks. Server thread counts
+ * come from {@code /health}.
+ *
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.chatflow.benchmarks.ConnectionScaleBenchmark \
+ *     [baseUri=ws://localhost:8080] [connections=10000] [rooms=20] [rounds=100] [slowPercent=0]
+ * </pre>
+ */
+public final class ConnectionScaleBenchmark {
+
+    private static final Pattern THREADS = Pattern.compile("\"threads\":(\\d+)");
+    private static final Pattern THREADING = Pattern.compile("\"threading\":\"(\\w+)\"");
+    private static final Pattern CONNECTIONS = Pattern.compile("\"connections\":(\\d+)");
+    private static final long ROUND_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private ConnectionScaleBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String baseUri = arg(args, 0, "ws://localhost:8080");
+        int connections = Integer.parseInt(arg(args, 1, "10000"));
+        int rooms = Integer.parseInt(arg(args, 2, "20"));
+        int rounds = Integer.parseInt(arg(args, 3, "100"));
+        int slowPercent = Integer.parseInt(arg(args, 4, "0"));
+
+        HttpClient http = HttpClient.newHttpClient();
+        URI health = URI.create(baseUri.replaceFirst("^ws", "http") + "/health");
+        LongAdder received = new LongAdder();
+
+        // Connect, with a bounded number of handshakes in flight
+        Semaphore handshakes = new Semaphore(256);
+        List<CompletableFuture<WebSocket>> pending = new ArrayList<>(connections);
+        long connectStart = System.nanoTime();
+        for (int i = 0; i < connections; i++) {
+            handshakes.acquire();
+            URI uri = URI.create(baseUri + "/chat/" + (i % rooms + 1));
+            WebSocket.Listener listener = i % 100 < slowPercent ? new NonReadingListener() : new CountingListener(received);
+            pending.add(http.newWebSocketBuilder()
+                    .connectTimeout(Duration.ofSeconds(30))
+                    .buildAsync(uri, listener)
+                    .whenComplete((ws, error) -> handshakes.release()));
+        }
+        List<WebSocket> readers = new ArrayList<>();
+        WebSocket[] senders = new WebSocket[rooms];
+        List<WebSocket> open = new ArrayList<>(connections);
+        int failed = 0;
+        for (int i = 0; i < connections; i++) {
+            WebSocket ws;
+            try {
+                ws = pending.get(i).join();
+            } catch (RuntimeException e) {
+                failed++;
+                continue;
+            }
+            open.add(ws);
+            if (i % 100 >= slowPercent) {
+                readers.add(ws);
+                if (senders[i % rooms] == null) {
+                    senders[i % rooms] = ws;
+                }
+            }
+        }
+        long connectMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - connectStart);
+        String afterConnect = get(http, health);
+
+        // Fan out: one message per room per round, timed until every reader has it
+        long[] roundNanos = new long[rounds];
+        int peakThreads = intField(THREADS, afterConnect);
+        int timedOut = 0;
+        long fanOutStart = System.nanoTime();
+        for (int r = 0; r < rounds; r++) {
+            long target = received.sum() + readers.size();
+            long start = System.nanoTime();
+            for (WebSocket sender : senders) {
+                if (sender != null) {
+                    sender.sendText(message(r), true).join();
+                }
+            }
+            while (received.sum() < target) {
+                if (System.nanoTime() - start > ROUND_TIMEOUT_NANOS) {
+                    timedOut++;
+                    break;
+                }
+                LockSupport.parkNanos(50_000);
+            }
+            roundNanos[r] = System.nanoTime() - start;
+            if (r % 10 == 9) {
+                peakThreads = Math.max(peakThreads, intField(THREADS, get(http, health)));
+            }
+        }
+        long fanOutNanos = System.nanoTime() - fanOutStart;
+        String afterFanOut = get(http, health);
+        peakThreads = Math.max(peakThreads, intField(THREADS, afterFanOut));
+
+        Arrays.sort(roundNanos);
+        System.out.printf("threading=%s connections=%d/%d (failed %d, %d non-reading) connect=%dms%n",
+                field(THREADING, afterConnect), intField(CONNECTIONS, afterConnect), connections, failed,
+                open.size() - readers.size(), connectMillis);
+        System.out.printf("server threads: %d after connect, %d peak, %d after fan-out%n",
+                intField(THREADS, afterConnect), peakThreads, intField(THREADS, afterFanOut));
+        System.out.printf("fan-out: %d rounds x %d rooms, round p50=%.2fms p99=%.2fms max=%.2fms, "
+                        + "%.0f deliveries/s, %d rounds timed out%n",
+                rounds, rooms, millis(percentile(roundNanos, 0.50)), millis(percentile(roundNanos, 0.99)),
+                millis(roundNanos[rounds - 1]), (double) received.sum() / fanOutNanos * 1e9, timedOut);
+
+        for (WebSocket ws : open) {
+            ws.abort();
+        }
+    }
+
+    private static String message(int round) {
+        return "{\"userId\":\"1\",\"username\":\"bench\",\"message\":\"round " + round
+                + " of the connection scale benchmark\",\"timestamp\":\"" + Instant.now()
+                + "\",\"messageType\":\"TEXT\"}";
+    }
+
+    private static String get(HttpClient http, URI uri) throws Exception {
+        return http.send(HttpRequest.newBuilder(uri).build(), HttpResponse.BodyHandlers.ofString()).body();
+    }
+
+    private static String field(Pattern pattern, String json) {
+        Matcher matcher = pattern.matcher(json);
+        return matcher.find() ? matcher.group(1) : "?";
+    }
+
+    private static int intField(Pattern pattern, String json) {
+        Matcher matcher = pattern.matcher(json);
+        return matcher.find() ? Integer.parseInt(matcher.group(1)) : -1;
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * p))];
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private static String arg(String[] args, int index, String fallback) {
+        return args.length > index ? args[index] : fallback;
+    }
+
+    private static final class CountingListener implements WebSocket.Listener {
+        private final LongAdder received;
+
+        CountingListener(LongAdder received) {
+            this.received = received;
+        }
+
+        @Override
+        public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+            if (last) {
+                received.increment();
+            }
+            webSocket.request(1);
+            return null;
+        }
+    }
+
+    // Never requests a frame, so the socket is not read and the server's sends back up
+    private static final class NonReadingListener implements WebSocket.Listener {
+        @Override
+        public void onOpen(WebSocket webSocket) {
+        }
+    }
+}
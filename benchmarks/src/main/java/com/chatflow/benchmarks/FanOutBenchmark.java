@@ -0,0 +1,76 @@
+package com.chatflow.benchmarks;
+
+import com.chatflow.server.codec.FrameFormat;
+import com.chatflow.server.codec.OutboundFrame;
+import com.chatflow.server.model.ChatMessage;
+import com.chatflow.server.model.ServerResponse;
+import com.chatflow.server.session.ParallelFanOut;
+import com.chatflow.server.session.Room;
+import com.chatflow.server.session.RoomSessionManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One broadcast to every member of a large room, delivered inline or split across the
+ * {@link ParallelFanOut} pool. Delivery runs on the thread that queues each frame, so the
+ * score includes writing it to every session, as a room's broadcast costs when its
+ * members' drain tasks start straight away.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FanOutBenchmark {
+
+    @Param({"1000", "10000"})
+    public int members;
+
+    @Param({"inline", "parallel"})
+    public String mode;
+
+    private ParallelFanOut fanOut;
+    private RoomSessionManager manager;
+    private Room room;
+    private OutboundFrame frame;
+
+    @Setup
+    public void setUp() {
+        // A hot cost of 0 splits every broadcast of a room with two chunks or more
+        fanOut = mode.equals("parallel")
+                ? new ParallelFanOut(Runtime.getRuntime().availableProcessors(), 0, 512)
+                : ParallelFanOut.INLINE;
+        manager = RoomSessionManager.builder().fanOut(fanOut).build();
+        for (int i = 0; i < members; i++) {
+            room = manager.addSession("1", new BenchmarkSession("s" + i, "1"), FrameFormat.TEXT,
+                    RoomSessionManager.NO_SEQUENCE);
+        }
+        ChatMessage message = new ChatMessage("1", "user1", "hello", "2024-01-01T00:00:00Z", "TEXT");
+        frame = OutboundFrame.of(ServerResponse.success(message, "2024-01-01T00:00:00Z", 1));
+        // Encoded once up front, as the first recipient would
+        frame.asText();
+    }
+
+    @TearDown
+    public void tearDown() {
+        fanOut.close();
+    }
+
+    @Benchmark
+    public int broadcast() {
+        return manager.broadcast(room, frame);
+    }
+}
@@ -0,0 +1,92 @@
+package com.chatflow.benchmarks;
+
+import com.chatflow.server.codec.BinaryMessageCodec;
+import com.chatflow.server.codec.OutboundFrame;
+import com.chatflow.server.config.MessageLogProperties;
+import com.chatflow.server.store.FsyncPolicy;
+import com.chatflow.server.store.SegmentedMessageLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sustained write rate of the durable message log on local disk. Each invocation hands
+ * a burst of messages spread over the rooms to the log and waits until the writer thread
+ * has appended them all, so the score is what the writer keeps up with, not just the cost
+ * of queueing. Messages are pre-encoded, as they are when the room has binary recipients.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MessageLogBenchmark {
+
+    private static final int BURST = 1000;
+
+    @Param({"NEVER", "INTERVAL", "ALWAYS"})
+    public FsyncPolicy fsyncPolicy;
+
+    @Param({"20"})
+    public int rooms;
+
+    private Path directory;
+    private SegmentedMessageLog messageLog;
+    private String[] roomIds;
+    private OutboundFrame frame;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("chatflow-log-bench");
+        MessageLogProperties properties = new MessageLogProperties();
+        properties.setDirectory(directory.toString());
+        properties.setFsyncPolicy(fsyncPolicy);
+        messageLog = new SegmentedMessageLog(properties);
+        roomIds = new String[rooms];
+        for (int i = 0; i < rooms; i++) {
+            roomIds[i] = String.valueOf(i + 1);
+        }
+        frame = OutboundFrame.ofBinary(BinaryMessageCodec.encodeAck(System.currentTimeMillis(), 1,
+                ByteBuffer.wrap(Payloads.VALID_BINARY)));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        messageLog.close();
+        if (messageLog.getRejected() > 0) {
+            throw new IllegalStateException(messageLog.getRejected() + " messages were rejected");
+        }
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public void groupCommit() {
+        long target = messageLog.getWritten() + BURST;
+        for (int i = 0; i < BURST; i++) {
+            messageLog.append(roomIds[i % rooms], frame);
+        }
+        while (messageLog.getWritten() < target) {
+            LockSupport.parkNanos(1_000);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.chatflow.benchmarks;
+
+import com.chatflow.server.clock.ServerClock;
+import com.chatflow.server.config.ClockProperties;
+import com.chatflow.server.config.InboundProperties;
+import com.chatflow.server.config.RateLimitProperties;
+import com.chatflow.server.handler.ChatBinaryWebSocketHandler;
+import com.chatflow.server.handler.ChatMessageProcessor;
+import com.chatflow.server.handler.ChatWebSocketHandler;
+import com.chatflow.server.ratelimit.RateLimiter;
+import com.chatflow.server.session.RoomSessionManager;
+import com.chatflow.server.validation.MessageValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end inbound path through {@link ChatWebSocketHandler}: decode, validate,
+ * stamp, encode and fan out to every session in the room. Delivery runs on the
+ * calling thread, so the score includes the per-recipient queue and send cost.
+ * The binary variants run the same room through {@link ChatBinaryWebSocketHandler}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MessagePipelineBenchmark {
+
+    /** Sessions in the sender's room, including the sender. */
+    @Param({"1", "100"})
+    public int roomSize;
+
+    private ServerClock clock;
+    private ChatWebSocketHandler handler;
+    private ChatBinaryWebSocketHandler binaryHandler;
+    private BenchmarkSession sender;
+    private BenchmarkSession binarySender;
+    private TextMessage valid;
+    private TextMessage invalid;
+    private TextMessage validBatch;
+    private BinaryMessage validBinary;
+
+    @Setup
+    public void setUp() throws Exception {
+        MessageValidator validator = new MessageValidator();
+        RoomSessionManager sessionManager = RoomSessionManager.builder().build();
+        // Limits every message passes, so the buckets are still taken from on each one
+        RateLimitProperties limits = new RateLimitProperties();
+        limits.setUserRate(1e9);
+        limits.setSessionRate(1e9);
+        InboundProperties inbound = new InboundProperties();
+        // Cached timestamps, as the server stamps them
+        clock = new ServerClock(new ClockProperties());
+        ChatMessageProcessor processor = ChatMessageProcessor.builder(validator, sessionManager)
+                .inboundProperties(inbound).rateLimiter(new RateLimiter(limits)).clock(clock).build();
+        handler = new ChatWebSocketHandler(processor, sessionManager, inbound);
+        binaryHandler = new ChatBinaryWebSocketHandler(processor, sessionManager, inbound);
+        sender = new BenchmarkSession("sender", "1");
+        handler.afterConnectionEstablished(sender);
+        for (int i = 1; i < roomSize; i++) {
+            handler.afterConnectionEstablished(new BenchmarkSession("listener-" + i, "1"));
+        }
+        // Binary senders join their own room of the same size, so both protocols
+        // fan out to recipients of their own format only
+        binarySender = new BenchmarkSession("binary-sender", "2");
+        binaryHandler.afterConnectionEstablished(binarySender);
+        for (int i = 1; i < roomSize; i++) {
+            binaryHandler.afterConnectionEstablished(new BenchmarkSession("binary-listener-" + i, "2"));
+        }
+        valid = new TextMessage(Payloads.VALID_JSON);
+        invalid = new TextMessage(Payloads.INVALID_JSON);
+        validBatch = new TextMessage(Payloads.VALID_BATCH_JSON);
+        // Decoding and acking read the payload without moving its position, so it can be reused
+        validBinary = new BinaryMessage(Payloads.VALID_BINARY);
+    }
+
+    @TearDown
+    public void checkDelivery() {
+        clock.close();
+        if (sender.getSentBytes() + binarySender.getSentBytes() == 0) {
+            throw new IllegalStateException("No frames reached the senders");
+        }
+    }
+
+    @Benchmark
+    public void validMessage() throws Exception {
+        handler.handleMessage(sender, valid);
+    }
+
+    @Benchmark
+    public void invalidMessage() throws Exception {
+        handler.handleMessage(sender, invalid);
+    }
+
+    /** Ten messages in one frame; divide by ten to compare with {@link #validMessage}. */
+    @Benchmark
+    public void validBatch() throws Exception {
+        handler.handleMessage(sender, validBatch);
+    }
+
+    @Benchmark
+    public void validBinaryMessage() throws Exception {
+        binaryHandler.handleMessage(binarySender, validBinary);
+    }
+}
@@ -0,0 +1,51 @@
+package com.chatflow.benchmarks;
+
+import com.chatflow.server.model.ChatMessage;
+import com.chatflow.server.validation.MessageValidator;
+import com.chatflow.server.validation.MessageValidator.ValidationResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MessageValidatorBenchmark {
+
+    private MessageValidator validator;
+    private ChatMessage valid;
+    private ChatMessage badTimestamp;
+
+    @Setup
+    public void setUp() {
+        validator = new MessageValidator();
+        valid = Payloads.validMessage();
+        badTimestamp = Payloads.validMessage();
+        badTimestamp.setTimestamp("2024-06-01 12:34:56");
+    }
+
+    @Benchmark
+    public ValidationResult validMessage() {
+        return validator.validate(valid);
+    }
+
+    /**
+     * Falls through to {@code Instant.parse} and its exception; the worst case per frame.
+     */
+    @Benchmark
+    public ValidationResult invalidTimestamp() {
+        return validator.validate(badTimestamp);
+    }
+}
@@ -0,0 +1,49 @@
+package com.chatflow.benchmarks;
+
+import com.chatflow.server.metrics.Phase;
+import com.chatflow.server.metrics.ServerMetrics;
+import com.chatflow.server.validation.MessageValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What the handler pays to keep metrics on: the three phase recordings of an accepted
+ * message, with the clock reads around them, and the count of a rejection.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetricsBenchmark {
+
+    private static final String REASON = MessageValidator.USER_ID_OUT_OF_RANGE.getErrorMessage();
+
+    private final ServerMetrics metrics = new ServerMetrics();
+
+    @Benchmark
+    public void acceptedMessage() {
+        long start = System.nanoTime();
+        long parsed = System.nanoTime();
+        metrics.record(Phase.PARSE, parsed - start);
+        long built = System.nanoTime();
+        long sent = System.nanoTime();
+        metrics.record(Phase.SERIALIZE, built - parsed);
+        metrics.record(Phase.SEND, sent - built);
+    }
+
+    @Benchmark
+    public void rejectedMessage() {
+        metrics.recordError(REASON);
+    }
+}
@@ -0,0 +1,49 @@
+package com.chatflow.benchmarks;
+
+import com.chatflow.server.codec.BinaryMessageCodec;
+import com.chatflow.server.model.ChatMessage;
+import com.chatflow.server.model.ServerResponse;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Representative frames shared by the benchmarks, matching what the load-test clients send.
+ */
+final class Payloads {
+
+    static final String VALID_JSON =
+            "{\"userId\":\"4217\",\"username\":\"user4217\",\"message\":\"The quick brown fox jumps over the lazy dog\","
+                    + "\"timestamp\":\"2024-06-01T12:34:56.789Z\",\"messageType\":\"TEXT\"}";
+
+    static final String INVALID_JSON =
+            "{\"userId\":\"0\",\"username\":\"user4217\",\"message\":\"The quick brown fox jumps over the lazy dog\","
+                    + "\"timestamp\":\"2024-06-01T12:34:56.789Z\",\"messageType\":\"TEXT\"}";
+
+    static final String SERVER_TIMESTAMP = "2024-06-01T12:34:56.801234Z";
+
+    /** A batch frame of ten copies of {@link #VALID_JSON}. */
+    static final String VALID_BATCH_JSON = "[" + String.join(",", Collections.nCopies(10, VALID_JSON)) + "]";
+
+    /** {@link #VALID_JSON} in the binary wire format, without the response header. */
+    static final byte[] VALID_BINARY = binaryMessage();
+
+    private Payloads() {
+    }
+
+    static ChatMessage validMessage() {
+        ChatMessage message = new ChatMessage();
+        message.setUserId("4217");
+        message.setUsername("user4217");
+        message.setMessage("The quick brown fox jumps over the lazy dog");
+        message.setTimestamp("2024-06-01T12:34:56.789Z");
+        message.setMessageType("TEXT");
+        return message;
+    }
+
+    private static byte[] binaryMessage() {
+        // An OK response is a 9-byte header followed by the message itself
+        byte[] ack = BinaryMessageCodec.encode(ServerResponse.success(validMessage(), SERVER_TIMESTAMP));
+        return Arrays.copyOfRange(ack, 9, ack.length);
+    }
+}
@@ -0,0 +1,122 @@
+package com.chatflow.benchmarks;
+
+import com.chatflow.server.session.RoomSessionManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Session registry under contention: connection churn (join then leave) running
+ * concurrently with the connection-count reads that back {@code /health}. In the
+ * {@code churn} group the churning sessions join rooms that stay populated. In the
+ * {@code lifecycle} group they share rooms with nobody else, so their joins and leaves
+ * keep creating and removing the rooms.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class RoomSessionManagerBenchmark {
+
+    /** Sessions already connected across all rooms before measuring. */
+    @Param({"1000", "10000", "100000"})
+    public int preloaded;
+
+    /** Rooms the preloaded and churning sessions are spread over. */
+    @Param({"20"})
+    public int rooms;
+
+    private RoomSessionManager manager;
+    private final AtomicInteger nextThread = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        manager = RoomSessionManager.builder().build();
+        for (int i = 0; i < preloaded; i++) {
+            String roomId = String.valueOf(i % rooms + 1);
+            manager.addSession(roomId, new BenchmarkSession("pre-" + i, roomId));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Churner {
+        private BenchmarkSession[] sessions;
+        private String[] roomIds;
+        private BenchmarkSession[] emptyRoomSessions;
+        private String[] emptyRoomIds;
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setUp(RoomSessionManagerBenchmark benchmark) {
+            int thread = benchmark.nextThread.getAndIncrement();
+            sessions = new BenchmarkSession[benchmark.rooms];
+            roomIds = new String[benchmark.rooms];
+            for (int i = 0; i < sessions.length; i++) {
+                roomIds[i] = String.valueOf(i + 1);
+                sessions[i] = new BenchmarkSession("churn-" + thread + "-" + i, roomIds[i]);
+            }
+            emptyRoomSessions = new BenchmarkSession[benchmark.rooms];
+            emptyRoomIds = new String[benchmark.rooms];
+            for (int i = 0; i < emptyRoomSessions.length; i++) {
+                emptyRoomIds[i] = "empty-" + (i + 1);
+                emptyRoomSessions[i] = new BenchmarkSession("lifecycle-" + thread + "-" + i, emptyRoomIds[i]);
+            }
+        }
+    }
+
+    @Benchmark
+    @Group("churn")
+    @GroupThreads(4)
+    public void addRemove(Churner churner) {
+        int i = churner.next++ % churner.sessions.length;
+        manager.addSession(churner.roomIds[i], churner.sessions[i]);
+        manager.removeSession(churner.roomIds[i], churner.sessions[i]);
+    }
+
+    @Benchmark
+    @Group("churn")
+    @GroupThreads(1)
+    public int totalConnections() {
+        return manager.getTotalConnections();
+    }
+
+    @Benchmark
+    @Group("lifecycle")
+    @GroupThreads(4)
+    public void createRemoveRoom(Churner churner) {
+        int i = churner.next++ % churner.emptyRoomSessions.length;
+        manager.addSession(churner.emptyRoomIds[i], churner.emptyRoomSessions[i]);
+        manager.removeSession(churner.emptyRoomIds[i], churner.emptyRoomSessions[i]);
+    }
+
+    @Benchmark
+    @Group("lifecycle")
+    @GroupThreads(1)
+    public int roomCount() {
+        return manager.getRoomCount();
+    }
+
+    /** Concurrent reads without churn, as the baseline for the churn group. */
+    @Benchmark
+    @Group("readOnly")
+    @GroupThreads(4)
+    public int totalConnectionsReadOnly() {
+        return manager.getTotalConnections();
+    }
+}
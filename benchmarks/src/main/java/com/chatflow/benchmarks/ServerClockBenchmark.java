@@ -0,0 +1,52 @@
+package com.chatflow.benchmarks;
+
+import com.chatflow.server.clock.ServerClock;
+import com.chatflow.server.config.ClockProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stamping a response with the server time: formatting the system clock per message, as
+ * the handler used to, against reading the {@link ServerClock}'s cached string.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ServerClockBenchmark {
+
+    private final ServerClock clock = new ServerClock(new ClockProperties());
+
+    @TearDown
+    public void tearDown() {
+        clock.close();
+    }
+
+    @Benchmark
+    public String formattedPerMessage() {
+        return Instant.now().toString();
+    }
+
+    @Benchmark
+    public String cachedIsoString() {
+        return clock.isoString();
+    }
+
+    @Benchmark
+    public long cachedMillis() {
+        return clock.millis();
+    }
+}
@@ -0,0 +1,58 @@
+package com.chatflow.benchmarks;
+
+import com.chatflow.server.model.ChatMessage;
+import com.chatflow.server.model.ServerResponse;
+import com.chatflow.server.validation.MessageValidator;
+import com.google.gson.Gson;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.socket.TextMessage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outbound encoding as done by the handler: response to JSON, then to the UTF-8 frame.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ServerResponseSerializationBenchmark {
+
+    private final Gson gson = new Gson();
+    private ChatMessage message;
+    private ServerResponse error;
+
+    @Setup
+    public void setUp() {
+        message = Payloads.validMessage();
+        error = ServerResponse.error(MessageValidator.USER_ID_OUT_OF_RANGE.getErrorMessage());
+    }
+
+    @Benchmark
+    public String successToJson() {
+        return gson.toJson(ServerResponse.success(message, Payloads.SERVER_TIMESTAMP));
+    }
+
+    @Benchmark
+    public TextMessage successToFrame() {
+        String json = gson.toJson(ServerResponse.success(message, Payloads.SERVER_TIMESTAMP));
+        return new TextMessage(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public TextMessage errorToFrame() {
+        return new TextMessage(gson.toJson(error).getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -4,6 +4,7 @@ import com.chatflow.client.config.ClientConfig;
 import com.chatflow.client.connection.ConnectionManager;
 import com.chatflow.client.generator.MessageGenerator;
 import com.chatflow.client.metrics.*;
+import com.chatflow.client.model.ChatMessage;
 import com.chatflow.client.retry.RetryHandler;
 import com.chatflow.client.sender.MessageSender;
 
@@ -20,13 +21,15 @@ public class ClientApp {
         System.out.println("ChatFlow Load Test Client - Part 2 (with latency analysis)");
         System.out.println("===========================================================");
         System.out.printf("Total messages: %d%n", ClientConfig.TOTAL_MESSAGES);
+        System.out.printf("Protocol: %s (%s), batch size %d, in-flight window %d%n",
+                ClientConfig.PROTOCOL, ClientConfig.SERVER_URI, ClientConfig.BATCH_SIZE, ClientConfig.MAX_IN_FLIGHT);
         System.out.printf("Warmup: %d threads, %d messages total%n",
                 ClientConfig.WARMUP_THREADS, ClientConfig.WARMUP_TOTAL);
         System.out.printf("Main phase: %d threads, %d messages%n",
                 ClientConfig.MAIN_PHASE_THREADS, ClientConfig.MAIN_PHASE_MESSAGES);
         System.out.println();
 
-        BlockingQueue<String> queue = new ArrayBlockingQueue<>(ClientConfig.QUEUE_CAPACITY);
+        BlockingQueue<ChatMessage> queue = new ArrayBlockingQueue<>(ClientConfig.QUEUE_CAPACITY);
         LatencyCollector allLatencies = new LatencyCollector();
 
         // =====================
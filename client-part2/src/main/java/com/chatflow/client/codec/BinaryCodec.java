@@ -0,0 +1,157 @@
+package com.chatflow.client.codec;
+
+import com.chatflow.client.model.ChatMessage;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Client side of the server's binary protocol. Integers are big-endian; strings are
+ * UTF-8 with an unsigned 16-bit byte-length prefix.
+ *
+ * <pre>
+ * message    int32   userId
+ *            int64   timestamp, epoch millis
+ *            uint8   messageType: 0 TEXT, 1 JOIN, 2 LEAVE
+ *            string  username
+ *            string  message
+ *            string  messageId, optional: present only if bytes remain
+ *
+ * response   uint8   status: 0 OK, 1 ERROR, 2 BATCH, 3 PRESENCE
+ *   OK       int64   serverTimestamp, epoch millis
+ *            int64   seq, the message's position in its room
+ *            message, echoed
+ *   ERROR    string  error
+ *            string  messageId, optional
+ *   BATCH    int64   serverTimestamp, epoch millis
+ *            uint16  item count
+ *            per item: uint8 status, then int64 seq and message for OK or string
+ *            error for ERROR; items carry no messageId
+ *   PRESENCE int64   serverTimestamp, epoch millis, then the room's member count and
+ *            the userIds that joined and left; not read by this client
+ * </pre>
+ *
+ * Batches are only sent as JSON, but binary sessions receive other clients' batches.
+ */
+public final class BinaryCodec {
+
+    public static final byte STATUS_OK = 0;
+    public static final byte STATUS_ERROR = 1;
+    public static final byte STATUS_BATCH = 2;
+    public static final byte STATUS_PRESENCE = 3;
+
+    private BinaryCodec() {
+    }
+
+    public static byte[] encode(ChatMessage message) {
+        byte[] username = message.getUsername().getBytes(StandardCharsets.UTF_8);
+        byte[] text = message.getMessage().getBytes(StandardCharsets.UTF_8);
+        byte[] messageId = message.getMessageId() != null
+                ? message.getMessageId().getBytes(StandardCharsets.UTF_8)
+                : null;
+        ByteBuffer out = ByteBuffer.allocate(4 + 8 + 1 + 2 + username.length + 2 + text.length
+                        + (messageId != null ? 2 + messageId.length : 0))
+                .putInt(Integer.parseInt(message.getUserId()))
+                .putLong(message.getTimestampMillis())
+                .put(messageTypeCode(message.getMessageType()))
+                .putShort((short) username.length)
+                .put(username)
+                .putShort((short) text.length)
+                .put(text);
+        if (messageId != null) {
+            out.putShort((short) messageId.length).put(messageId);
+        }
+        return out.array();
+    }
+
+    /**
+     * Reads the status, the server timestamp or the error, the highest seq and the
+     * messageId if any; echoed message bodies are skipped. Presence updates read as OK
+     * with neither a seq nor a messageId.
+     */
+    public static Response decodeResponse(ByteBuffer frame) {
+        int pos = frame.position();
+        byte status = frame.get(pos);
+        if (status == STATUS_BATCH) {
+            return new Response(true, frame.getLong(pos + 1), highestItemSeq(frame, pos + 1 + 8), null, null);
+        }
+        if (status == STATUS_PRESENCE) {
+            return new Response(true, frame.getLong(pos + 1), 0, null, null);
+        }
+        if (status == STATUS_OK) {
+            int offset = skipMessage(frame, pos + 1 + 8 + 8);
+            return new Response(true, frame.getLong(pos + 1), frame.getLong(pos + 9), null,
+                    readOptionalString(frame, offset));
+        }
+        int length = frame.getShort(pos + 1) & 0xFFFF;
+        return new Response(false, 0, 0, readString(frame, pos + 3, length), readOptionalString(frame, pos + 3 + length));
+    }
+
+    private static long highestItemSeq(ByteBuffer frame, int offset) {
+        int count = frame.getShort(offset) & 0xFFFF;
+        offset += 2;
+        long highest = 0;
+        for (int i = 0; i < count; i++) {
+            if (frame.get(offset) == STATUS_OK) {
+                highest = Math.max(highest, frame.getLong(offset + 1));
+                offset = skipMessage(frame, offset + 1 + 8);
+            } else {
+                offset += 1 + 2 + (frame.getShort(offset + 1) & 0xFFFF);
+            }
+        }
+        return highest;
+    }
+
+    // Skips userId, timestamp and messageType, then both strings
+    private static int skipMessage(ByteBuffer frame, int offset) {
+        offset += 4 + 8 + 1;
+        offset += 2 + (frame.getShort(offset) & 0xFFFF);
+        return offset + 2 + (frame.getShort(offset) & 0xFFFF);
+    }
+
+    private static String readOptionalString(ByteBuffer frame, int offset) {
+        if (offset + 2 > frame.limit()) {
+            return null;
+        }
+        return readString(frame, offset + 2, frame.getShort(offset) & 0xFFFF);
+    }
+
+    private static String readString(ByteBuffer frame, int offset, int length) {
+        byte[] bytes = new byte[length];
+        frame.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static byte messageTypeCode(String messageType) {
+        return switch (messageType) {
+            case "TEXT" -> 0;
+            case "JOIN" -> 1;
+            case "LEAVE" -> 2;
+            default -> throw new IllegalArgumentException("Unknown messageType: " + messageType);
+        };
+    }
+
+    public static class Response {
+        private final boolean ok;
+        private final long serverTimestamp;
+        private final long seq;
+        private final String error;
+        private final String messageId;
+
+        public Response(boolean ok, long serverTimestamp, long seq, String error, String messageId) {
+            this.ok = ok;
+            this.serverTimestamp = serverTimestamp;
+            this.seq = seq;
+            this.error = error;
+            this.messageId = messageId;
+        }
+
+        public boolean isOk() { return ok; }
+        public long getServerTimestamp() { return serverTimestamp; }
+        /** The message's seq; for a batch the highest of its items; 0 for errors. */
+        public long getSeq() { return seq; }
+        public String getError() { return error; }
+        public String getMessageId() { return messageId; }
+        public String getStatus() { return ok ? "OK" : "ERROR"; }
+    }
+}
@@ -11,6 +11,11 @@ public class ClientConfig {
     public static final int NUM_ROOMS = 20;
     public static final int MESSAGE_POOL_SIZE = 50;
     public static final long ACK_TIMEOUT_MS = 5000;
+    public static WireProtocol PROTOCOL = WireProtocol.JSON;
+    // Messages per frame; above 1 messages are sent as a JSON array and acked together
+    public static int BATCH_SIZE = 1;
+    // Frames awaiting an ack per connection; 1 is stop-and-wait
+    public static int MAX_IN_FLIGHT = 1;
 
     // Derived values (computed after TOTAL_MESSAGES is finalized)
     public static int WARMUP_TOTAL;
@@ -24,6 +29,24 @@ public class ClientConfig {
         if (args.length > 1) {
             SERVER_URI = args[1];
         }
+        // Select the binary endpoint with -Dchatflow.protocol=binary
+        PROTOCOL = WireProtocol.valueOf(System.getProperty("chatflow.protocol", "json").toUpperCase());
+        if (PROTOCOL == WireProtocol.BINARY && SERVER_URI.endsWith("/chat/")) {
+            SERVER_URI = SERVER_URI.substring(0, SERVER_URI.length() - "/chat/".length()) + "/chat-bin/";
+        }
+        // Batch messages per frame with -Dchatflow.batchSize=N (server default limit: 100)
+        BATCH_SIZE = Integer.getInteger("chatflow.batchSize", 1);
+        if (BATCH_SIZE < 1) {
+            throw new IllegalArgumentException("chatflow.batchSize must be at least 1");
+        }
+        if (BATCH_SIZE > 1 && PROTOCOL != WireProtocol.JSON) {
+            throw new IllegalArgumentException("Batching is only supported with the JSON protocol");
+        }
+        // Pipeline up to N unacknowledged frames per connection with -Dchatflow.window=N
+        MAX_IN_FLIGHT = Integer.getInteger("chatflow.window", 1);
+        if (MAX_IN_FLIGHT < 1) {
+            throw new IllegalArgumentException("chatflow.window must be at least 1");
+        }
 
         // Warmup cannot exceed total
         WARMUP_TOTAL = Math.min(TOTAL_MESSAGES, WARMUP_THREADS * WARMUP_MESSAGES_PER_THREAD);
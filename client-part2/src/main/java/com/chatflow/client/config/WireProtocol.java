@@ -0,0 +1,11 @@
+package com.chatflow.client.config;
+
+/**
+ * Encoding used between client and server.
+ */
+public enum WireProtocol {
+    /** JSON text frames on {@code /chat/{roomId}}. */
+    JSON,
+    /** Compact binary frames on {@code /chat-bin/{roomId}}; see {@code BinaryCodec}. */
+    BINARY
+}
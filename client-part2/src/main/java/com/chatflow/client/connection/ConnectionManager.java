@@ -1,13 +1,23 @@
 package com.chatflow.client.connection;
 
+import com.chatflow.client.codec.BinaryCodec;
 import com.chatflow.client.config.ClientConfig;
+import com.chatflow.client.config.WireProtocol;
 import com.chatflow.client.metrics.BasicMetrics;
+import com.chatflow.client.model.ChatMessage;
+import com.google.gson.Gson;
 import org.java_websocket.client.WebSocketClient;
 import org.java_websocket.handshake.ServerHandshake;
 
 import java.net.URI;
-import java.util.concurrent.CountDownLatch;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public class ConnectionManager {
 
@@ -22,8 +32,17 @@ public class ConnectionManager {
      * Blocks until the connection is established or timeout.
      */
     public ChatWebSocketClient connect(int roomId) throws Exception {
-        URI uri = new URI(ClientConfig.SERVER_URI + roomId);
+        return connect(roomId, 0);
+    }
+
+    /**
+     * Connects to the given room, asking the server to first deliver what the room has
+     * had since seq {@code since}, if positive.
+     */
+    public ChatWebSocketClient connect(int roomId, long since) throws Exception {
+        URI uri = new URI(ClientConfig.SERVER_URI + roomId + (since > 0 ? "?since=" + since : ""));
         ChatWebSocketClient client = new ChatWebSocketClient(uri);
+        client.resumeFrom(since);
         client.connectBlocking(10, TimeUnit.SECONDS);
         if (!client.isOpen()) {
             throw new RuntimeException("Failed to connect to " + uri);
@@ -33,20 +52,43 @@ public class ConnectionManager {
     }
 
     /**
-     * Reconnect a closed client to the same room.
+     * Reconnect a closed client to the same room, resuming after the last message it
+     * received so that what the room had meanwhile is delivered first.
      */
     public ChatWebSocketClient reconnect(ChatWebSocketClient oldClient, int roomId) throws Exception {
         metrics.incrementReconnections();
-        return connect(roomId);
+        return connect(roomId, oldClient != null ? oldClient.getLastSeq() : 0);
     }
 
+    /**
+     * A connection that can keep up to {@link ClientConfig#MAX_IN_FLIGHT} frames awaiting
+     * their acks. Each frame is registered under the messageId of its first message and
+     * completed by the response that echoes that id; responses with other ids, such as
+     * broadcasts of other clients' messages, are ignored. An ack carrying an error, such
+     * as {@code overloaded} or a rate limit, fails its frame with {@link RejectedException}
+     * so that it is retried rather than counted as delivered. Every response advances the
+     * highest room seq seen, which a reconnect resumes from.
+     */
     public static class ChatWebSocketClient extends WebSocketClient {
-        private volatile String lastResponse;
-        private final CountDownLatch responseLatch = new CountDownLatch(1);
-        private volatile CountDownLatch ackLatch;
+        private static final Gson GSON = new Gson();
+        private static final String MESSAGE_ID_KEY = "\"messageId\":\"";
+        private static final String SEQ_KEY = "\"seq\":";
+        private static final String ERROR_STATUS = "\"status\":\"ERROR\"";
+
+        private final WireProtocol protocol;
+        private final ConcurrentHashMap<String, CompletableFuture<String>> pendingAcks = new ConcurrentHashMap<>();
+        private final Semaphore window;
+        // Written by the connection's read thread only
+        private volatile long lastSeq;
 
         public ChatWebSocketClient(URI serverUri) {
+            this(serverUri, ClientConfig.PROTOCOL, ClientConfig.MAX_IN_FLIGHT);
+        }
+
+        public ChatWebSocketClient(URI serverUri, WireProtocol protocol, int maxInFlight) {
             super(serverUri);
+            this.protocol = protocol;
+            this.window = new Semaphore(maxInFlight);
         }
 
         @Override
@@ -54,28 +96,176 @@ public class ConnectionManager {
 
         @Override
         public void onMessage(String message) {
-            lastResponse = message;
-            if (ackLatch != null) {
-                ackLatch.countDown();
+            advanceSeq(highestSeqOf(message));
+            complete(messageIdOf(message), message, !hasError(message));
+        }
+
+        @Override
+        public void onMessage(ByteBuffer bytes) {
+            BinaryCodec.Response response = BinaryCodec.decodeResponse(bytes);
+            advanceSeq(response.getSeq());
+            complete(response.getMessageId(), response.isOk() ? response.getStatus() : response.getError(),
+                    response.isOk());
+        }
+
+        private void advanceSeq(long seq) {
+            if (seq > lastSeq) {
+                lastSeq = seq;
+            }
+        }
+
+        /**
+         * Counts messages up to {@code seq} as received, for a connection that resumes
+         * after it.
+         */
+        void resumeFrom(long seq) {
+            advanceSeq(seq);
+        }
+
+        /** The highest room seq received on this connection, or resumed from; 0 if none. */
+        public long getLastSeq() {
+            return lastSeq;
+        }
+
+        private void complete(String messageId, String response, boolean ok) {
+            CompletableFuture<String> ack = messageId != null ? pendingAcks.remove(messageId) : null;
+            if (ack != null) {
+                window.release();
+                if (ok) {
+                    ack.complete(response);
+                } else {
+                    ack.completeExceptionally(new RejectedException(response));
+                }
             }
         }
 
         @Override
-        public void onClose(int code, String reason, boolean remote) {}
+        public void onClose(int code, String reason, boolean remote) {
+            for (String messageId : pendingAcks.keySet()) {
+                CompletableFuture<String> ack = pendingAcks.remove(messageId);
+                if (ack != null) {
+                    window.release();
+                    ack.completeExceptionally(new IllegalStateException("Connection closed: " + code));
+                }
+            }
+        }
 
         @Override
         public void onError(Exception ex) {}
 
         /**
-         * Send a message and wait for the ack synchronously.
-         * Returns the server response, or null on timeout.
+         * Sends messages in one frame without waiting for the ack. A single message is
+         * sent as a plain object; several are sent as a JSON batch, acked together. Waits
+         * up to the ack timeout for a free slot in the window. The returned future
+         * completes with the server response, binary ones reported as their status, or
+         * fails with {@link RejectedException} if the server answered with an error.
          */
-        public String sendAndWaitForAck(String message, long timeoutMs) throws InterruptedException {
-            ackLatch = new CountDownLatch(1);
-            lastResponse = null;
-            send(message);
-            boolean received = ackLatch.await(timeoutMs, TimeUnit.MILLISECONDS);
-            return received ? lastResponse : null;
+        public CompletableFuture<String> sendAsync(List<ChatMessage> messages) throws InterruptedException {
+            String messageId = messages.get(0).getMessageId();
+            if (messageId == null) {
+                throw new IllegalArgumentException("messageId is required to correlate the ack");
+            }
+            if (!window.tryAcquire(ClientConfig.ACK_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                return CompletableFuture.failedFuture(new TimeoutException("No free slot in the in-flight window"));
+            }
+            CompletableFuture<String> ack = new CompletableFuture<>();
+            if (pendingAcks.putIfAbsent(messageId, ack) != null) {
+                window.release();
+                return CompletableFuture.failedFuture(new IllegalStateException("Already in flight: " + messageId));
+            }
+            try {
+                if (messages.size() > 1) {
+                    send(GSON.toJson(messages));
+                } else if (protocol == WireProtocol.BINARY) {
+                    send(BinaryCodec.encode(messages.get(0)));
+                } else {
+                    send(GSON.toJson(messages.get(0)));
+                }
+            } catch (RuntimeException e) {
+                abandon(messageId);
+                return CompletableFuture.failedFuture(e);
+            }
+            return ack;
+        }
+
+        /**
+         * Send messages in one frame and wait for the ack synchronously.
+         * Returns the server response, or null on timeout, on an error response or if the
+         * connection closed.
+         */
+        public String sendAndWaitForAck(List<ChatMessage> messages, long timeoutMs) throws InterruptedException {
+            String messageId = messages.get(0).getMessageId();
+            try {
+                return sendAsync(messages).get(timeoutMs, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException | TimeoutException e) {
+                abandon(messageId);
+                return null;
+            }
+        }
+
+        /**
+         * Stops waiting for an ack and frees its slot; a late response is then ignored.
+         */
+        public void abandon(String messageId) {
+            if (pendingAcks.remove(messageId) != null) {
+                window.release();
+            }
+        }
+
+        public int getInFlight() {
+            return pendingAcks.size();
+        }
+
+        /**
+         * Returns the first messageId in a JSON response: the top-level one, or for a
+         * batch, that of its first item. The ids this client generates need no unescaping.
+         */
+        static String messageIdOf(String response) {
+            int start = response.indexOf(MESSAGE_ID_KEY);
+            if (start < 0) {
+                return null;
+            }
+            start += MESSAGE_ID_KEY.length();
+            int end = response.indexOf('"', start);
+            return end < 0 ? null : response.substring(start, end);
+        }
+
+        /**
+         * Whether a JSON response, or any item of a batch, is an error. Resending a whole
+         * batch is safe, since the server recognizes the items it already accepted.
+         */
+        static boolean hasError(String response) {
+            return response.contains(ERROR_STATUS);
+        }
+
+        /**
+         * Returns the highest seq in a JSON response, across batch items, or 0 if none.
+         * Keys cannot occur inside string values, whose quotes are escaped.
+         */
+        static long highestSeqOf(String response) {
+            long highest = 0;
+            int start = response.indexOf(SEQ_KEY);
+            while (start >= 0) {
+                long seq = 0;
+                int i = start + SEQ_KEY.length();
+                for (char c; i < response.length() && (c = response.charAt(i)) >= '0' && c <= '9'; i++) {
+                    seq = seq * 10 + (c - '0');
+                }
+                highest = Math.max(highest, seq);
+                start = response.indexOf(SEQ_KEY, i);
+            }
+            return highest;
+        }
+    }
+
+    /**
+     * The server answered a frame with an error; the text is its error message, or the
+     * whole JSON response.
+     */
+    public static class RejectedException extends Exception {
+
+        public RejectedException(String response) {
+            super(response);
         }
     }
 }
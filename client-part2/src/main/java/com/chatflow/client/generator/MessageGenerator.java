@@ -2,19 +2,22 @@ package com.chatflow.client.generator;
 
 import com.chatflow.client.config.ClientConfig;
 import com.chatflow.client.model.ChatMessage;
-import com.google.gson.Gson;
 
 import java.time.Instant;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class MessageGenerator implements Runnable {
 
-    private final BlockingQueue<String> queue;
+    private final BlockingQueue<ChatMessage> queue;
     private final int totalMessages;
-    private final Gson gson = new Gson();
 
     private static final String[] MESSAGE_POOL = new String[ClientConfig.MESSAGE_POOL_SIZE];
+    // messageIds are a per-run prefix and a counter, so responses to other clients never match
+    private static final String MESSAGE_ID_PREFIX =
+            Long.toString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE, 36) + "-";
+    private static final AtomicLong MESSAGE_IDS = new AtomicLong();
 
     static {
         for (int i = 0; i < ClientConfig.MESSAGE_POOL_SIZE; i++) {
@@ -22,7 +25,7 @@ public class MessageGenerator implements Runnable {
         }
     }
 
-    public MessageGenerator(BlockingQueue<String> queue, int totalMessages) {
+    public MessageGenerator(BlockingQueue<ChatMessage> queue, int totalMessages) {
         this.queue = queue;
         this.totalMessages = totalMessages;
     }
@@ -31,27 +34,26 @@ public class MessageGenerator implements Runnable {
     public void run() {
         try {
             for (int i = 0; i < totalMessages; i++) {
-                String json = generateMessage();
-                queue.put(json); // blocks if queue is full
+                queue.put(generateMessage()); // blocks if queue is full
             }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
         }
     }
 
-    private String generateMessage() {
+    /**
+     * Messages are queued unencoded; each sender encodes them for its wire protocol.
+     */
+    private ChatMessage generateMessage() {
         ThreadLocalRandom random = ThreadLocalRandom.current();
         int userId = random.nextInt(1, 100001);
         String username = "user" + userId;
         String message = MESSAGE_POOL[random.nextInt(MESSAGE_POOL.length)];
         int roomId = random.nextInt(1, ClientConfig.NUM_ROOMS + 1);
         String messageType = pickMessageType(random);
-        String timestamp = Instant.now().toString();
-
-        ChatMessage chatMessage = new ChatMessage(
-                String.valueOf(userId), username, message, timestamp, messageType, roomId
+        return new ChatMessage(MESSAGE_ID_PREFIX + MESSAGE_IDS.incrementAndGet(),
+                String.valueOf(userId), username, message, Instant.now(), messageType, roomId
         );
-        return gson.toJson(chatMessage);
     }
 
     private String pickMessageType(ThreadLocalRandom random) {
@@ -3,26 +3,39 @@ package com.chatflow.client.model;
 import java.time.Instant;
 
 public class ChatMessage {
+    // Correlates the server's response with this message; unique per client run
+    private String messageId;
     private String userId;
     private String username;
     private String message;
     private String timestamp;
     private String messageType;
     private int roomId;
+    // Same instant as timestamp, for the binary codec; not part of the JSON body
+    private transient long timestampMillis;
 
-    public ChatMessage(String userId, String username, String message, String timestamp, String messageType, int roomId) {
+    public ChatMessage(String userId, String username, String message, Instant timestamp, String messageType, int roomId) {
+        this(null, userId, username, message, timestamp, messageType, roomId);
+    }
+
+    public ChatMessage(String messageId, String userId, String username, String message, Instant timestamp,
+                       String messageType, int roomId) {
+        this.messageId = messageId;
         this.userId = userId;
         this.username = username;
         this.message = message;
-        this.timestamp = timestamp;
+        this.timestamp = timestamp.toString();
+        this.timestampMillis = timestamp.toEpochMilli();
         this.messageType = messageType;
         this.roomId = roomId;
     }
 
+    public String getMessageId() { return messageId; }
     public String getUserId() { return userId; }
     public String getUsername() { return username; }
     public String getMessage() { return message; }
     public String getTimestamp() { return timestamp; }
+    public long getTimestampMillis() { return timestampMillis; }
     public String getMessageType() { return messageType; }
     public int getRoomId() { return roomId; }
 }
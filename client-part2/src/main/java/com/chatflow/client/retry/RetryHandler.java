@@ -3,6 +3,9 @@ package com.chatflow.client.retry;
 import com.chatflow.client.config.ClientConfig;
 import com.chatflow.client.connection.ConnectionManager;
 import com.chatflow.client.connection.ConnectionManager.ChatWebSocketClient;
+import com.chatflow.client.model.ChatMessage;
+
+import java.util.List;
 
 public class RetryHandler {
 
@@ -13,31 +16,33 @@ public class RetryHandler {
     }
 
     /**
-     * Sends a message with up to maxRetries attempts using exponential backoff.
+     * Sends a message, or a batch of messages in one frame, with up to maxRetries attempts using exponential backoff.
      * Returns the server response on success, or null after all retries exhausted.
+     * Called once a send has failed, or been rejected as overloaded or rate limited, so it
+     * backs off before every attempt, the first included.
      * May reconnect the WebSocket if the connection is broken.
      */
-    public SendResult sendWithRetry(ChatWebSocketClient client, String message, int roomId) {
+    public SendResult sendWithRetry(ChatWebSocketClient client, List<ChatMessage> messages, int roomId) {
         for (int attempt = 0; attempt < ClientConfig.MAX_RETRIES; attempt++) {
+            // Exponential backoff
+            try {
+                Thread.sleep((long) Math.pow(2, attempt) * 100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return new SendResult(false, null, client);
+            }
+
             try {
                 if (!client.isOpen()) {
                     client = connectionManager.reconnect(client, roomId);
                 }
-                String response = client.sendAndWaitForAck(message, ClientConfig.ACK_TIMEOUT_MS);
+                String response = client.sendAndWaitForAck(messages, ClientConfig.ACK_TIMEOUT_MS);
                 if (response != null) {
                     return new SendResult(true, response, client);
                 }
             } catch (Exception e) {
                 // Fall through to retry
             }
-
-            // Exponential backoff
-            try {
-                Thread.sleep((long) Math.pow(2, attempt) * 100);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                return new SendResult(false, null, client);
-            }
         }
         return new SendResult(false, null, client);
     }
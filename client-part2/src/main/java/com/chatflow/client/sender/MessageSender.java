@@ -1,30 +1,36 @@
 package com.chatflow.client.sender;
 
+import com.chatflow.client.config.ClientConfig;
 import com.chatflow.client.connection.ConnectionManager;
 import com.chatflow.client.connection.ConnectionManager.ChatWebSocketClient;
 import com.chatflow.client.metrics.BasicMetrics;
 import com.chatflow.client.metrics.LatencyCollector;
 import com.chatflow.client.metrics.LatencyRecord;
+import com.chatflow.client.model.ChatMessage;
 import com.chatflow.client.retry.RetryHandler;
 import com.chatflow.client.retry.RetryHandler.SendResult;
-import com.google.gson.Gson;
-import com.google.gson.JsonObject;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public class MessageSender implements Runnable {
 
-    private final BlockingQueue<String> queue;
+    private final BlockingQueue<ChatMessage> queue;
     private final int messageCount;
     private final int assignedRoomId;
     private final ConnectionManager connectionManager;
     private final RetryHandler retryHandler;
     private final BasicMetrics metrics;
     private final LatencyCollector latencyCollector;
-    private final Gson gson = new Gson();
 
-    public MessageSender(BlockingQueue<String> queue, int messageCount, int assignedRoomId,
+    public MessageSender(BlockingQueue<ChatMessage> queue, int messageCount, int assignedRoomId,
                          ConnectionManager connectionManager, RetryHandler retryHandler,
                          BasicMetrics metrics, LatencyCollector latencyCollector) {
         this.queue = queue;
@@ -43,38 +49,72 @@ public class MessageSender implements Runnable {
         try {
             client = connectionManager.connect(assignedRoomId);
 
-            for (int i = 0; i < messageCount; i++) {
-                String messageJson = queue.poll(5, TimeUnit.SECONDS);
-                if (messageJson == null) {
-                    continue;
+            // Frames awaiting acks, oldest first; acks are consumed in send order
+            Deque<InFlight> inFlight = new ArrayDeque<>(ClientConfig.MAX_IN_FLIGHT);
+            int i = 0;
+            while (i < messageCount || !inFlight.isEmpty()) {
+                // Fill the window; only wait on the queue when nothing is awaiting an ack
+                while (i < messageCount && inFlight.size() < ClientConfig.MAX_IN_FLIGHT) {
+                    ChatMessage message = inFlight.isEmpty() ? queue.poll(5, TimeUnit.SECONDS) : queue.poll();
+                    if (message == null) {
+                        if (inFlight.isEmpty()) {
+                            i++;
+                            continue;
+                        }
+                        break;
+                    }
+                    // Fill the batch with whatever is already queued, without waiting
+                    List<ChatMessage> batch = new ArrayList<>(ClientConfig.BATCH_SIZE);
+                    batch.add(message);
+                    queue.drainTo(batch, Math.min(ClientConfig.BATCH_SIZE, messageCount - i) - 1);
+                    i += batch.size();
+
+                    if (!client.isOpen()) {
+                        client = connectionManager.reconnect(client, assignedRoomId);
+                    }
+
+                    // Record send time
+                    long sendTime = System.currentTimeMillis();
+                    CompletableFuture<String> ack;
+                    try {
+                        ack = client.sendAsync(batch);
+                    } catch (RuntimeException e) {
+                        ack = CompletableFuture.failedFuture(e);
+                    }
+                    inFlight.addLast(new InFlight(batch, sendTime, ack, client));
                 }
 
-                if (!client.isOpen()) {
-                    client = connectionManager.reconnect(client, assignedRoomId);
+                InFlight oldest = inFlight.pollFirst();
+                if (oldest == null) {
+                    continue;
+                }
+                boolean success = true;
+                try {
+                    long remaining = oldest.sendTime() + ClientConfig.ACK_TIMEOUT_MS - System.currentTimeMillis();
+                    oldest.ack().get(Math.max(remaining, 0), TimeUnit.MILLISECONDS);
+                } catch (ExecutionException | TimeoutException e) {
+                    // Lost, timed out or rejected by the server, as when it is overloaded:
+                    // resend on its own, with backoff, and keep the pipeline going afterwards
+                    oldest.client().abandon(oldest.messages().get(0).getMessageId());
+                    SendResult result = retryHandler.sendWithRetry(client, oldest.messages(), assignedRoomId);
+                    client = result.getClient();
+                    success = result.isSuccess();
                 }
 
-                // Extract messageType for the latency record
-                String messageType = extractMessageType(messageJson);
-
-                // Record send time
-                long sendTime = System.currentTimeMillis();
-
-                SendResult result = retryHandler.sendWithRetry(client, messageJson, assignedRoomId);
-                client = result.getClient();
-
-                // Record ack time
+                // Record ack time; every message in a batch shares the batch's latency
                 long ackTime = System.currentTimeMillis();
-                long latency = ackTime - sendTime;
-                String statusCode = result.isSuccess() ? "OK" : "FAIL";
-
-                // Record latency
-                latencyCollector.record(new LatencyRecord(
-                        sendTime, messageType, latency, statusCode, assignedRoomId));
-
-                if (result.isSuccess()) {
-                    metrics.incrementSuccess();
-                } else {
-                    metrics.incrementFailed();
+                long latency = ackTime - oldest.sendTime();
+                String statusCode = success ? "OK" : "FAIL";
+
+                for (ChatMessage sent : oldest.messages()) {
+                    latencyCollector.record(new LatencyRecord(
+                            oldest.sendTime(), sent.getMessageType(), latency, statusCode, assignedRoomId));
+
+                    if (success) {
+                        metrics.incrementSuccess();
+                    } else {
+                        metrics.incrementFailed();
+                    }
                 }
             }
         } catch (Exception e) {
@@ -86,12 +126,7 @@ public class MessageSender implements Runnable {
         }
     }
 
-    private String extractMessageType(String json) {
-        try {
-            JsonObject obj = gson.fromJson(json, JsonObject.class);
-            return obj.get("messageType").getAsString();
-        } catch (Exception e) {
-            return "UNKNOWN";
-        }
+    private record InFlight(List<ChatMessage> messages, long sendTime, CompletableFuture<String> ack,
+                            ChatWebSocketClient client) {
     }
 }
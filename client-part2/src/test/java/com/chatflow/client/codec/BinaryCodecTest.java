@@ -0,0 +1,137 @@
+package com.chatflow.client.codec;
+
+import com.chatflow.client.model.ChatMessage;
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryCodecTest {
+
+    private static final Instant TIMESTAMP = Instant.parse("2024-01-01T00:00:00.123Z");
+
+    @Test
+    void encode_writesFieldsInWireOrder() {
+        ChatMessage message = new ChatMessage("42", "user42", "héllo", TIMESTAMP, "LEAVE", 3);
+
+        ByteBuffer in = ByteBuffer.wrap(BinaryCodec.encode(message));
+
+        assertEquals(42, in.getInt());
+        assertEquals(TIMESTAMP.toEpochMilli(), in.getLong());
+        assertEquals(2, in.get());
+        byte[] username = new byte[in.getShort()];
+        in.get(username);
+        assertEquals("user42", new String(username, StandardCharsets.UTF_8));
+        byte[] text = new byte[in.getShort()];
+        in.get(text);
+        assertEquals("héllo", new String(text, StandardCharsets.UTF_8));
+        assertFalse(in.hasRemaining());
+    }
+
+    @Test
+    void encode_isSmallerThanJson() {
+        ChatMessage message = new ChatMessage("42", "user42",
+                "Sample chat message number 7 for load testing", TIMESTAMP, "TEXT", 3);
+
+        int json = new Gson().toJson(message).getBytes(StandardCharsets.UTF_8).length;
+        assertTrue(BinaryCodec.encode(message).length * 2 < json);
+    }
+
+    @Test
+    void decodeResponse_okCarriesServerTimestamp() {
+        byte[] echoed = BinaryCodec.encode(new ChatMessage("1", "user1", "hi", TIMESTAMP, "TEXT", 1));
+        ByteBuffer frame = ByteBuffer.allocate(17 + echoed.length)
+                .put(BinaryCodec.STATUS_OK)
+                .putLong(1234L)
+                .putLong(56L)
+                .put(echoed)
+                .flip();
+
+        BinaryCodec.Response response = BinaryCodec.decodeResponse(frame);
+
+        assertTrue(response.isOk());
+        assertEquals(1234L, response.getServerTimestamp());
+        assertEquals(56L, response.getSeq());
+        assertEquals("OK", response.getStatus());
+        assertNull(response.getMessageId());
+    }
+
+    @Test
+    void messageId_encodedAfterMessageAndReadFromResponses() {
+        byte[] echoed = BinaryCodec.encode(new ChatMessage("c1-7", "1", "user1", "hi", TIMESTAMP, "TEXT", 1));
+        ByteBuffer ok = ByteBuffer.allocate(17 + echoed.length)
+                .put(BinaryCodec.STATUS_OK)
+                .putLong(1234L)
+                .putLong(1L)
+                .put(echoed)
+                .flip();
+        byte[] error = "userId is required".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer failed = ByteBuffer.allocate(3 + error.length + 2 + 4)
+                .put(BinaryCodec.STATUS_ERROR)
+                .putShort((short) error.length)
+                .put(error)
+                .putShort((short) 4)
+                .put("c1-8".getBytes(StandardCharsets.UTF_8))
+                .flip();
+
+        assertEquals("c1-7", BinaryCodec.decodeResponse(ok).getMessageId());
+        assertEquals("c1-8", BinaryCodec.decodeResponse(failed).getMessageId());
+        assertEquals("userId is required", BinaryCodec.decodeResponse(failed).getError());
+    }
+
+    @Test
+    void decodeResponse_batchCarriesHighestItemSeq() {
+        byte[] item = BinaryCodec.encode(new ChatMessage("1", "user1", "hi", TIMESTAMP, "TEXT", 1));
+        byte[] error = "userId is required".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer frame = ByteBuffer.allocate(11 + 2 * (9 + item.length) + 3 + error.length)
+                .put(BinaryCodec.STATUS_BATCH)
+                .putLong(1234L)
+                .putShort((short) 3)
+                .put(BinaryCodec.STATUS_OK).putLong(8L).put(item)
+                .put(BinaryCodec.STATUS_ERROR).putShort((short) error.length).put(error)
+                .put(BinaryCodec.STATUS_OK).putLong(9L).put(item)
+                .flip();
+
+        BinaryCodec.Response response = BinaryCodec.decodeResponse(frame);
+
+        assertTrue(response.isOk());
+        assertEquals(9L, response.getSeq());
+    }
+
+    @Test
+    void decodeResponse_errorCarriesMessage() {
+        byte[] error = "userId is required".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer frame = ByteBuffer.allocate(3 + error.length)
+                .put(BinaryCodec.STATUS_ERROR)
+                .putShort((short) error.length)
+                .put(error)
+                .flip();
+
+        BinaryCodec.Response response = BinaryCodec.decodeResponse(frame);
+
+        assertFalse(response.isOk());
+        assertEquals("userId is required", response.getError());
+    }
+
+    @Test
+    void decodeResponse_presenceHasNoMessageId() {
+        ByteBuffer frame = ByteBuffer.allocate(1 + 8 + 4 + 4 + 4 + 4)
+                .put(BinaryCodec.STATUS_PRESENCE)
+                .putLong(1_700_000_000_000L)
+                .putInt(1)
+                .putInt(1)
+                .putInt(42)
+                .putInt(0)
+                .flip();
+
+        BinaryCodec.Response response = BinaryCodec.decodeResponse(frame);
+
+        assertTrue(response.isOk());
+        assertEquals(0L, response.getSeq());
+        assertNull(response.getMessageId());
+    }
+}
@@ -0,0 +1,70 @@
+package com.chatflow.client.connection;
+
+import com.chatflow.client.config.WireProtocol;
+import com.chatflow.client.connection.ConnectionManager.ChatWebSocketClient;
+import com.chatflow.client.model.ChatMessage;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConnectionManagerTest {
+
+    @Test
+    void messageIdOf_readsTopLevelOrFirstBatchItem() {
+        assertEquals("c1-1", ChatWebSocketClient.messageIdOf(
+                "{\"status\":\"OK\",\"messageId\":\"c1-1\",\"serverTimestamp\":\"2024-01-01T00:00:00Z\"}"));
+        assertEquals("c1-2", ChatWebSocketClient.messageIdOf(
+                "{\"status\":\"OK\",\"serverTimestamp\":\"2024-01-01T00:00:00Z\","
+                        + "\"results\":[{\"status\":\"OK\",\"messageId\":\"c1-2\"},{\"status\":\"OK\",\"messageId\":\"c1-3\"}]}"));
+        assertNull(ChatWebSocketClient.messageIdOf("{\"status\":\"ERROR\",\"error\":\"Invalid JSON format\"}"));
+    }
+
+    @Test
+    void highestSeqOf_readsTopLevelOrHighestBatchItem() {
+        assertEquals(7, ChatWebSocketClient.highestSeqOf(
+                "{\"status\":\"OK\",\"messageId\":\"c1-1\",\"seq\":7,\"serverTimestamp\":\"2024-01-01T00:00:00Z\"}"));
+        assertEquals(12, ChatWebSocketClient.highestSeqOf(
+                "{\"status\":\"OK\",\"results\":[{\"status\":\"OK\",\"seq\":11},"
+                        + "{\"status\":\"ERROR\",\"error\":\"x\"},{\"status\":\"OK\",\"seq\":12}]}"));
+        assertEquals(0, ChatWebSocketClient.highestSeqOf("{\"status\":\"ERROR\",\"error\":\"Invalid JSON format\"}"));
+    }
+
+    @Test
+    void hasError_readsTopLevelOrAnyBatchItem() {
+        assertTrue(ChatWebSocketClient.hasError(
+                "{\"status\":\"ERROR\",\"messageId\":\"c1-1\",\"error\":\"overloaded\"}"));
+        assertTrue(ChatWebSocketClient.hasError(
+                "{\"status\":\"OK\",\"results\":[{\"status\":\"OK\",\"seq\":11},"
+                        + "{\"status\":\"ERROR\",\"error\":\"rate limited\"}]}"));
+        assertFalse(ChatWebSocketClient.hasError(
+                "{\"status\":\"OK\",\"messageId\":\"c1-1\",\"seq\":7,\"originalMessage\":{\"message\":\"\\\"status\\\":\\\"ERROR\\\"\"}}"));
+    }
+
+    @Test
+    void lastSeq_onlyAdvances() {
+        ChatWebSocketClient client = new ChatWebSocketClient(URI.create("ws://localhost:1/chat/1"), WireProtocol.JSON, 1);
+        client.resumeFrom(5);
+        client.onMessage("{\"status\":\"OK\",\"seq\":9}");
+        client.onMessage("{\"status\":\"OK\",\"seq\":8}");
+
+        assertEquals(9, client.getLastSeq());
+    }
+
+    @Test
+    void sendAsync_failsAndFreesSlotWhenNotConnected() throws InterruptedException {
+        ChatWebSocketClient client = new ChatWebSocketClient(URI.create("ws://localhost:1/chat/1"), WireProtocol.JSON, 1);
+        ChatMessage message = new ChatMessage("c1-4", "1", "user1", "hi", Instant.now(), "TEXT", 1);
+
+        CompletableFuture<String> first = client.sendAsync(List.of(message));
+        CompletableFuture<String> second = client.sendAsync(List.of(message));
+
+        assertTrue(first.isCompletedExceptionally());
+        assertTrue(second.isCompletedExceptionally());
+        assertEquals(0, client.getInFlight());
+    }
+}
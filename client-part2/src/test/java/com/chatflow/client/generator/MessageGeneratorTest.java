@@ -1,10 +1,14 @@
 package com.chatflow.client.generator;
 
 import com.chatflow.client.config.ClientConfig;
+import com.chatflow.client.model.ChatMessage;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import org.junit.jupiter.api.Test;
 
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 
@@ -17,7 +21,7 @@ class MessageGeneratorTest {
     @Test
     void generatesCorrectNumberOfMessages() throws InterruptedException {
         int count = 100;
-        BlockingQueue<String> queue = new ArrayBlockingQueue<>(count);
+        BlockingQueue<ChatMessage> queue = new ArrayBlockingQueue<>(count);
         MessageGenerator generator = new MessageGenerator(queue, count);
 
         Thread t = new Thread(generator);
@@ -29,17 +33,18 @@ class MessageGeneratorTest {
 
     @Test
     void messagesHaveRequiredFields() throws InterruptedException {
-        BlockingQueue<String> queue = new ArrayBlockingQueue<>(10);
+        BlockingQueue<ChatMessage> queue = new ArrayBlockingQueue<>(10);
         MessageGenerator generator = new MessageGenerator(queue, 1);
 
         Thread t = new Thread(generator);
         t.start();
         t.join();
 
-        String json = queue.poll();
-        assertNotNull(json);
+        ChatMessage message = queue.poll();
+        assertNotNull(message);
 
-        JsonObject obj = gson.fromJson(json, JsonObject.class);
+        // The JSON body as sent on the text protocol
+        JsonObject obj = gson.toJsonTree(message).getAsJsonObject();
         assertTrue(obj.has("userId"));
         assertTrue(obj.has("username"));
         assertTrue(obj.has("message"));
@@ -50,15 +55,15 @@ class MessageGeneratorTest {
 
     @Test
     void userIdInValidRange() throws InterruptedException {
-        BlockingQueue<String> queue = new ArrayBlockingQueue<>(1000);
+        BlockingQueue<ChatMessage> queue = new ArrayBlockingQueue<>(1000);
         MessageGenerator generator = new MessageGenerator(queue, 1000);
 
         Thread t = new Thread(generator);
         t.start();
         t.join();
 
-        for (String json : queue) {
-            JsonObject obj = gson.fromJson(json, JsonObject.class);
+        for (ChatMessage message : queue) {
+            JsonObject obj = gson.toJsonTree(message).getAsJsonObject();
             int userId = Integer.parseInt(obj.get("userId").getAsString());
             assertTrue(userId >= 1 && userId <= 100000, "userId out of range: " + userId);
         }
@@ -66,15 +71,15 @@ class MessageGeneratorTest {
 
     @Test
     void roomIdInValidRange() throws InterruptedException {
-        BlockingQueue<String> queue = new ArrayBlockingQueue<>(1000);
+        BlockingQueue<ChatMessage> queue = new ArrayBlockingQueue<>(1000);
         MessageGenerator generator = new MessageGenerator(queue, 1000);
 
         Thread t = new Thread(generator);
         t.start();
         t.join();
 
-        for (String json : queue) {
-            JsonObject obj = gson.fromJson(json, JsonObject.class);
+        for (ChatMessage message : queue) {
+            JsonObject obj = gson.toJsonTree(message).getAsJsonObject();
             int roomId = obj.get("roomId").getAsInt();
             assertTrue(roomId >= 1 && roomId <= ClientConfig.NUM_ROOMS, "roomId out of range: " + roomId);
         }
@@ -83,7 +88,7 @@ class MessageGeneratorTest {
     @Test
     void messageTypeDistributionApproximate() throws InterruptedException {
         int count = 10_000;
-        BlockingQueue<String> queue = new ArrayBlockingQueue<>(count);
+        BlockingQueue<ChatMessage> queue = new ArrayBlockingQueue<>(count);
         MessageGenerator generator = new MessageGenerator(queue, count);
 
         Thread t = new Thread(generator);
@@ -91,8 +96,8 @@ class MessageGeneratorTest {
         t.join();
 
         int textCount = 0, joinCount = 0, leaveCount = 0;
-        for (String json : queue) {
-            JsonObject obj = gson.fromJson(json, JsonObject.class);
+        for (ChatMessage message : queue) {
+            JsonObject obj = gson.toJsonTree(message).getAsJsonObject();
             String type = obj.get("messageType").getAsString();
             switch (type) {
                 case "TEXT" -> textCount++;
@@ -107,4 +112,35 @@ class MessageGeneratorTest {
         assertTrue(joinCount > count * 0.03, "JOIN ratio too low: " + joinCount);
         assertTrue(leaveCount > count * 0.03, "LEAVE ratio too low: " + leaveCount);
     }
+
+    @Test
+    void timestampMillisMatchesTimestamp() throws InterruptedException {
+        BlockingQueue<ChatMessage> queue = new ArrayBlockingQueue<>(10);
+        MessageGenerator generator = new MessageGenerator(queue, 1);
+
+        Thread t = new Thread(generator);
+        t.start();
+        t.join();
+
+        ChatMessage message = queue.poll();
+        assertNotNull(message);
+        assertEquals(Instant.parse(message.getTimestamp()).toEpochMilli(), message.getTimestampMillis());
+        assertFalse(gson.toJsonTree(message).getAsJsonObject().has("timestampMillis"));
+    }
+
+    @Test
+    void messageIdsAreUnique() throws InterruptedException {
+        int count = 1000;
+        BlockingQueue<ChatMessage> queue = new ArrayBlockingQueue<>(count);
+        MessageGenerator generator = new MessageGenerator(queue, count);
+
+        Thread t = new Thread(generator);
+        t.start();
+        t.join();
+
+        Set<String> ids = new HashSet<>();
+        for (ChatMessage message : queue) {
+            assertTrue(ids.add(gson.toJsonTree(message).getAsJsonObject().get("messageId").getAsString()));
+        }
+    }
 }
@@ -0,0 +1,200 @@
+package com.chatflow.server.admission;
+
+import com.chatflow.server.codec.OutboundFrame;
+import com.chatflow.server.config.AdmissionProperties;
+import com.chatflow.server.model.ServerResponse;
+import com.chatflow.server.validation.MessageValidator.ValidationResult;
+import com.google.gson.Gson;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decides whether the node takes on another message, so that under overload it rejects
+ * some early instead of queueing all of them until every client times out.
+ *
+ * <p>The main signal is queueing delay: how long admitted messages wait for their room's
+ * worker. As in CoDel, what counts is the smallest delay seen over an interval, which
+ * stays low through a burst the workers absorb and only rises when a queue persists. If
+ * even that minimum is over the target, the node is overloaded for the next interval and
+ * sheds a random fraction of new messages. The fraction follows CoDel's control law: after
+ * {@code n} such intervals in a row it is {@code 1 - 1/sqrt(n + 1)}, about 29% after one,
+ * 50% after three and 90% after 99, so a short overload costs a few messages and only a
+ * standing one sheds most of them; some are always admitted, and their delays tell when
+ * the queue is gone. Each interval whose minimum is back under the target, or that has no
+ * messages, halves {@code n}, including every interval that passed with no message
+ * arriving to end it. Optionally, the node also rejects every message while too
+ * many admitted ones are in flight, queued or being handled, which bounds the work it
+ * holds when messages are handled inline and never queue.
+ *
+ * <p>Rejected messages are answered with {@link #overloaded}, spliced from encodings made
+ * once rather than serialized per rejection.
+ */
+@Component
+public class AdmissionControl {
+
+    public static final ValidationResult OVERLOADED = ValidationResult.invalid("overloaded");
+
+    /** The rejection without a messageId, already encoded in both wire formats. */
+    public static final OutboundFrame OVERLOADED_FRAME = OutboundFrame.of(ServerResponse.error("overloaded"));
+
+    private static final Gson GSON = new Gson();
+    // The rejection with a messageId, encoded around where the id goes
+    private static final byte[] TEXT_HEAD;
+    private static final byte[] TEXT_TAIL;
+    private static final byte[] BINARY_HEAD;
+
+    static {
+        OVERLOADED_FRAME.asText();
+        OVERLOADED_FRAME.asBinary();
+        String text = GSON.toJson(ServerResponse.error("overloaded", "?"));
+        int at = text.indexOf("\"?\"");
+        TEXT_HEAD = text.substring(0, at).getBytes(StandardCharsets.UTF_8);
+        TEXT_TAIL = text.substring(at + 3).getBytes(StandardCharsets.UTF_8);
+        // The binary form ends with the messageId, after its two length bytes
+        BINARY_HEAD = OVERLOADED_FRAME.asBinary().getPayload().array();
+    }
+
+    private final long targetNanos;
+    private final long intervalNanos;
+    private final int maxInFlight;
+    private final boolean refuseHandshakes;
+    private final LongAccumulator minDelay = new LongAccumulator(Math::min, Long.MAX_VALUE);
+    private final LongAdder inFlight = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private volatile long intervalEnd;
+    private volatile double shedFraction;
+    // Intervals in a row whose minimum delay was over the target, less the halvings since
+    private int delayedIntervals;
+
+    /**
+     * Admits every message. Intended for tests and benchmarks.
+     */
+    public AdmissionControl() {
+        this(0, 0, 0, false);
+    }
+
+    @Autowired
+    public AdmissionControl(AdmissionProperties properties) {
+        this(properties.getTargetDelay().toNanos(), properties.getInterval().toNanos(),
+                properties.getMaxInFlight(), properties.isRefuseHandshakes());
+    }
+
+    public AdmissionControl(long targetNanos, long intervalNanos, int maxInFlight, boolean refuseHandshakes) {
+        this.targetNanos = targetNanos;
+        this.intervalNanos = Math.max(1, intervalNanos);
+        this.maxInFlight = maxInFlight;
+        this.refuseHandshakes = refuseHandshakes;
+        this.intervalEnd = System.nanoTime() + this.intervalNanos;
+    }
+
+    /**
+     * Takes on a message unless it is shed. An admitted message must be reported
+     * {@link #finished} once handled, or once dropped.
+     */
+    public boolean tryAdmit() {
+        double fraction = getShedFraction();
+        if ((fraction > 0 && ThreadLocalRandom.current().nextDouble() < fraction) || isFull()) {
+            rejected.increment();
+            return false;
+        }
+        inFlight.increment();
+        return true;
+    }
+
+    /**
+     * Reports how long an admitted message waited before its handling started.
+     */
+    public void started(long queuedNanos) {
+        if (targetNanos > 0) {
+            minDelay.accumulate(queuedNanos);
+        }
+    }
+
+    public void finished() {
+        inFlight.decrement();
+    }
+
+    /**
+     * Whether new messages are being shed, by queueing delay or by the in-flight cap.
+     */
+    public boolean isOverloaded() {
+        return getShedFraction() > 0 || isFull();
+    }
+
+    /**
+     * The fraction of new messages shed for queueing delay, from 0 up to, but never, 1.
+     */
+    public double getShedFraction() {
+        if (targetNanos <= 0) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        if (now - intervalEnd >= 0) {
+            endInterval(now);
+        }
+        return shedFraction;
+    }
+
+    private boolean isFull() {
+        return maxInFlight > 0 && inFlight.sum() >= maxInFlight;
+    }
+
+    /**
+     * Whether new connections should be refused: the node is overloaded and configured
+     * to refuse handshakes then.
+     */
+    public boolean refusesHandshakes() {
+        return refuseHandshakes && isOverloaded();
+    }
+
+    /**
+     * The rejection of a message, echoing its messageId if it had one.
+     */
+    public static OutboundFrame overloaded(String messageId) {
+        if (messageId == null) {
+            return OVERLOADED_FRAME;
+        }
+        byte[] quoted = GSON.toJson(messageId).getBytes(StandardCharsets.UTF_8);
+        byte[] text = new byte[TEXT_HEAD.length + quoted.length + TEXT_TAIL.length];
+        System.arraycopy(TEXT_HEAD, 0, text, 0, TEXT_HEAD.length);
+        System.arraycopy(quoted, 0, text, TEXT_HEAD.length, quoted.length);
+        System.arraycopy(TEXT_TAIL, 0, text, TEXT_HEAD.length + quoted.length, TEXT_TAIL.length);
+        byte[] id = messageId.getBytes(StandardCharsets.UTF_8);
+        byte[] binary = ByteBuffer.allocate(BINARY_HEAD.length + 2 + id.length)
+                .put(BINARY_HEAD)
+                .putShort((short) id.length)
+                .put(id)
+                .array();
+        return OutboundFrame.ofEncoded(text, binary);
+    }
+
+    /** Messages rejected as overloaded. */
+    public long getRejected() { return rejected.sum(); }
+
+    /** Admitted messages not yet finished. */
+    public long getInFlight() { return inFlight.sum(); }
+
+    private synchronized void endInterval(long now) {
+        if (now - intervalEnd < 0) {
+            return;
+        }
+        // An interval without messages starting is not evidence of a standing queue
+        long min = minDelay.getThenReset();
+        if (min != Long.MAX_VALUE && min > targetNanos) {
+            delayedIntervals++;
+        } else {
+            delayedIntervals /= 2;
+        }
+        // Later intervals that ended before this call had no message arriving to end them
+        long idle = (now - intervalEnd) / intervalNanos;
+        delayedIntervals = idle >= Integer.SIZE ? 0 : delayedIntervals >> idle;
+        shedFraction = delayedIntervals > 0 ? 1 - 1 / Math.sqrt(delayedIntervals + 1) : 0;
+        intervalEnd = now + intervalNanos;
+    }
+}
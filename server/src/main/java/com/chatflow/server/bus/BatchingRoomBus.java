@@ -0,0 +1,213 @@
+package com.chatflow.server.bus;
+
+import com.chatflow.server.codec.BinaryMessageCodec;
+import com.chatflow.server.codec.OutboundFrame;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link RoomBus} that sends whatever has been published since its last send as one
+ * batch, from a single thread behind the message path, the way the message log writes
+ * group commits. Publishing only queues the message.
+ *
+ * <p>Each message travels in the binary wire format, so the bytes are the ones binary
+ * recipients and the message log already share, and nodes receiving it deliver them
+ * without re-encoding. A batch is laid out as:
+ *
+ * <pre>
+ * int32   message count
+ * per message:
+ *   string  roomId, UTF-8 with an unsigned 16-bit byte-length prefix
+ *   int32   payload length
+ *   bytes   payload, a {@link BinaryMessageCodec} OK or batch response
+ * </pre>
+ *
+ * Subclasses carry the batches to the other nodes and pass the ones they receive to
+ * {@link #receive}, which delivers them with their seqs cleared, since sequence numbers
+ * are per node. When the queue is full the message is not forwarded and is counted as
+ * rejected.
+ */
+public abstract class BatchingRoomBus implements RoomBus {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchingRoomBus.class);
+    private static final int MAX_BATCH = 4096;
+    private static final long IDLE_POLL_MILLIS = 50;
+    // Room ids are at most 64 ASCII characters
+    private static final int MAX_ROOM_ID_BYTES = 64;
+
+    private final ArrayBlockingQueue<Entry> pending;
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder invalid = new LongAdder();
+    private final Thread sender;
+    private volatile Subscriber subscriber = (roomId, frame) -> { };
+    private volatile long sent;
+    private volatile boolean running = true;
+
+    // Sender thread only; grown as needed and reused for every batch
+    private ByteBuffer batch = ByteBuffer.allocate(64 * 1024);
+
+    protected BatchingRoomBus(String name, int queueCapacity) {
+        this.pending = new ArrayBlockingQueue<>(queueCapacity);
+        this.sender = new Thread(this::run, name + "-sender");
+        sender.setDaemon(true);
+    }
+
+    /**
+     * Starts sending; called by subclasses once they are constructed.
+     */
+    protected void start() {
+        sender.start();
+    }
+
+    @Override
+    public boolean publish(String roomId, OutboundFrame frame) {
+        if (running && pending.offer(new Entry(roomId, frame))) {
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    @Override
+    public void subscribe(Subscriber subscriber) {
+        this.subscriber = subscriber;
+    }
+
+    @Override
+    public int getBacklog() { return pending.size(); }
+
+    @Override
+    public long getRejected() { return rejected.sum(); }
+
+    /** Messages handed to {@link #send}. */
+    public long getSent() { return sent; }
+
+    /** Messages received from other nodes. */
+    public long getReceived() { return received.sum(); }
+
+    /** Batches from other nodes dropped because they did not decode. */
+    public long getInvalid() { return invalid.sum(); }
+
+    /**
+     * Sends what is queued, then stops.
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            sender.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Carries one batch to the other nodes. Called on the sender thread only; the buffer
+     * is reused afterwards, so it must be consumed before returning.
+     */
+    protected abstract void send(ByteBuffer batch);
+
+    /**
+     * Delivers each message of a batch from another node to the subscriber, with its seq
+     * cleared. A batch that does not decode into room ids and valid responses is dropped
+     * whole and counted as invalid; returns false then, and nothing is delivered.
+     */
+    protected boolean receive(ByteBuffer batch) {
+        List<Entry> messages = decode(batch);
+        if (messages == null) {
+            invalid.increment();
+            return false;
+        }
+        Subscriber target = subscriber;
+        for (Entry message : messages) {
+            target.onMessage(message.roomId(), message.frame());
+        }
+        received.add(messages.size());
+        return true;
+    }
+
+    private static List<Entry> decode(ByteBuffer batch) {
+        if (batch.remaining() < 4) {
+            return null;
+        }
+        int count = batch.getInt();
+        if (count < 0 || count > batch.remaining() / 6) {
+            return null;
+        }
+        List<Entry> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (batch.remaining() < 2) {
+                return null;
+            }
+            int roomIdLength = batch.getShort() & 0xFFFF;
+            if (roomIdLength == 0 || roomIdLength > MAX_ROOM_ID_BYTES || batch.remaining() < roomIdLength + 4) {
+                return null;
+            }
+            byte[] roomId = new byte[roomIdLength];
+            batch.get(roomId);
+            int payloadLength = batch.getInt();
+            if (payloadLength < 0 || payloadLength > batch.remaining()) {
+                return null;
+            }
+            // Copied out, since the frame outlives the batch in outbound queues
+            byte[] payload = BinaryMessageCodec.relayed(batch.slice(batch.position(), payloadLength));
+            if (payload == null) {
+                return null;
+            }
+            batch.position(batch.position() + payloadLength);
+            messages.add(new Entry(new String(roomId, StandardCharsets.UTF_8), OutboundFrame.ofBinary(payload)));
+        }
+        return batch.hasRemaining() ? null : messages;
+    }
+
+    private void run() {
+        List<Entry> group = new ArrayList<>(MAX_BATCH);
+        while (running || !pending.isEmpty()) {
+            try {
+                Entry first = pending.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    group.add(first);
+                    pending.drainTo(group, MAX_BATCH - 1);
+                    send(encode(group));
+                    sent += group.size();
+                    group.clear();
+                }
+            } catch (InterruptedException e) {
+                // Not interrupted by close(); keep going until the queue is drained
+            } catch (RuntimeException e) {
+                log.error("Room bus send failed: {} messages, error={}", group.size(), e.getMessage());
+                group.clear();
+            }
+        }
+    }
+
+    private ByteBuffer encode(List<Entry> group) {
+        ByteBuffer out = batch.clear();
+        out.putInt(group.size());
+        for (Entry entry : group) {
+            byte[] roomId = entry.roomId().getBytes(StandardCharsets.UTF_8);
+            // Encoded here rather than on the message path; shared with any binary recipients
+            ByteBuffer payload = entry.frame().asBinary().getPayload();
+            int needed = 2 + roomId.length + 4 + payload.remaining();
+            if (out.remaining() < needed) {
+                ByteBuffer grown = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + needed));
+                out = grown.put(out.flip());
+            }
+            out.putShort((short) roomId.length).put(roomId).putInt(payload.remaining()).put(payload);
+        }
+        batch = out;
+        return out.flip();
+    }
+
+    private record Entry(String roomId, OutboundFrame frame) {
+    }
+}
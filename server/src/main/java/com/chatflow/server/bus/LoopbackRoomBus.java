@@ -0,0 +1,49 @@
+package com.chatflow.server.bus;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * {@link RoomBus} between nodes in the same JVM, for running several of them on one
+ * machine, as in tests. Batches are encoded and decoded exactly as over the network, then
+ * handed straight to every other node on the same {@link Network}, on the sender thread.
+ */
+public class LoopbackRoomBus extends BatchingRoomBus {
+
+    private final Network network;
+
+    public LoopbackRoomBus(Network network) {
+        this(network, 65536);
+    }
+
+    public LoopbackRoomBus(Network network, int queueCapacity) {
+        super("loopback-bus", queueCapacity);
+        this.network = network;
+        network.nodes.add(this);
+        start();
+    }
+
+    @Override
+    protected void send(ByteBuffer batch) {
+        for (LoopbackRoomBus node : network.nodes) {
+            if (node != this) {
+                node.receive(batch.duplicate());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        network.nodes.remove(this);
+    }
+
+    /**
+     * The nodes that see each other's messages.
+     */
+    public static final class Network {
+
+        private final List<LoopbackRoomBus> nodes = new CopyOnWriteArrayList<>();
+    }
+}
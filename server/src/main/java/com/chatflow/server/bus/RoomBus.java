@@ -0,0 +1,60 @@
+package com.chatflow.server.bus;
+
+import com.chatflow.server.codec.OutboundFrame;
+
+/**
+ * Carries accepted messages between server nodes, so that a room can have members on
+ * several of them. Each node publishes the messages it accepts; the other nodes hand them
+ * to their {@link Subscriber}, which delivers them to local members only and never
+ * publishes them again.
+ */
+public interface RoomBus extends AutoCloseable {
+
+    /**
+     * A bus with no other nodes, for a single server.
+     */
+    RoomBus NONE = new RoomBus() {
+        @Override
+        public boolean publish(String roomId, OutboundFrame frame) {
+            return false;
+        }
+
+        @Override
+        public void subscribe(Subscriber subscriber) {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    /**
+     * Hands an accepted message to the bus without waiting for it to be sent. Returns
+     * false if it was not taken, for example because the sender is too far behind.
+     */
+    boolean publish(String roomId, OutboundFrame frame);
+
+    /**
+     * Sets where messages published by other nodes are delivered.
+     */
+    void subscribe(Subscriber subscriber);
+
+    /** Messages accepted by {@link #publish} but not yet sent. */
+    default int getBacklog() { return 0; }
+
+    /** Messages {@link #publish} turned away. */
+    default long getRejected() { return 0; }
+
+    @Override
+    void close();
+
+    @FunctionalInterface
+    interface Subscriber {
+
+        /**
+         * A message another node accepted, already encoded in the binary wire format.
+         * Called on the bus's own threads.
+         */
+        void onMessage(String roomId, OutboundFrame frame);
+    }
+}
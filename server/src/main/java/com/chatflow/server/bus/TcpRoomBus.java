@@ -0,0 +1,288 @@
+package com.chatflow.server.bus;
+
+import com.chatflow.server.config.BusProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link RoomBus} over TCP between a fixed set of nodes, each connected to every other.
+ *
+ * <p>A node keeps one outbound connection per peer and writes each batch to all of them,
+ * prefixed with its length as an int32; it reads the batches its peers send it on the
+ * connections they opened, one thread per peer. Connections are accepted only from the
+ * hosts of its peers, and one carrying a batch that does not decode is closed. A peer
+ * that cannot be reached is retried at most once a second, and batches meanwhile are not
+ * sent to it and are counted as unsent; the node gets no replay of what it missed. A peer
+ * that stops reading stalls the sender until its socket buffers drain, and publishing
+ * then starts to be rejected once the queue is full.
+ */
+public class TcpRoomBus extends BatchingRoomBus {
+
+    private static final Logger log = LoggerFactory.getLogger(TcpRoomBus.class);
+    private static final long RECONNECT_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final int CONNECT_TIMEOUT_MILLIS = 1000;
+    private static final int MAX_BATCH_BYTES = 64 * 1024 * 1024;
+
+    private final ServerSocketChannel server;
+    private final List<Peer> peers = new CopyOnWriteArrayList<>();
+    private final Set<SocketChannel> inbound = ConcurrentHashMap.newKeySet();
+    private final LongAdder unsent = new LongAdder();
+    private final LongAdder refused = new LongAdder();
+    private volatile boolean open = true;
+
+    public TcpRoomBus(BusProperties properties) throws IOException {
+        this(new InetSocketAddress(properties.getAddress(), properties.getPort()),
+                properties.getPeers().stream().map(TcpRoomBus::parseAddress).toList(),
+                properties.getQueueCapacity());
+    }
+
+    /**
+     * Listens on {@code bind}, where port 0 picks a free port, and sends to {@code peers}.
+     * Only the hosts of {@code peers} may connect.
+     */
+    public TcpRoomBus(InetSocketAddress bind, List<InetSocketAddress> peers, int queueCapacity) throws IOException {
+        super("room-bus", queueCapacity);
+        this.server = ServerSocketChannel.open().bind(bind);
+        for (InetSocketAddress peer : peers) {
+            this.peers.add(new Peer(peer));
+        }
+        Thread acceptor = new Thread(this::accept, "room-bus-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        start();
+        log.info("Room bus on {}: peers={}", server.getLocalAddress(), peers);
+    }
+
+    /**
+     * Parses {@code host:port}.
+     */
+    public static InetSocketAddress parseAddress(String address) {
+        int colon = address.lastIndexOf(':');
+        if (colon <= 0 || colon == address.length() - 1) {
+            throw new IllegalArgumentException("Expected host:port, got " + address);
+        }
+        return InetSocketAddress.createUnresolved(address.substring(0, colon).trim(),
+                Integer.parseInt(address.substring(colon + 1).trim()));
+    }
+
+    public int getPort() { return server.socket().getLocalPort(); }
+
+    /**
+     * Starts sending to another node, and accepting connections from its host.
+     */
+    public void addPeer(InetSocketAddress address) {
+        peers.add(new Peer(address));
+    }
+
+    /** Messages not sent to a peer because it could not be reached. */
+    public long getUnsent() { return unsent.sum(); }
+
+    /** Connections closed on accept because they did not come from a peer's host. */
+    public long getRefused() { return refused.sum(); }
+
+    /**
+     * Sends what is queued, then closes every connection.
+     */
+    @Override
+    public void close() {
+        super.close();
+        open = false;
+        closeQuietly(server);
+        for (Peer peer : peers) {
+            peer.disconnect();
+        }
+        for (SocketChannel channel : inbound) {
+            closeQuietly(channel);
+        }
+    }
+
+    @Override
+    protected void send(ByteBuffer batch) {
+        for (Peer peer : peers) {
+            peer.send(batch.duplicate());
+        }
+    }
+
+    private void accept() {
+        while (open) {
+            try {
+                SocketChannel channel = server.accept();
+                if (!isPeer(channel)) {
+                    log.warn("Room bus refused connection from {}: not a peer", remoteAddress(channel));
+                    refused.increment();
+                    closeQuietly(channel);
+                    continue;
+                }
+                inbound.add(channel);
+                Thread reader = new Thread(() -> read(channel), "room-bus-reader");
+                reader.setDaemon(true);
+                reader.start();
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                log.warn("Room bus accept failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void read(SocketChannel channel) {
+        ByteBuffer header = ByteBuffer.allocate(4);
+        ByteBuffer batch = ByteBuffer.allocate(64 * 1024);
+        try {
+            while (open) {
+                readFully(channel, header.clear());
+                int length = header.getInt(0);
+                if (length < 4 || length > MAX_BATCH_BYTES) {
+                    throw new IOException("Invalid batch length " + length);
+                }
+                if (batch.capacity() < length) {
+                    batch = ByteBuffer.allocate(Math.max(length, batch.capacity() * 2));
+                }
+                readFully(channel, batch.clear().limit(length));
+                if (!receive(batch.flip())) {
+                    throw new IOException("Batch does not decode");
+                }
+            }
+        } catch (EOFException | ClosedChannelException e) {
+            // The peer went away or this node is closing
+        } catch (IOException | RuntimeException e) {
+            if (open) {
+                log.warn("Room bus connection from {} failed: {}", remoteAddress(channel), e.getMessage());
+            }
+        } finally {
+            inbound.remove(channel);
+            closeQuietly(channel);
+        }
+    }
+
+    // Peers are matched by host, since their outbound connections come from any port
+    private boolean isPeer(SocketChannel channel) {
+        InetAddress remote;
+        try {
+            remote = ((InetSocketAddress) channel.getRemoteAddress()).getAddress();
+        } catch (IOException e) {
+            return false;
+        }
+        for (Peer peer : peers) {
+            try {
+                for (InetAddress address : InetAddress.getAllByName(peer.address.getHostString())) {
+                    if (address.equals(remote)) {
+                        return true;
+                    }
+                }
+            } catch (UnknownHostException e) {
+                // Not resolvable now; it cannot be this connection's host
+            }
+        }
+        return false;
+    }
+
+    private static void readFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    private static Object remoteAddress(SocketChannel channel) {
+        try {
+            return channel.getRemoteAddress();
+        } catch (IOException e) {
+            return "unknown";
+        }
+    }
+
+    private static void closeQuietly(Channel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Nothing left to do with it
+        }
+    }
+
+    /**
+     * The outbound connection to one other node. Used by the sender thread only.
+     */
+    private final class Peer {
+
+        private final InetSocketAddress address;
+        private final ByteBuffer header = ByteBuffer.allocate(4);
+        private SocketChannel channel;
+        private long nextAttempt;
+
+        Peer(InetSocketAddress address) {
+            this.address = address;
+            this.nextAttempt = System.nanoTime();
+        }
+
+        void send(ByteBuffer batch) {
+            if (channel == null && !connect()) {
+                unsent.add(batch.getInt(batch.position()));
+                return;
+            }
+            int count = batch.getInt(batch.position());
+            ByteBuffer[] buffers = {header.clear().putInt(batch.remaining()).flip(), batch};
+            try {
+                while (batch.hasRemaining()) {
+                    channel.write(buffers);
+                }
+            } catch (IOException e) {
+                log.warn("Room bus peer {} lost: {}", address, e.getMessage());
+                unsent.add(count);
+                disconnect();
+                nextAttempt = System.nanoTime() + RECONNECT_NANOS;
+            }
+        }
+
+        private boolean connect() {
+            if (!open || System.nanoTime() - nextAttempt < 0) {
+                return false;
+            }
+            SocketChannel connecting = null;
+            try {
+                InetSocketAddress resolved = address.isUnresolved()
+                        ? new InetSocketAddress(address.getHostString(), address.getPort())
+                        : address;
+                connecting = SocketChannel.open();
+                connecting.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                connecting.socket().connect(resolved, CONNECT_TIMEOUT_MILLIS);
+                channel = connecting;
+                log.info("Room bus connected to peer {}", address);
+                return true;
+            } catch (IOException e) {
+                if (connecting != null) {
+                    closeQuietly(connecting);
+                }
+                log.debug("Room bus peer {} unreachable: {}", address, e.getMessage());
+                nextAttempt = System.nanoTime() + RECONNECT_NANOS;
+                return false;
+            }
+        }
+
+        void disconnect() {
+            if (channel != null) {
+                closeQuietly(channel);
+                channel = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.chatflow.server.clock;
+
+import com.chatflow.server.config.ClockProperties;
+
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wall-clock time for server timestamps, read from a cache instead of the system clock.
+ *
+ * <p>A ticker thread refreshes the cached time every {@code resolution}, in epoch millis
+ * and as an ISO-8601 string. Responses take both from the same tick, so stamping a
+ * message allocates and formats nothing; the formatting is
+ * done once per tick instead of once per message. Times read this way lag the system
+ * clock by up to the resolution and are truncated to the millisecond, which is the
+ * precision of the binary wire format anyway.
+ *
+ * <p>In precise mode there is no ticker and every call reads the system clock, with the
+ * ISO-8601 form at its full precision, as {@code Instant.now()} gives it.
+ */
+public final class ServerClock implements AutoCloseable {
+
+    /**
+     * A clock in precise mode. Intended for tests and benchmarks.
+     */
+    public static final ServerClock PRECISE = new ServerClock(0, true);
+
+    private final boolean precise;
+    private final ScheduledExecutorService ticker;
+    private volatile Tick tick;
+
+    public ServerClock(ClockProperties properties) {
+        this(properties.getResolution().toNanos(), properties.isPrecise());
+    }
+
+    private ServerClock(long resolutionNanos, boolean precise) {
+        this.precise = precise || resolutionNanos <= 0;
+        this.tick = Tick.of(System.currentTimeMillis());
+        if (this.precise) {
+            this.ticker = null;
+            return;
+        }
+        this.ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "server-clock");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::refresh, resolutionNanos, resolutionNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /** The current time in epoch millis. */
+    public long millis() {
+        return precise ? System.currentTimeMillis() : tick.millis();
+    }
+
+    /** The current time as an ISO-8601 instant, such as {@code 2024-01-01T00:00:00.123Z}. */
+    public String isoString() {
+        return precise ? Instant.now().toString() : tick.iso();
+    }
+
+    public boolean isPrecise() { return precise; }
+
+    @Override
+    public void close() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+    }
+
+    private void refresh() {
+        long now = System.currentTimeMillis();
+        // Nothing to format until the millisecond changes, as with sub-millisecond resolutions
+        if (now != tick.millis()) {
+            tick = Tick.of(now);
+        }
+    }
+
+    private record Tick(long millis, String iso) {
+
+        static Tick of(long millis) {
+            return new Tick(millis, Instant.ofEpochMilli(millis).toString());
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.chatflow.server.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Consistent-hash ring mapping keys, such as room ids, to the nodes that own them.
+ *
+ * <p>Each node is placed at {@code virtualNodes} points on a 64-bit ring, hashed from its
+ * name; a key belongs to the node at the first point at or after the key's own hash. With
+ * many points per node each one owns close to an equal share, and adding or removing a
+ * node only moves the keys between its points and their neighbours': about 1/N of them,
+ * all to or from that node. Every node builds the same ring from the same node names.
+ *
+ * <p>A ring is immutable, so lookups need no locking; membership changes build a new one.
+ * A lookup is a binary search over a sorted array of points.
+ */
+public final class HashRing {
+
+    private final List<String> nodes;
+    private final int virtualNodes;
+    private final long[] points;
+    private final String[] owners;
+
+    public HashRing(Collection<String> nodes, int virtualNodes) {
+        if (virtualNodes < 1) {
+            throw new IllegalArgumentException("virtualNodes must be at least 1");
+        }
+        Set<String> distinct = new LinkedHashSet<>(nodes);
+        this.nodes = List.copyOf(distinct);
+        this.virtualNodes = virtualNodes;
+        List<Point> ring = new ArrayList<>(distinct.size() * virtualNodes);
+        for (String node : distinct) {
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.add(new Point(hash(node + "#" + i), node));
+            }
+        }
+        // Ties, however unlikely, go the same way on every node
+        ring.sort(Comparator.comparingLong(Point::hash).thenComparing(Point::node));
+        this.points = new long[ring.size()];
+        this.owners = new String[ring.size()];
+        for (int i = 0; i < ring.size(); i++) {
+            points[i] = ring.get(i).hash();
+            owners[i] = ring.get(i).node();
+        }
+    }
+
+    /**
+     * The node that owns {@code key}, or null if the ring is empty.
+     */
+    public String ownerOf(String key) {
+        if (points.length == 0) {
+            return null;
+        }
+        int index = Arrays.binarySearch(points, hash(key));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return owners[index == points.length ? 0 : index];
+    }
+
+    /**
+     * This ring with {@code node} added.
+     */
+    public HashRing with(String node) {
+        List<String> joined = new ArrayList<>(nodes);
+        joined.add(node);
+        return new HashRing(joined, virtualNodes);
+    }
+
+    /**
+     * This ring with {@code node} removed.
+     */
+    public HashRing without(String node) {
+        List<String> left = new ArrayList<>(nodes);
+        left.remove(node);
+        return new HashRing(left, virtualNodes);
+    }
+
+    public List<String> getNodes() { return nodes; }
+    public int getVirtualNodes() { return virtualNodes; }
+
+    // FNV-1a over the UTF-8 bytes, then a finalizer to spread nearby strings around the ring;
+    // unlike String.hashCode it uses all 64 bits
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h = (h ^ (b & 0xFF)) * 0x100000001b3L;
+        }
+        h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL;
+        h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+
+    private record Point(long hash, String node) {
+    }
+}
@@ -0,0 +1,79 @@
+package com.chatflow.server.cluster;
+
+import com.chatflow.server.config.ClusterProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Which node owns each room, from a {@link HashRing} of the configured nodes. Clients are
+ * meant to connect to a room's owner, either by asking {@code /rooms/{roomId}/owner} first
+ * or by following the redirect its handshake gets elsewhere, so that a room's members,
+ * sequence and history are all on one node and nothing crosses the room bus for it.
+ *
+ * <p>With no nodes configured, this node owns every room. The nodes are fixed for the
+ * life of the process.
+ */
+@Component
+public class RoomPlacement {
+
+    private final String self;
+    private final boolean redirect;
+    private final HashRing ring;
+
+    /**
+     * A single node owning every room. Intended for tests and benchmarks.
+     */
+    public RoomPlacement() {
+        this(new ClusterProperties());
+    }
+
+    @Autowired
+    public RoomPlacement(ClusterProperties properties) {
+        this.self = properties.getSelf();
+        this.redirect = properties.isRedirect();
+        this.ring = new HashRing(properties.getNodes(), properties.getVirtualNodes());
+        if (!ring.getNodes().isEmpty() && !ring.getNodes().contains(self)) {
+            throw new IllegalArgumentException("chatflow.cluster.self (" + self
+                    + ") must be one of chatflow.cluster.nodes " + ring.getNodes());
+        }
+    }
+
+    /**
+     * The URL of the node that owns the room.
+     */
+    public String ownerOf(String roomId) {
+        String owner = ring.ownerOf(roomId);
+        return owner != null ? owner : self;
+    }
+
+    public boolean isLocal(String roomId) {
+        String owner = ring.ownerOf(roomId);
+        return owner == null || owner.equals(self);
+    }
+
+    /**
+     * Where to redirect a handshake for the room, given the request's path and query, or
+     * null to accept it on this node.
+     */
+    public String redirectFor(String roomId, String pathAndQuery) {
+        if (!redirect || isLocal(roomId)) {
+            return null;
+        }
+        String owner = ownerOf(roomId);
+        return (owner.endsWith("/") ? owner.substring(0, owner.length() - 1) : owner) + pathAndQuery;
+    }
+
+    /**
+     * Whether every member of the room connects to this node, so its messages need not go
+     * to other nodes: nodes are configured, handshakes for rooms owned elsewhere are
+     * redirected, and this node owns the room.
+     */
+    public boolean hasAllMembers(String roomId) {
+        return redirect && !ring.getNodes().isEmpty() && isLocal(roomId);
+    }
+
+    public String getSelf() { return self; }
+    public List<String> getNodes() { return ring.getNodes(); }
+}
@@ -0,0 +1,468 @@
+package com.chatflow.server.codec;
+
+import com.chatflow.server.model.ChatMessage;
+import com.chatflow.server.model.ServerResponse;
+import com.chatflow.server.validation.MessageValidator;
+import com.chatflow.server.validation.MessageValidator.ValidationResult;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact binary encoding of {@link ChatMessage} and {@link ServerResponse}. Integers are
+ * big-endian; strings are UTF-8 with an unsigned 16-bit byte-length prefix.
+ *
+ * <pre>
+ * message    int32   userId
+ *            int64   timestamp, epoch millis
+ *            uint8   messageType: 0 TEXT, 1 JOIN, 2 LEAVE
+ *            string  username
+ *            string  message
+ *            string  messageId, optional: present only if bytes remain
+ *
+ * response   uint8   status: 0 OK, 1 ERROR, 2 BATCH, 3 PRESENCE
+ *   OK       int64   serverTimestamp, epoch millis
+ *            int64   seq, the message's position in its room; 0 if it has none
+ *            message
+ *   ERROR    string  error
+ *            string  messageId, optional
+ *   BATCH    int64   serverTimestamp, epoch millis
+ *            uint16  item count
+ *            per item: uint8 status, then int64 seq and message for OK or string
+ *            error for ERROR; items never carry a messageId, since only the frame
+ *            end delimits it
+ *   PRESENCE int64   serverTimestamp, epoch millis
+ *            int32   memberCount
+ *            int32   joined count, then each joined userId as int32
+ *            int32   left count, then each left userId as int32
+ * </pre>
+ *
+ * Decoded messages get the same {@link MessageValidator} rulings as JSON ones. Any
+ * epoch-millis value is a valid instant, so there is no timestamp failure; a frame that
+ * does not match the layout exactly is "Invalid binary frame".
+ */
+public class BinaryMessageCodec {
+
+    public static final ValidationResult INVALID_FRAME = ValidationResult.invalid("Invalid binary frame");
+
+    public static final byte STATUS_OK = 0;
+    public static final byte STATUS_ERROR = 1;
+    public static final byte STATUS_BATCH = 2;
+    public static final byte STATUS_PRESENCE = 3;
+
+    public static final byte TYPE_TEXT = 0;
+    public static final byte TYPE_JOIN = 1;
+    public static final byte TYPE_LEAVE = 2;
+    private static final String[] MESSAGE_TYPES = {"TEXT", "JOIN", "LEAVE"};
+
+    // userId, timestamp, messageType and the two length prefixes
+    private static final int FIXED_BYTES = 4 + 8 + 1 + 2 + 2;
+    // status, serverTimestamp and seq ahead of the message in an OK response
+    private static final int OK_HEADER_BYTES = 1 + 8 + 8;
+
+    private final MessageValidator validator;
+
+    public BinaryMessageCodec(MessageValidator validator) {
+        this.validator = validator;
+    }
+
+    /**
+     * Checks the remaining bytes of {@code frame} against the layout and the validator
+     * rules without building a message. The buffer position is not changed.
+     */
+    public ValidationResult validate(ByteBuffer frame) {
+        int pos = frame.position();
+        int messageIdOffset = messageIdOffset(frame, pos);
+        if (messageIdOffset < 0) {
+            return INVALID_FRAME;
+        }
+        int usernameLength = frame.getShort(pos + 13) & 0xFFFF;
+        int usernameStart = pos + 15;
+        int messageStart = usernameStart + usernameLength + 2;
+        int messageLength = messageIdOffset - messageStart;
+
+        ValidationResult result = validator.validateUserId(frame.getInt(pos));
+        if (!result.isValid()) {
+            return result;
+        }
+        result = validator.validateUsername(readString(frame, usernameStart, usernameLength));
+        if (!result.isValid()) {
+            return result;
+        }
+        result = validator.validateMessage(readString(frame, messageStart, messageLength));
+        if (!result.isValid()) {
+            return result;
+        }
+        if ((frame.get(pos + 12) & 0xFF) >= MESSAGE_TYPES.length) {
+            return MessageValidator.MESSAGE_TYPE_INVALID;
+        }
+        if (messageIdOffset == frame.limit()) {
+            return result;
+        }
+        return validator.validateMessageId(
+                readString(frame, messageIdOffset + 2, frame.limit() - messageIdOffset - 2));
+    }
+
+    /**
+     * Returns the messageId of a frame whose layout is intact, even if its fields fail
+     * validation, so that errors can be correlated. Null if there is none.
+     */
+    public static String readMessageId(ByteBuffer frame) {
+        int offset = messageIdOffset(frame, frame.position());
+        if (offset < 0 || offset == frame.limit()) {
+            return null;
+        }
+        return readString(frame, offset + 2, frame.limit() - offset - 2);
+    }
+
+    /**
+     * Returns the userId of a frame that has passed {@link #validate}.
+     */
+    public static int readUserId(ByteBuffer frame) {
+        return frame.getInt(frame.position());
+    }
+
+    /**
+     * Returns the messageType code of a frame that has passed {@link #validate}.
+     */
+    public static byte readMessageType(ByteBuffer frame) {
+        return frame.get(frame.position() + 12);
+    }
+
+    /**
+     * Validates like {@link #validate} and, when valid, populates {@code target} with the
+     * text form of each field. The buffer position is not changed.
+     */
+    public ValidationResult decode(ByteBuffer frame, ChatMessage target) {
+        ValidationResult result = validate(frame);
+        if (result.isValid()) {
+            readMessage(frame, frame.position(), target);
+        }
+        return result;
+    }
+
+    /**
+     * Builds an OK response around a message that has already been validated in
+     * binary form, reusing its bytes as-is. The buffer position is not changed.
+     */
+    public static byte[] encodeAck(long serverTimestamp, long seq, ByteBuffer message) {
+        int length = message.remaining();
+        byte[] out = new byte[OK_HEADER_BYTES + length];
+        ByteBuffer buffer = ByteBuffer.wrap(out);
+        buffer.put(STATUS_OK).putLong(serverTimestamp).putLong(seq);
+        buffer.put(OK_HEADER_BYTES, message, message.position(), length);
+        return out;
+    }
+
+    /**
+     * Sets the seq of an ack from {@link #encodeAck}, for one built before its number was taken.
+     */
+    public static void writeSeq(byte[] ack, long seq) {
+        ByteBuffer.wrap(ack).putLong(9, seq);
+    }
+
+    /**
+     * The seq of an OK response from this codec, or 0 for other responses.
+     */
+    public static long readSeq(ByteBuffer response) {
+        int pos = response.position();
+        return response.get(pos) == STATUS_OK ? response.getLong(pos + 9) : 0;
+    }
+
+    /**
+     * Checks that a response relayed from another node is an OK or batch response laid
+     * out as this codec writes them, and copies it with every seq cleared: sequence
+     * numbers are per node, and a client resuming after another node's seq would skip
+     * messages of this one. Null if the layout does not match.
+     */
+    public static byte[] relayed(ByteBuffer response) {
+        ByteBuffer in = response.slice();
+        int limit = in.limit();
+        if (limit == 0) {
+            return null;
+        }
+        byte[] out = new byte[limit];
+        in.get(0, out);
+        ByteBuffer copy = ByteBuffer.wrap(out);
+        if (out[0] == STATUS_OK) {
+            if (limit < OK_HEADER_BYTES || messageIdOffset(copy, OK_HEADER_BYTES) < 0
+                    || !isMessageType(out[OK_HEADER_BYTES + 12])) {
+                return null;
+            }
+            copy.putLong(9, 0);
+            return out;
+        }
+        if (out[0] != STATUS_BATCH || limit < 11) {
+            return null;
+        }
+        int count = copy.getShort(9) & 0xFFFF;
+        int pos = 11;
+        for (int i = 0; i < count; i++) {
+            if (pos >= limit) {
+                return null;
+            }
+            if (out[pos] == STATUS_OK) {
+                int end = messageEnd(copy, pos + 9);
+                if (end < 0 || !isMessageType(out[pos + 9 + 12])) {
+                    return null;
+                }
+                copy.putLong(pos + 1, 0);
+                pos = end;
+            } else if (out[pos] == STATUS_ERROR && limit - pos >= 3) {
+                pos += 3 + (copy.getShort(pos + 1) & 0xFFFF);
+            } else {
+                return null;
+            }
+        }
+        return pos == limit ? out : null;
+    }
+
+    /**
+     * Encodes a response built by the JSON path. Text timestamps are converted to epoch
+     * millis, so sub-millisecond precision is not carried over.
+     */
+    public static byte[] encode(ServerResponse response) {
+        if (response.getResults() != null) {
+            return encodeBatch(response);
+        }
+        if ("PRESENCE".equals(response.getStatus())) {
+            return encodePresence(response);
+        }
+        byte[] messageId = response.getMessageId() != null ? utf8(response.getMessageId()) : null;
+        int messageIdBytes = messageId != null ? 2 + messageId.length : 0;
+        if (!"OK".equals(response.getStatus())) {
+            byte[] error = utf8(response.getError());
+            ByteBuffer out = ByteBuffer.allocate(1 + 2 + error.length + messageIdBytes)
+                    .put(STATUS_ERROR)
+                    .putShort((short) error.length)
+                    .put(error);
+            return putMessageId(out, messageId).array();
+        }
+        ChatMessage message = response.getOriginalMessage();
+        byte[] username = utf8(message.getUsername());
+        byte[] text = utf8(message.getMessage());
+        ByteBuffer out = ByteBuffer.allocate(OK_HEADER_BYTES + FIXED_BYTES + username.length + text.length + messageIdBytes)
+                .put(STATUS_OK)
+                .putLong(Instant.parse(response.getServerTimestamp()).toEpochMilli())
+                .putLong(seqOf(response))
+                .putInt(Integer.parseInt(message.getUserId()))
+                .putLong(Instant.parse(message.getTimestamp()).toEpochMilli())
+                .put(messageTypeCode(message.getMessageType()))
+                .putShort((short) username.length)
+                .put(username)
+                .putShort((short) text.length)
+                .put(text);
+        return putMessageId(out, messageId).array();
+    }
+
+    /**
+     * Decodes a response produced by this codec, such as an ack from {@link #encodeAck}
+     * or a batch response relayed from another node. A seq of 0, as {@link #relayed}
+     * leaves, is no seq.
+     */
+    public static ServerResponse decodeResponse(byte[] response) {
+        ByteBuffer in = ByteBuffer.wrap(response);
+        if (in.get(0) == STATUS_BATCH) {
+            return decodeBatch(in);
+        }
+        if (in.get(0) == STATUS_PRESENCE) {
+            return decodePresence(in);
+        }
+        if (in.get(0) != STATUS_OK) {
+            int errorLength = in.getShort(1) & 0xFFFF;
+            int messageIdOffset = 3 + errorLength;
+            String messageId = messageIdOffset < response.length
+                    ? readString(in, messageIdOffset + 2, in.getShort(messageIdOffset) & 0xFFFF)
+                    : null;
+            return ServerResponse.error(readString(in, 3, errorLength), messageId);
+        }
+        ChatMessage message = new ChatMessage();
+        readMessage(in, OK_HEADER_BYTES, message);
+        String serverTimestamp = Instant.ofEpochMilli(in.getLong(1)).toString();
+        long seq = in.getLong(9);
+        return seq > 0 ? ServerResponse.success(message, serverTimestamp, seq) : ServerResponse.success(message, serverTimestamp);
+    }
+
+    private static ServerResponse decodeBatch(ByteBuffer in) {
+        int count = in.getShort(9) & 0xFFFF;
+        List<ServerResponse> results = new ArrayList<>(count);
+        int pos = 11;
+        for (int i = 0; i < count; i++) {
+            if (in.get(pos) == STATUS_OK) {
+                ChatMessage message = new ChatMessage();
+                long seq = in.getLong(pos + 1);
+                pos = readMessageFields(in, pos + 9, message);
+                results.add(seq > 0 ? ServerResponse.success(message, null, seq) : ServerResponse.success(message, null));
+            } else {
+                int errorLength = in.getShort(pos + 1) & 0xFFFF;
+                results.add(ServerResponse.error(readString(in, pos + 3, errorLength)));
+                pos += 3 + errorLength;
+            }
+        }
+        return ServerResponse.batch(results, Instant.ofEpochMilli(in.getLong(1)).toString());
+    }
+
+    private static byte[] encodeBatch(ServerResponse response) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * response.getResults().size());
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(STATUS_BATCH);
+            out.writeLong(Instant.parse(response.getServerTimestamp()).toEpochMilli());
+            out.writeShort(response.getResults().size());
+            for (ServerResponse item : response.getResults()) {
+                if ("OK".equals(item.getStatus())) {
+                    ChatMessage message = item.getOriginalMessage();
+                    byte[] username = utf8(message.getUsername());
+                    byte[] text = utf8(message.getMessage());
+                    out.writeByte(STATUS_OK);
+                    out.writeLong(seqOf(item));
+                    out.writeInt(Integer.parseInt(message.getUserId()));
+                    out.writeLong(Instant.parse(message.getTimestamp()).toEpochMilli());
+                    out.writeByte(messageTypeCode(message.getMessageType()));
+                    out.writeShort(username.length);
+                    out.write(username);
+                    out.writeShort(text.length);
+                    out.write(text);
+                } else {
+                    byte[] error = utf8(item.getError());
+                    out.writeByte(STATUS_ERROR);
+                    out.writeShort(error.length);
+                    out.write(error);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] encodePresence(ServerResponse response) {
+        int[] joined = response.getJoined();
+        int[] left = response.getLeft();
+        ByteBuffer out = ByteBuffer.allocate(1 + 8 + 4 + 4 + 4 * joined.length + 4 + 4 * left.length)
+                .put(STATUS_PRESENCE)
+                .putLong(Instant.parse(response.getServerTimestamp()).toEpochMilli())
+                .putInt(response.getMemberCount());
+        out.putInt(joined.length);
+        for (int userId : joined) {
+            out.putInt(userId);
+        }
+        out.putInt(left.length);
+        for (int userId : left) {
+            out.putInt(userId);
+        }
+        return out.array();
+    }
+
+    private static ServerResponse decodePresence(ByteBuffer in) {
+        in.position(9);
+        int memberCount = in.getInt();
+        int[] joined = new int[in.getInt()];
+        for (int i = 0; i < joined.length; i++) {
+            joined[i] = in.getInt();
+        }
+        int[] left = new int[in.getInt()];
+        for (int i = 0; i < left.length; i++) {
+            left[i] = in.getInt();
+        }
+        return ServerResponse.presence(joined, left, memberCount, Instant.ofEpochMilli(in.getLong(1)).toString());
+    }
+
+    public static byte messageTypeCode(String messageType) {
+        return switch (messageType) {
+            case "TEXT" -> TYPE_TEXT;
+            case "JOIN" -> TYPE_JOIN;
+            case "LEAVE" -> TYPE_LEAVE;
+            default -> throw new IllegalArgumentException("Unknown messageType: " + messageType);
+        };
+    }
+
+    // Offset of the messageId length prefix, the limit if there is none, or -1 if the
+    // frame does not match the layout
+    private static int messageIdOffset(ByteBuffer frame, int pos) {
+        int limit = frame.limit();
+        int messageEnd = messageEnd(frame, pos);
+        if (messageEnd < 0) {
+            return -1;
+        }
+        if (messageEnd == limit) {
+            return limit;
+        }
+        if (limit - messageEnd < 2 || (frame.getShort(messageEnd) & 0xFFFF) != limit - messageEnd - 2) {
+            return -1;
+        }
+        return messageEnd;
+    }
+
+    // Offset past the message text of fields starting at pos, or -1 if they run past the limit
+    private static int messageEnd(ByteBuffer frame, int pos) {
+        int limit = frame.limit();
+        if (limit - pos < FIXED_BYTES) {
+            return -1;
+        }
+        int usernameLength = frame.getShort(pos + 13) & 0xFFFF;
+        int usernameStart = pos + 15;
+        if (limit - usernameStart < usernameLength + 2) {
+            return -1;
+        }
+        int messageLength = frame.getShort(usernameStart + usernameLength) & 0xFFFF;
+        int messageEnd = usernameStart + usernameLength + 2 + messageLength;
+        return messageEnd <= limit ? messageEnd : -1;
+    }
+
+    private static boolean isMessageType(byte code) {
+        return (code & 0xFF) < MESSAGE_TYPES.length;
+    }
+
+    private static long seqOf(ServerResponse response) {
+        return response.getSeq() != null ? response.getSeq() : 0;
+    }
+
+    private static ByteBuffer putMessageId(ByteBuffer out, byte[] messageId) {
+        if (messageId != null) {
+            out.putShort((short) messageId.length).put(messageId);
+        }
+        return out;
+    }
+
+    // Assumes a frame that has passed validate()
+    private static void readMessage(ByteBuffer frame, int pos, ChatMessage target) {
+        readMessageFields(frame, pos, target);
+        int messageIdOffset = messageIdOffset(frame, pos);
+        if (messageIdOffset < frame.limit()) {
+            target.setMessageId(readString(frame, messageIdOffset + 2, frame.limit() - messageIdOffset - 2));
+        }
+    }
+
+    // Reads a message up to its optional messageId and returns the offset past it
+    private static int readMessageFields(ByteBuffer frame, int pos, ChatMessage target) {
+        int usernameLength = frame.getShort(pos + 13) & 0xFFFF;
+        int messageStart = pos + 15 + usernameLength + 2;
+        int messageLength = frame.getShort(messageStart - 2) & 0xFFFF;
+        target.setUserId(Integer.toString(frame.getInt(pos)));
+        target.setUsername(readString(frame, pos + 15, usernameLength));
+        target.setMessage(readString(frame, messageStart, messageLength));
+        target.setTimestamp(Instant.ofEpochMilli(frame.getLong(pos + 4)).toString());
+        target.setMessageType(MESSAGE_TYPES[frame.get(pos + 12)]);
+        return messageStart + messageLength;
+    }
+
+    private static String readString(ByteBuffer frame, int offset, int length) {
+        if (frame.hasArray()) {
+            return new String(frame.array(), frame.arrayOffset() + offset, length, StandardCharsets.UTF_8);
+        }
+        byte[] bytes = new byte[length];
+        frame.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] utf8(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : new byte[0];
+    }
+}
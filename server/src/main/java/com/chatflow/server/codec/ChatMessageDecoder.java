@@ -0,0 +1,504 @@
+package com.chatflow.server.codec;
+
+import com.chatflow.server.model.ChatMessage;
+import com.chatflow.server.validation.MessageValidator;
+import com.chatflow.server.validation.MessageValidator.ValidationResult;
+
+import java.util.List;
+
+/**
+ * Single-pass decoder for the fixed {@link ChatMessage} JSON schema. Fields are read
+ * straight out of the payload and validated as soon as each one is complete, so the
+ * frame is walked once and no intermediate object graph is built.
+ *
+ * <p>Rulings match {@code gson.fromJson(payload, ChatMessage.class)} followed by
+ * {@link MessageValidator#validate}: unknown keys are skipped, later duplicate keys win,
+ * numbers, booleans and unquoted literals are read as their text, an empty payload or a
+ * top-level {@code null} is a null message, and anything else that is not an object is
+ * "Invalid JSON format". The optional {@code messageId} is ruled on last. Gson's
+ * remaining lenient extensions (comments, {@code =} and {@code ;} separators) are
+ * rejected as invalid JSON.
+ *
+ * <p>A frame whose payload is a JSON array is a batch; see {@link #decodeBatch}.
+ */
+public class ChatMessageDecoder {
+
+    public static final ValidationResult INVALID_JSON = ValidationResult.invalid("Invalid JSON format");
+    public static final ValidationResult BATCH_EMPTY = ValidationResult.invalid("batch must not be empty");
+    public static final ValidationResult BATCH_TOO_LARGE = ValidationResult.invalid("batch exceeds the maximum size");
+
+    private static final int MAX_DEPTH = 64;
+
+    private static final int USER_ID = 0;
+    private static final int USERNAME = 1;
+    private static final int MESSAGE = 2;
+    private static final int TIMESTAMP = 3;
+    private static final int MESSAGE_TYPE = 4;
+    private static final int MESSAGE_ID = 5;
+    private static final String[] FIELD_NAMES =
+            {"userId", "username", "message", "timestamp", "messageType", "messageId"};
+
+    private final MessageValidator validator;
+
+    public ChatMessageDecoder(MessageValidator validator) {
+        this.validator = validator;
+    }
+
+    /**
+     * Decodes {@code json} into {@code target} and returns the validation ruling.
+     * The target is only fully populated when the result is valid, but its messageId
+     * is set whenever one was read, so errors can still be correlated.
+     */
+    public ValidationResult decode(String json, ChatMessage target) {
+        try {
+            Cursor in = new Cursor(json);
+            in.skipWhitespace();
+            if (in.atEnd()) {
+                return validator.validate(null);
+            }
+            if (in.peek() != '{') {
+                // Gson returns null for a top-level null literal and ignores anything after it
+                if (in.isLiteralStart() && "null".equals(in.readLiteral())) {
+                    return validator.validate(null);
+                }
+                throw MalformedJsonException.INSTANCE;
+            }
+            ValidationResult result = decodeObject(in, target);
+            in.skipWhitespace();
+            if (!in.atEnd()) {
+                throw MalformedJsonException.INSTANCE;
+            }
+            return result;
+        } catch (MalformedJsonException e) {
+            return INVALID_JSON;
+        }
+    }
+
+    /**
+     * Returns true if the payload is a JSON array, i.e. a batch frame.
+     */
+    public static boolean isBatch(String json) {
+        for (int i = 0; i < json.length(); i++) {
+            char c = json.charAt(i);
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                return c == '[';
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Decodes a JSON array of messages, ruling on each item as {@link #decode} would.
+     * Item rulings are appended to {@code results} and messages to {@code messages}, in
+     * order; a {@code null} item yields a null message. The returned ruling is for the
+     * frame as a whole: invalid JSON anywhere in the array, an empty array or more than
+     * {@code maxItems} items reject the whole batch.
+     */
+    public ValidationResult decodeBatch(String json, int maxItems,
+                                        List<ChatMessage> messages, List<ValidationResult> results) {
+        try {
+            Cursor in = new Cursor(json);
+            in.skipWhitespace();
+            in.expect('[');
+            in.skipWhitespace();
+            if (in.peek() == ']') {
+                in.pos++;
+                in.skipWhitespace();
+                return in.atEnd() ? BATCH_EMPTY : INVALID_JSON;
+            }
+            while (true) {
+                if (messages.size() == maxItems) {
+                    return BATCH_TOO_LARGE;
+                }
+                if (in.peek() == '{') {
+                    ChatMessage message = new ChatMessage();
+                    results.add(decodeObject(in, message));
+                    messages.add(message);
+                } else if (in.isLiteralStart() && "null".equals(in.readLiteral())) {
+                    results.add(validator.validate(null));
+                    messages.add(null);
+                } else {
+                    throw MalformedJsonException.INSTANCE;
+                }
+                in.skipWhitespace();
+                char c = in.next();
+                if (c == ']') {
+                    break;
+                }
+                if (c != ',') {
+                    throw MalformedJsonException.INSTANCE;
+                }
+                in.skipWhitespace();
+            }
+            in.skipWhitespace();
+            if (!in.atEnd()) {
+                throw MalformedJsonException.INSTANCE;
+            }
+            return ValidationResult.valid();
+        } catch (MalformedJsonException e) {
+            return INVALID_JSON;
+        }
+    }
+
+    /**
+     * Decodes one object starting at the cursor, leaving the cursor after its closing brace.
+     */
+    private ValidationResult decodeObject(Cursor in, ChatMessage target) {
+        in.pos++;
+
+        ValidationResult userId = null;
+        ValidationResult username = null;
+        ValidationResult message = null;
+        ValidationResult timestamp = null;
+        ValidationResult messageType = null;
+        ValidationResult messageId = ValidationResult.valid();
+
+        in.skipWhitespace();
+        if (in.peek() == '}') {
+            in.pos++;
+        } else {
+            while (true) {
+                int field = in.readFieldName();
+                in.skipWhitespace();
+                in.expect(':');
+                in.skipWhitespace();
+                if (field < 0 || (field == MESSAGE_ID && !in.atScalar())) {
+                    in.skipValue(0);
+                } else {
+                    String value = in.readScalar();
+                    switch (field) {
+                        case USER_ID -> {
+                            target.setUserId(value);
+                            userId = validator.validateUserId(value);
+                        }
+                        case USERNAME -> {
+                            target.setUsername(value);
+                            username = validator.validateUsername(value);
+                        }
+                        case MESSAGE -> {
+                            target.setMessage(value);
+                            message = validator.validateMessage(value);
+                        }
+                        case TIMESTAMP -> {
+                            target.setTimestamp(value);
+                            timestamp = validator.validateTimestamp(value);
+                        }
+                        case MESSAGE_TYPE -> {
+                            target.setMessageType(value);
+                            messageType = validator.validateMessageType(value);
+                        }
+                        case MESSAGE_ID -> {
+                            target.setMessageId(value);
+                            messageId = validator.validateMessageId(value);
+                        }
+                    }
+                }
+                in.skipWhitespace();
+                char c = in.next();
+                if (c == '}') {
+                    break;
+                }
+                if (c != ',') {
+                    throw MalformedJsonException.INSTANCE;
+                }
+                in.skipWhitespace();
+            }
+        }
+
+        // Report the first failure in the validator's field order, not payload order
+        ValidationResult result = userId != null ? userId : validator.validateUserId(null);
+        if (!result.isValid()) {
+            return result;
+        }
+        result = username != null ? username : validator.validateUsername(null);
+        if (!result.isValid()) {
+            return result;
+        }
+        result = message != null ? message : validator.validateMessage(null);
+        if (!result.isValid()) {
+            return result;
+        }
+        result = timestamp != null ? timestamp : validator.validateTimestamp(null);
+        if (!result.isValid()) {
+            return result;
+        }
+        result = messageType != null ? messageType : validator.validateMessageType(null);
+        if (!result.isValid()) {
+            return result;
+        }
+        return messageId;
+    }
+
+    private static final class Cursor {
+        private final String s;
+        private final int length;
+        private int pos;
+
+        Cursor(String s) {
+            this.s = s;
+            this.length = s.length();
+        }
+
+        boolean atEnd() {
+            return pos >= length;
+        }
+
+        char peek() {
+            if (pos >= length) {
+                throw MalformedJsonException.INSTANCE;
+            }
+            return s.charAt(pos);
+        }
+
+        // messageId is optional metadata: a structured value is skipped, as for unknown keys
+        boolean atScalar() {
+            char c = peek();
+            return c != '{' && c != '[';
+        }
+
+        char next() {
+            char c = peek();
+            pos++;
+            return c;
+        }
+
+        void expect(char expected) {
+            if (next() != expected) {
+                throw MalformedJsonException.INSTANCE;
+            }
+        }
+
+        void skipWhitespace() {
+            while (pos < length) {
+                char c = s.charAt(pos);
+                if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                    return;
+                }
+                pos++;
+            }
+        }
+
+        boolean isLiteralStart() {
+            return pos < length && isLiteral(s.charAt(pos));
+        }
+
+        /**
+         * Returns the index of a known field, or -1 for a key the schema does not use.
+         * Plain keys are matched in place without materializing them.
+         */
+        int readFieldName() {
+            char c = peek();
+            if (c != '"' && c != '\'') {
+                if (!isLiteral(c)) {
+                    throw MalformedJsonException.INSTANCE;
+                }
+                return fieldIndex(readLiteral());
+            }
+            int start = pos + 1;
+            int end = start;
+            while (end < length) {
+                char ch = s.charAt(end);
+                if (ch == c) {
+                    break;
+                }
+                if (ch == '\\') {
+                    return fieldIndex(readQuoted());
+                }
+                end++;
+            }
+            if (end >= length) {
+                throw MalformedJsonException.INSTANCE;
+            }
+            pos = end + 1;
+            int keyLength = end - start;
+            for (int i = 0; i < FIELD_NAMES.length; i++) {
+                String name = FIELD_NAMES[i];
+                if (name.length() == keyLength && s.regionMatches(start, name, 0, keyLength)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private static int fieldIndex(String key) {
+            for (int i = 0; i < FIELD_NAMES.length; i++) {
+                if (FIELD_NAMES[i].equals(key)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Reads a value for a String field the way Gson's String adapter does:
+         * strings as-is, null as null, and numbers, booleans and literals as their text.
+         */
+        String readScalar() {
+            char c = peek();
+            if (c == '"' || c == '\'') {
+                return readQuoted();
+            }
+            if (!isLiteral(c)) {
+                throw MalformedJsonException.INSTANCE;
+            }
+            String literal = readLiteral();
+            return "null".equals(literal) ? null : literal;
+        }
+
+        String readQuoted() {
+            char quote = next();
+            int start = pos;
+            while (pos < length) {
+                char c = s.charAt(pos);
+                if (c == quote) {
+                    return s.substring(start, pos++);
+                }
+                if (c == '\\') {
+                    return readEscaped(quote, start);
+                }
+                pos++;
+            }
+            throw MalformedJsonException.INSTANCE;
+        }
+
+        private String readEscaped(char quote, int start) {
+            StringBuilder sb = new StringBuilder(pos - start + 16);
+            sb.append(s, start, pos);
+            while (true) {
+                char c = next();
+                if (c == quote) {
+                    return sb.toString();
+                }
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                char escaped = next();
+                switch (escaped) {
+                    case 'u' -> {
+                        if (pos + 4 > length) {
+                            throw MalformedJsonException.INSTANCE;
+                        }
+                        int code = 0;
+                        for (int i = 0; i < 4; i++) {
+                            code = (code << 4) | hexDigit(s.charAt(pos++));
+                        }
+                        sb.append((char) code);
+                    }
+                    case 't' -> sb.append('\t');
+                    case 'b' -> sb.append('\b');
+                    case 'n' -> sb.append('\n');
+                    case 'r' -> sb.append('\r');
+                    case 'f' -> sb.append('\f');
+                    case '\n', '\'', '"', '\\', '/' -> sb.append(escaped);
+                    default -> throw MalformedJsonException.INSTANCE;
+                }
+            }
+        }
+
+        private static int hexDigit(char c) {
+            if (c >= '0' && c <= '9') {
+                return c - '0';
+            }
+            if (c >= 'a' && c <= 'f') {
+                return c - 'a' + 10;
+            }
+            if (c >= 'A' && c <= 'F') {
+                return c - 'A' + 10;
+            }
+            throw MalformedJsonException.INSTANCE;
+        }
+
+        String readLiteral() {
+            int start = pos;
+            while (pos < length && isLiteral(s.charAt(pos))) {
+                pos++;
+            }
+            if (pos == start) {
+                throw MalformedJsonException.INSTANCE;
+            }
+            return s.substring(start, pos);
+        }
+
+        void skipValue(int depth) {
+            if (depth > MAX_DEPTH) {
+                throw MalformedJsonException.INSTANCE;
+            }
+            char c = peek();
+            switch (c) {
+                case '"', '\'' -> skipQuoted();
+                case '{' -> skipContainer('}', true, depth);
+                case '[' -> skipContainer(']', false, depth);
+                default -> {
+                    if (!isLiteral(c)) {
+                        throw MalformedJsonException.INSTANCE;
+                    }
+                    while (pos < length && isLiteral(s.charAt(pos))) {
+                        pos++;
+                    }
+                }
+            }
+        }
+
+        private void skipQuoted() {
+            char quote = next();
+            while (true) {
+                char c = next();
+                if (c == quote) {
+                    return;
+                }
+                if (c == '\\') {
+                    next();
+                }
+            }
+        }
+
+        private void skipContainer(char close, boolean object, int depth) {
+            pos++;
+            skipWhitespace();
+            if (peek() == close) {
+                pos++;
+                return;
+            }
+            while (true) {
+                if (object) {
+                    readFieldName();
+                    skipWhitespace();
+                    expect(':');
+                    skipWhitespace();
+                }
+                skipValue(depth + 1);
+                skipWhitespace();
+                char c = next();
+                if (c == close) {
+                    return;
+                }
+                if (c != ',') {
+                    throw MalformedJsonException.INSTANCE;
+                }
+                skipWhitespace();
+            }
+        }
+
+        // Same literal character class as Gson's JsonReader
+        private static boolean isLiteral(char c) {
+            switch (c) {
+                case '/', '\\', ';', '#', '=', '{', '}', '[', ']', ':', ',', ' ', '\t', '\f', '\r', '\n':
+                    return false;
+                default:
+                    return true;
+            }
+        }
+    }
+
+    /**
+     * Preallocated, stackless signal for malformed input; never escapes the decoder.
+     */
+    private static final class MalformedJsonException extends RuntimeException {
+        static final MalformedJsonException INSTANCE = new MalformedJsonException();
+
+        private MalformedJsonException() {
+            super("Malformed JSON", null, false, false);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.chatflow.server.codec;
+
+/**
+ * Wire encoding a session expects for outbound frames.
+ */
+public enum FrameFormat {
+    /** JSON text frames, as served on {@code /chat/{roomId}}. */
+    TEXT,
+    /** {@link BinaryMessageCodec} frames, as served on {@code /chat-bin/{roomId}}. */
+    BINARY
+}
@@ -0,0 +1,101 @@
+package com.chatflow.server.codec;
+
+import com.chatflow.server.model.ServerResponse;
+import com.google.gson.Gson;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A response on its way to one or more sessions. Each wire encoding is produced on first
+ * use and then shared by every recipient that needs it, so a room with only JSON clients
+ * never pays for the binary form and vice versa.
+ *
+ * <p>Encodings are memoized without locking; two threads racing on the first use may both
+ * encode, which is harmless because the results are identical. The time spent encoding
+ * is kept for metrics, added to by every thread that encodes.
+ */
+public final class OutboundFrame {
+
+    private static final Gson GSON = new Gson();
+
+    // Null for frames created from their binary form; the text form is then decoded from it
+    private final ServerResponse response;
+    private volatile TextMessage text;
+    private volatile byte[] binary;
+    // Fan-out threads may encode the two forms, or race on one, at the same time
+    private final LongAdder encodeNanos = new LongAdder();
+
+    private OutboundFrame(ServerResponse response, TextMessage text, byte[] binary) {
+        this.response = response;
+        this.text = text;
+        this.binary = binary;
+    }
+
+    public static OutboundFrame of(ServerResponse response) {
+        return new OutboundFrame(response, null, null);
+    }
+
+    /**
+     * Creates a frame from a {@link BinaryMessageCodec} response, such as an ack built
+     * from the inbound binary frame.
+     */
+    public static OutboundFrame ofBinary(byte[] binary) {
+        return new OutboundFrame(null, null, binary);
+    }
+
+    /**
+     * Creates a frame from both of its wire encodings, built by the caller.
+     */
+    public static OutboundFrame ofEncoded(byte[] text, byte[] binary) {
+        return new OutboundFrame(null, new TextMessage(text), binary);
+    }
+
+    /**
+     * The sequence number of the message this frame carries, or 0 if it has none.
+     */
+    public long getSeq() {
+        if (response == null) {
+            return BinaryMessageCodec.readSeq(ByteBuffer.wrap(binary));
+        }
+        return response.getSeq() != null ? response.getSeq() : 0;
+    }
+
+    /**
+     * Time spent so far producing this frame's wire encodings.
+     */
+    public long getEncodeNanos() { return encodeNanos.sum(); }
+
+    public WebSocketMessage<?> encode(FrameFormat format) {
+        return format == FrameFormat.BINARY ? asBinary() : asText();
+    }
+
+    public TextMessage asText() {
+        TextMessage message = text;
+        if (message == null) {
+            long start = System.nanoTime();
+            // Built from bytes so the payload length is known without re-encoding per recipient
+            ServerResponse source = response != null ? response : BinaryMessageCodec.decodeResponse(binary);
+            message = new TextMessage(GSON.toJson(source).getBytes(StandardCharsets.UTF_8));
+            text = message;
+            encodeNanos.add(System.nanoTime() - start);
+        }
+        return message;
+    }
+
+    public BinaryMessage asBinary() {
+        byte[] bytes = binary;
+        if (bytes == null) {
+            long start = System.nanoTime();
+            bytes = BinaryMessageCodec.encode(response);
+            binary = bytes;
+            encodeNanos.add(System.nanoTime() - start);
+        }
+        // Sending consumes the buffer's position, so each recipient gets its own view
+        return new BinaryMessage(bytes);
+    }
+}
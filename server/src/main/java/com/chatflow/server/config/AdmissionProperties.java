@@ -0,0 +1,32 @@
+package com.chatflow.server.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * When the node counts as overloaded and sheds new messages ({@code chatflow.admission.*}).
+ */
+@ConfigurationProperties(prefix = "chatflow.admission")
+public class AdmissionProperties {
+
+    // Shed some messages when none waited less than this for its room worker over an interval; 0 turns it off
+    private Duration targetDelay = Duration.ofMillis(50);
+    private Duration interval = Duration.ofMillis(100);
+    // Shed every message while this many admitted messages are not yet handled; 0 turns it off
+    private int maxInFlight = 0;
+    // Also answer new WebSocket handshakes with 503 while overloaded
+    private boolean refuseHandshakes = false;
+
+    public Duration getTargetDelay() { return targetDelay; }
+    public void setTargetDelay(Duration targetDelay) { this.targetDelay = targetDelay; }
+
+    public Duration getInterval() { return interval; }
+    public void setInterval(Duration interval) { this.interval = interval; }
+
+    public int getMaxInFlight() { return maxInFlight; }
+    public void setMaxInFlight(int maxInFlight) { this.maxInFlight = maxInFlight; }
+
+    public boolean isRefuseHandshakes() { return refuseHandshakes; }
+    public void setRefuseHandshakes(boolean refuseHandshakes) { this.refuseHandshakes = refuseHandshakes; }
+}
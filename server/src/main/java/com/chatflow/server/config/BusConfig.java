@@ -0,0 +1,22 @@
+package com.chatflow.server.config;
+
+import com.chatflow.server.bus.RoomBus;
+import com.chatflow.server.bus.TcpRoomBus;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+
+@Configuration
+@EnableConfigurationProperties({BusProperties.class, ClusterProperties.class})
+public class BusConfig {
+
+    /**
+     * Closed on shutdown, which sends whatever is still queued to the peers.
+     */
+    @Bean(destroyMethod = "close")
+    public RoomBus roomBus(BusProperties properties) throws IOException {
+        return properties.isEnabled() ? new TcpRoomBus(properties) : RoomBus.NONE;
+    }
+}
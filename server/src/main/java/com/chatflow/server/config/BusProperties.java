@@ -0,0 +1,38 @@
+package com.chatflow.server.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fan-out of rooms across server nodes ({@code chatflow.bus.*}).
+ */
+@ConfigurationProperties(prefix = "chatflow.bus")
+public class BusProperties {
+
+    private boolean enabled = false;
+    // Interface this node accepts connections from its peers on
+    private String address = "127.0.0.1";
+    // Where this node accepts connections from its peers
+    private int port = 7400;
+    // host:port of every other node's bus port; only their hosts may connect
+    private List<String> peers = new ArrayList<>();
+    // Messages waiting to be sent; beyond this they are not forwarded
+    private int queueCapacity = 65536;
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+    public String getAddress() { return address; }
+    public void setAddress(String address) { this.address = address; }
+
+    public int getPort() { return port; }
+    public void setPort(int port) { this.port = port; }
+
+    public List<String> getPeers() { return peers; }
+    public void setPeers(List<String> peers) { this.peers = peers; }
+
+    public int getQueueCapacity() { return queueCapacity; }
+    public void setQueueCapacity(int queueCapacity) { this.queueCapacity = queueCapacity; }
+}
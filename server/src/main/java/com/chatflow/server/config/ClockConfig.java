@@ -0,0 +1,19 @@
+package com.chatflow.server.config;
+
+import com.chatflow.server.clock.ServerClock;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(ClockProperties.class)
+public class ClockConfig {
+
+    /**
+     * Closed on shutdown, which stops the ticker.
+     */
+    @Bean(destroyMethod = "close")
+    public ServerClock serverClock(ClockProperties properties) {
+        return new ServerClock(properties);
+    }
+}
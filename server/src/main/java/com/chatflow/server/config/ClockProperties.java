@@ -0,0 +1,23 @@
+package com.chatflow.server.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * The clock that stamps server timestamps on responses ({@code chatflow.clock.*}).
+ */
+@ConfigurationProperties(prefix = "chatflow.clock")
+public class ClockProperties {
+
+    // How often the cached timestamp is refreshed; it lags real time by up to this
+    private Duration resolution = Duration.ofMillis(1);
+    // Read and format the system clock on every call instead
+    private boolean precise = false;
+
+    public Duration getResolution() { return resolution; }
+    public void setResolution(Duration resolution) { this.resolution = resolution; }
+
+    public boolean isPrecise() { return precise; }
+    public void setPrecise(boolean precise) { this.precise = precise; }
+}
@@ -0,0 +1,35 @@
+package com.chatflow.server.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Which node owns each room ({@code chatflow.cluster.*}). Nodes are named by the base URL
+ * clients connect to, such as {@code ws://node-1:8080}.
+ */
+@ConfigurationProperties(prefix = "chatflow.cluster")
+public class ClusterProperties {
+
+    // This node's URL, as listed in nodes
+    private String self = "";
+    // Every node's URL, this one included; empty means this node owns every room
+    private List<String> nodes = new ArrayList<>();
+    // Points per node on the hash ring; more spreads rooms more evenly
+    private int virtualNodes = 160;
+    // Answer handshakes for rooms owned elsewhere with a redirect to the owner
+    private boolean redirect = false;
+
+    public String getSelf() { return self; }
+    public void setSelf(String self) { this.self = self; }
+
+    public List<String> getNodes() { return nodes; }
+    public void setNodes(List<String> nodes) { this.nodes = nodes; }
+
+    public int getVirtualNodes() { return virtualNodes; }
+    public void setVirtualNodes(int virtualNodes) { this.virtualNodes = virtualNodes; }
+
+    public boolean isRedirect() { return redirect; }
+    public void setRedirect(boolean redirect) { this.redirect = redirect; }
+}
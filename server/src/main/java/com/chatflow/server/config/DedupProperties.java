@@ -0,0 +1,24 @@
+package com.chatflow.server.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * How long, and how many, client messageIds each room remembers to recognize retries
+ * ({@code chatflow.dedup.*}).
+ */
+@ConfigurationProperties(prefix = "chatflow.dedup")
+public class DedupProperties {
+
+    // Ids are remembered for at least half of this, and dropped in generations after that
+    private Duration window = Duration.ofSeconds(60);
+    // Per room; older ids are forgotten early beyond it. 0 disables deduplication
+    private int maxEntries = 4096;
+
+    public Duration getWindow() { return window; }
+    public void setWindow(Duration window) { this.window = window; }
+
+    public int getMaxEntries() { return maxEntries; }
+    public void setMaxEntries(int maxEntries) { this.maxEntries = maxEntries; }
+}
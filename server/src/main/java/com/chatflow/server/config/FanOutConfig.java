@@ -0,0 +1,19 @@
+package com.chatflow.server.config;
+
+import com.chatflow.server.session.ParallelFanOut;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(FanOutProperties.class)
+public class FanOutConfig {
+
+    /**
+     * Closed on shutdown, which stops its threads.
+     */
+    @Bean(destroyMethod = "close")
+    public ParallelFanOut parallelFanOut(FanOutProperties properties) {
+        return new ParallelFanOut(properties);
+    }
+}
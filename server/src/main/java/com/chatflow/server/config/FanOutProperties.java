@@ -0,0 +1,28 @@
+package com.chatflow.server.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Parallel delivery of broadcasts in rooms with many members ({@code chatflow.fanout.*}).
+ */
+@ConfigurationProperties(prefix = "chatflow.fanout")
+public class FanOutProperties {
+
+    // Threads delivering chunks of hot rooms; 0 always delivers on the broadcasting thread
+    private int threads = Runtime.getRuntime().availableProcessors();
+    // A room whose broadcasts recently took this long to deliver, in all, is hot
+    private Duration hotCost = Duration.ofNanos(100_000);
+    // Members per chunk of a hot room's broadcast; smaller rooms are never split
+    private int chunkSize = 512;
+
+    public int getThreads() { return threads; }
+    public void setThreads(int threads) { this.threads = threads; }
+
+    public Duration getHotCost() { return hotCost; }
+    public void setHotCost(Duration hotCost) { this.hotCost = hotCost; }
+
+    public int getChunkSize() { return chunkSize; }
+    public void setChunkSize(int chunkSize) { this.chunkSize = chunkSize; }
+}
@@ -0,0 +1,16 @@
+package com.chatflow.server.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Recent messages kept per room for replay on join ({@code chatflow.history.*}).
+ */
+@ConfigurationProperties(prefix = "chatflow.history")
+public class HistoryProperties {
+
+    // Messages per room; 0 disables history. Capped at chatflow.outbound.max-messages
+    private int size = 100;
+
+    public int getSize() { return size; }
+    public void setSize(int size) { this.size = size; }
+}
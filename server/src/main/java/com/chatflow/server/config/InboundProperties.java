@@ -0,0 +1,25 @@
+package com.chatflow.server.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Limits for inbound frames ({@code chatflow.inbound.*}).
+ */
+@ConfigurationProperties(prefix = "chatflow.inbound")
+public class InboundProperties {
+
+    private int maxBatchSize = 100;
+    private DataSize maxFrameSize = DataSize.ofKilobytes(256);
+    // The container allocates this per session; larger frames are reassembled up to maxFrameSize
+    private DataSize frameBufferSize = DataSize.ofKilobytes(8);
+
+    public int getMaxBatchSize() { return maxBatchSize; }
+    public void setMaxBatchSize(int maxBatchSize) { this.maxBatchSize = maxBatchSize; }
+
+    public DataSize getMaxFrameSize() { return maxFrameSize; }
+    public void setMaxFrameSize(DataSize maxFrameSize) { this.maxFrameSize = maxFrameSize; }
+
+    public DataSize getFrameBufferSize() { return frameBufferSize; }
+    public void setFrameBufferSize(DataSize frameBufferSize) { this.frameBufferSize = frameBufferSize; }
+}
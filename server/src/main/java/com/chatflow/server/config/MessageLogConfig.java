@@ -0,0 +1,22 @@
+package com.chatflow.server.config;
+
+import com.chatflow.server.store.MessageLog;
+import com.chatflow.server.store.SegmentedMessageLog;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+
+@Configuration
+@EnableConfigurationProperties(MessageLogProperties.class)
+public class MessageLogConfig {
+
+    /**
+     * Closed on shutdown, which writes and forces whatever is still queued.
+     */
+    @Bean(destroyMethod = "close")
+    public MessageLog messageLog(MessageLogProperties properties) throws IOException {
+        return properties.isEnabled() ? new SegmentedMessageLog(properties) : MessageLog.NONE;
+    }
+}
@@ -0,0 +1,46 @@
+package com.chatflow.server.config;
+
+import com.chatflow.server.store.FsyncPolicy;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * The durable per-room message log ({@code chatflow.log.*}).
+ */
+@ConfigurationProperties(prefix = "chatflow.log")
+public class MessageLogProperties {
+
+    private boolean enabled = true;
+    private String directory = "data/log";
+    // Largest a segment grows to; a room's first is at most 64KB and each next one doubles
+    private DataSize segmentSize = DataSize.ofMegabytes(64);
+    // Room logs kept open for writing; beyond this the least recently written is closed
+    private int maxOpenRooms = 1024;
+    private FsyncPolicy fsyncPolicy = FsyncPolicy.INTERVAL;
+    private Duration fsyncInterval = Duration.ofSeconds(1);
+    // Messages waiting for the writer; beyond this they are not logged
+    private int queueCapacity = 65536;
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+    public String getDirectory() { return directory; }
+    public void setDirectory(String directory) { this.directory = directory; }
+
+    public DataSize getSegmentSize() { return segmentSize; }
+    public void setSegmentSize(DataSize segmentSize) { this.segmentSize = segmentSize; }
+
+    public int getMaxOpenRooms() { return maxOpenRooms; }
+    public void setMaxOpenRooms(int maxOpenRooms) { this.maxOpenRooms = maxOpenRooms; }
+
+    public FsyncPolicy getFsyncPolicy() { return fsyncPolicy; }
+    public void setFsyncPolicy(FsyncPolicy fsyncPolicy) { this.fsyncPolicy = fsyncPolicy; }
+
+    public Duration getFsyncInterval() { return fsyncInterval; }
+    public void setFsyncInterval(Duration fsyncInterval) { this.fsyncInterval = fsyncInterval; }
+
+    public int getQueueCapacity() { return queueCapacity; }
+    public void setQueueCapacity(int queueCapacity) { this.queueCapacity = queueCapacity; }
+}
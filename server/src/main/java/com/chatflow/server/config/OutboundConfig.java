@@ -0,0 +1,49 @@
+package com.chatflow.server.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+@EnableConfigurationProperties({OutboundProperties.class, HistoryProperties.class, DedupProperties.class})
+public class OutboundConfig {
+
+    /**
+     * Runs the per-session drain tasks on at most {@code chatflow.outbound.threads}
+     * threads, so the thread count does not follow the number of sessions with something
+     * to send. Each session has at most one drain task queued or running, and a drain
+     * task yields its thread after a bounded number of frames, so a few slow clients
+     * delay the others rather than starve them.
+     */
+    @Bean(destroyMethod = "shutdown")
+    @ConditionalOnThreading(Threading.PLATFORM)
+    public ExecutorService outboundExecutor(OutboundProperties properties) {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("outbound-");
+        threadFactory.setDaemon(true);
+        int threads = Math.max(1, properties.getThreads());
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), threadFactory);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * With {@code spring.threads.virtual.enabled} on Java 21, each drain task gets its own
+     * virtual thread, so a session blocked on a slow client no longer holds a platform thread.
+     */
+    @Bean(name = "outboundExecutor")
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public Executor virtualOutboundExecutor() {
+        return new VirtualThreadTaskExecutor("outbound-");
+    }
+}
@@ -0,0 +1,41 @@
+package com.chatflow.server.config;
+
+import com.chatflow.server.session.OverflowPolicy;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Limits for the per-session outbound queues ({@code chatflow.outbound.*}).
+ */
+@ConfigurationProperties(prefix = "chatflow.outbound")
+public class OutboundProperties {
+
+    private int maxMessages = 1024;
+    private DataSize maxBytes = DataSize.ofMegabytes(1);
+    private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_OLDEST;
+    private Map<String, OverflowPolicy> roomPolicies = new HashMap<>();
+    // Platform threads writing to sessions; ignored with virtual threads
+    private int threads = 64;
+
+    public OverflowPolicy policyFor(String roomId) {
+        return roomPolicies.getOrDefault(roomId, overflowPolicy);
+    }
+
+    public int getMaxMessages() { return maxMessages; }
+    public void setMaxMessages(int maxMessages) { this.maxMessages = maxMessages; }
+
+    public DataSize getMaxBytes() { return maxBytes; }
+    public void setMaxBytes(DataSize maxBytes) { this.maxBytes = maxBytes; }
+
+    public OverflowPolicy getOverflowPolicy() { return overflowPolicy; }
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy) { this.overflowPolicy = overflowPolicy; }
+
+    public Map<String, OverflowPolicy> getRoomPolicies() { return roomPolicies; }
+    public void setRoomPolicies(Map<String, OverflowPolicy> roomPolicies) { this.roomPolicies = roomPolicies; }
+
+    public int getThreads() { return threads; }
+    public void setThreads(int threads) { this.threads = threads; }
+}
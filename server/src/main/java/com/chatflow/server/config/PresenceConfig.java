@@ -0,0 +1,22 @@
+package com.chatflow.server.config;
+
+import com.chatflow.server.clock.ServerClock;
+import com.chatflow.server.session.PresenceBroadcaster;
+import com.chatflow.server.session.RoomSessionManager;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(PresenceProperties.class)
+public class PresenceConfig {
+
+    /**
+     * Closed on shutdown, which stops the updates.
+     */
+    @Bean(destroyMethod = "close")
+    public PresenceBroadcaster presenceBroadcaster(PresenceProperties properties, RoomSessionManager sessionManager,
+                                                   ServerClock clock) {
+        return new PresenceBroadcaster(sessionManager, clock, properties.getInterval().toNanos());
+    }
+}
@@ -0,0 +1,18 @@
+package com.chatflow.server.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Presence updates sent to room members as users JOIN and LEAVE ({@code chatflow.presence.*}).
+ */
+@ConfigurationProperties(prefix = "chatflow.presence")
+public class PresenceProperties {
+
+    // Changes within an interval go out as one update per room; 0 disables updates
+    private Duration interval = Duration.ofMillis(100);
+
+    public Duration getInterval() { return interval; }
+    public void setInterval(Duration interval) { this.interval = interval; }
+}
@@ -0,0 +1,29 @@
+package com.chatflow.server.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * How fast each user and each session may send ({@code chatflow.rate-limit.*}). Rates are
+ * messages per second, with bursts of up to the burst size allowed on top; a rate of 0
+ * turns that limit off.
+ */
+@ConfigurationProperties(prefix = "chatflow.rate-limit")
+public class RateLimitProperties {
+
+    private double userRate = 50;
+    private int userBurst = 100;
+    private double sessionRate = 5000;
+    private int sessionBurst = 10000;
+
+    public double getUserRate() { return userRate; }
+    public void setUserRate(double userRate) { this.userRate = userRate; }
+
+    public int getUserBurst() { return userBurst; }
+    public void setUserBurst(int userBurst) { this.userBurst = userBurst; }
+
+    public double getSessionRate() { return sessionRate; }
+    public void setSessionRate(double sessionRate) { this.sessionRate = sessionRate; }
+
+    public int getSessionBurst() { return sessionBurst; }
+    public void setSessionBurst(int sessionBurst) { this.sessionBurst = sessionBurst; }
+}
@@ -0,0 +1,73 @@
+package com.chatflow.server.config;
+
+import com.chatflow.server.admission.AdmissionControl;
+import com.chatflow.server.cluster.RoomPlacement;
+import com.chatflow.server.codec.FrameFormat;
+import com.chatflow.server.handler.ChatMessageProcessor;
+import com.chatflow.server.handler.ReactiveChatWebSocketHandler;
+import com.chatflow.server.handler.RoomHandshakeWebSocketService;
+import com.chatflow.server.session.RoomSessionManager;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+import org.springframework.web.reactive.handler.SimpleUrlHandlerMapping;
+import org.springframework.web.reactive.socket.WebSocketHandler;
+import org.springframework.web.reactive.socket.server.WebSocketService;
+import org.springframework.web.reactive.socket.server.upgrade.ReactorNettyRequestUpgradeStrategy;
+import reactor.netty.http.server.WebsocketServerSpec;
+
+import java.util.Map;
+
+/**
+ * WebSocket endpoints on Reactor Netty, active with the {@code reactive} profile. Same
+ * paths, rooms, validation and limits as {@link WebSocketConfig}.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@EnableConfigurationProperties({InboundProperties.class, RateLimitProperties.class, AdmissionProperties.class})
+public class ReactiveWebSocketConfig implements WebFluxConfigurer {
+
+    private final InboundProperties inboundProperties;
+    private final RoomPlacement placement;
+    private final AdmissionControl admission;
+
+    public ReactiveWebSocketConfig(InboundProperties inboundProperties, RoomPlacement placement,
+                                   AdmissionControl admission) {
+        this.inboundProperties = inboundProperties;
+        this.placement = placement;
+        this.admission = admission;
+    }
+
+    /**
+     * Tomcat is on the classpath for the servlet engine and would otherwise be preferred.
+     */
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    @Bean
+    public HandlerMapping chatHandlerMapping(ChatMessageProcessor processor, RoomSessionManager sessionManager) {
+        Map<String, WebSocketHandler> handlers = Map.of(
+                "/chat/{roomId}", new ReactiveChatWebSocketHandler(processor, sessionManager, FrameFormat.TEXT),
+                "/chat-bin/{roomId}", new ReactiveChatWebSocketHandler(processor, sessionManager, FrameFormat.BINARY));
+        // Ahead of the annotated controllers
+        return new SimpleUrlHandlerMapping(handlers, -1);
+    }
+
+    /**
+     * Netty aggregates fragmented frames up to this limit, so there is no per-session
+     * buffer to size as on Tomcat. As on the servlet engine, the room is resolved and
+     * validated once per connection, before the upgrade.
+     */
+    @Override
+    public WebSocketService getWebSocketService() {
+        int maxFrameSize = (int) inboundProperties.getMaxFrameSize().toBytes();
+        return new RoomHandshakeWebSocketService(new ReactorNettyRequestUpgradeStrategy(
+                () -> WebsocketServerSpec.builder().maxFramePayloadLength(maxFrameSize)), placement, admission);
+    }
+}
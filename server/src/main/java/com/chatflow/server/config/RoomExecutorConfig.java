@@ -0,0 +1,19 @@
+package com.chatflow.server.config;
+
+import com.chatflow.server.session.RoomExecutor;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(RoomExecutorProperties.class)
+public class RoomExecutorConfig {
+
+    /**
+     * Closed on shutdown, after running what the rooms have queued.
+     */
+    @Bean(destroyMethod = "close")
+    public RoomExecutor roomExecutor(RoomExecutorProperties properties) {
+        return new RoomExecutor(properties);
+    }
+}
@@ -0,0 +1,21 @@
+package com.chatflow.server.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Workers that run each room's accepted messages in order ({@code chatflow.room-executor.*}).
+ */
+@ConfigurationProperties(prefix = "chatflow.room-executor")
+public class RoomExecutorProperties {
+
+    // Worker threads shared by all rooms; 0 handles messages on the thread that read them
+    private int threads = Runtime.getRuntime().availableProcessors();
+    // Messages a room handles before yielding its worker to other rooms
+    private int maxBatch = 64;
+
+    public int getThreads() { return threads; }
+    public void setThreads(int threads) { this.threads = threads; }
+
+    public int getMaxBatch() { return maxBatch; }
+    public void setMaxBatch(int maxBatch) { this.maxBatch = maxBatch; }
+}
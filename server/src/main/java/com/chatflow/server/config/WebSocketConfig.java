@@ -1,24 +1,66 @@
 package com.chatflow.server.config;
 
+import com.chatflow.server.admission.AdmissionControl;
+import com.chatflow.server.cluster.RoomPlacement;
+import com.chatflow.server.handler.ChatBinaryWebSocketHandler;
 import com.chatflow.server.handler.ChatWebSocketHandler;
+import com.chatflow.server.handler.RoomHandshakeInterceptor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.socket.config.annotation.EnableWebSocket;
 import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
 import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.server.standard.ServletServerContainerFactoryBean;
 
+/**
+ * WebSocket endpoints on the servlet engine (Tomcat), the default. The {@code reactive}
+ * profile serves the same endpoints from {@link ReactiveWebSocketConfig} instead.
+ */
 @Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @EnableWebSocket
+@EnableConfigurationProperties({InboundProperties.class, RateLimitProperties.class, AdmissionProperties.class})
 public class WebSocketConfig implements WebSocketConfigurer {
 
     private final ChatWebSocketHandler chatWebSocketHandler;
+    private final ChatBinaryWebSocketHandler chatBinaryWebSocketHandler;
+    private final RoomHandshakeInterceptor roomHandshakeInterceptor;
 
-    public WebSocketConfig(ChatWebSocketHandler chatWebSocketHandler) {
+    public WebSocketConfig(ChatWebSocketHandler chatWebSocketHandler,
+                           ChatBinaryWebSocketHandler chatBinaryWebSocketHandler,
+                           RoomPlacement placement, AdmissionControl admission) {
         this.chatWebSocketHandler = chatWebSocketHandler;
+        this.chatBinaryWebSocketHandler = chatBinaryWebSocketHandler;
+        this.roomHandshakeInterceptor = new RoomHandshakeInterceptor(placement, admission);
     }
 
+    /**
+     * The room is resolved and validated once per connection, at the handshake, where a
+     * client may also be redirected to the room's owner, or refused while overloaded.
+     */
     @Override
     public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
         registry.addHandler(chatWebSocketHandler, "/chat/{roomId}")
+                .addInterceptors(roomHandshakeInterceptor)
                 .setAllowedOrigins("*");
+        registry.addHandler(chatBinaryWebSocketHandler, "/chat-bin/{roomId}")
+                .addInterceptors(roomHandshakeInterceptor)
+                .setAllowedOrigins("*");
+    }
+
+    /**
+     * Sizes the buffers Tomcat allocates up front for every session. They stay small so
+     * idle connections are cheap; the handlers accept partial messages and reassemble
+     * frames up to {@code chatflow.inbound.max-frame-size}.
+     */
+    @Bean
+    public ServletServerContainerFactoryBean createWebSocketContainer(InboundProperties inboundProperties) {
+        int bufferSize = (int) inboundProperties.getFrameBufferSize().toBytes();
+        ServletServerContainerFactoryBean container = new ServletServerContainerFactoryBean();
+        container.setMaxTextMessageBufferSize(bufferSize);
+        container.setMaxBinaryMessageBufferSize(bufferSize);
+        return container;
     }
 }
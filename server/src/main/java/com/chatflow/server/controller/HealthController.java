@@ -1,28 +1,65 @@
 package com.chatflow.server.controller;
 
+import com.chatflow.server.admission.AdmissionControl;
+import com.chatflow.server.bus.RoomBus;
+import com.chatflow.server.clock.ServerClock;
+import com.chatflow.server.session.RoomExecutor;
 import com.chatflow.server.session.RoomSessionManager;
+import com.chatflow.server.store.MessageLog;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.time.Instant;
+import java.lang.management.ManagementFactory;
 import java.util.Map;
 
 @RestController
 public class HealthController {
 
     private final RoomSessionManager sessionManager;
+    private final MessageLog messageLog;
+    private final RoomBus roomBus;
+    private final ServerClock clock;
+    private final RoomExecutor roomExecutor;
+    private final AdmissionControl admission;
+    private final boolean virtualThreads;
 
-    public HealthController(RoomSessionManager sessionManager) {
+    public HealthController(RoomSessionManager sessionManager, MessageLog messageLog, RoomBus roomBus,
+                            ServerClock clock, RoomExecutor roomExecutor, AdmissionControl admission,
+                            Environment environment) {
         this.sessionManager = sessionManager;
+        this.messageLog = messageLog;
+        this.roomBus = roomBus;
+        this.clock = clock;
+        this.roomExecutor = roomExecutor;
+        this.admission = admission;
+        this.virtualThreads = Threading.VIRTUAL.isActive(environment);
     }
 
     @GetMapping("/health")
     public Map<String, Object> health() {
-        return Map.of(
-                "status", "UP",
-                "timestamp", Instant.now().toString(),
-                "connections", sessionManager.getTotalConnections(),
-                "rooms", sessionManager.getRoomCount()
+        return Map.ofEntries(
+                Map.entry("status", "UP"),
+                Map.entry("timestamp", clock.isoString()),
+                Map.entry("connections", sessionManager.getTotalConnections()),
+                Map.entry("rooms", sessionManager.getRoomCount()),
+                Map.entry("roomQueued", roomExecutor.getQueued()),
+                Map.entry("overloaded", admission.isOverloaded()),
+                Map.entry("shedFraction", admission.getShedFraction()),
+                Map.entry("inFlight", admission.getInFlight()),
+                Map.entry("overloadRejected", admission.getRejected()),
+                Map.entry("outboundQueued", sessionManager.getQueuedFrames()),
+                Map.entry("outboundDropped", sessionManager.getDroppedFrames()),
+                Map.entry("slowConsumerDisconnects", sessionManager.getSlowConsumerDisconnects()),
+                Map.entry("parallelBroadcasts", sessionManager.getParallelBroadcasts()),
+                Map.entry("logBacklog", messageLog.getBacklog()),
+                Map.entry("logRejected", messageLog.getRejected()),
+                Map.entry("busBacklog", roomBus.getBacklog()),
+                Map.entry("busRejected", roomBus.getRejected()),
+                // Platform threads only; virtual threads are not counted
+                Map.entry("threads", ManagementFactory.getThreadMXBean().getThreadCount()),
+                Map.entry("threading", virtualThreads ? "virtual" : "platform")
         );
     }
 }
@@ -0,0 +1,64 @@
+package com.chatflow.server.controller;
+
+import com.chatflow.server.metrics.PrometheusWriter;
+import com.chatflow.server.metrics.ServerMetrics;
+import com.chatflow.server.session.Room;
+import com.chatflow.server.session.RoomSessionManager;
+import com.chatflow.server.store.MessageLog;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Serves {@code /metrics} in the Prometheus text format: handler phase latencies and
+ * rejections from {@link ServerMetrics}, per-room message counters, whose {@code rate()}
+ * gives inbound and outbound rates, and the gauges also reported by {@code /health}.
+ */
+@RestController
+public class MetricsController {
+
+    private final ServerMetrics metrics;
+    private final RoomSessionManager sessionManager;
+    private final MessageLog messageLog;
+
+    public MetricsController(ServerMetrics metrics, RoomSessionManager sessionManager, MessageLog messageLog) {
+        this.metrics = metrics;
+        this.sessionManager = sessionManager;
+        this.messageLog = messageLog;
+    }
+
+    @GetMapping(value = "/metrics", produces = PrometheusWriter.CONTENT_TYPE)
+    public String metrics() {
+        PrometheusWriter out = new PrometheusWriter();
+        metrics.writeTo(out);
+
+        out.family("chatflow_room_received_messages_total", "counter", "Messages accepted into each room.");
+        for (Room room : sessionManager.getRooms()) {
+            out.sample("chatflow_room_received_messages_total", "room", room.getId(), room.getReceived());
+        }
+        out.family("chatflow_room_delivered_frames_total", "counter",
+                "Frames queued for members of each room, counting one per recipient.");
+        for (Room room : sessionManager.getRooms()) {
+            out.sample("chatflow_room_delivered_frames_total", "room", room.getId(), room.getDelivered());
+        }
+        out.family("chatflow_room_members", "gauge", "Sessions in each room.");
+        for (Room room : sessionManager.getRooms()) {
+            out.sample("chatflow_room_members", "room", room.getId(), room.size());
+        }
+
+        out.family("chatflow_connections", "gauge", "Open sessions.")
+                .sample("chatflow_connections", sessionManager.getTotalConnections());
+        out.family("chatflow_rooms", "gauge", "Rooms with at least one member.")
+                .sample("chatflow_rooms", sessionManager.getRoomCount());
+        out.family("chatflow_outbound_queued_frames", "gauge", "Frames waiting in outbound queues.")
+                .sample("chatflow_outbound_queued_frames", sessionManager.getQueuedFrames());
+        out.family("chatflow_outbound_dropped_frames_total", "counter", "Frames dropped by the overflow policy.")
+                .sample("chatflow_outbound_dropped_frames_total", sessionManager.getDroppedFrames());
+        out.family("chatflow_slow_consumer_disconnects_total", "counter", "Sessions closed for falling behind.")
+                .sample("chatflow_slow_consumer_disconnects_total", sessionManager.getSlowConsumerDisconnects());
+        out.family("chatflow_log_backlog", "gauge", "Messages waiting to be written to the message log.")
+                .sample("chatflow_log_backlog", messageLog.getBacklog());
+        out.family("chatflow_log_rejected_total", "counter", "Messages the message log could not take.")
+                .sample("chatflow_log_rejected_total", messageLog.getRejected());
+        return out.toString();
+    }
+}
@@ -0,0 +1,30 @@
+package com.chatflow.server.controller;
+
+import com.chatflow.server.cluster.RoomPlacement;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * Tells clients which node to connect to for a room.
+ */
+@RestController
+public class PlacementController {
+
+    private final RoomPlacement placement;
+
+    public PlacementController(RoomPlacement placement) {
+        this.placement = placement;
+    }
+
+    @GetMapping("/rooms/{roomId}/owner")
+    public Map<String, Object> owner(@PathVariable String roomId) {
+        return Map.of(
+                "roomId", roomId,
+                "owner", placement.ownerOf(roomId),
+                "local", placement.isLocal(roomId)
+        );
+    }
+}
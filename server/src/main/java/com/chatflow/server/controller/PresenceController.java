@@ -0,0 +1,45 @@
+package com.chatflow.server.controller;
+
+import com.chatflow.server.session.Room;
+import com.chatflow.server.session.RoomSessionManager;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * Who is present in a room on this node, from their JOIN and LEAVE messages. A room not
+ * used since startup has no members.
+ */
+@RestController
+public class PresenceController {
+
+    private static final int[] NONE = new int[0];
+
+    private final RoomSessionManager sessionManager;
+
+    public PresenceController(RoomSessionManager sessionManager) {
+        this.sessionManager = sessionManager;
+    }
+
+    @GetMapping("/rooms/{roomId}/members")
+    public Map<String, Object> members(@PathVariable String roomId) {
+        Room room = sessionManager.getRoom(roomId);
+        int[] userIds = room != null ? room.getPresence().userIds() : NONE;
+        return Map.of(
+                "roomId", roomId,
+                "count", userIds.length,
+                "userIds", userIds
+        );
+    }
+
+    @GetMapping("/rooms/{roomId}/members/count")
+    public Map<String, Object> count(@PathVariable String roomId) {
+        Room room = sessionManager.getRoom(roomId);
+        return Map.of(
+                "roomId", roomId,
+                "count", room != null ? room.getPresence().count() : 0
+        );
+    }
+}
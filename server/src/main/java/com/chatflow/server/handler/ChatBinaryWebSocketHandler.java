@@ -0,0 +1,82 @@
+package com.chatflow.server.handler;
+
+import com.chatflow.server.codec.FrameFormat;
+import com.chatflow.server.config.InboundProperties;
+import com.chatflow.server.session.Room;
+import com.chatflow.server.session.RoomSessionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.BinaryWebSocketHandler;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Binary counterpart of {@link ChatWebSocketHandler}. Rooms are shared between the two
+ * endpoints; each recipient receives frames in the format of the endpoint it joined on.
+ */
+@Component
+public class ChatBinaryWebSocketHandler extends BinaryWebSocketHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatBinaryWebSocketHandler.class);
+    private final ChatMessageProcessor processor;
+    private final RoomSessionManager sessionManager;
+    private final PartialFrames partialFrames;
+
+    @Autowired
+    public ChatBinaryWebSocketHandler(ChatMessageProcessor processor, RoomSessionManager sessionManager,
+                                      InboundProperties inboundProperties) {
+        this.processor = processor;
+        this.sessionManager = sessionManager;
+        this.partialFrames = new PartialFrames((int) inboundProperties.getMaxFrameSize().toBytes());
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws IOException {
+        String roomId = RoomIds.roomIdOf(session.getAttributes(), session.getUri());
+        if (roomId == null) {
+            session.close(CloseStatus.BAD_DATA.withReason("Invalid room id"));
+            return;
+        }
+        Room room = sessionManager.addSession(roomId, session, FrameFormat.BINARY, RoomIds.since(session.getUri()));
+        session.getAttributes().put(RoomIds.ROOM_ATTRIBUTE, room);
+        log.info("Binary connection established: session={}, room={}", session.getId(), room.getId());
+    }
+
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage binaryMessage) throws IOException {
+        ByteBuffer payload = partialFrames.binary(session, binaryMessage);
+        Room room = payload != null ? roomOf(session) : null;
+        if (room != null) {
+            processor.onBinary(room, session.getId(), processor.bucketOf(session.getAttributes()), payload);
+        }
+    }
+
+    @Override
+    public boolean supportsPartialMessages() {
+        return true;
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        Room room = roomOf(session);
+        if (room != null) {
+            sessionManager.leave(room, session.getId());
+        }
+        log.info("Binary connection closed: session={}, room={}, status={}", session.getId(), room, status);
+    }
+
+    private static Room roomOf(WebSocketSession session) {
+        return RoomIds.roomOf(session.getAttributes());
+    }
+
+    @Override
+    public void handleTransportError(WebSocketSession session, Throwable exception) {
+        log.error("Transport error: session={}, error={}", session.getId(), exception.getMessage());
+    }
+}
@@ -0,0 +1,474 @@
+package com.chatflow.server.handler;
+
+import com.chatflow.server.admission.AdmissionControl;
+import com.chatflow.server.clock.ServerClock;
+import com.chatflow.server.codec.BinaryMessageCodec;
+import com.chatflow.server.codec.ChatMessageDecoder;
+import com.chatflow.server.codec.OutboundFrame;
+import com.chatflow.server.config.InboundProperties;
+import com.chatflow.server.metrics.Phase;
+import com.chatflow.server.metrics.ServerMetrics;
+import com.chatflow.server.model.ChatMessage;
+import com.chatflow.server.model.ServerResponse;
+import com.chatflow.server.ratelimit.RateLimiter;
+import com.chatflow.server.session.RecentMessageIds;
+import com.chatflow.server.session.Room;
+import com.chatflow.server.session.RoomExecutor;
+import com.chatflow.server.session.RoomSessionManager;
+import com.chatflow.server.store.MessageLog;
+import com.chatflow.server.validation.MessageValidator;
+import com.chatflow.server.validation.MessageValidator.ValidationResult;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Handles complete inbound frames for either server engine. Decoding, validation,
+ * admission, rate limiting and retry detection run on the thread that read the frame;
+ * sequencing, history, logging and broadcast of accepted messages, or presence changes
+ * for JOIN and LEAVE, run on the room's worker on the {@link RoomExecutor}.
+ */
+@Component
+public class ChatMessageProcessor {
+
+    /** Session attribute holding the connection's {@link RateLimiter.Bucket}. */
+    static final String BUCKET_ATTRIBUTE = "chatflow.rateLimit";
+
+    // Admits a message that has no messageId to remember it by
+    private static final RecentMessageIds.Entry UNTRACKED = new RecentMessageIds.Entry(0);
+
+    private final ChatMessageDecoder decoder;
+    private final BinaryMessageCodec codec;
+    private final RoomSessionManager sessionManager;
+    private final MessageLog messageLog;
+    private final ServerMetrics metrics;
+    private final RateLimiter rateLimiter;
+    private final ServerClock clock;
+    private final RoomExecutor roomExecutor;
+    private final AdmissionControl admission;
+    private final int maxBatchSize;
+
+    @Autowired
+    public ChatMessageProcessor(MessageValidator validator, RoomSessionManager sessionManager,
+                                InboundProperties inboundProperties, MessageLog messageLog,
+                                ServerMetrics metrics, RateLimiter rateLimiter, ServerClock clock,
+                                RoomExecutor roomExecutor, AdmissionControl admission) {
+        this.decoder = new ChatMessageDecoder(validator);
+        this.codec = new BinaryMessageCodec(validator);
+        this.sessionManager = sessionManager;
+        this.messageLog = messageLog;
+        this.metrics = metrics;
+        this.rateLimiter = rateLimiter;
+        this.clock = clock;
+        this.roomExecutor = roomExecutor;
+        this.admission = admission;
+        this.maxBatchSize = inboundProperties.getMaxBatchSize();
+    }
+
+    /**
+     * A processor with no log, default metrics, rate limits, admission and inbound limits,
+     * the precise clock, and every message handled on the calling thread, each of which the
+     * builder can replace. Intended for tests and benchmarks.
+     */
+    public static Builder builder(MessageValidator validator, RoomSessionManager sessionManager) {
+        return new Builder(validator, sessionManager);
+    }
+
+    /**
+     * A new session's rate limit bucket, to be passed with each of its frames.
+     */
+    public RateLimiter.Bucket newSessionBucket() {
+        return rateLimiter.newSessionBucket();
+    }
+
+    /**
+     * The rate limit bucket kept in a session's attributes, created on its first frame.
+     */
+    public RateLimiter.Bucket bucketOf(Map<String, Object> attributes) {
+        return (RateLimiter.Bucket) attributes.computeIfAbsent(BUCKET_ATTRIBUTE, k -> rateLimiter.newSessionBucket());
+    }
+
+    public void onText(Room room, String sessionId, RateLimiter.Bucket bucket, String payload) {
+        if (ChatMessageDecoder.isBatch(payload)) {
+            onBatch(room, sessionId, bucket, payload);
+            return;
+        }
+
+        // Parse and validate in a single pass over the payload
+        long start = System.nanoTime();
+        ChatMessage chatMessage = new ChatMessage();
+        ValidationResult result = decoder.decode(payload, chatMessage);
+        long parsed = System.nanoTime();
+        metrics.record(Phase.PARSE, parsed - start);
+        if (!result.isValid()) {
+            sendError(sessionId, result.getErrorMessage(), chatMessage.getMessageId());
+            return;
+        }
+        if (!admission.tryAdmit()) {
+            shed(sessionId, chatMessage.getMessageId());
+            return;
+        }
+        int userId = Integer.parseInt(chatMessage.getUserId());
+        RecentMessageIds.Entry entry = admit(room, sessionId, bucket, userId, chatMessage.getMessageId());
+        if (entry == null) {
+            admission.finished();
+            return;
+        }
+        if (isPresence(chatMessage)) {
+            boolean join = "JOIN".equals(chatMessage.getMessageType());
+            submit(room, parsed, () -> updatePresence(room, sessionId, userId, join, entry,
+                    OutboundFrame.of(ServerResponse.success(chatMessage, clock.isoString()))));
+            return;
+        }
+        submit(room, parsed, () -> {
+            // Broadcast to the room with server timestamp; the frame is encoded once per
+            // wire format and shared by every recipient, including the sender as its ack
+            long built = System.nanoTime();
+            long seq = sessionManager.nextSequence(room, 1);
+            ServerResponse successResponse = ServerResponse.success(chatMessage, clock.isoString(), seq);
+            OutboundFrame frame = OutboundFrame.of(successResponse);
+            long buildNanos = System.nanoTime() - built;
+            if (entry != UNTRACKED) {
+                entry.complete(seq, frame);
+            }
+            accept(room, seq, frame);
+            broadcast(room, frame, buildNanos);
+        });
+    }
+
+    public void onBinary(Room room, String sessionId, RateLimiter.Bucket bucket, ByteBuffer payload) {
+        long start = System.nanoTime();
+        ValidationResult result = codec.validate(payload);
+        long parsed = System.nanoTime();
+        metrics.record(Phase.PARSE, parsed - start);
+        if (!result.isValid()) {
+            sendError(sessionId, result.getErrorMessage(), BinaryMessageCodec.readMessageId(payload));
+            return;
+        }
+        if (!admission.tryAdmit()) {
+            shed(sessionId, BinaryMessageCodec.readMessageId(payload));
+            return;
+        }
+        int userId = BinaryMessageCodec.readUserId(payload);
+        RecentMessageIds.Entry entry = admit(room, sessionId, bucket, userId, BinaryMessageCodec.readMessageId(payload));
+        if (entry == null) {
+            admission.finished();
+            return;
+        }
+        // The ack is the inbound bytes behind a status, server timestamp and sequence
+        // number; its JSON form is only rendered if the room has text sessions. Copying
+        // them here frees the inbound buffer before the room worker runs
+        byte[] ack = BinaryMessageCodec.encodeAck(clock.millis(), 0, payload);
+        long built = System.nanoTime();
+        byte messageType = BinaryMessageCodec.readMessageType(payload);
+        if (messageType != BinaryMessageCodec.TYPE_TEXT) {
+            boolean join = messageType == BinaryMessageCodec.TYPE_JOIN;
+            submit(room, parsed, () -> updatePresence(room, sessionId, userId, join, entry,
+                    OutboundFrame.ofBinary(ack)));
+            return;
+        }
+        submit(room, parsed, () -> {
+            long seq = sessionManager.nextSequence(room, 1);
+            BinaryMessageCodec.writeSeq(ack, seq);
+            OutboundFrame frame = OutboundFrame.ofBinary(ack);
+            if (entry != UNTRACKED) {
+                entry.complete(seq, frame);
+            }
+            accept(room, seq, frame);
+            broadcast(room, frame, built - parsed);
+        });
+    }
+
+    /**
+     * Rules on each item of a batch individually and answers with a single batch response
+     * carrying a result per item. When any item is accepted the response is broadcast to
+     * the room, so the sender's copy is its ack; rejected items appear as ERROR results so
+     * that positions line up with the request. A batch with nothing accepted is answered
+     * to the sender only. Accepted items take consecutive sequence numbers and are kept
+     * in history and logged as individual messages. Each valid item takes its own token,
+     * so a batch can be partly rate limited. An item retrying a recent message is
+     * answered with an OK result carrying the original sequence number. JOIN and LEAVE
+     * items update presence and get an OK result without one; they alone do not make the
+     * batch a broadcast.
+     */
+    private void onBatch(Room room, String sessionId, RateLimiter.Bucket bucket, String payload) {
+        List<ChatMessage> messages = new ArrayList<>();
+        List<ValidationResult> rulings = new ArrayList<>();
+        long start = System.nanoTime();
+        ValidationResult result = decoder.decodeBatch(payload, maxBatchSize, messages, rulings);
+        long parsed = System.nanoTime();
+        metrics.record(Phase.PARSE, parsed - start);
+        if (!result.isValid()) {
+            sendError(sessionId, result.getErrorMessage(), null);
+            return;
+        }
+        if (!admission.tryAdmit()) {
+            shed(sessionId, null);
+            return;
+        }
+
+        int accepted = 0;
+        // Per item, the entry remembering it once accepted, or the original of a retry
+        RecentMessageIds.Entry[] entries = new RecentMessageIds.Entry[rulings.size()];
+        boolean[] retries = new boolean[rulings.size()];
+        for (int i = 0; i < rulings.size(); i++) {
+            if (!rulings.get(i).isValid()) {
+                continue;
+            }
+            int userId = Integer.parseInt(messages.get(i).getUserId());
+            String messageId = messages.get(i).getMessageId();
+            RecentMessageIds.Entry original = retryOf(room, messageId, userId);
+            if (original == null) {
+                if (!rateLimiter.tryAcquire(bucket, userId)) {
+                    rulings.set(i, RateLimiter.RATE_LIMITED);
+                    continue;
+                }
+                entries[i] = messageId != null ? new RecentMessageIds.Entry(userId) : UNTRACKED;
+                original = claim(room, messageId, entries[i]);
+            }
+            if (original != null) {
+                entries[i] = original;
+                retries[i] = true;
+            } else if (!isPresence(messages.get(i))) {
+                accepted++;
+            }
+        }
+        int toSequence = accepted;
+        submit(room, parsed, () -> completeBatch(room, sessionId, messages, rulings, entries, retries, toSequence));
+    }
+
+    /**
+     * The part of {@link #onBatch} run by the room: numbers, records and answers the
+     * admitted items.
+     */
+    private void completeBatch(Room room, String sessionId, List<ChatMessage> messages, List<ValidationResult> rulings,
+                               RecentMessageIds.Entry[] entries, boolean[] retries, int accepted) {
+        long built = System.nanoTime();
+        String serverTimestamp = clock.isoString();
+        long seq = accepted > 0 ? sessionManager.nextSequence(room, accepted) : 0;
+        List<ServerResponse> results = new ArrayList<>(rulings.size());
+        for (int i = 0; i < rulings.size(); i++) {
+            ValidationResult ruling = rulings.get(i);
+            if (retries[i]) {
+                metrics.recordRetry();
+                long originalSeq = entries[i].getSeq();
+                results.add(originalSeq > 0 ? ServerResponse.success(messages.get(i), null, originalSeq)
+                        : ServerResponse.success(messages.get(i), null));
+            } else if (ruling.isValid() && isPresence(messages.get(i))) {
+                sessionManager.updatePresence(room, sessionId, Integer.parseInt(messages.get(i).getUserId()),
+                        "JOIN".equals(messages.get(i).getMessageType()));
+                results.add(ServerResponse.success(messages.get(i), null));
+                if (entries[i] != UNTRACKED) {
+                    entries[i].complete(0, OutboundFrame.of(ServerResponse.success(messages.get(i), serverTimestamp)));
+                }
+            } else if (ruling.isValid()) {
+                results.add(ServerResponse.success(messages.get(i), null, seq));
+                OutboundFrame item = OutboundFrame.of(ServerResponse.success(messages.get(i), serverTimestamp, seq));
+                if (entries[i] != UNTRACKED) {
+                    entries[i].complete(seq, item);
+                }
+                accept(room, seq, item);
+                seq++;
+            } else {
+                metrics.recordError(ruling.getErrorMessage());
+                ChatMessage message = messages.get(i);
+                results.add(ServerResponse.error(ruling.getErrorMessage(),
+                        message != null ? message.getMessageId() : null));
+            }
+        }
+        OutboundFrame frame = OutboundFrame.of(ServerResponse.batch(results, serverTimestamp));
+        if (accepted > 0) {
+            broadcast(room, frame, System.nanoTime() - built);
+        } else {
+            sessionManager.send(sessionId, frame);
+        }
+    }
+
+    /**
+     * Admits a valid message, unless it retries a recent message, which is answered with
+     * the original ack, or is over the rate limit, which is answered with an error; null
+     * is returned for both. Otherwise returns the entry remembering the message under its
+     * messageId, to complete once it is sequenced, or {@link #UNTRACKED} if it has none.
+     */
+    private RecentMessageIds.Entry admit(Room room, String sessionId, RateLimiter.Bucket bucket,
+                                         int userId, String messageId) {
+        RecentMessageIds.Entry original = retryOf(room, messageId, userId);
+        if (original == null) {
+            if (!rateLimiter.tryAcquire(bucket, userId)) {
+                sendError(sessionId, RateLimiter.RATE_LIMITED.getErrorMessage(), messageId);
+                return null;
+            }
+            RecentMessageIds.Entry entry = messageId != null ? new RecentMessageIds.Entry(userId) : UNTRACKED;
+            original = claim(room, messageId, entry);
+            if (original == null) {
+                return entry;
+            }
+        }
+        metrics.recordRetry();
+        // Without an ack yet the original is still being handled; its broadcast reaches the sender
+        OutboundFrame ack = original.getAck();
+        if (ack != null) {
+            sessionManager.send(sessionId, ack);
+        }
+        return null;
+    }
+
+    /**
+     * The recent message in the room that this one retries: the same messageId from the
+     * same user. Null if there is none.
+     */
+    private RecentMessageIds.Entry retryOf(Room room, String messageId, int userId) {
+        RecentMessageIds.Entry original = sessionManager.findRecent(room, messageId);
+        return original != null && original.getUserId() == userId ? original : null;
+    }
+
+    /**
+     * Remembers a message about to be accepted under its messageId. Another message with
+     * the id may have been claimed since {@link #retryOf} looked; if it came from the same
+     * user it is returned, and this one is a retry after all. An id taken by another user
+     * is not remembered again.
+     */
+    private RecentMessageIds.Entry claim(Room room, String messageId, RecentMessageIds.Entry entry) {
+        if (entry == UNTRACKED) {
+            return null;
+        }
+        RecentMessageIds.Entry original = sessionManager.remember(room, messageId, entry);
+        return original != null && original.getUserId() == entry.getUserId() ? original : null;
+    }
+
+    private static boolean isPresence(ChatMessage message) {
+        return !"TEXT".equals(message.getMessageType());
+    }
+
+    /**
+     * Applies an admitted JOIN or LEAVE to the room's presence and acks it to the sender.
+     */
+    private void updatePresence(Room room, String sessionId, int userId, boolean join,
+                                RecentMessageIds.Entry entry, OutboundFrame ack) {
+        sessionManager.updatePresence(room, sessionId, userId, join);
+        if (entry != UNTRACKED) {
+            entry.complete(0, ack);
+        }
+        sessionManager.send(sessionId, ack);
+    }
+
+    /**
+     * Keeps an accepted message for replay and hands it to the log. Runs before the
+     * broadcast so that a session joining meanwhile either has it replayed or receives
+     * the broadcast.
+     */
+    private void accept(Room room, long seq, OutboundFrame frame) {
+        sessionManager.record(room, seq, frame);
+        messageLog.append(room.getId(), frame);
+    }
+
+    /**
+     * Broadcasts a frame, timing it as the send phase. Encodings are produced lazily by the
+     * first recipient of each format, so time spent in them counts as serialization, along
+     * with {@code buildNanos} spent building the response.
+     */
+    private void broadcast(Room room, OutboundFrame frame, long buildNanos) {
+        long encodedBefore = frame.getEncodeNanos();
+        long start = System.nanoTime();
+        sessionManager.broadcast(room, frame);
+        long elapsed = System.nanoTime() - start;
+        long encodeNanos = frame.getEncodeNanos();
+        metrics.record(Phase.SERIALIZE, buildNanos + encodeNanos);
+        // Chunks fanned out in parallel may encode at once, adding up to more than elapsed
+        metrics.record(Phase.SEND, Math.max(0, elapsed - (encodeNanos - encodedBefore)));
+    }
+
+    /**
+     * Hands an admitted message's remaining work to the room's worker, reporting to
+     * admission control how long it waited there and when it is done.
+     */
+    private void submit(Room room, long admitted, Runnable work) {
+        roomExecutor.execute(room, () -> {
+            admission.started(System.nanoTime() - admitted);
+            try {
+                work.run();
+            } finally {
+                admission.finished();
+            }
+        });
+    }
+
+    /**
+     * Rejects a message because the node is overloaded, with an answer spliced from
+     * pre-encoded parts.
+     */
+    private void shed(String sessionId, String messageId) {
+        metrics.recordError(AdmissionControl.OVERLOADED.getErrorMessage());
+        sessionManager.send(sessionId, AdmissionControl.overloaded(messageId));
+    }
+
+    private void sendError(String sessionId, String errorMessage, String messageId) {
+        metrics.recordError(errorMessage);
+        sessionManager.send(sessionId, OutboundFrame.of(ServerResponse.error(errorMessage, messageId)));
+    }
+
+    /**
+     * Builds a processor from {@link #builder}'s defaults and what is set on it.
+     */
+    public static final class Builder {
+
+        private final MessageValidator validator;
+        private final RoomSessionManager sessionManager;
+        private InboundProperties inboundProperties = new InboundProperties();
+        private MessageLog messageLog = MessageLog.NONE;
+        private ServerMetrics metrics = new ServerMetrics();
+        private RateLimiter rateLimiter = new RateLimiter();
+        private ServerClock clock = ServerClock.PRECISE;
+        private RoomExecutor roomExecutor = RoomExecutor.INLINE;
+        private AdmissionControl admission = new AdmissionControl();
+
+        private Builder(MessageValidator validator, RoomSessionManager sessionManager) {
+            this.validator = validator;
+            this.sessionManager = sessionManager;
+        }
+
+        public Builder inboundProperties(InboundProperties inboundProperties) {
+            this.inboundProperties = inboundProperties;
+            return this;
+        }
+
+        public Builder messageLog(MessageLog messageLog) {
+            this.messageLog = messageLog;
+            return this;
+        }
+
+        public Builder metrics(ServerMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        public Builder rateLimiter(RateLimiter rateLimiter) {
+            this.rateLimiter = rateLimiter;
+            return this;
+        }
+
+        public Builder clock(ServerClock clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        public Builder roomExecutor(RoomExecutor roomExecutor) {
+            this.roomExecutor = roomExecutor;
+            return this;
+        }
+
+        public Builder admission(AdmissionControl admission) {
+            this.admission = admission;
+            return this;
+        }
+
+        public ChatMessageProcessor build() {
+            return new ChatMessageProcessor(validator, sessionManager, inboundProperties, messageLog, metrics,
+                    rateLimiter, clock, roomExecutor, admission);
+        }
+    }
+}
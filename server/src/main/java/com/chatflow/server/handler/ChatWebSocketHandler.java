@@ -1,85 +1,77 @@
 package com.chatflow.server.handler;
 
-import com.chatflow.server.model.ChatMessage;
-import com.chatflow.server.model.ServerResponse;
+import com.chatflow.server.codec.FrameFormat;
+import com.chatflow.server.config.InboundProperties;
+import com.chatflow.server.session.Room;
 import com.chatflow.server.session.RoomSessionManager;
-import com.chatflow.server.validation.MessageValidator;
-import com.chatflow.server.validation.MessageValidator.ValidationResult;
-import com.google.gson.Gson;
-import com.google.gson.JsonSyntaxException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 
-import java.time.Instant;
+import java.io.IOException;
 
 @Component
 public class ChatWebSocketHandler extends TextWebSocketHandler {
 
     private static final Logger log = LoggerFactory.getLogger(ChatWebSocketHandler.class);
-    private final Gson gson = new Gson();
-    private final MessageValidator validator;
+    private final ChatMessageProcessor processor;
     private final RoomSessionManager sessionManager;
+    private final PartialFrames partialFrames;
 
-    public ChatWebSocketHandler(MessageValidator validator, RoomSessionManager sessionManager) {
-        this.validator = validator;
+    @Autowired
+    public ChatWebSocketHandler(ChatMessageProcessor processor, RoomSessionManager sessionManager,
+                                InboundProperties inboundProperties) {
+        this.processor = processor;
         this.sessionManager = sessionManager;
+        this.partialFrames = new PartialFrames((int) inboundProperties.getMaxFrameSize().toBytes());
     }
 
     @Override
-    public void afterConnectionEstablished(WebSocketSession session) {
-        String roomId = extractRoomId(session);
-        sessionManager.addSession(roomId, session);
-        log.info("Connection established: session={}, room={}", session.getId(), roomId);
+    public void afterConnectionEstablished(WebSocketSession session) throws IOException {
+        String roomId = RoomIds.roomIdOf(session.getAttributes(), session.getUri());
+        if (roomId == null) {
+            session.close(CloseStatus.BAD_DATA.withReason("Invalid room id"));
+            return;
+        }
+        Room room = sessionManager.addSession(roomId, session, FrameFormat.TEXT, RoomIds.since(session.getUri()));
+        session.getAttributes().put(RoomIds.ROOM_ATTRIBUTE, room);
+        log.info("Connection established: session={}, room={}", session.getId(), room.getId());
     }
 
     @Override
     protected void handleTextMessage(WebSocketSession session, TextMessage textMessage) throws Exception {
-        String payload = textMessage.getPayload();
-
-        // Parse JSON
-        ChatMessage chatMessage;
-        try {
-            chatMessage = gson.fromJson(payload, ChatMessage.class);
-        } catch (JsonSyntaxException e) {
-            ServerResponse errorResponse = ServerResponse.error("Invalid JSON format");
-            session.sendMessage(new TextMessage(gson.toJson(errorResponse)));
-            return;
-        }
-
-        // Validate
-        ValidationResult result = validator.validate(chatMessage);
-        if (!result.isValid()) {
-            ServerResponse errorResponse = ServerResponse.error(result.getErrorMessage());
-            session.sendMessage(new TextMessage(gson.toJson(errorResponse)));
-            return;
+        String payload = partialFrames.text(session, textMessage);
+        Room room = payload != null ? roomOf(session) : null;
+        if (room != null) {
+            processor.onText(room, session.getId(), processor.bucketOf(session.getAttributes()), payload);
         }
+    }
 
-        // Echo back with server timestamp
-        ServerResponse successResponse = ServerResponse.success(chatMessage, Instant.now().toString());
-        session.sendMessage(new TextMessage(gson.toJson(successResponse)));
+    @Override
+    public boolean supportsPartialMessages() {
+        return true;
     }
 
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
-        String roomId = extractRoomId(session);
-        sessionManager.removeSession(roomId, session);
-        log.info("Connection closed: session={}, room={}, status={}", session.getId(), roomId, status);
+        Room room = roomOf(session);
+        if (room != null) {
+            sessionManager.leave(room, session.getId());
+        }
+        log.info("Connection closed: session={}, room={}, status={}", session.getId(), room, status);
+    }
+
+    private static Room roomOf(WebSocketSession session) {
+        return RoomIds.roomOf(session.getAttributes());
     }
 
     @Override
     public void handleTransportError(WebSocketSession session, Throwable exception) {
         log.error("Transport error: session={}, error={}", session.getId(), exception.getMessage());
     }
-
-    private String extractRoomId(WebSocketSession session) {
-        String path = session.getUri().getPath();
-        // Path is /chat/{roomId}
-        String[] parts = path.split("/");
-        return parts.length >= 3 ? parts[2] : "default";
-    }
 }
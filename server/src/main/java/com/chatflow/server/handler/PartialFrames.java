@@ -0,0 +1,91 @@
+package com.chatflow.server.handler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Reassembles frames the container delivers in parts because they exceed its per-session
+ * buffer. The container allocates that buffer eagerly for every connection, so it is kept
+ * small; only a session that is mid-way through a large frame holds a reassembly buffer.
+ *
+ * <p>A frame over the size limit closes the session with 1009, as the container would.
+ */
+class PartialFrames {
+
+    private static final Logger log = LoggerFactory.getLogger(PartialFrames.class);
+    private static final String TEXT = PartialFrames.class.getName() + ".text";
+    private static final String BINARY = PartialFrames.class.getName() + ".binary";
+
+    private final int maxFrameSize;
+
+    PartialFrames(int maxFrameSize) {
+        this.maxFrameSize = maxFrameSize;
+    }
+
+    /**
+     * Returns the complete payload once the last part arrives, otherwise null.
+     * The size limit is in chars for text frames.
+     */
+    String text(WebSocketSession session, TextMessage part) throws IOException {
+        StringBuilder pending = (StringBuilder) session.getAttributes().get(TEXT);
+        if (pending == null) {
+            if (part.isLast()) {
+                return part.getPayload();
+            }
+            pending = new StringBuilder();
+            session.getAttributes().put(TEXT, pending);
+        }
+        pending.append(part.getPayload());
+        if (pending.length() > maxFrameSize) {
+            session.getAttributes().remove(TEXT);
+            tooBig(session);
+            return null;
+        }
+        if (!part.isLast()) {
+            return null;
+        }
+        session.getAttributes().remove(TEXT);
+        return pending.toString();
+    }
+
+    /**
+     * Returns the complete payload once the last part arrives, otherwise null.
+     */
+    ByteBuffer binary(WebSocketSession session, BinaryMessage part) throws IOException {
+        ByteArrayOutputStream pending = (ByteArrayOutputStream) session.getAttributes().get(BINARY);
+        if (pending == null) {
+            if (part.isLast()) {
+                return part.getPayload();
+            }
+            pending = new ByteArrayOutputStream();
+            session.getAttributes().put(BINARY, pending);
+        }
+        ByteBuffer payload = part.getPayload();
+        if (pending.size() + payload.remaining() > maxFrameSize) {
+            session.getAttributes().remove(BINARY);
+            tooBig(session);
+            return null;
+        }
+        byte[] bytes = new byte[payload.remaining()];
+        payload.get(bytes);
+        pending.write(bytes);
+        if (!part.isLast()) {
+            return null;
+        }
+        session.getAttributes().remove(BINARY);
+        return ByteBuffer.wrap(pending.toByteArray());
+    }
+
+    private void tooBig(WebSocketSession session) throws IOException {
+        log.warn("Frame exceeds {} bytes, closing session={}", maxFrameSize, session.getId());
+        session.close(CloseStatus.TOO_BIG_TO_PROCESS);
+    }
+}
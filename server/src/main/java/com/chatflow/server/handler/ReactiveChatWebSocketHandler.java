@@ -0,0 +1,98 @@
+package com.chatflow.server.handler;
+
+import com.chatflow.server.codec.FrameFormat;
+import com.chatflow.server.ratelimit.RateLimiter;
+import com.chatflow.server.session.ReactiveOutboundQueue;
+import com.chatflow.server.session.Room;
+import com.chatflow.server.session.RoomSessionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.web.reactive.socket.CloseStatus;
+import org.springframework.web.reactive.socket.WebSocketHandler;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+import org.springframework.web.reactive.socket.WebSocketSession;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+
+/**
+ * Serves {@code /chat/{roomId}} or {@code /chat-bin/{roomId}} on the reactive engine, with
+ * the same processing and room membership as the servlet handlers. Inbound frames are
+ * handled on the event loop, which only ever queues outbound frames; the outbound side is
+ * written as the transport signals demand.
+ */
+public class ReactiveChatWebSocketHandler implements WebSocketHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(ReactiveChatWebSocketHandler.class);
+
+    private final ChatMessageProcessor processor;
+    private final RoomSessionManager sessionManager;
+    private final FrameFormat format;
+
+    public ReactiveChatWebSocketHandler(ChatMessageProcessor processor, RoomSessionManager sessionManager,
+                                        FrameFormat format) {
+        this.processor = processor;
+        this.sessionManager = sessionManager;
+        this.format = format;
+    }
+
+    @Override
+    public Mono<Void> handle(WebSocketSession session) {
+        URI uri = session.getHandshakeInfo().getUri();
+        String roomId = RoomIds.roomIdOf(session.getAttributes(), uri);
+        if (roomId == null) {
+            return session.close(CloseStatus.BAD_DATA.withReason("Invalid room id"));
+        }
+        String sessionId = session.getId();
+        ReactiveOutboundQueue queue = new ReactiveOutboundQueue(session, format, sessionManager.limitsFor(roomId));
+        Room room = sessionManager.join(roomId, queue, RoomIds.since(uri));
+        RateLimiter.Bucket bucket = processor.newSessionBucket();
+        log.info("Connection established: session={}, room={}", sessionId, room.getId());
+
+        Mono<Void> inbound = session.receive()
+                .doOnNext(message -> onMessage(session, room, bucket, message))
+                .doOnError(e -> log.error("Transport error: session={}, error={}", sessionId, e.getMessage()))
+                .onErrorComplete()
+                .then()
+                // Leaving closes the queue, which completes the outbound side
+                .doFinally(signal -> {
+                    sessionManager.leave(room, sessionId);
+                    log.info("Connection closed: session={}, room={}", sessionId, room.getId());
+                });
+        Mono<Void> outbound = session.send(queue.frames());
+        return Mono.when(inbound, outbound);
+    }
+
+    private void onMessage(WebSocketSession session, Room room, RateLimiter.Bucket bucket, WebSocketMessage message) {
+        switch (message.getType()) {
+            case TEXT -> {
+                if (format == FrameFormat.TEXT) {
+                    processor.onText(room, session.getId(), bucket, message.getPayloadAsText());
+                    return;
+                }
+            }
+            case BINARY -> {
+                if (format == FrameFormat.BINARY) {
+                    processor.onBinary(room, session.getId(), bucket, copy(message.getPayload()));
+                    return;
+                }
+            }
+            default -> {
+                return;
+            }
+        }
+        // As on the servlet engine, each endpoint accepts only its own frame type
+        session.close(CloseStatus.NOT_ACCEPTABLE.withReason(
+                message.getType() == WebSocketMessage.Type.TEXT ? "Text messages not supported"
+                        : "Binary messages not supported")).subscribe();
+    }
+
+    // The payload buffer is released once this frame is handled
+    private static ByteBuffer copy(DataBuffer payload) {
+        byte[] bytes = new byte[payload.readableByteCount()];
+        payload.read(bytes);
+        return ByteBuffer.wrap(bytes);
+    }
+}
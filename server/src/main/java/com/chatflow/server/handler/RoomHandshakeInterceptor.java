@@ -0,0 +1,74 @@
+package com.chatflow.server.handler;
+
+import com.chatflow.server.admission.AdmissionControl;
+import com.chatflow.server.cluster.RoomPlacement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import java.util.Map;
+
+/**
+ * Resolves the room of a servlet WebSocket connection once, at the handshake: a valid
+ * room id is stored in the session attributes, and anything else is refused with 400
+ * before the connection is upgraded. The room itself is only created when the session
+ * joins it, so a handshake that goes no further leaves nothing behind. With redirects on,
+ * a room that {@link RoomPlacement} puts on another node is answered with 307 and the
+ * same path and query on the owner. While {@link AdmissionControl} refuses handshakes,
+ * connections are answered with 503 so that clients back off or go elsewhere.
+ */
+public class RoomHandshakeInterceptor implements HandshakeInterceptor {
+
+    private static final Logger log = LoggerFactory.getLogger(RoomHandshakeInterceptor.class);
+
+    private final RoomPlacement placement;
+    private final AdmissionControl admission;
+
+    public RoomHandshakeInterceptor() {
+        this(new RoomPlacement());
+    }
+
+    public RoomHandshakeInterceptor(RoomPlacement placement) {
+        this(placement, new AdmissionControl());
+    }
+
+    public RoomHandshakeInterceptor(RoomPlacement placement, AdmissionControl admission) {
+        this.placement = placement;
+        this.admission = admission;
+    }
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        String roomId = RoomIds.fromPath(request.getURI().getPath());
+        if (roomId == null) {
+            log.warn("Handshake refused, invalid room: path={}", request.getURI().getPath());
+            response.setStatusCode(HttpStatus.BAD_REQUEST);
+            return false;
+        }
+        String query = request.getURI().getRawQuery();
+        String redirect = placement.redirectFor(roomId,
+                request.getURI().getRawPath() + (query != null ? "?" + query : ""));
+        if (redirect != null) {
+            response.setStatusCode(HttpStatus.TEMPORARY_REDIRECT);
+            response.getHeaders().set(HttpHeaders.LOCATION, redirect);
+            return false;
+        }
+        if (admission.refusesHandshakes()) {
+            response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+            return false;
+        }
+        attributes.put(RoomIds.ROOM_ID_ATTRIBUTE, roomId);
+        return true;
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Exception exception) {
+    }
+}
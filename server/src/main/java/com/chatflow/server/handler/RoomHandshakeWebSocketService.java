@@ -0,0 +1,67 @@
+package com.chatflow.server.handler;
+
+import com.chatflow.server.admission.AdmissionControl;
+import com.chatflow.server.cluster.RoomPlacement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.socket.WebSocketHandler;
+import org.springframework.web.reactive.socket.server.RequestUpgradeStrategy;
+import org.springframework.web.reactive.socket.server.support.HandshakeWebSocketService;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactive counterpart of {@link RoomHandshakeInterceptor}: resolves the room before the
+ * upgrade, refuses invalid room ids with 400, redirects rooms owned by another node,
+ * answers 503 while {@link AdmissionControl} refuses handshakes and hands the room id
+ * to the session as an attribute.
+ */
+public class RoomHandshakeWebSocketService extends HandshakeWebSocketService {
+
+    private static final Logger log = LoggerFactory.getLogger(RoomHandshakeWebSocketService.class);
+
+    private final RoomPlacement placement;
+    private final AdmissionControl admission;
+
+    public RoomHandshakeWebSocketService(RequestUpgradeStrategy upgradeStrategy) {
+        this(upgradeStrategy, new RoomPlacement());
+    }
+
+    public RoomHandshakeWebSocketService(RequestUpgradeStrategy upgradeStrategy, RoomPlacement placement) {
+        this(upgradeStrategy, placement, new AdmissionControl());
+    }
+
+    public RoomHandshakeWebSocketService(RequestUpgradeStrategy upgradeStrategy, RoomPlacement placement,
+                                         AdmissionControl admission) {
+        super(upgradeStrategy);
+        this.placement = placement;
+        this.admission = admission;
+        setSessionAttributePredicate(RoomIds.ROOM_ID_ATTRIBUTE::equals);
+    }
+
+    @Override
+    public Mono<Void> handleRequest(ServerWebExchange exchange, WebSocketHandler handler) {
+        String path = exchange.getRequest().getPath().pathWithinApplication().value();
+        String roomId = RoomIds.fromPath(path);
+        if (roomId == null) {
+            log.warn("Handshake refused, invalid room: path={}", path);
+            exchange.getResponse().setStatusCode(HttpStatus.BAD_REQUEST);
+            return exchange.getResponse().setComplete();
+        }
+        String query = exchange.getRequest().getURI().getRawQuery();
+        String redirect = placement.redirectFor(roomId, path + (query != null ? "?" + query : ""));
+        if (redirect != null) {
+            exchange.getResponse().setStatusCode(HttpStatus.TEMPORARY_REDIRECT);
+            exchange.getResponse().getHeaders().set(HttpHeaders.LOCATION, redirect);
+            return exchange.getResponse().setComplete();
+        }
+        if (admission.refusesHandshakes()) {
+            exchange.getResponse().setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+            return exchange.getResponse().setComplete();
+        }
+        exchange.getAttributes().put(RoomIds.ROOM_ID_ATTRIBUTE, roomId);
+        return super.handleRequest(exchange, handler);
+    }
+}
@@ -0,0 +1,88 @@
+package com.chatflow.server.handler;
+
+import com.chatflow.server.session.Room;
+import com.chatflow.server.session.RoomSessionManager;
+
+import java.net.URI;
+import java.util.Map;
+
+final class RoomIds {
+
+    /** Session attribute holding the connection's room id, set at the handshake. */
+    static final String ROOM_ID_ATTRIBUTE = "chatflow.roomId";
+    /** Session attribute holding the connection's {@link Room}, set once it has joined. */
+    static final String ROOM_ATTRIBUTE = "chatflow.room";
+    static final int MAX_LENGTH = 64;
+
+    private RoomIds() {
+    }
+
+    /**
+     * The room id in a {@code /chat/{roomId}} or {@code /chat-bin/{roomId}} path, or null
+     * if there is none or it is not 1 to 64 letters, digits, '-' or '_'.
+     */
+    static String fromPath(String path) {
+        int start = path.indexOf('/', 1);
+        if (start < 0) {
+            return null;
+        }
+        String roomId = path.substring(start + 1);
+        return isValid(roomId) ? roomId : null;
+    }
+
+    static boolean isValid(String roomId) {
+        int length = roomId.length();
+        if (length == 0 || length > MAX_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = roomId.charAt(i);
+            if (!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-' || c == '_')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The connection's room id from its session attributes. A session that did not come
+     * through the handshake checks, as in tests, has it parsed from its URI instead. Null
+     * if the URI names no valid room.
+     */
+    static String roomIdOf(Map<String, Object> attributes, URI uri) {
+        Object roomId = attributes.get(ROOM_ID_ATTRIBUTE);
+        if (roomId != null) {
+            return (String) roomId;
+        }
+        return uri != null ? fromPath(uri.getPath()) : null;
+    }
+
+    /**
+     * The room the connection joined, or null if it has not.
+     */
+    static Room roomOf(Map<String, Object> attributes) {
+        return (Room) attributes.get(ROOM_ATTRIBUTE);
+    }
+
+    /**
+     * The sequence number a client resumes after, from {@code ?since=<seq>}, or
+     * {@link RoomSessionManager#NO_SEQUENCE} if it is absent or not a valid number.
+     */
+    static long since(URI uri) {
+        String query = uri != null ? uri.getRawQuery() : null;
+        if (query == null) {
+            return RoomSessionManager.NO_SEQUENCE;
+        }
+        for (String parameter : query.split("&")) {
+            if (parameter.startsWith("since=")) {
+                try {
+                    long since = Long.parseLong(parameter.substring("since=".length()));
+                    return since >= 0 ? since : RoomSessionManager.NO_SEQUENCE;
+                } catch (NumberFormatException e) {
+                    return RoomSessionManager.NO_SEQUENCE;
+                }
+            }
+        }
+        return RoomSessionManager.NO_SEQUENCE;
+    }
+}
@@ -0,0 +1,22 @@
+package com.chatflow.server.metrics;
+
+/**
+ * Stages of handling an inbound message, each timed by {@link ServerMetrics}.
+ */
+public enum Phase {
+
+    /** Parsing and validating the payload, which the decoders do in a single pass. */
+    PARSE("parse"),
+    /** Building the response and encoding it in each wire format the room needs. */
+    SERIALIZE("serialize"),
+    /** Handing the encoded frame to the outbound queue of every member of the room. */
+    SEND("send");
+
+    private final String label;
+
+    Phase(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() { return label; }
+}
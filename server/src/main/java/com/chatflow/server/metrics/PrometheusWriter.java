@@ -0,0 +1,68 @@
+package com.chatflow.server.metrics;
+
+/**
+ * Writes samples in the Prometheus text exposition format, version 0.0.4.
+ */
+public final class PrometheusWriter {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final StringBuilder out = new StringBuilder(4096);
+
+    /**
+     * Starts a metric family; its samples follow.
+     */
+    public PrometheusWriter family(String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        return this;
+    }
+
+    public PrometheusWriter sample(String name, double value) {
+        out.append(name).append(' ');
+        return value(value);
+    }
+
+    public PrometheusWriter sample(String name, String label, String labelValue, double value) {
+        out.append(name).append('{').append(label).append("=\"");
+        escape(labelValue);
+        out.append("\"} ");
+        return value(value);
+    }
+
+    public PrometheusWriter sample(String name, String label, String labelValue,
+                                   String label2, String labelValue2, double value) {
+        out.append(name).append('{').append(label).append("=\"");
+        escape(labelValue);
+        out.append("\",").append(label2).append("=\"");
+        escape(labelValue2);
+        out.append("\"} ");
+        return value(value);
+    }
+
+    private PrometheusWriter value(double value) {
+        if (value == (long) value) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+        out.append('\n');
+        return this;
+    }
+
+    // Label values escape backslash, double quote and line feed
+    private void escape(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\' -> out.append("\\\\");
+                case '"' -> out.append("\\\"");
+                case '\n' -> out.append("\\n");
+                default -> out.append(c);
+            }
+        }
+    }
+
+    @Override
+    public String toString() { return out.toString(); }
+}
@@ -0,0 +1,122 @@
+package com.chatflow.server.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Handler phase latencies and rejection counts, cheap enough to stay on in production.
+ * Each phase records into an HdrHistogram {@link Recorder}, which is wait-free for the
+ * recording threads and preallocated for its full range, so recording is an index
+ * computation and an increment with no locking or allocation. Rejections are counted by
+ * their validation error, which is always one of a fixed set of messages, and retries of
+ * recent messages are counted too.
+ *
+ * <p>A scrape swaps each recorder's interval histogram out: quantiles describe the
+ * messages handled since the previous scrape, while counts and sums are cumulative.
+ */
+@Component
+public class ServerMetrics {
+
+    private static final long MAX_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final int SIGNIFICANT_DIGITS = 3;
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private final Map<Phase, PhaseTimer> timers = new EnumMap<>(Phase.class);
+    private final ConcurrentHashMap<String, LongAdder> errors = new ConcurrentHashMap<>();
+    private final LongAdder retries = new LongAdder();
+
+    public ServerMetrics() {
+        for (Phase phase : Phase.values()) {
+            timers.put(phase, new PhaseTimer());
+        }
+    }
+
+    /**
+     * Records the time one message spent in a phase; out of range values are clamped.
+     */
+    public void record(Phase phase, long nanos) {
+        timers.get(phase).recorder.recordValue(Math.max(0, Math.min(nanos, MAX_NANOS)));
+    }
+
+    public void recordError(String reason) {
+        LongAdder count = errors.get(reason);
+        if (count == null) {
+            count = errors.computeIfAbsent(reason, k -> new LongAdder());
+        }
+        count.increment();
+    }
+
+    /**
+     * Counts a message recognized as a retry and answered with its original ack.
+     */
+    public void recordRetry() {
+        retries.increment();
+    }
+
+    public long getRetryCount() { return retries.sum(); }
+
+    public long getErrorCount(String reason) {
+        LongAdder count = errors.get(reason);
+        return count != null ? count.sum() : 0;
+    }
+
+    /**
+     * Messages recorded in a phase since startup.
+     */
+    public long getCount(Phase phase) {
+        PhaseTimer timer = timers.get(phase);
+        synchronized (timer) {
+            timer.roll();
+            return timer.total.getTotalCount();
+        }
+    }
+
+    public void writeTo(PrometheusWriter out) {
+        out.family("chatflow_phase_seconds", "summary",
+                "Time spent per message in each handler phase; quantiles since the previous scrape.");
+        for (Map.Entry<Phase, PhaseTimer> entry : timers.entrySet()) {
+            String phase = entry.getKey().getLabel();
+            PhaseTimer timer = entry.getValue();
+            synchronized (timer) {
+                timer.roll();
+                for (double quantile : QUANTILES) {
+                    double seconds = timer.sinceScrape.getTotalCount() == 0 ? Double.NaN
+                            : timer.sinceScrape.getValueAtPercentile(quantile * 100) / NANOS_PER_SECOND;
+                    out.sample("chatflow_phase_seconds", "phase", phase, "quantile", Double.toString(quantile), seconds);
+                }
+                long count = timer.total.getTotalCount();
+                out.sample("chatflow_phase_seconds_sum", "phase", phase,
+                        count == 0 ? 0 : timer.total.getMean() * count / NANOS_PER_SECOND);
+                out.sample("chatflow_phase_seconds_count", "phase", phase, count);
+                timer.sinceScrape.reset();
+            }
+        }
+
+        out.family("chatflow_rejected_messages_total", "counter", "Messages rejected, by validation error.");
+        errors.forEach((reason, count) -> out.sample("chatflow_rejected_messages_total", "reason", reason, count.sum()));
+        out.family("chatflow_retried_messages_total", "counter", "Retries answered with the original ack.")
+                .sample("chatflow_retried_messages_total", retries.sum());
+    }
+
+    private static final class PhaseTimer {
+        final Recorder recorder = new Recorder(MAX_NANOS, SIGNIFICANT_DIGITS);
+        final Histogram total = new Histogram(MAX_NANOS, SIGNIFICANT_DIGITS);
+        final Histogram sinceScrape = new Histogram(MAX_NANOS, SIGNIFICANT_DIGITS);
+        Histogram interval;
+
+        // Moves what was recorded since the last roll into the totals; callers hold the lock
+        void roll() {
+            interval = recorder.getIntervalHistogram(interval);
+            total.add(interval);
+            sinceScrape.add(interval);
+        }
+    }
+}
@@ -6,6 +6,8 @@ public class ChatMessage {
     private String message;
     private String timestamp;
     private String messageType;
+    // Optional client correlation id; echoed at the top level of ServerResponse instead
+    private transient String messageId;
 
     public ChatMessage() {}
 
@@ -31,4 +33,7 @@ public class ChatMessage {
 
     public String getMessageType() { return messageType; }
     public void setMessageType(String messageType) { this.messageType = messageType; }
+
+    public String getMessageId() { return messageId; }
+    public void setMessageId(String messageId) { this.messageId = messageId; }
 }
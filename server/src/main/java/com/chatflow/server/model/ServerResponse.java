@@ -1,28 +1,89 @@
 package com.chatflow.server.model;
 
+import java.util.List;
+
 public class ServerResponse {
     private String status;
+    private String messageId;
+    // Position of the message in its room, from 1; absent on errors and batch envelopes
+    private Long seq;
     private String serverTimestamp;
     private ChatMessage originalMessage;
     private String error;
+    private List<ServerResponse> results;
+    // Presence updates only
+    private int[] joined;
+    private int[] left;
+    private Integer memberCount;
 
     public static ServerResponse success(ChatMessage message, String serverTimestamp) {
         ServerResponse response = new ServerResponse();
         response.status = "OK";
+        response.messageId = message.getMessageId();
         response.serverTimestamp = serverTimestamp;
         response.originalMessage = message;
         return response;
     }
 
+    /**
+     * Success response for a message accepted into its room at {@code seq}.
+     */
+    public static ServerResponse success(ChatMessage message, String serverTimestamp, long seq) {
+        ServerResponse response = success(message, serverTimestamp);
+        response.seq = seq;
+        return response;
+    }
+
     public static ServerResponse error(String errorMessage) {
+        return error(errorMessage, null);
+    }
+
+    /**
+     * Error response echoing the client's messageId, if the request carried one.
+     */
+    public static ServerResponse error(String errorMessage, String messageId) {
         ServerResponse response = new ServerResponse();
         response.status = "ERROR";
+        response.messageId = messageId;
         response.error = errorMessage;
         return response;
     }
 
+    /**
+     * Response to a batch frame: one OK or ERROR result per item, in request order,
+     * all stamped with the batch's server timestamp.
+     */
+    public static ServerResponse batch(List<ServerResponse> results, String serverTimestamp) {
+        ServerResponse response = new ServerResponse();
+        response.status = "OK";
+        response.serverTimestamp = serverTimestamp;
+        response.results = results;
+        return response;
+    }
+
+    /**
+     * Presence update for a room: the userIds that joined and left since the previous
+     * update, and the number of users now present. Carries no messageId or seq, so
+     * clients matching acks pass it by.
+     */
+    public static ServerResponse presence(int[] joined, int[] left, int memberCount, String serverTimestamp) {
+        ServerResponse response = new ServerResponse();
+        response.status = "PRESENCE";
+        response.serverTimestamp = serverTimestamp;
+        response.joined = joined;
+        response.left = left;
+        response.memberCount = memberCount;
+        return response;
+    }
+
     public String getStatus() { return status; }
+    public String getMessageId() { return messageId; }
+    public Long getSeq() { return seq; }
     public String getServerTimestamp() { return serverTimestamp; }
     public ChatMessage getOriginalMessage() { return originalMessage; }
     public String getError() { return error; }
+    public List<ServerResponse> getResults() { return results; }
+    public int[] getJoined() { return joined; }
+    public int[] getLeft() { return left; }
+    public Integer getMemberCount() { return memberCount; }
 }
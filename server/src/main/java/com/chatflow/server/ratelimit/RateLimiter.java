@@ -0,0 +1,123 @@
+package com.chatflow.server.ratelimit;
+
+import com.chatflow.server.config.RateLimitProperties;
+import com.chatflow.server.validation.MessageValidator;
+import com.chatflow.server.validation.MessageValidator.ValidationResult;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Token buckets per userId and per session, without locks or per-user objects.
+ *
+ * <p>Each bucket is a single long, its theoretical arrival time: the instant at which it
+ * would be full again (the generic cell rate algorithm). Taking a token moves it one
+ * emission interval later, and is refused if that would put it more than a burst ahead
+ * of now. Updating it is one compare-and-set. Users' buckets are slots of an array
+ * indexed by userId and sized to the userId range, so the first message of a user costs
+ * the same as the millionth; sessions each hold a {@link Bucket}.
+ */
+@Component
+public class RateLimiter {
+
+    public static final ValidationResult RATE_LIMITED = ValidationResult.invalid("rate limit exceeded");
+
+    private final AtomicLongArray users = new AtomicLongArray(MessageValidator.MAX_USER_ID + 1);
+    private final long userInterval;
+    private final long userTolerance;
+    private final long sessionInterval;
+    private final long sessionTolerance;
+    // Times are taken from here so that a bucket starting at 0 is full
+    private final long origin = System.nanoTime();
+
+    /**
+     * Default limits. Intended for tests and benchmarks.
+     */
+    public RateLimiter() {
+        this(new RateLimitProperties());
+    }
+
+    @Autowired
+    public RateLimiter(RateLimitProperties properties) {
+        this.userInterval = interval(properties.getUserRate());
+        this.userTolerance = userInterval * Math.max(1, properties.getUserBurst());
+        this.sessionInterval = interval(properties.getSessionRate());
+        this.sessionTolerance = sessionInterval * Math.max(1, properties.getSessionBurst());
+    }
+
+    private static long interval(double rate) {
+        return rate > 0 ? Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / rate)) : 0;
+    }
+
+    /**
+     * A full bucket for a new session.
+     */
+    public Bucket newSessionBucket() {
+        return new Bucket();
+    }
+
+    /**
+     * Takes a token from the session's bucket and then from the user's. If the user's
+     * bucket refuses, the session's token is given back, so a message that is not admitted
+     * costs neither. A userId outside the valid range is only limited per session.
+     */
+    public boolean tryAcquire(Bucket session, int userId) {
+        long now = System.nanoTime() - origin;
+        if (sessionInterval > 0 && !session.tryAcquire(now, sessionInterval, sessionTolerance)) {
+            return false;
+        }
+        if (userInterval == 0 || userId < 0 || userId >= users.length() || tryAcquireUser(userId, now)) {
+            return true;
+        }
+        if (sessionInterval > 0) {
+            session.release(sessionInterval);
+        }
+        return false;
+    }
+
+    private boolean tryAcquireUser(int userId, long now) {
+        while (true) {
+            long tat = users.get(userId);
+            long next = Math.max(tat, now) + userInterval;
+            if (next - now > userTolerance) {
+                return false;
+            }
+            if (users.compareAndSet(userId, tat, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * One session's bucket.
+     */
+    public static final class Bucket {
+
+        private final AtomicLong tat = new AtomicLong();
+
+        private Bucket() {
+        }
+
+        boolean tryAcquire(long now, long interval, long tolerance) {
+            while (true) {
+                long current = tat.get();
+                long next = Math.max(current, now) + interval;
+                if (next - now > tolerance) {
+                    return false;
+                }
+                if (tat.compareAndSet(current, next)) {
+                    return true;
+                }
+            }
+        }
+
+        // Moves the bucket back by the interval a token took; a bucket that was full is
+        // full again, since one starting before now counts as now
+        void release(long interval) {
+            tat.addAndGet(-interval);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.chatflow.server.session;
+
+import com.chatflow.server.codec.FrameFormat;
+import com.chatflow.server.codec.OutboundFrame;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded outbound buffer for one session, independent of the server engine. Producers
+ * never block: frames are queued subject to the overflow policy, and the subclass decides
+ * when they are written by calling {@link #poll()}.
+ *
+ * <p>Limits are checked before enqueueing and are therefore soft under concurrent
+ * producers; they can be exceeded by at most one frame per producing thread.
+ */
+public abstract class AbstractOutboundQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(AbstractOutboundQueue.class);
+
+    private final FrameFormat format;
+    private final OutboundLimits limits;
+
+    private final ConcurrentLinkedDeque<WebSocketMessage<?>> frames = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger depth = new AtomicInteger();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile boolean closed;
+
+    protected AbstractOutboundQueue(FrameFormat format, OutboundLimits limits) {
+        this.format = format;
+        this.limits = limits;
+    }
+
+    public abstract String getSessionId();
+
+    protected abstract boolean isSessionOpen();
+
+    /**
+     * Called after a frame is queued; starts or signals the writer.
+     */
+    protected abstract void onEnqueued();
+
+    /**
+     * Closes the connection of a consumer that fell too far behind.
+     */
+    protected abstract void closeSlowConsumer();
+
+    /**
+     * Queues a frame in this session's wire format. See {@link #offer(WebSocketMessage)}.
+     */
+    public boolean offer(OutboundFrame frame) {
+        if (closed || !isSessionOpen()) {
+            return false;
+        }
+        return offer(frame.encode(format));
+    }
+
+    /**
+     * Queues a frame for delivery. Returns false if the frame was not accepted,
+     * either because the session is gone or because the overflow policy rejected it.
+     */
+    public boolean offer(WebSocketMessage<?> frame) {
+        if (closed || !isSessionOpen()) {
+            return false;
+        }
+        int size = frame.getPayloadLength();
+        if (isFull(size)) {
+            switch (limits.policy()) {
+                case DROP_NEWEST -> {
+                    recordDrop();
+                    return false;
+                }
+                case DISCONNECT -> {
+                    disconnect();
+                    return false;
+                }
+                case DROP_OLDEST -> evictFor(size);
+            }
+        }
+        frames.offerLast(frame);
+        depth.incrementAndGet();
+        bytes.addAndGet(size);
+        limits.queuedCounter().increment();
+        onEnqueued();
+        return true;
+    }
+
+    public FrameFormat getFormat() { return format; }
+    public OverflowPolicy getPolicy() { return limits.policy(); }
+    public int getDepth() { return depth.get(); }
+    public long getQueuedBytes() { return bytes.get(); }
+    public long getDropped() { return dropped.get(); }
+    public boolean isClosed() { return closed; }
+
+    /**
+     * Stops accepting frames and discards the backlog. Called when the session leaves.
+     */
+    public void close() {
+        closed = true;
+        clear();
+    }
+
+    /**
+     * Takes the oldest queued frame, or null if there is none.
+     */
+    protected WebSocketMessage<?> poll() {
+        WebSocketMessage<?> frame = frames.pollFirst();
+        if (frame != null) {
+            depth.decrementAndGet();
+            bytes.addAndGet(-frame.getPayloadLength());
+            limits.queuedCounter().decrement();
+        }
+        return frame;
+    }
+
+    protected boolean isEmpty() {
+        return frames.isEmpty();
+    }
+
+    protected void clear() {
+        while (poll() != null) {
+            // discard
+        }
+    }
+
+    private boolean isFull(int size) {
+        return depth.get() >= limits.maxMessages() || bytes.get() + size > limits.maxBytes();
+    }
+
+    private void evictFor(int size) {
+        while (isFull(size)) {
+            if (poll() == null) {
+                return;
+            }
+            recordDrop();
+        }
+    }
+
+    private void recordDrop() {
+        dropped.incrementAndGet();
+        limits.droppedCounter().increment();
+    }
+
+    private void disconnect() {
+        if (closed) {
+            return;
+        }
+        close();
+        limits.disconnectCounter().increment();
+        log.warn("Disconnecting slow consumer: session={}, depth limit={}, byte limit={}",
+                getSessionId(), limits.maxMessages(), limits.maxBytes());
+        closeSlowConsumer();
+    }
+}
@@ -0,0 +1,10 @@
+package com.chatflow.server.session;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limits for one outbound queue, and the server-wide counters it reports to.
+ */
+public record OutboundLimits(OverflowPolicy policy, int maxMessages, long maxBytes, LongAdder queuedCounter,
+                             LongAdder droppedCounter, LongAdder disconnectCounter) {
+}
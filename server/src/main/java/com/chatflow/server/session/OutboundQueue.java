@@ -0,0 +1,109 @@
+package com.chatflow.server.session;
+
+import com.chatflow.server.codec.FrameFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Outbound queue for a servlet WebSocket session. Sends block, so a single drain task
+ * on the outbound executor writes the frames to the socket, and a slow client only ever
+ * holds up its own drain task. The executor's threads are shared and bounded, so a drain
+ * task writes at most {@value #MAX_FRAMES_PER_DRAIN} frames before queueing itself again
+ * behind the other sessions.
+ */
+public class OutboundQueue extends AbstractOutboundQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboundQueue.class);
+    static final int MAX_FRAMES_PER_DRAIN = 64;
+
+    private final WebSocketSession session;
+    private final Executor executor;
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    public OutboundQueue(WebSocketSession session, FrameFormat format, OverflowPolicy policy,
+                         int maxMessages, long maxBytes, Executor executor,
+                         LongAdder droppedCounter, LongAdder disconnectCounter) {
+        this(session, format, new OutboundLimits(policy, maxMessages, maxBytes, new LongAdder(),
+                        droppedCounter, disconnectCounter),
+                executor);
+    }
+
+    public OutboundQueue(WebSocketSession session, FrameFormat format, OutboundLimits limits, Executor executor) {
+        super(format, limits);
+        this.session = session;
+        this.executor = executor;
+    }
+
+    public WebSocketSession getSession() { return session; }
+
+    @Override
+    public String getSessionId() { return session.getId(); }
+
+    @Override
+    protected boolean isSessionOpen() { return session.isOpen(); }
+
+    @Override
+    protected void onEnqueued() {
+        scheduleDrain();
+    }
+
+    @Override
+    protected void closeSlowConsumer() {
+        execute(() -> {
+            try {
+                session.close(CloseStatus.SESSION_NOT_RELIABLE);
+            } catch (IOException e) {
+                log.debug("Close failed: session={}, error={}", session.getId(), e.getMessage());
+            }
+        });
+    }
+
+    private void scheduleDrain() {
+        if (draining.compareAndSet(false, true) && !execute(this::drain)) {
+            draining.set(false);
+        }
+    }
+
+    private boolean execute(Runnable task) {
+        try {
+            executor.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            log.debug("Outbound executor rejected task: session={}", session.getId());
+            return false;
+        }
+    }
+
+    private void drain() {
+        try {
+            WebSocketMessage<?> frame;
+            for (int sent = 0; sent < MAX_FRAMES_PER_DRAIN && (frame = poll()) != null; sent++) {
+                if (isClosed() || !session.isOpen()) {
+                    clear();
+                    return;
+                }
+                try {
+                    session.sendMessage(frame);
+                } catch (IOException | IllegalStateException e) {
+                    log.debug("Send failed: session={}, error={}", session.getId(), e.getMessage());
+                }
+            }
+        } finally {
+            draining.set(false);
+        }
+        // Frames left after the limit, or enqueued after the last poll but before the flag
+        // was cleared
+        if (!isEmpty() && !isClosed()) {
+            scheduleDrain();
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.chatflow.server.session;
+
+/**
+ * What to do when a session's outbound queue is full.
+ */
+public enum OverflowPolicy {
+    /** Evict the oldest queued frames to make room for the new one. */
+    DROP_OLDEST,
+    /** Discard the new frame and keep the backlog as is. */
+    DROP_NEWEST,
+    /** Close the session; the client is too slow to keep up. */
+    DISCONNECT
+}
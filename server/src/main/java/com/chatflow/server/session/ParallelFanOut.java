@@ -0,0 +1,139 @@
+package com.chatflow.server.session;
+
+import com.chatflow.server.codec.OutboundFrame;
+import com.chatflow.server.config.FanOutProperties;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Delivers broadcasts to the members of a room, splitting those of hot rooms across a
+ * pool of threads.
+ *
+ * <p>Each room keeps a moving average of what its broadcasts cost to deliver: the time
+ * spent queueing the frame for every member, summed over the threads that did it. Below
+ * {@code hotCost}, or with fewer than two chunks' worth of members, a broadcast is
+ * delivered on the broadcasting thread, which for most rooms costs less than handing it
+ * off. Above it, the members are split into chunks of {@code chunkSize} that a fork-join
+ * pool delivers in parallel, while the broadcasting thread waits; a room of 10k members
+ * then holds its room worker for a fraction of the time, and other rooms' workers are
+ * not involved at all. Each broadcast is fully queued before the next one starts, so
+ * every member still receives the room's frames in order.
+ *
+ * <p>The cost is measured the same way in both modes, so a room does not flip back to
+ * inline delivery because splitting made its broadcasts fast.
+ */
+public final class ParallelFanOut implements AutoCloseable {
+
+    /**
+     * Always delivers on the broadcasting thread. Intended for tests and benchmarks.
+     */
+    public static final ParallelFanOut INLINE = new ParallelFanOut(0, Long.MAX_VALUE, Integer.MAX_VALUE);
+
+    private final ForkJoinPool pool;
+    private final long hotNanos;
+    private final int chunkSize;
+    private final LongAdder parallelBroadcasts = new LongAdder();
+
+    public ParallelFanOut(FanOutProperties properties) {
+        this(properties.getThreads(), properties.getHotCost().toNanos(), properties.getChunkSize());
+    }
+
+    public ParallelFanOut(int threads, long hotNanos, int chunkSize) {
+        this.hotNanos = hotNanos;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.pool = threads > 0 ? new ForkJoinPool(threads, ParallelFanOut::newThread, null, false) : null;
+    }
+
+    private static ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("fanout-" + thread.getPoolIndex());
+        return thread;
+    }
+
+    /**
+     * Queues a frame for every member of the room and returns the number that accepted it.
+     */
+    public int fanOut(Room room, OutboundFrame frame) {
+        if (pool != null && room.getFanOutNanos() >= hotNanos && room.size() >= 2 * chunkSize) {
+            return parallel(room, frame);
+        }
+        long start = System.nanoTime();
+        int accepted = 0;
+        for (AbstractOutboundQueue queue : room.queues()) {
+            if (queue.offer(frame)) {
+                accepted++;
+            }
+        }
+        room.fanOutCost(System.nanoTime() - start);
+        return accepted;
+    }
+
+    private int parallel(Room room, OutboundFrame frame) {
+        Delivery delivery = new Delivery(room.memberArray(), frame);
+        pool.invoke(delivery);
+        parallelBroadcasts.increment();
+        room.fanOutCost(delivery.nanos.sum());
+        return delivery.accepted.intValue();
+    }
+
+    /** Broadcasts delivered in chunks, as their room was hot. */
+    public long getParallelBroadcasts() { return parallelBroadcasts.sum(); }
+
+    public boolean isInline() { return pool == null; }
+
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * One broadcast, split in halves until each part is at most a chunk.
+     */
+    private final class Delivery extends RecursiveAction {
+
+        private final AbstractOutboundQueue[] queues;
+        private final OutboundFrame frame;
+        private final int from;
+        private final int to;
+        private final LongAdder accepted;
+        private final LongAdder nanos;
+
+        Delivery(AbstractOutboundQueue[] queues, OutboundFrame frame) {
+            this(queues, frame, 0, queues.length, new LongAdder(), new LongAdder());
+        }
+
+        private Delivery(AbstractOutboundQueue[] queues, OutboundFrame frame, int from, int to,
+                         LongAdder accepted, LongAdder nanos) {
+            this.queues = queues;
+            this.frame = frame;
+            this.from = from;
+            this.to = to;
+            this.accepted = accepted;
+            this.nanos = nanos;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > chunkSize) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Delivery(queues, frame, from, middle, accepted, nanos),
+                        new Delivery(queues, frame, middle, to, accepted, nanos));
+                return;
+            }
+            long start = System.nanoTime();
+            int count = 0;
+            for (int i = from; i < to; i++) {
+                if (queues[i].offer(frame)) {
+                    count++;
+                }
+            }
+            accepted.add(count);
+            nanos.add(System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.chatflow.server.session;
+
+import com.chatflow.server.clock.ServerClock;
+import com.chatflow.server.codec.OutboundFrame;
+import com.chatflow.server.model.ServerResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Announces presence changes to the members of each room, coalesced: every interval it
+ * takes the rooms whose presence changed and sends each one a single PRESENCE update
+ * listing the users who joined and left since the previous one, with the member count.
+ * A mass join of N users thus costs each member one frame per interval instead of N, and
+ * the room N frames in all rather than N².
+ *
+ * <p>Updates are sent from one ticker thread. With an interval of 0 there is no ticker,
+ * and changes are announced only when {@link #flush} is called, as tests do.
+ */
+public final class PresenceBroadcaster implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(PresenceBroadcaster.class);
+
+    private final RoomSessionManager sessionManager;
+    private final ServerClock clock;
+    private final ScheduledExecutorService ticker;
+
+    public PresenceBroadcaster(RoomSessionManager sessionManager, ServerClock clock, long intervalNanos) {
+        this.sessionManager = sessionManager;
+        this.clock = clock;
+        if (intervalNanos <= 0) {
+            this.ticker = null;
+            return;
+        }
+        this.ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "presence-broadcaster");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleWithFixedDelay(this::tick, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Announces every pending presence change and returns the number of rooms updated.
+     */
+    public synchronized int flush() {
+        int updated = 0;
+        Room room;
+        while ((room = sessionManager.pollPresenceChange()) != null) {
+            RoomPresence presence = room.getPresence();
+            RoomPresence.Changes changes = presence.drain();
+            if (changes.isEmpty()) {
+                continue;
+            }
+            sessionManager.announce(room, OutboundFrame.of(
+                    ServerResponse.presence(changes.joined(), changes.left(), presence.count(), clock.isoString())));
+            updated++;
+        }
+        return updated;
+    }
+
+    @Override
+    public void close() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+    }
+
+    private void tick() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            // Keeps the ticker alive; a scheduled task that throws is not run again
+            log.error("Presence update failed: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.chatflow.server.session;
+
+import com.chatflow.server.validation.MessageValidator;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A set of userIds, 1 to {@link MessageValidator#MAX_USER_ID}, as a bitset split into
+ * chunks of 4096 ids that are only allocated once one of their ids is added, in the manner
+ * of a roaring bitmap. A room whose members are a few hundred users spread over the id
+ * space holds some tens of 512-byte chunks rather than 12.5KB, and an empty one holds
+ * none. Bits are set and cleared with compare-and-set, so updates never lock, and the
+ * size is kept exactly as bits change.
+ */
+public final class PresenceSet {
+
+    private static final int CHUNK_BITS = 4096;
+    private static final int WORDS_PER_CHUNK = CHUNK_BITS / 64;
+
+    private final AtomicReferenceArray<AtomicLongArray> chunks =
+            new AtomicReferenceArray<>(MessageValidator.MAX_USER_ID / CHUNK_BITS + 1);
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * Adds a userId; returns false if it was already present.
+     */
+    public boolean add(int userId) {
+        AtomicLongArray chunk = chunk(userId, true);
+        int word = (userId % CHUNK_BITS) >>> 6;
+        long bit = 1L << userId;
+        long current;
+        do {
+            current = chunk.get(word);
+            if ((current & bit) != 0) {
+                return false;
+            }
+        } while (!chunk.compareAndSet(word, current, current | bit));
+        size.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Removes a userId; returns false if it was not present.
+     */
+    public boolean remove(int userId) {
+        AtomicLongArray chunk = chunk(userId, false);
+        if (chunk == null) {
+            return false;
+        }
+        int word = (userId % CHUNK_BITS) >>> 6;
+        long bit = 1L << userId;
+        long current;
+        do {
+            current = chunk.get(word);
+            if ((current & bit) == 0) {
+                return false;
+            }
+        } while (!chunk.compareAndSet(word, current, current & ~bit));
+        size.decrementAndGet();
+        return true;
+    }
+
+    public boolean contains(int userId) {
+        AtomicLongArray chunk = chunk(userId, false);
+        return chunk != null && (chunk.get((userId % CHUNK_BITS) >>> 6) & (1L << userId)) != 0;
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * The userIds present, ascending. Ids added or removed meanwhile may or may not be seen.
+     */
+    public int[] toArray() {
+        return collect(false);
+    }
+
+    /**
+     * Removes every userId and returns those removed, ascending. Each id is returned by
+     * exactly one drain, however drains and adds interleave.
+     */
+    public int[] drain() {
+        return collect(true);
+    }
+
+    private int[] collect(boolean clear) {
+        int[] ids = new int[Math.max(16, size.get())];
+        int count = 0;
+        for (int c = 0; c < chunks.length(); c++) {
+            AtomicLongArray chunk = chunks.get(c);
+            if (chunk == null) {
+                continue;
+            }
+            for (int w = 0; w < WORDS_PER_CHUNK; w++) {
+                long bits = clear ? chunk.getAndSet(w, 0) : chunk.get(w);
+                if (bits == 0) {
+                    continue;
+                }
+                if (clear) {
+                    size.addAndGet(-Long.bitCount(bits));
+                }
+                int base = c * CHUNK_BITS + w * 64;
+                while (bits != 0) {
+                    if (count == ids.length) {
+                        ids = Arrays.copyOf(ids, ids.length * 2);
+                    }
+                    ids[count++] = base + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                }
+            }
+        }
+        return Arrays.copyOf(ids, count);
+    }
+
+    private AtomicLongArray chunk(int userId, boolean create) {
+        if (userId < 0 || userId > MessageValidator.MAX_USER_ID) {
+            throw new IllegalArgumentException("userId out of range: " + userId);
+        }
+        int index = userId / CHUNK_BITS;
+        AtomicLongArray chunk = chunks.get(index);
+        if (chunk == null && create) {
+            chunks.compareAndSet(index, null, new AtomicLongArray(WORDS_PER_CHUNK));
+            chunk = chunks.get(index);
+        }
+        return chunk;
+    }
+}
@@ -0,0 +1,112 @@
+package com.chatflow.server.session;
+
+import com.chatflow.server.codec.FrameFormat;
+import org.springframework.web.reactive.socket.CloseStatus;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+import org.springframework.web.reactive.socket.WebSocketSession;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Operators;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Outbound queue for a reactive WebSocket session. Nothing blocks and no thread is held
+ * per session: frames leave the queue only as the transport requests them, which it does
+ * while the socket is writable. A client that stops reading stops the demand, so its
+ * backlog builds up here and the overflow policy applies as on the servlet engine.
+ */
+public class ReactiveOutboundQueue extends AbstractOutboundQueue {
+
+    // The reactive API has no constant for the status the servlet engine closes slow consumers with
+    private static final CloseStatus SESSION_NOT_RELIABLE =
+            new CloseStatus(org.springframework.web.socket.CloseStatus.SESSION_NOT_RELIABLE.getCode());
+
+    private final WebSocketSession session;
+    private final AtomicLong requested = new AtomicLong();
+    private final AtomicInteger wip = new AtomicInteger();
+    private volatile FluxSink<WebSocketMessage> sink;
+
+    public ReactiveOutboundQueue(WebSocketSession session, FrameFormat format, OutboundLimits limits) {
+        super(format, limits);
+        this.session = session;
+    }
+
+    /**
+     * The frames to write, for {@link WebSocketSession#send}. Completes when the queue is
+     * closed. Subscribe once.
+     */
+    public Flux<WebSocketMessage> frames() {
+        // Demand is tracked here and never exceeded, so the sink itself buffers nothing
+        return Flux.create(sink -> {
+            this.sink = sink;
+            sink.onRequest(n -> {
+                requested.getAndUpdate(r -> Operators.addCap(r, n));
+                drain();
+            });
+            sink.onDispose(super::close);
+            if (isClosed()) {
+                sink.complete();
+            }
+        }, FluxSink.OverflowStrategy.IGNORE);
+    }
+
+    @Override
+    public String getSessionId() { return session.getId(); }
+
+    @Override
+    protected boolean isSessionOpen() { return session.isOpen(); }
+
+    @Override
+    protected void onEnqueued() {
+        drain();
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        FluxSink<WebSocketMessage> current = sink;
+        if (current != null) {
+            current.complete();
+        }
+    }
+
+    @Override
+    protected void closeSlowConsumer() {
+        session.close(SESSION_NOT_RELIABLE).subscribe();
+    }
+
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            FluxSink<WebSocketMessage> current = sink;
+            if (current != null) {
+                while (requested.get() > 0 && !isClosed()) {
+                    org.springframework.web.socket.WebSocketMessage<?> frame = poll();
+                    if (frame == null) {
+                        break;
+                    }
+                    requested.decrementAndGet();
+                    current.next(toReactive(frame));
+                }
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    // Wraps the shared encoded bytes without copying; each recipient gets its own buffer view
+    private WebSocketMessage toReactive(org.springframework.web.socket.WebSocketMessage<?> frame) {
+        if (frame instanceof BinaryMessage binary) {
+            return new WebSocketMessage(WebSocketMessage.Type.BINARY,
+                    session.bufferFactory().wrap(binary.getPayload()));
+        }
+        return new WebSocketMessage(WebSocketMessage.Type.TEXT,
+                session.bufferFactory().wrap(((TextMessage) frame).asBytes()));
+    }
+}
@@ -0,0 +1,187 @@
+package com.chatflow.server.session;
+
+import com.chatflow.server.codec.OutboundFrame;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Client messageIds recently accepted in one room, each with the ack it was given, so a
+ * retried message is answered again instead of being delivered twice.
+ *
+ * <p>Ids are kept in two generations, the current one and the one before it. A new id
+ * goes into the current generation; once that is half the window old or holds half the
+ * entries, it becomes the previous one and the old previous one is dropped whole. An id
+ * is therefore remembered for at least half the window, unless the room takes more than
+ * half the entries in that time, and memory never exceeds the entry cap.
+ *
+ * <p>Each generation is an exact map from id to {@link Entry} behind a small bloom filter.
+ * Almost every message is new, and for those the filters answer without probing either
+ * map; only an id the filters may have seen is looked up. Nothing is allocated until the
+ * room's first message with an id.
+ */
+public final class RecentMessageIds {
+
+    private static final int HASHES = 4;
+    private static final int BITS_PER_ENTRY = 16;
+
+    private final long halfWindowNanos;
+    private final int generationCapacity;
+    private final LongSupplier clock;
+    private volatile Generations generations;
+
+    public RecentMessageIds(long windowNanos, int maxEntries) {
+        this(windowNanos, maxEntries, System::nanoTime);
+    }
+
+    RecentMessageIds(long windowNanos, int maxEntries, LongSupplier clock) {
+        this.halfWindowNanos = Math.max(1, windowNanos / 2);
+        this.generationCapacity = Math.max(1, maxEntries / 2);
+        this.clock = clock;
+    }
+
+    /**
+     * The entry of a recent message with this id, or null if there is none.
+     */
+    public Entry find(String messageId) {
+        Generations gens = generations;
+        if (gens == null) {
+            return null;
+        }
+        long hash = mix(messageId.hashCode());
+        Entry entry = gens.current.find(messageId, hash);
+        return entry != null || gens.previous == null ? entry : gens.previous.find(messageId, hash);
+    }
+
+    /**
+     * Remembers {@code entry} under the id unless a recent message already has it, in
+     * which case that message's entry is returned instead; null means remembered.
+     */
+    public Entry remember(String messageId, Entry entry) {
+        long hash = mix(messageId.hashCode());
+        Generations gens = current();
+        if (gens.previous != null) {
+            Entry earlier = gens.previous.find(messageId, hash);
+            if (earlier != null) {
+                return earlier;
+            }
+        }
+        return gens.current.put(messageId, hash, entry);
+    }
+
+    private Generations current() {
+        Generations gens = generations;
+        long now = clock.getAsLong();
+        if (gens == null || gens.current.isFull(now)) {
+            synchronized (this) {
+                gens = generations;
+                if (gens == null) {
+                    gens = new Generations(new Generation(now), null);
+                    generations = gens;
+                } else if (gens.current.isFull(now)) {
+                    gens = new Generations(new Generation(now), gens.current);
+                    generations = gens;
+                }
+            }
+        }
+        return gens;
+    }
+
+    // Spreads String.hashCode over 64 bits; the two halves seed the filter's probes
+    private static long mix(long h) {
+        h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL;
+        h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+
+    /**
+     * A remembered message: the user that sent it and, once it has been sequenced, its
+     * sequence number and the frame that acked it.
+     */
+    public static final class Entry {
+
+        private final int userId;
+        private volatile long seq;
+        private volatile OutboundFrame ack;
+
+        public Entry(int userId) {
+            this.userId = userId;
+        }
+
+        public void complete(long seq, OutboundFrame ack) {
+            this.seq = seq;
+            this.ack = ack;
+        }
+
+        public int getUserId() { return userId; }
+        /** 0 while the message is still being handled. */
+        public long getSeq() { return seq; }
+        /** Null while the message is still being handled. */
+        public OutboundFrame getAck() { return ack; }
+    }
+
+    private record Generations(Generation current, Generation previous) {
+    }
+
+    private final class Generation {
+
+        final long start;
+        final ConcurrentHashMap<String, Entry> ids = new ConcurrentHashMap<>();
+        final AtomicInteger size = new AtomicInteger();
+        final AtomicLongArray filter;
+        final int mask;
+
+        Generation(long start) {
+            this.start = start;
+            int bits = Integer.highestOneBit(Math.max(64, generationCapacity * BITS_PER_ENTRY - 1)) << 1;
+            this.filter = new AtomicLongArray(bits >>> 6);
+            this.mask = bits - 1;
+        }
+
+        boolean isFull(long now) {
+            return size.get() >= generationCapacity || now - start >= halfWindowNanos;
+        }
+
+        Entry find(String messageId, long hash) {
+            return mightContain(hash) ? ids.get(messageId) : null;
+        }
+
+        Entry put(String messageId, long hash, Entry entry) {
+            // Bits go in first, so a thread that finds them unset cannot miss the entry
+            add(hash);
+            Entry existing = ids.putIfAbsent(messageId, entry);
+            if (existing == null) {
+                size.incrementAndGet();
+            }
+            return existing;
+        }
+
+        private boolean mightContain(long hash) {
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 0; i < HASHES; i++) {
+                int bit = (h1 + i * h2) & mask;
+                if ((filter.get(bit >>> 6) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void add(long hash) {
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 0; i < HASHES; i++) {
+                int bit = (h1 + i * h2) & mask;
+                long word = filter.get(bit >>> 6);
+                long set = word | (1L << bit);
+                while (word != set && !filter.compareAndSet(bit >>> 6, word, set)) {
+                    word = filter.get(bit >>> 6);
+                    set = word | (1L << bit);
+                }
+            }
+        }
+    }
+}
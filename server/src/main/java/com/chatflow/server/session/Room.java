@@ -0,0 +1,112 @@
+package com.chatflow.server.session;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Handle to one room while it is in use, interned by {@link RoomSessionManager}: its
+ * members, history, recent message ids, presence and mailbox on the {@link RoomExecutor}.
+ */
+public final class Room {
+
+    private final String id;
+    private final RoomHistory history;
+    // Null when deduplication is off
+    private final RecentMessageIds recentIds;
+    private final Map<String, AbstractOutboundQueue> members = new ConcurrentHashMap<>();
+    private final RoomPresence presence = new RoomPresence();
+    private final RoomExecutor.Mailbox mailbox;
+    private final LongAdder received = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    // The members as an array, for splitting broadcasts; null until needed after a change
+    private volatile AbstractOutboundQueue[] memberArray;
+    // Moving average of what delivering a broadcast costs, for ParallelFanOut; racy by design
+    private volatile long fanOutNanos;
+
+    Room(String id, RoomHistory history, RecentMessageIds recentIds) {
+        this(id, history, recentIds, room -> { });
+    }
+
+    /**
+     * A room that calls {@code onIdle} whenever its mailbox drains.
+     */
+    Room(String id, RoomHistory history, RecentMessageIds recentIds, Consumer<Room> onIdle) {
+        this.id = id;
+        this.history = history;
+        this.recentIds = recentIds;
+        this.mailbox = new RoomExecutor.Mailbox(() -> onIdle.accept(this));
+    }
+
+    public String getId() { return id; }
+    public Set<String> getSessionIds() { return members.keySet(); }
+    public int size() { return members.size(); }
+    public long getReceived() { return received.sum(); }
+    public long getDelivered() { return delivered.sum(); }
+    public RoomPresence getPresence() { return presence; }
+
+    RoomHistory getHistory() { return history; }
+    RecentMessageIds getRecentIds() { return recentIds; }
+    RoomExecutor.Mailbox getMailbox() { return mailbox; }
+    Collection<AbstractOutboundQueue> queues() { return members.values(); }
+    void received(int count) { received.add(count); }
+    void delivered(int count) { delivered.add(count); }
+    long getFanOutNanos() { return fanOutNanos; }
+
+    // No members, and no work queued or running for it
+    boolean isIdle() { return members.isEmpty() && mailbox.isIdle(); }
+
+    void fanOutCost(long nanos) {
+        long average = fanOutNanos;
+        fanOutNanos = average + ((nanos - average) >> 3);
+    }
+
+    AbstractOutboundQueue[] memberArray() {
+        AbstractOutboundQueue[] queues = memberArray;
+        return queues != null ? queues : snapshotMembers();
+    }
+
+    // Under the lock, so a change cannot slip in between reading the members and keeping them
+    private synchronized AbstractOutboundQueue[] snapshotMembers() {
+        if (memberArray == null) {
+            memberArray = members.values().toArray(new AbstractOutboundQueue[0]);
+        }
+        return memberArray;
+    }
+
+    // Membership changes hold the room's lock, so that becoming empty or occupied is seen
+    // by exactly one of them; broadcasts read the members without it
+
+    synchronized boolean add(AbstractOutboundQueue queue, Runnable onFirstMember) {
+        // Closed by a leave that came before the join's turn on the mailbox
+        if (queue.isClosed()) {
+            return false;
+        }
+        boolean wasEmpty = members.isEmpty();
+        memberArray = null;
+        if (members.put(queue.getSessionId(), queue) != null) {
+            return false;
+        }
+        if (wasEmpty) {
+            onFirstMember.run();
+        }
+        return true;
+    }
+
+    synchronized boolean remove(String sessionId, Runnable onLastMember) {
+        if (members.remove(sessionId) == null) {
+            return false;
+        }
+        memberArray = null;
+        if (members.isEmpty()) {
+            onLastMember.run();
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() { return id; }
+}
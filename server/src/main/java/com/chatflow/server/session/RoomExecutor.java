@@ -0,0 +1,162 @@
+package com.chatflow.server.session;
+
+import com.chatflow.server.config.RoomExecutorProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs the work of each room on one worker at a time, in the order it was submitted, in
+ * the manner of an actor: every {@link Room} has a mailbox, and a pool of workers shared
+ * by all rooms drains the mailboxes that have work. A room is scheduled on the pool when
+ * its mailbox goes from empty to not, and runs up to {@code maxBatch} tasks before going
+ * to the back of the pool's queue, so a busy room cannot hold a worker while others wait.
+ *
+ * <p>Tasks of the same room therefore never overlap and see each other's effects, with no
+ * lock held while they run; tasks of different rooms run in parallel. Work must not block
+ * a worker, since every room scheduled behind it would wait too.
+ *
+ * <p>{@link #INLINE} runs each task on the calling thread instead, as messages were
+ * handled before rooms had workers.
+ */
+public final class RoomExecutor implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(RoomExecutor.class);
+    private static final long SHUTDOWN_SECONDS = 5;
+
+    /**
+     * Runs tasks on the calling thread. Intended for tests and benchmarks.
+     */
+    public static final RoomExecutor INLINE = new RoomExecutor(0, 1);
+
+    private final ExecutorService workers;
+    private final int maxBatch;
+    private final LongAdder queued = new LongAdder();
+
+    public RoomExecutor(RoomExecutorProperties properties) {
+        this(properties.getThreads(), properties.getMaxBatch());
+    }
+
+    public RoomExecutor(int threads, int maxBatch) {
+        this.maxBatch = Math.max(1, maxBatch);
+        if (threads <= 0) {
+            this.workers = null;
+            return;
+        }
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("room-worker-");
+        threadFactory.setDaemon(true);
+        this.workers = Executors.newFixedThreadPool(threads, threadFactory);
+    }
+
+    /**
+     * Runs a task after every task submitted for the room before it.
+     */
+    public void execute(Room room, Runnable task) {
+        if (workers == null) {
+            task.run();
+            return;
+        }
+        Mailbox mailbox = room.getMailbox();
+        queued.increment();
+        mailbox.tasks.offer(task);
+        schedule(mailbox);
+    }
+
+    public boolean isInline() { return workers == null; }
+
+    /** Tasks submitted and not yet run, across all rooms. */
+    public long getQueued() { return queued.sum(); }
+
+    /**
+     * Stops taking tasks and waits a few seconds for the ones already queued to run.
+     */
+    @Override
+    public void close() {
+        if (workers == null) {
+            return;
+        }
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(SHUTDOWN_SECONDS, TimeUnit.SECONDS)) {
+                log.warn("Room workers still busy at shutdown; {} tasks not run", getQueued());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void schedule(Mailbox mailbox) {
+        if (mailbox.scheduled.compareAndSet(false, true) && !submit(mailbox)) {
+            // Closed; the caller runs the room's tasks itself
+            drain(mailbox);
+        }
+    }
+
+    private boolean submit(Mailbox mailbox) {
+        try {
+            workers.execute(() -> drain(mailbox));
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    private void drain(Mailbox mailbox) {
+        do {
+            runBatch(mailbox);
+            mailbox.scheduled.set(false);
+            // Tasks submitted after the last poll, or left over after a full batch, wait
+            // behind other rooms; once closed, this worker keeps running them instead
+        } while (!mailbox.tasks.isEmpty() && mailbox.scheduled.compareAndSet(false, true) && !submit(mailbox));
+        if (mailbox.isIdle()) {
+            mailbox.onIdle.run();
+        }
+    }
+
+    private void runBatch(Mailbox mailbox) {
+        for (int i = 0; i < maxBatch; i++) {
+            Runnable task = mailbox.tasks.poll();
+            if (task == null) {
+                return;
+            }
+            queued.decrement();
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                log.error("Room task failed", e);
+            }
+        }
+    }
+
+    /**
+     * The tasks of one room waiting for a worker, and what to do once they have all run.
+     */
+    static final class Mailbox {
+
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        // Set while the room is queued on the pool or running on a worker
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final Runnable onIdle;
+
+        Mailbox() {
+            this(() -> { });
+        }
+
+        Mailbox(Runnable onIdle) {
+            this.onIdle = onIdle;
+        }
+
+        boolean isIdle() {
+            return tasks.isEmpty() && !scheduled.get();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.chatflow.server.session;
+
+import com.chatflow.server.codec.OutboundFrame;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sequencing and recent messages of one room. Every accepted message takes the next
+ * sequence number, from 1, with a single atomic add, so concurrent senders never wait on
+ * each other for it.
+ *
+ * <p>The most recent messages are kept for replay to joining sessions, in a fixed ring of
+ * the frames built for the broadcasts, indexed by sequence number: recording keeps a
+ * reference to the frame, whose encodings are already shared by the room's recipients,
+ * so nothing is copied or allocated per message and replay sends the same encoded bytes.
+ * On a {@link RoomExecutor} worker a room's messages are numbered and recorded one at a
+ * time, in order. Handled inline, they may be recorded slightly out of order, as senders
+ * race between taking their number and recording; the ring keeps each slot's number to
+ * tell which are present.
+ *
+ * <p>Recording and snapshots take the room's lock for a few array accesses only.
+ */
+public final class RoomHistory {
+
+    private final AtomicLong sequence;
+    private final OutboundFrame[] frames;
+    private final long[] sequences;
+    // Numbers up to this were handed out before the ring existed, by an earlier run
+    private long base;
+    private long highest;
+
+    public RoomHistory(int capacity) {
+        this(capacity, 0);
+    }
+
+    /**
+     * A room whose last message, for example from before a restart, had {@code lastSequence}.
+     */
+    public RoomHistory(int capacity, long lastSequence) {
+        this.sequence = new AtomicLong(lastSequence);
+        this.frames = new OutboundFrame[capacity];
+        this.sequences = new long[capacity];
+        this.base = lastSequence;
+        this.highest = lastSequence;
+    }
+
+    /**
+     * Takes {@code count} consecutive sequence numbers and returns the first.
+     */
+    public long nextSequence(int count) {
+        return sequence.getAndAdd(count) + 1;
+    }
+
+    public long getLastSequence() { return sequence.get(); }
+
+    /**
+     * Continues after {@code lastSequence}, for a room whose last number is only known once
+     * it exists. Called before any number is taken or message recorded.
+     */
+    synchronized void seed(long lastSequence) {
+        sequence.set(lastSequence);
+        base = lastSequence;
+        highest = lastSequence;
+    }
+
+    public void record(OutboundFrame frame) {
+        record(nextSequence(1), frame);
+    }
+
+    public synchronized void record(long seq, OutboundFrame frame) {
+        if (frames.length == 0) {
+            return;
+        }
+        int slot = (int) (seq % frames.length);
+        // A straggler older than what already took its slot has been pushed out
+        if (sequences[slot] < seq) {
+            frames[slot] = frame;
+            sequences[slot] = seq;
+        }
+        highest = Math.max(highest, seq);
+    }
+
+    /**
+     * The retained messages, oldest first.
+     */
+    public OutboundFrame[] snapshot() {
+        return snapshot(0).frames();
+    }
+
+    /**
+     * The retained messages after {@code since}, oldest first, along with the first
+     * sequence number the ring still covers. Anything from {@code since + 1} up to that
+     * has been pushed out and can only come from the message log.
+     */
+    public synchronized Snapshot snapshot(long since) {
+        long first = Math.max(base, highest - frames.length) + 1;
+        long from = Math.max(first, since + 1);
+        int present = 0;
+        OutboundFrame[] found = new OutboundFrame[(int) Math.max(0, highest - from + 1)];
+        for (long seq = from; seq <= highest; seq++) {
+            int slot = (int) (seq % frames.length);
+            // Numbers taken but not recorded yet are still to be broadcast
+            if (sequences[slot] == seq) {
+                found[present++] = frames[slot];
+            }
+        }
+        OutboundFrame[] snapshot = new OutboundFrame[present];
+        System.arraycopy(found, 0, snapshot, 0, present);
+        return new Snapshot(first, snapshot);
+    }
+
+    public int getCapacity() { return frames.length; }
+
+    public record Snapshot(long firstSequence, OutboundFrame[] frames) {
+    }
+}
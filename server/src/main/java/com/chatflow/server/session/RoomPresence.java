@@ -0,0 +1,113 @@
+package com.chatflow.server.session;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The users present in one room, from the JOIN and LEAVE messages sent to it. Presence is
+ * per userId: the latest JOIN or LEAVE for a user decides, whichever session it came
+ * from, and closing a session removes the users whose latest JOIN came through it.
+ *
+ * <p>Changes are not announced one by one. Each change marks its user in a second set and
+ * the room as pending; a single broadcaster thread later drains the marks and announces
+ * the net result since its previous announcement in one update, so a thousand users
+ * joining at once cost one frame per member rather than a thousand. Users who joined and
+ * left in between are not mentioned at all.
+ */
+public final class RoomPresence {
+
+    private final PresenceSet members = new PresenceSet();
+    // Users whose presence changed since the last drain
+    private final PresenceSet changed = new PresenceSet();
+    // The session each present user last joined through, and the reverse index used when a
+    // session closes; the index may hold users since taken over by another session
+    private final Map<Integer, String> sessionByUser = new ConcurrentHashMap<>();
+    private final Map<String, Set<Integer>> joinedBySession = new ConcurrentHashMap<>();
+    private final AtomicBoolean pending = new AtomicBoolean();
+    // Users as last announced; used by the broadcaster thread only
+    private final PresenceSet announced = new PresenceSet();
+
+    public int count() { return members.size(); }
+    public int[] userIds() { return members.toArray(); }
+    public boolean contains(int userId) { return members.contains(userId); }
+
+    // Each of these returns true if the change made the room pending, so that the caller
+    // queues it for the broadcaster exactly once
+
+    boolean join(String sessionId, int userId) {
+        joinedBySession.computeIfAbsent(sessionId, k -> ConcurrentHashMap.newKeySet()).add(userId);
+        String previous = sessionByUser.put(userId, sessionId);
+        if (previous != null && !previous.equals(sessionId)) {
+            forget(previous, userId);
+        }
+        return members.add(userId) && markChanged(userId);
+    }
+
+    boolean leave(String sessionId, int userId) {
+        String joinedThrough = sessionByUser.remove(userId);
+        if (joinedThrough != null) {
+            forget(joinedThrough, userId);
+        }
+        return members.remove(userId) && markChanged(userId);
+    }
+
+    boolean sessionClosed(String sessionId) {
+        Set<Integer> joined = joinedBySession.remove(sessionId);
+        boolean queued = false;
+        if (joined != null) {
+            for (int userId : joined) {
+                // Only if no later JOIN through another session took the user over
+                if (sessionByUser.remove(userId, sessionId) && members.remove(userId)) {
+                    queued |= markChanged(userId);
+                }
+            }
+        }
+        return queued;
+    }
+
+    private void forget(String sessionId, int userId) {
+        Set<Integer> joined = joinedBySession.get(sessionId);
+        if (joined != null) {
+            joined.remove(userId);
+        }
+    }
+
+    private boolean markChanged(int userId) {
+        changed.add(userId);
+        return pending.compareAndSet(false, true);
+    }
+
+    /**
+     * The users who joined and left since the previous drain, as announced then. Called by
+     * the broadcaster thread only.
+     */
+    Changes drain() {
+        // Cleared first, so a change racing with the drain queues the room again
+        pending.set(false);
+        int[] candidates = changed.drain();
+        int[] joined = new int[candidates.length];
+        int[] left = new int[candidates.length];
+        int joins = 0;
+        int leaves = 0;
+        for (int userId : candidates) {
+            if (members.contains(userId)) {
+                if (announced.add(userId)) {
+                    joined[joins++] = userId;
+                }
+            } else if (announced.remove(userId)) {
+                left[leaves++] = userId;
+            }
+        }
+        return new Changes(Arrays.copyOf(joined, joins), Arrays.copyOf(left, leaves));
+    }
+
+    record Changes(int[] joined, int[] left) {
+
+        boolean isEmpty() {
+            return joined.length == 0 && left.length == 0;
+        }
+    }
+}
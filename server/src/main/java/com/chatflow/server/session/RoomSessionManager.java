@@ -1,40 +1,474 @@
 package com.chatflow.server.session;
 
+import com.chatflow.server.bus.RoomBus;
+import com.chatflow.server.cluster.RoomPlacement;
+import com.chatflow.server.codec.FrameFormat;
+import com.chatflow.server.codec.OutboundFrame;
+import com.chatflow.server.config.DedupProperties;
+import com.chatflow.server.config.HistoryProperties;
+import com.chatflow.server.config.OutboundProperties;
+import com.chatflow.server.store.MessageLog;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.WebSocketSession;
 
+import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Room membership, fan-out, sequencing and recent history. Rooms are created on their
+ * first join and removed once idle, and broadcasts also go to the {@link RoomBus} unless
+ * {@link RoomPlacement} puts every member of the room on this node.
+ */
 @Component
 public class RoomSessionManager {
 
-    private final ConcurrentHashMap<String, Set<WebSocketSession>> rooms = new ConcurrentHashMap<>();
+    /** Joins without a sequence number to resume from. */
+    public static final long NO_SEQUENCE = -1;
+
+    private final ConcurrentHashMap<String, Room> rooms = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, AbstractOutboundQueue> queuesBySessionId = new ConcurrentHashMap<>();
+    // Rooms with presence changes not yet announced, each queued once until drained
+    private final Queue<Room> presenceChanges = new ConcurrentLinkedQueue<>();
+    private final LongAdder connections = new LongAdder();
+    private final LongAdder roomCount = new LongAdder();
+    private final Runnable roomOccupied = roomCount::increment;
+    private final Runnable roomEmptied = roomCount::decrement;
+    private final OutboundProperties properties;
+    private final int historySize;
+    private final DedupProperties dedupProperties;
+    private final MessageLog messageLog;
+    private final RoomBus roomBus;
+    private final RoomPlacement placement;
+    private final RoomExecutor roomExecutor;
+    private final Executor outboundExecutor;
+    private final ParallelFanOut fanOut;
+    private final LongAdder queuedFrames = new LongAdder();
+    private final LongAdder droppedFrames = new LongAdder();
+    private final LongAdder slowConsumerDisconnects = new LongAdder();
+
+    /**
+     * Subscribes to {@code roomBus} for messages accepted by other nodes.
+     */
+    @Autowired
+    public RoomSessionManager(OutboundProperties properties, HistoryProperties historyProperties,
+                              DedupProperties dedupProperties, MessageLog messageLog, RoomBus roomBus,
+                              RoomPlacement placement, RoomExecutor roomExecutor,
+                              @Qualifier("outboundExecutor") Executor outboundExecutor, ParallelFanOut fanOut) {
+        this.properties = properties;
+        this.historySize = Math.max(0, Math.min(historyProperties.getSize(), properties.getMaxMessages()));
+        this.dedupProperties = dedupProperties;
+        this.messageLog = messageLog;
+        this.roomBus = roomBus;
+        this.placement = placement;
+        this.roomExecutor = roomExecutor;
+        this.outboundExecutor = outboundExecutor;
+        this.fanOut = fanOut;
+        roomBus.subscribe(this::deliver);
+    }
+
+    /**
+     * A manager with default limits, history and deduplication, no log or bus, and every
+     * message handled and delivered on the calling thread, each of which the builder can
+     * replace. Intended for tests and benchmarks.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
 
     public void addSession(String roomId, WebSocketSession session) {
-        rooms.computeIfAbsent(roomId, k -> ConcurrentHashMap.newKeySet()).add(session);
+        addSession(roomId, session, FrameFormat.TEXT);
     }
 
-    public void removeSession(String roomId, WebSocketSession session) {
-        Set<WebSocketSession> sessions = rooms.get(roomId);
-        if (sessions != null) {
-            sessions.remove(session);
-            if (sessions.isEmpty()) {
-                rooms.remove(roomId);
+    public void addSession(String roomId, WebSocketSession session, FrameFormat format) {
+        addSession(roomId, session, format, NO_SEQUENCE);
+    }
+
+    /**
+     * Adds a session to a room as {@link #join(String, AbstractOutboundQueue, long)} does,
+     * and returns the room's handle.
+     */
+    public Room addSession(String roomId, WebSocketSession session, FrameFormat format, long since) {
+        return join(roomId, new OutboundQueue(session, format, limitsFor(roomId), outboundExecutor), since);
+    }
+
+    // Called under the room's bin lock. The sequence continues from the message log, read
+    // with room workers by the room's first task, ahead of anything that numbers or replays
+    // messages, rather than on the joining thread
+    private Room newRoom(String roomId) {
+        Room room = new Room(roomId, new RoomHistory(historySize), newRecentIds(), this::removeIfIdle);
+        if (roomExecutor.isInline()) {
+            room.getHistory().seed(messageLog.lastSequence(roomId));
+        } else {
+            roomExecutor.execute(room, () -> room.getHistory().seed(messageLog.lastSequence(roomId)));
+        }
+        return room;
+    }
+
+    private RecentMessageIds newRecentIds() {
+        int maxEntries = dedupProperties.getMaxEntries();
+        return maxEntries > 0 ? new RecentMessageIds(dedupProperties.getWindow().toNanos(), maxEntries) : null;
+    }
+
+    /**
+     * Adds a session, represented by its outbound queue, to a room and replays the room's
+     * history to it.
+     */
+    public Room join(String roomId, AbstractOutboundQueue queue) {
+        return join(roomId, queue, NO_SEQUENCE);
+    }
+
+    /**
+     * Adds a session to a room, resuming after sequence number {@code since}: every
+     * message after it is replayed, from the history where it still has them and from the
+     * message log before that, up to the session's outbound message limit. With
+     * {@link #NO_SEQUENCE} only the history is replayed. The room is created if it is not
+     * in use; room ids are expected to be validated already. Returns the room's handle.
+     *
+     * <p>With room workers, the replay and then the session's addition to the members run
+     * as one task on the room's mailbox, so the session gets every message broadcast
+     * before it from the replay and every one after from the broadcast, once each and in
+     * order, and the message log is read on the room's worker rather than the caller's
+     * thread. Handled inline, the session is added first, and a message in flight while it
+     * joins may arrive twice.
+     */
+    public Room join(String roomId, AbstractOutboundQueue queue, long since) {
+        queuesBySessionId.put(queue.getSessionId(), queue);
+        if (!roomExecutor.isInline()) {
+            // Queued under the room's bin lock, so the room cannot be removed before it has the task
+            return rooms.compute(roomId, (id, current) -> {
+                Room joined = current != null ? current : newRoom(id);
+                roomExecutor.execute(joined, () -> {
+                    replay(joined, queue, since);
+                    add(joined, queue);
+                });
+                return joined;
+            });
+        }
+        Room room = rooms.compute(roomId, (id, current) -> {
+            Room joined = current != null ? current : newRoom(id);
+            add(joined, queue);
+            return joined;
+        });
+        replay(room, queue, since);
+        return room;
+    }
+
+    private void add(Room room, AbstractOutboundQueue queue) {
+        if (room.add(queue, roomOccupied)) {
+            connections.increment();
+        }
+    }
+
+    private void replay(Room room, AbstractOutboundQueue queue, long since) {
+        if (since == NO_SEQUENCE) {
+            for (OutboundFrame frame : room.getHistory().snapshot()) {
+                queue.offer(frame);
+            }
+            return;
+        }
+        RoomHistory.Snapshot snapshot = room.getHistory().snapshot(since);
+        int max = properties.getMaxMessages();
+        OutboundFrame[] recent = snapshot.frames();
+        if (recent.length < max) {
+            List<OutboundFrame> older = messageLog.read(room.getId(), since, snapshot.firstSequence(),
+                    max - recent.length);
+            for (OutboundFrame frame : older) {
+                queue.offer(frame);
             }
         }
+        for (int i = Math.max(0, recent.length - max); i < recent.length; i++) {
+            queue.offer(recent[i]);
+        }
+    }
+
+    public void removeSession(String roomId, WebSocketSession session) {
+        leave(roomId, session.getId());
+    }
+
+    public void leave(String roomId, String sessionId) {
+        Room room = rooms.get(roomId);
+        if (room != null) {
+            leave(room, sessionId);
+        } else {
+            closeQueue(sessionId);
+        }
+    }
+
+    /**
+     * Removes a session from a room, along with the users present through it, and the
+     * room itself if that leaves it idle.
+     */
+    public void leave(Room room, String sessionId) {
+        closeQueue(sessionId);
+        if (room.remove(sessionId, roomEmptied)) {
+            connections.decrement();
+        }
+        if (room.getPresence().sessionClosed(sessionId)) {
+            presenceChanges.add(room);
+        }
+        removeIfIdle(room);
+    }
+
+    /**
+     * Removes a room that has no members and nothing left to run. Called as its last member
+     * leaves and as its mailbox drains, whichever comes last.
+     */
+    private void removeIfIdle(Room room) {
+        if (!room.isIdle()) {
+            return;
+        }
+        rooms.computeIfPresent(room.getId(), (id, current) -> {
+            return current != room || !room.isIdle() ? current : null;
+        });
+    }
+
+    /**
+     * Marks a user present in the room, or no longer present, through a session, for a
+     * JOIN or LEAVE message. The change is announced by the next presence update.
+     */
+    public void updatePresence(Room room, String sessionId, int userId, boolean present) {
+        RoomPresence presence = room.getPresence();
+        boolean queued = present ? presence.join(sessionId, userId) : presence.leave(sessionId, userId);
+        if (queued) {
+            presenceChanges.add(room);
+        }
+    }
+
+    /**
+     * The next room with presence changes to announce, or null if there is none.
+     */
+    Room pollPresenceChange() {
+        return presenceChanges.poll();
+    }
+
+    /**
+     * Queues a presence update for this node's members of the room. Presence updates are
+     * not counted as delivered messages.
+     */
+    void announce(Room room, OutboundFrame frame) {
+        for (AbstractOutboundQueue queue : room.queues()) {
+            queue.offer(frame);
+        }
+    }
+
+    private void closeQueue(String sessionId) {
+        AbstractOutboundQueue queue = queuesBySessionId.remove(sessionId);
+        if (queue != null) {
+            queue.close();
+        }
+    }
+
+    /**
+     * Takes {@code count} consecutive sequence numbers in the room for accepted messages
+     * and returns the first. A room continues from the last number in the message log.
+     */
+    public long nextSequence(Room room, int count) {
+        return room.getHistory().nextSequence(count);
+    }
+
+    /**
+     * Keeps an accepted message, numbered by {@link #nextSequence}, in the room's history
+     * for sessions that join later, and counts it as received by the room.
+     */
+    public void record(Room room, long seq, OutboundFrame frame) {
+        room.getHistory().record(seq, frame);
+        room.received(1);
+    }
+
+    /**
+     * The recent message in the room with this client messageId, or null if there is
+     * none, the id is null or deduplication is off.
+     */
+    public RecentMessageIds.Entry findRecent(Room room, String messageId) {
+        RecentMessageIds recentIds = room.getRecentIds();
+        return recentIds != null && messageId != null ? recentIds.find(messageId) : null;
+    }
+
+    /**
+     * Remembers a message about to be accepted under its client messageId. Returns null,
+     * or the entry of a recent message that already has the id.
+     */
+    public RecentMessageIds.Entry remember(Room room, String messageId, RecentMessageIds.Entry entry) {
+        RecentMessageIds recentIds = room.getRecentIds();
+        return recentIds != null && messageId != null ? recentIds.remember(messageId, entry) : null;
+    }
+
+    /**
+     * Outbound limits for a new session in the room, reporting to this manager's counters.
+     */
+    public OutboundLimits limitsFor(String roomId) {
+        return new OutboundLimits(properties.policyFor(roomId), properties.getMaxMessages(),
+                properties.getMaxBytes().toBytes(), queuedFrames, droppedFrames, slowConsumerDisconnects);
+    }
+
+    /**
+     * The handle of a room in use, or null if the room has no members and nothing left to
+     * run.
+     */
+    public Room getRoom(String roomId) {
+        return rooms.get(roomId);
+    }
+
+    public Set<String> getSessionIds(String roomId) {
+        Room room = rooms.get(roomId);
+        return room != null ? room.getSessionIds() : Collections.emptySet();
+    }
+
+    /**
+     * Queues a frame for every session in the room, each in its own wire format, and
+     * publishes it to the other nodes unless every member of the room is on this one.
+     * Encodings are shared by all recipients of the same format. Returns the number of
+     * local sessions that accepted it.
+     */
+    public int broadcast(String roomId, OutboundFrame frame) {
+        Room room = rooms.get(roomId);
+        return room != null ? broadcast(room, frame) : 0;
+    }
+
+    public int broadcast(Room room, OutboundFrame frame) {
+        if (!placement.hasAllMembers(room.getId())) {
+            roomBus.publish(room.getId(), frame);
+        }
+        return fanOut(room, frame);
+    }
+
+    /**
+     * Queues a frame another node accepted for this node's members of the room. Returns
+     * the number of sessions that accepted it.
+     */
+    public int deliver(String roomId, OutboundFrame frame) {
+        Room room = rooms.get(roomId);
+        return room != null ? fanOut(room, frame) : 0;
+    }
+
+    private int fanOut(Room room, OutboundFrame frame) {
+        int accepted = fanOut.fanOut(room, frame);
+        room.delivered(accepted);
+        return accepted;
+    }
+
+    /**
+     * Queues a frame for a single session, subject to the same limits as broadcasts.
+     */
+    public boolean send(WebSocketSession session, OutboundFrame frame) {
+        return send(session.getId(), frame);
+    }
+
+    public boolean send(String sessionId, OutboundFrame frame) {
+        AbstractOutboundQueue queue = queuesBySessionId.get(sessionId);
+        return queue != null && queue.offer(frame);
     }
 
-    public Set<WebSocketSession> getSessions(String roomId) {
-        return rooms.getOrDefault(roomId, Collections.emptySet());
+    public AbstractOutboundQueue getOutboundQueue(String sessionId) {
+        return queuesBySessionId.get(sessionId);
+    }
+
+    /**
+     * Every room in use.
+     */
+    public Collection<Room> getRooms() {
+        return Collections.unmodifiableCollection(rooms.values());
     }
 
     public int getTotalConnections() {
-        return rooms.values().stream().mapToInt(Set::size).sum();
+        return connections.intValue();
     }
 
     public int getRoomCount() {
-        return rooms.size();
+        return roomCount.intValue();
+    }
+
+    public long getQueuedFrames() {
+        return queuedFrames.sum();
+    }
+
+    public long getDroppedFrames() {
+        return droppedFrames.sum();
+    }
+
+    public long getSlowConsumerDisconnects() {
+        return slowConsumerDisconnects.sum();
+    }
+
+    public long getParallelBroadcasts() {
+        return fanOut.getParallelBroadcasts();
+    }
+
+    /**
+     * Builds a manager from {@link #builder}'s defaults and what is set on it.
+     */
+    public static final class Builder {
+
+        private OutboundProperties properties = new OutboundProperties();
+        private HistoryProperties historyProperties = new HistoryProperties();
+        private DedupProperties dedupProperties = new DedupProperties();
+        private MessageLog messageLog = MessageLog.NONE;
+        private RoomBus roomBus = RoomBus.NONE;
+        private RoomPlacement placement = new RoomPlacement();
+        private RoomExecutor roomExecutor = RoomExecutor.INLINE;
+        private Executor outboundExecutor = Runnable::run;
+        private ParallelFanOut fanOut = ParallelFanOut.INLINE;
+
+        private Builder() {
+        }
+
+        public Builder outboundProperties(OutboundProperties properties) {
+            this.properties = properties;
+            return this;
+        }
+
+        public Builder historyProperties(HistoryProperties historyProperties) {
+            this.historyProperties = historyProperties;
+            return this;
+        }
+
+        public Builder dedupProperties(DedupProperties dedupProperties) {
+            this.dedupProperties = dedupProperties;
+            return this;
+        }
+
+        public Builder messageLog(MessageLog messageLog) {
+            this.messageLog = messageLog;
+            return this;
+        }
+
+        public Builder roomBus(RoomBus roomBus) {
+            this.roomBus = roomBus;
+            return this;
+        }
+
+        public Builder placement(RoomPlacement placement) {
+            this.placement = placement;
+            return this;
+        }
+
+        public Builder roomExecutor(RoomExecutor roomExecutor) {
+            this.roomExecutor = roomExecutor;
+            return this;
+        }
+
+        public Builder outboundExecutor(Executor outboundExecutor) {
+            this.outboundExecutor = outboundExecutor;
+            return this;
+        }
+
+        public Builder fanOut(ParallelFanOut fanOut) {
+            this.fanOut = fanOut;
+            return this;
+        }
+
+        public RoomSessionManager build() {
+            return new RoomSessionManager(properties, historyProperties, dedupProperties, messageLog, roomBus,
+                    placement, roomExecutor, outboundExecutor, fanOut);
+        }
     }
 }
@@ -0,0 +1,15 @@
+package com.chatflow.server.store;
+
+/**
+ * When the message log forces written records to disk. Records are in the page cache as
+ * soon as they are written, so they survive a process crash either way; this governs how
+ * much can be lost if the machine goes down.
+ */
+public enum FsyncPolicy {
+    /** Force after every group commit. */
+    ALWAYS,
+    /** Force at most once per {@code fsync-interval}. */
+    INTERVAL,
+    /** Leave write-back to the operating system. */
+    NEVER
+}
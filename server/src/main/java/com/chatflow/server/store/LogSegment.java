@@ -0,0 +1,162 @@
+package com.chatflow.server.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * One memory-mapped file of a room's log, named after the index of its first record. The
+ * file is mapped at its full size when created, so appends are plain memory writes.
+ *
+ * <pre>
+ * record   int32   payload length, never 0
+ *          int32   CRC32C of the payload
+ *          bytes   payload
+ * </pre>
+ *
+ * A zero length marks the end of the written records. On open, records are checked up to
+ * the first one that is incomplete or fails its checksum, such as one torn by a crash;
+ * anything from there on is cleared and overwritten by later appends.
+ *
+ * <p>Not thread-safe; owned by the log's writer thread. Other threads only read segments
+ * through {@link #scan}.
+ */
+final class LogSegment {
+
+    static final int HEADER_BYTES = 8;
+    static final String SUFFIX = ".log";
+
+    private final Path path;
+    private final long baseIndex;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final CRC32C crc = new CRC32C();
+    private long count;
+
+    private LogSegment(Path path, long baseIndex, FileChannel channel, MappedByteBuffer buffer) {
+        this.path = path;
+        this.baseIndex = baseIndex;
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    static LogSegment create(Path directory, long baseIndex, int size) throws IOException {
+        Path path = directory.resolve(fileName(baseIndex));
+        // Only an empty segment, such as one cut short while being created, can be in the way
+        Files.deleteIfExists(path);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new LogSegment(path, baseIndex, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+    }
+
+    static LogSegment open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        LogSegment segment = new LogSegment(path, baseIndex(path), channel,
+                channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()));
+        segment.recover();
+        return segment;
+    }
+
+    static String fileName(long baseIndex) {
+        return String.format("%020d%s", baseIndex, SUFFIX);
+    }
+
+    static long baseIndex(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    /**
+     * Passes the payload of each complete record in the file to the visitor, in order,
+     * through a separate read-only mapping. Safe while the writer appends to the file: a
+     * record is only visible once its length is set, and one caught half-written fails its
+     * checksum and ends the scan.
+     */
+    static void scan(Path path, Consumer<ByteBuffer> visitor) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            CRC32C crc = new CRC32C();
+            int position = 0;
+            while (buffer.capacity() - position >= HEADER_BYTES) {
+                int length = buffer.getInt(position);
+                if (length <= 0 || length > buffer.capacity() - position - HEADER_BYTES) {
+                    return;
+                }
+                ByteBuffer payload = buffer.slice(position + HEADER_BYTES, length);
+                crc.reset();
+                crc.update(payload.duplicate());
+                if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                    return;
+                }
+                visitor.accept(payload);
+                position += HEADER_BYTES + length;
+            }
+        }
+    }
+
+    /**
+     * Writes a record, or returns false without writing if it does not fit.
+     */
+    boolean append(ByteBuffer payload) {
+        int length = payload.remaining();
+        int position = buffer.position();
+        if (buffer.capacity() - position < HEADER_BYTES + length) {
+            return false;
+        }
+        crc.reset();
+        crc.update(payload.duplicate());
+        buffer.putInt(position + 4, (int) crc.getValue());
+        buffer.position(position + HEADER_BYTES);
+        buffer.put(payload.duplicate());
+        // The length goes last: until it is set, the record reads as the end of the log
+        buffer.putInt(position, length);
+        count++;
+        return true;
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    void close() throws IOException {
+        channel.close();
+    }
+
+    Path getPath() { return path; }
+    int getSize() { return buffer.capacity(); }
+    long getBaseIndex() { return baseIndex; }
+    long getCount() { return count; }
+    long nextIndex() { return baseIndex + count; }
+
+    private void recover() {
+        int position = 0;
+        while (true) {
+            int length = buffer.capacity() - position >= HEADER_BYTES ? buffer.getInt(position) : 0;
+            if (length <= 0 || length > buffer.capacity() - position - HEADER_BYTES
+                    || !checksumMatches(position, length)) {
+                break;
+            }
+            position += HEADER_BYTES + length;
+            count++;
+        }
+        buffer.position(position);
+        if (buffer.capacity() - position >= 4 && buffer.getInt(position) != 0) {
+            // A torn record: clear it so its remains are not mistaken for records later
+            for (int i = position; i < buffer.capacity(); i++) {
+                buffer.put(i, (byte) 0);
+            }
+        }
+    }
+
+    private boolean checksumMatches(int position, int length) {
+        crc.reset();
+        crc.update(buffer.slice(position + HEADER_BYTES, length));
+        return (int) crc.getValue() == buffer.getInt(position + 4);
+    }
+}
@@ -0,0 +1,54 @@
+package com.chatflow.server.store;
+
+import com.chatflow.server.codec.OutboundFrame;
+
+import java.util.List;
+
+/**
+ * Durable record of accepted messages, one append-only log per room.
+ */
+public interface MessageLog extends AutoCloseable {
+
+    /**
+     * A log that keeps nothing, for when persistence is disabled.
+     */
+    MessageLog NONE = new MessageLog() {
+        @Override
+        public boolean append(String roomId, OutboundFrame frame) {
+            return false;
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    /**
+     * Hands an accepted message to the log without waiting for it to be written. Returns
+     * false if it was not taken, for example because the writer is too far behind.
+     */
+    boolean append(String roomId, OutboundFrame frame);
+
+    /**
+     * The highest sequence number among the room's logged messages, including those still
+     * queued for writing, or 0 if it has none. Called as a room is created, on its worker,
+     * or on the joining thread when messages are handled inline; it may read the disk.
+     */
+    default long lastSequence(String roomId) { return 0; }
+
+    /**
+     * Written messages of the room with sequence numbers above {@code after} and below
+     * {@code before}, in order; if there are more than {@code max}, the most recent.
+     * Messages still queued for writing are not seen.
+     */
+    default List<OutboundFrame> read(String roomId, long after, long before, int max) { return List.of(); }
+
+    /** Messages accepted by {@link #append} but not yet written. */
+    default int getBacklog() { return 0; }
+
+    /** Messages {@link #append} turned away. */
+    default long getRejected() { return 0; }
+
+    @Override
+    void close();
+}
@@ -0,0 +1,129 @@
+package com.chatflow.server.store;
+
+import com.chatflow.server.codec.BinaryMessageCodec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * The log of one room: a directory of {@link LogSegment}s, of which only the newest is
+ * written. A record that does not fit rolls the log over to a new segment. The first
+ * segment is small and each next one twice the size, up to the segment size, so rooms
+ * that see few messages take little disk and address space.
+ *
+ * <p>Not thread-safe; owned by the log's writer thread.
+ */
+final class RoomLog {
+
+    static final int FIRST_SEGMENT_BYTES = 64 * 1024;
+
+    private final Path directory;
+    private final int segmentSize;
+    private LogSegment active;
+    // Highest sequence number appended since the log was opened
+    private long lastSequence;
+
+    private RoomLog(Path directory, int segmentSize, LogSegment active) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.active = active;
+    }
+
+    /**
+     * Opens the room's log under the root directory, recovering its newest segment, or
+     * starts a new one.
+     */
+    static RoomLog open(Path root, String roomId, int segmentSize) throws IOException {
+        Path directory = Files.createDirectories(root.resolve(directoryName(roomId)));
+        List<Path> segments = segments(directory);
+        LogSegment active = segments.isEmpty()
+                ? LogSegment.create(directory, 0, Math.min(segmentSize, FIRST_SEGMENT_BYTES))
+                : LogSegment.open(segments.get(segments.size() - 1));
+        return new RoomLog(directory, segmentSize, active);
+    }
+
+    /**
+     * The segment files of a room's log directory, oldest first; none if it does not exist.
+     */
+    static List<Path> segments(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(LogSegment.SUFFIX))
+                    .sorted(Comparator.comparingLong(LogSegment::baseIndex))
+                    .toList();
+        }
+    }
+
+    /**
+     * Room ids come from request paths, so anything outside a safe set of characters,
+     * including dots, is percent-encoded to keep each room inside its own directory.
+     */
+    static String directoryName(String roomId) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(roomId.length());
+        for (byte b : roomId.getBytes(StandardCharsets.UTF_8)) {
+            if ((b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || (b >= '0' && b <= '9') || b == '-' || b == '_') {
+                out.write(b);
+            } else {
+                out.writeBytes(String.format("%%%02X", b & 0xFF).getBytes(StandardCharsets.US_ASCII));
+            }
+        }
+        return out.toString(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * The room id a directory was named after by {@link #directoryName}.
+     */
+    static String roomId(String directoryName) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(directoryName.length());
+        for (int i = 0; i < directoryName.length(); i++) {
+            char c = directoryName.charAt(i);
+            if (c == '%' && i + 2 < directoryName.length()) {
+                out.write(Integer.parseInt(directoryName, i + 1, i + 3, 16));
+                i += 2;
+            } else {
+                out.write(c);
+            }
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    void append(ByteBuffer payload) throws IOException {
+        long seq = BinaryMessageCodec.readSeq(payload);
+        if (active.append(payload)) {
+            lastSequence = Math.max(lastSequence, seq);
+            return;
+        }
+        // Only the active segment is forced later, so the full one is made durable now
+        LogSegment full = active;
+        full.force();
+        full.close();
+        int size = (int) Math.min(segmentSize, 2L * full.getSize());
+        active = LogSegment.create(directory, full.nextIndex(),
+                Math.max(size, LogSegment.HEADER_BYTES + payload.remaining()));
+        active.append(payload);
+        lastSequence = Math.max(lastSequence, seq);
+    }
+
+    void force() {
+        active.force();
+    }
+
+    void close() throws IOException {
+        active.close();
+    }
+
+    long getLastSequence() { return lastSequence; }
+
+    long nextIndex() {
+        return active.nextIndex();
+    }
+}
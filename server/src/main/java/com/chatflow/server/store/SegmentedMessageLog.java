@@ -0,0 +1,278 @@
+package com.chatflow.server.store;
+
+import com.chatflow.server.codec.BinaryMessageCodec;
+import com.chatflow.server.codec.OutboundFrame;
+import com.chatflow.server.config.MessageLogProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link MessageLog} of memory-mapped segment files, one directory per room, written
+ * behind the message path by a single thread.
+ *
+ * <p>Appending only queues the message, so the threads that serve connections never wait
+ * on the disk. The writer takes whatever has queued up as one group commit: each message is
+ * encoded in the binary wire format, appended to its room's active segment, and the rooms
+ * written to are then forced according to the {@link FsyncPolicy}. A message is acked to
+ * its sender when it is broadcast, not when it is durable.
+ *
+ * <p>When the queue is full the message is not logged and is counted as rejected.
+ *
+ * <p>At most {@code maxOpenRooms} room logs are open at once; opening another forces and
+ * closes the one least recently written, which a later message reopens.
+ *
+ * <p>Reads, for sessions resuming from a sequence number, scan the room's segment files
+ * on the calling thread, newest first, without involving the writer. The last sequence
+ * number of a room, which a room continues from when it is created, is raised in memory
+ * as messages are appended and dropped once they are written and the room's log is
+ * closed; after that it is found by scanning the room's newest segment.
+ */
+public class SegmentedMessageLog implements MessageLog {
+
+    private static final Logger log = LoggerFactory.getLogger(SegmentedMessageLog.class);
+    private static final int MAX_GROUP = 4096;
+    private static final long IDLE_POLL_MILLIS = 50;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxOpenRooms;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalNanos;
+    private final ArrayBlockingQueue<Entry> pending;
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    // Rooms with written messages; raised by the writer thread only
+    // Rooms with an open log or messages waiting for the writer
+    private final Map<String, Long> lastSequences = new ConcurrentHashMap<>();
+    private final Thread writer;
+    private volatile long written;
+    private volatile int openRooms;
+    private volatile boolean running = true;
+
+    // Writer thread only; least recently written first
+    private final LinkedHashMap<String, RoomLog> rooms = new LinkedHashMap<>(16, 0.75f, true);
+    private final List<RoomLog> dirty = new ArrayList<>();
+
+    public SegmentedMessageLog(MessageLogProperties properties) throws IOException {
+        this.directory = Files.createDirectories(Path.of(properties.getDirectory()));
+        this.segmentSize = (int) properties.getSegmentSize().toBytes();
+        this.maxOpenRooms = Math.max(1, properties.getMaxOpenRooms());
+        this.fsyncPolicy = properties.getFsyncPolicy();
+        this.fsyncIntervalNanos = properties.getFsyncInterval().toNanos();
+        this.pending = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+        this.writer = new Thread(this::run, "message-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        log.info("Message log at {}: segment size={}, fsync={}", directory.toAbsolutePath(),
+                properties.getSegmentSize(), fsyncPolicy);
+    }
+
+    @Override
+    public boolean append(String roomId, OutboundFrame frame) {
+        // Raised even if turned away, so the room does not number another message the same
+        long seq = frame.getSeq();
+        if (seq > 0) {
+            lastSequences.merge(roomId, seq, Math::max);
+        }
+        if (running && pending.offer(new Entry(roomId, frame))) {
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    @Override
+    public long lastSequence(String roomId) {
+        Long last = lastSequences.get(roomId);
+        if (last != null) {
+            return last;
+        }
+        try {
+            return scanLastSequence(directory.resolve(RoomLog.directoryName(roomId)));
+        } catch (IOException e) {
+            log.error("Message log scan failed: room={}, error={}", roomId, e.getMessage());
+            return 0;
+        }
+    }
+
+    @Override
+    public List<OutboundFrame> read(String roomId, long after, long before, int max) {
+        if (max <= 0 || before - after <= 1) {
+            return List.of();
+        }
+        TreeMap<Long, OutboundFrame> found = new TreeMap<>();
+        try {
+            List<Path> segments = RoomLog.segments(directory.resolve(RoomLog.directoryName(roomId)));
+            boolean last = false;
+            for (int i = segments.size() - 1; i >= 0; i--) {
+                long[] lowest = {Long.MAX_VALUE};
+                LogSegment.scan(segments.get(i), payload -> {
+                    long seq = BinaryMessageCodec.readSeq(payload);
+                    lowest[0] = Math.min(lowest[0], seq);
+                    if (seq > after && seq < before) {
+                        byte[] bytes = new byte[payload.remaining()];
+                        payload.get(bytes);
+                        found.put(seq, OutboundFrame.ofBinary(bytes));
+                        if (found.size() > max) {
+                            found.pollFirstEntry();
+                        }
+                    }
+                });
+                if (last) {
+                    break;
+                }
+                // Messages are written roughly in sequence order, so once a segment reaches
+                // back far enough, one more covers any written out of order around its start
+                last = lowest[0] <= after + 1 || found.size() >= max;
+            }
+        } catch (IOException e) {
+            log.error("Message log read failed: room={}, error={}", roomId, e.getMessage());
+        }
+        return new ArrayList<>(found.values());
+    }
+
+    @Override
+    public int getBacklog() { return pending.size(); }
+
+    @Override
+    public long getRejected() { return rejected.sum(); }
+
+    /** Messages written to their room's log, whether or not they have been forced yet. */
+    public long getWritten() { return written; }
+
+    public long getFailed() { return failed.sum(); }
+
+    /** Room logs open for writing. */
+    public int getOpenRooms() { return openRooms; }
+
+    /**
+     * Writes what is queued, forces every room log and closes them.
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static long scanLastSequence(Path roomDirectory) throws IOException {
+        List<Path> segments = RoomLog.segments(roomDirectory);
+        // The newest segment can be empty if the log had just rolled over
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            long[] highest = {0};
+            LogSegment.scan(segments.get(i),
+                    payload -> highest[0] = Math.max(highest[0], BinaryMessageCodec.readSeq(payload)));
+            if (highest[0] > 0) {
+                return highest[0];
+            }
+        }
+        return 0;
+    }
+
+    private void run() {
+        List<Entry> group = new ArrayList<>(MAX_GROUP);
+        long lastForce = System.nanoTime();
+        while (running || !pending.isEmpty()) {
+            try {
+                Entry first = pending.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    group.add(first);
+                    pending.drainTo(group, MAX_GROUP - 1);
+                    write(group);
+                    group.clear();
+                }
+            } catch (InterruptedException e) {
+                // Not interrupted by close(); keep going until the queue is drained
+            }
+            if (fsyncPolicy == FsyncPolicy.ALWAYS
+                    || (fsyncPolicy == FsyncPolicy.INTERVAL && System.nanoTime() - lastForce >= fsyncIntervalNanos)) {
+                forceDirty();
+                lastForce = System.nanoTime();
+            }
+        }
+        forceDirty();
+        for (Map.Entry<String, RoomLog> room : rooms.entrySet()) {
+            close(room.getKey(), room.getValue());
+        }
+        rooms.clear();
+        openRooms = 0;
+    }
+
+    private void write(List<Entry> group) {
+        int count = 0;
+        for (Entry entry : group) {
+            try {
+                RoomLog room = room(entry.roomId());
+                // Encoded here rather than on the message path; shared with any binary recipients
+                ByteBuffer payload = entry.frame().asBinary().getPayload();
+                room.append(payload);
+                count++;
+                if (fsyncPolicy != FsyncPolicy.NEVER && !dirty.contains(room)) {
+                    dirty.add(room);
+                }
+            } catch (IOException | RuntimeException e) {
+                failed.increment();
+                log.error("Message log write failed: room={}, error={}", entry.roomId(), e.getMessage());
+            }
+        }
+        written += count;
+    }
+
+    private RoomLog room(String roomId) throws IOException {
+        RoomLog room = rooms.get(roomId);
+        if (room == null) {
+            if (rooms.size() >= maxOpenRooms) {
+                Iterator<Map.Entry<String, RoomLog>> leastRecent = rooms.entrySet().iterator();
+                Map.Entry<String, RoomLog> evicted = leastRecent.next();
+                leastRecent.remove();
+                close(evicted.getKey(), evicted.getValue());
+            }
+            room = RoomLog.open(directory, roomId, segmentSize);
+            rooms.put(roomId, room);
+            openRooms = rooms.size();
+        }
+        return room;
+    }
+
+    // Forces and closes a room's log, and forgets its last sequence number unless
+    // messages appended since are still waiting; the disk has it from here
+    private void close(String roomId, RoomLog room) {
+        dirty.remove(room);
+        room.force();
+        try {
+            room.close();
+        } catch (IOException e) {
+            log.warn("Closing room log failed: {}", e.getMessage());
+        }
+        long written = room.getLastSequence();
+        lastSequences.computeIfPresent(roomId, (id, last) -> last <= written ? null : last);
+    }
+
+    private void forceDirty() {
+        for (RoomLog room : dirty) {
+            room.force();
+        }
+        dirty.clear();
+    }
+
+    private record Entry(String roomId, OutboundFrame frame) {
+    }
+}
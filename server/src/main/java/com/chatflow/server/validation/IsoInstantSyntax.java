@@ -0,0 +1,103 @@
+package com.chatflow.server.validation;
+
+/**
+ * Allocation-free recognizer for the timestamp shape clients actually send:
+ * {@code yyyy-MM-ddTHH:mm:ss[.fraction](Z|+HH:MM[:SS])} with an unsigned four-digit
+ * year, matched case-insensitively like {@code DateTimeFormatter.ISO_INSTANT}.
+ *
+ * <p>Every string accepted here is also accepted by {@link java.time.Instant#parse}.
+ * A {@code false} answer is not a rejection; callers fall back to {@code Instant.parse}
+ * for anything outside the common form.
+ */
+final class IsoInstantSyntax {
+
+    private static final int MAX_OFFSET_SECONDS = 18 * 3600;
+
+    private IsoInstantSyntax() {}
+
+    static boolean isCommonForm(String s) {
+        int length = s.length();
+        if (length < 20
+                || s.charAt(4) != '-' || s.charAt(7) != '-'
+                || (s.charAt(10) != 'T' && s.charAt(10) != 't')
+                || s.charAt(13) != ':' || s.charAt(16) != ':') {
+            return false;
+        }
+        int year = digits(s, 0, 4);
+        int month = digits(s, 5, 2);
+        int day = digits(s, 8, 2);
+        int hour = digits(s, 11, 2);
+        int minute = digits(s, 14, 2);
+        int second = digits(s, 17, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return false;
+        }
+
+        int pos = 19;
+        if (s.charAt(pos) == '.') {
+            int start = ++pos;
+            while (pos < length && pos - start < 9 && isDigit(s.charAt(pos))) {
+                pos++;
+            }
+            if (pos == start || pos >= length) {
+                return false;
+            }
+        }
+
+        char zone = s.charAt(pos);
+        if (zone == 'Z' || zone == 'z') {
+            return pos + 1 == length;
+        }
+        if (zone != '+' && zone != '-') {
+            return false;
+        }
+        int remaining = length - pos;
+        if ((remaining != 6 && remaining != 9) || s.charAt(pos + 3) != ':') {
+            return false;
+        }
+        int offsetHours = digits(s, pos + 1, 2);
+        int offsetMinutes = digits(s, pos + 4, 2);
+        int offsetSeconds = 0;
+        if (remaining == 9) {
+            if (s.charAt(pos + 6) != ':') {
+                return false;
+            }
+            offsetSeconds = digits(s, pos + 7, 2);
+        }
+        return offsetHours >= 0 && offsetMinutes >= 0 && offsetMinutes <= 59
+                && offsetSeconds >= 0 && offsetSeconds <= 59
+                && offsetHours * 3600 + offsetMinutes * 60 + offsetSeconds <= MAX_OFFSET_SECONDS;
+    }
+
+    /**
+     * Parses {@code count} ASCII digits starting at {@code from}, or returns -1.
+     */
+    private static int digits(String s, int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            char c = s.charAt(i);
+            if (!isDigit(c)) {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static int daysInMonth(int year, int month) {
+        return switch (month) {
+            case 2 -> isLeapYear(year) ? 29 : 28;
+            case 4, 6, 9, 11 -> 30;
+            default -> 31;
+        };
+    }
+
+    private static boolean isLeapYear(int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+}
@@ -5,69 +5,169 @@ import org.springframework.stereotype.Component;
 
 import java.time.Instant;
 import java.time.format.DateTimeParseException;
-import java.util.Set;
 
+/**
+ * Stateless message validation. The success path makes no allocations: every check is a
+ * char scan and every ruling is a shared {@link ValidationResult} constant.
+ */
 @Component
 public class MessageValidator {
 
-    private static final Set<String> VALID_MESSAGE_TYPES = Set.of("TEXT", "JOIN", "LEAVE");
+    public static final ValidationResult NULL_MESSAGE = ValidationResult.invalid("Message cannot be null");
+    public static final ValidationResult USER_ID_REQUIRED = ValidationResult.invalid("userId is required");
+    public static final ValidationResult USER_ID_OUT_OF_RANGE =
+            ValidationResult.invalid("userId must be between 1 and 100000");
+    public static final ValidationResult USER_ID_NOT_NUMERIC = ValidationResult.invalid("userId must be a numeric string");
+    public static final ValidationResult USERNAME_REQUIRED = ValidationResult.invalid("username is required");
+    public static final ValidationResult USERNAME_LENGTH = ValidationResult.invalid("username must be 3-20 characters");
+    public static final ValidationResult USERNAME_NOT_ALPHANUMERIC =
+            ValidationResult.invalid("username must be alphanumeric");
+    public static final ValidationResult MESSAGE_REQUIRED = ValidationResult.invalid("message is required");
+    public static final ValidationResult MESSAGE_LENGTH = ValidationResult.invalid("message must be 1-500 characters");
+    public static final ValidationResult TIMESTAMP_REQUIRED = ValidationResult.invalid("timestamp is required");
+    public static final ValidationResult TIMESTAMP_INVALID = ValidationResult.invalid("timestamp must be valid ISO-8601");
+    public static final ValidationResult MESSAGE_TYPE_INVALID =
+            ValidationResult.invalid("messageType must be TEXT, JOIN, or LEAVE");
+    public static final ValidationResult MESSAGE_ID_LENGTH = ValidationResult.invalid("messageId must be 1-64 characters");
+
+    public static final int MIN_USER_ID = 1;
+    public static final int MAX_USER_ID = 100000;
+    public static final int MAX_MESSAGE_ID_LENGTH = 64;
 
     public ValidationResult validate(ChatMessage msg) {
         if (msg == null) {
-            return ValidationResult.invalid("Message cannot be null");
+            return NULL_MESSAGE;
         }
+        ValidationResult result = validateUserId(msg.getUserId());
+        if (!result.isValid()) {
+            return result;
+        }
+        result = validateUsername(msg.getUsername());
+        if (!result.isValid()) {
+            return result;
+        }
+        result = validateMessage(msg.getMessage());
+        if (!result.isValid()) {
+            return result;
+        }
+        result = validateTimestamp(msg.getTimestamp());
+        if (!result.isValid()) {
+            return result;
+        }
+        result = validateMessageType(msg.getMessageType());
+        if (!result.isValid()) {
+            return result;
+        }
+        return validateMessageId(msg.getMessageId());
+    }
 
-        // userId: must be between 1 and 100000
-        if (msg.getUserId() == null || msg.getUserId().isBlank()) {
-            return ValidationResult.invalid("userId is required");
+    // userId: must be between 1 and 100000; accepts exactly what Integer.parseInt accepts
+    public ValidationResult validateUserId(String userId) {
+        if (userId == null || userId.isBlank()) {
+            return USER_ID_REQUIRED;
         }
-        try {
-            int userId = Integer.parseInt(msg.getUserId());
-            if (userId < 1 || userId > 100000) {
-                return ValidationResult.invalid("userId must be between 1 and 100000");
+        int length = userId.length();
+        int i = 0;
+        boolean negative = false;
+        char first = userId.charAt(0);
+        if (first < '0') {
+            if ((first != '-' && first != '+') || length == 1) {
+                return USER_ID_NOT_NUMERIC;
             }
-        } catch (NumberFormatException e) {
-            return ValidationResult.invalid("userId must be a numeric string");
+            negative = first == '-';
+            i++;
         }
+        long value = 0;
+        for (; i < length; i++) {
+            int digit = Character.digit(userId.charAt(i), 10);
+            if (digit < 0) {
+                return USER_ID_NOT_NUMERIC;
+            }
+            value = value * 10 + digit;
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                return USER_ID_NOT_NUMERIC;
+            }
+        }
+        if (!negative && value > Integer.MAX_VALUE) {
+            return USER_ID_NOT_NUMERIC;
+        }
+        return validateUserId(negative ? -value : value);
+    }
+
+    public ValidationResult validateUserId(long userId) {
+        return userId < MIN_USER_ID || userId > MAX_USER_ID ? USER_ID_OUT_OF_RANGE : ValidationResult.valid();
+    }
 
-        // username: 3-20 alphanumeric characters
-        if (msg.getUsername() == null || msg.getUsername().isBlank()) {
-            return ValidationResult.invalid("username is required");
+    // username: 3-20 alphanumeric characters
+    public ValidationResult validateUsername(String username) {
+        if (username == null || username.isBlank()) {
+            return USERNAME_REQUIRED;
         }
-        if (msg.getUsername().length() < 3 || msg.getUsername().length() > 20) {
-            return ValidationResult.invalid("username must be 3-20 characters");
+        int length = username.length();
+        if (length < 3 || length > 20) {
+            return USERNAME_LENGTH;
         }
-        if (!msg.getUsername().matches("^[a-zA-Z0-9]+$")) {
-            return ValidationResult.invalid("username must be alphanumeric");
+        for (int i = 0; i < length; i++) {
+            char c = username.charAt(i);
+            if (!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9'))) {
+                return USERNAME_NOT_ALPHANUMERIC;
+            }
         }
+        return ValidationResult.valid();
+    }
 
-        // message: 1-500 characters
-        if (msg.getMessage() == null || msg.getMessage().isEmpty()) {
-            return ValidationResult.invalid("message is required");
+    // message: 1-500 characters
+    public ValidationResult validateMessage(String message) {
+        if (message == null || message.isEmpty()) {
+            return MESSAGE_REQUIRED;
         }
-        if (msg.getMessage().length() > 500) {
-            return ValidationResult.invalid("message must be 1-500 characters");
+        if (message.length() > 500) {
+            return MESSAGE_LENGTH;
         }
+        return ValidationResult.valid();
+    }
 
-        // timestamp: valid ISO-8601
-        if (msg.getTimestamp() == null || msg.getTimestamp().isBlank()) {
-            return ValidationResult.invalid("timestamp is required");
+    // timestamp: valid ISO-8601, as accepted by Instant.parse
+    public ValidationResult validateTimestamp(String timestamp) {
+        if (timestamp == null || timestamp.isBlank()) {
+            return TIMESTAMP_REQUIRED;
+        }
+        if (IsoInstantSyntax.isCommonForm(timestamp)) {
+            return ValidationResult.valid();
         }
+        // Uncommon shapes (signed or long years, 24:00, leap seconds) and errors
+        // get the authoritative ruling; this path may allocate
         try {
-            Instant.parse(msg.getTimestamp());
+            Instant.parse(timestamp);
         } catch (DateTimeParseException e) {
-            return ValidationResult.invalid("timestamp must be valid ISO-8601");
+            return TIMESTAMP_INVALID;
         }
+        return ValidationResult.valid();
+    }
 
-        // messageType: TEXT, JOIN, or LEAVE
-        if (msg.getMessageType() == null || !VALID_MESSAGE_TYPES.contains(msg.getMessageType())) {
-            return ValidationResult.invalid("messageType must be TEXT, JOIN, or LEAVE");
+    // messageType: TEXT, JOIN, or LEAVE
+    public ValidationResult validateMessageType(String messageType) {
+        if (messageType == null) {
+            return MESSAGE_TYPE_INVALID;
         }
+        return switch (messageType) {
+            case "TEXT", "JOIN", "LEAVE" -> ValidationResult.valid();
+            default -> MESSAGE_TYPE_INVALID;
+        };
+    }
 
-        return ValidationResult.valid();
+    // messageId: optional; when present, 1-64 characters
+    public ValidationResult validateMessageId(String messageId) {
+        if (messageId == null) {
+            return ValidationResult.valid();
+        }
+        int length = messageId.length();
+        return length == 0 || length > MAX_MESSAGE_ID_LENGTH ? MESSAGE_ID_LENGTH : ValidationResult.valid();
     }
 
     public static class ValidationResult {
+        private static final ValidationResult VALID = new ValidationResult(true, null);
+
         private final boolean valid;
         private final String errorMessage;
 
@@ -77,7 +177,7 @@ public class MessageValidator {
         }
 
         public static ValidationResult valid() {
-            return new ValidationResult(true, null);
+            return VALID;
         }
 
         public static ValidationResult invalid(String errorMessage) {
@@ -0,0 +1,163 @@
+package com.chatflow.server.admission;
+
+import com.chatflow.server.codec.BinaryMessageCodec;
+import com.chatflow.server.codec.OutboundFrame;
+import com.chatflow.server.model.ServerResponse;
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdmissionControlTest {
+
+    private static final long TARGET = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final long INTERVAL = TimeUnit.MILLISECONDS.toNanos(20);
+
+    private static void awaitIntervalEnd() throws InterruptedException {
+        Thread.sleep(TimeUnit.NANOSECONDS.toMillis(INTERVAL) + 5);
+    }
+
+    @Test
+    void defaults_admitEverything() {
+        AdmissionControl admission = new AdmissionControl();
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(admission.tryAdmit());
+            admission.started(TimeUnit.SECONDS.toNanos(10));
+        }
+        assertFalse(admission.isOverloaded());
+        assertEquals(1000, admission.getInFlight());
+        assertEquals(0, admission.getRejected());
+    }
+
+    // Reports a delay over the target in each of n intervals, ending each
+    private static void delayFor(AdmissionControl admission, int intervals) throws InterruptedException {
+        for (int i = 0; i < intervals; i++) {
+            admission.started(TARGET * 2);
+            awaitIntervalEnd();
+            admission.getShedFraction();
+        }
+    }
+
+    @Test
+    void minimumDelayOverTarget_overloadedForNextInterval() throws InterruptedException {
+        AdmissionControl admission = new AdmissionControl(TARGET, INTERVAL, 0, false);
+        assertTrue(admission.tryAdmit());
+        admission.started(TARGET * 2);
+        admission.finished();
+        assertTrue(admission.tryAdmit());
+        admission.started(TARGET * 3);
+        admission.finished();
+        awaitIntervalEnd();
+
+        assertTrue(admission.isOverloaded());
+        assertEquals(1 - 1 / Math.sqrt(2), admission.getShedFraction(), 1e-9);
+        assertEquals(0, admission.getInFlight());
+    }
+
+    @Test
+    void moderateOverload_admitsPartOfTheMessages() throws InterruptedException {
+        AdmissionControl admission = new AdmissionControl(TARGET, INTERVAL, 0, false);
+        delayFor(admission, 1);
+
+        int admitted = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (admission.tryAdmit()) {
+                admitted++;
+            }
+        }
+
+        // About 71% admitted
+        assertTrue(admitted > 500 && admitted < 900, "admitted " + admitted);
+        assertEquals(1000 - admitted, admission.getRejected());
+    }
+
+    @Test
+    void sustainedDelay_shedsGrowingFractionAndHalvesOnRecovery() throws InterruptedException {
+        AdmissionControl admission = new AdmissionControl(TARGET, INTERVAL, 0, false);
+        delayFor(admission, 1);
+        double afterOne = admission.getShedFraction();
+        delayFor(admission, 2);
+        double afterThree = admission.getShedFraction();
+
+        admission.started(TARGET / 2);
+        awaitIntervalEnd();
+
+        assertTrue(afterOne < afterThree);
+        assertEquals(0.5, afterThree, 1e-9);
+        assertEquals(afterOne, admission.getShedFraction(), 1e-9);
+    }
+
+    @Test
+    void idleIntervals_eachHalveTheDelayedCount() throws InterruptedException {
+        AdmissionControl admission = new AdmissionControl(TARGET, INTERVAL, 0, false);
+        delayFor(admission, 7);
+        assertEquals(1 - 1 / Math.sqrt(8), admission.getShedFraction(), 1e-9);
+
+        // Ten intervals with nothing arriving to end them, seen all at once
+        Thread.sleep(TimeUnit.NANOSECONDS.toMillis(INTERVAL * 10));
+
+        assertEquals(0, admission.getShedFraction());
+    }
+
+    @Test
+    void oneShortWait_keepsIntervalAdmitting() throws InterruptedException {
+        AdmissionControl admission = new AdmissionControl(TARGET, INTERVAL, 0, false);
+        admission.started(TARGET * 10);
+        // A burst drained within the interval: some message waited less than the target
+        admission.started(TARGET / 2);
+        awaitIntervalEnd();
+
+        assertTrue(admission.tryAdmit());
+    }
+
+    @Test
+    void intervalWithoutStarts_recovers() throws InterruptedException {
+        AdmissionControl admission = new AdmissionControl(TARGET, INTERVAL, 0, false);
+        admission.started(TARGET * 2);
+        awaitIntervalEnd();
+        assertTrue(admission.isOverloaded());
+
+        awaitIntervalEnd();
+
+        assertFalse(admission.isOverloaded());
+    }
+
+    @Test
+    void maxInFlight_rejectsUntilFinished() {
+        AdmissionControl admission = new AdmissionControl(0, INTERVAL, 2, false);
+        assertTrue(admission.tryAdmit());
+        assertTrue(admission.tryAdmit());
+        assertFalse(admission.tryAdmit());
+
+        admission.finished();
+
+        assertTrue(admission.tryAdmit());
+        assertEquals(1, admission.getRejected());
+    }
+
+    @Test
+    void handshakes_refusedOnlyWhenConfiguredAndOverloaded() {
+        AdmissionControl refusing = new AdmissionControl(0, INTERVAL, 1, true);
+        AdmissionControl accepting = new AdmissionControl(0, INTERVAL, 1, false);
+        assertFalse(refusing.refusesHandshakes());
+
+        refusing.tryAdmit();
+        accepting.tryAdmit();
+
+        assertTrue(refusing.refusesHandshakes());
+        assertFalse(accepting.refusesHandshakes());
+    }
+
+    @Test
+    void overloaded_splicesMessageIdIntoPreEncodedRejection() {
+        String messageId = "id \"<é>\"";
+        ServerResponse expected = ServerResponse.error("overloaded", messageId);
+        OutboundFrame frame = AdmissionControl.overloaded(messageId);
+
+        assertEquals(new Gson().toJson(expected), frame.asText().getPayload());
+        assertArrayEquals(BinaryMessageCodec.encode(expected), frame.asBinary().getPayload().array());
+        assertSame(AdmissionControl.OVERLOADED_FRAME, AdmissionControl.overloaded(null));
+    }
+}
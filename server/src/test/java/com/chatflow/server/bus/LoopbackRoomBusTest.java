@@ -0,0 +1,151 @@
+package com.chatflow.server.bus;
+
+import com.chatflow.server.codec.BinaryMessageCodec;
+import com.chatflow.server.codec.FrameFormat;
+import com.chatflow.server.codec.OutboundFrame;
+import com.chatflow.server.config.InboundProperties;
+import com.chatflow.server.handler.ChatMessageProcessor;
+import com.chatflow.server.handler.ChatWebSocketHandler;
+import com.chatflow.server.model.ChatMessage;
+import com.chatflow.server.model.ServerResponse;
+import com.chatflow.server.session.RoomSessionManager;
+import com.chatflow.server.support.StubWebSocketSession;
+import com.chatflow.server.validation.MessageValidator;
+import com.google.gson.Gson;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.TextMessage;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoopbackRoomBusTest {
+
+    private final LoopbackRoomBus.Network network = new LoopbackRoomBus.Network();
+    private final List<BatchingRoomBus> buses = new ArrayList<>();
+    private final Gson gson = new Gson();
+
+    @AfterEach
+    void tearDown() {
+        buses.forEach(BatchingRoomBus::close);
+    }
+
+    private Node node() {
+        LoopbackRoomBus bus = new LoopbackRoomBus(network);
+        buses.add(bus);
+        RoomSessionManager sessionManager = RoomSessionManager.builder().roomBus(bus).build();
+        return new Node(bus, sessionManager, new ChatWebSocketHandler(
+                ChatMessageProcessor.builder(new MessageValidator(), sessionManager).build(), sessionManager,
+                new InboundProperties()));
+    }
+
+    private static StubWebSocketSession session(String id, String roomId) {
+        return new StubWebSocketSession(id, URI.create("ws://localhost:8080/chat/" + roomId));
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.sleep(5);
+        }
+    }
+
+    private static OutboundFrame frame(String text, long seq) {
+        ChatMessage message = new ChatMessage("1", "user1", text, "2024-01-01T00:00:00Z", "TEXT");
+        return OutboundFrame.of(ServerResponse.success(message, "2024-01-01T00:00:01Z", seq));
+    }
+
+    @Test
+    void messageAcceptedOnOneNode_reachesMembersOfTheRoomOnEveryNode() throws Exception {
+        Node a = node();
+        Node b = node();
+        Node c = node();
+        StubWebSocketSession sender = session("a1", "1");
+        StubWebSocketSession text = session("b1", "1");
+        StubWebSocketSession binary = session("b2", "1");
+        StubWebSocketSession otherRoom = session("b3", "2");
+        StubWebSocketSession third = session("c1", "1");
+        a.handler().afterConnectionEstablished(sender);
+        b.handler().afterConnectionEstablished(text);
+        b.sessionManager().addSession("1", binary, FrameFormat.BINARY);
+        b.handler().afterConnectionEstablished(otherRoom);
+        c.handler().afterConnectionEstablished(third);
+
+        a.handler().handleMessage(sender, new TextMessage("""
+                {"userId":"7","username":"testuser","message":"hello","timestamp":"2024-01-01T00:00:00Z","messageType":"TEXT"}
+                """));
+
+        await(() -> !text.getSentMessages().isEmpty() && !binary.getSentBinaryMessages().isEmpty()
+                && !third.getSentMessages().isEmpty());
+        ServerResponse relayed = gson.fromJson(text.getSentMessages().get(0), ServerResponse.class);
+        assertEquals("hello", relayed.getOriginalMessage().getMessage());
+        // Sequence numbers are the accepting node's, so other nodes' clients get none
+        assertEquals(1L, gson.fromJson(sender.getSentMessages().get(0), ServerResponse.class).getSeq());
+        assertNull(relayed.getSeq());
+        assertEquals(0, BinaryMessageCodec.readSeq(ByteBuffer.wrap(binary.getSentBinaryMessages().get(0))));
+        assertTrue(otherRoom.getSentMessages().isEmpty());
+        // Relayed messages are delivered locally, never published again
+        assertEquals(1, third.getSentMessages().size());
+        assertEquals(0, b.bus().getSent() + b.bus().getBacklog());
+        assertEquals(0, c.bus().getSent() + c.bus().getBacklog());
+    }
+
+    @Test
+    void queuedMessages_sentAsOneBatch() throws Exception {
+        List<Integer> batchSizes = new ArrayList<>();
+        List<String> rooms = new ArrayList<>();
+        List<OutboundFrame> frames = new ArrayList<>();
+        BatchingRoomBus bus = new BatchingRoomBus("test-bus", 2048) {
+            @Override
+            protected void send(ByteBuffer batch) {
+                batchSizes.add(batch.getInt(batch.position()));
+                receive(batch);
+            }
+        };
+        buses.add(bus);
+        bus.subscribe((roomId, frame) -> {
+            rooms.add(roomId);
+            frames.add(frame);
+        });
+        for (int i = 1; i <= 1000; i++) {
+            assertTrue(bus.publish("room-" + (i % 3), frame("message " + i, i)));
+        }
+
+        bus.start();
+        await(() -> bus.getSent() == 1000);
+
+        assertEquals(List.of(1000), batchSizes);
+        assertEquals(1000, bus.getReceived());
+        assertEquals("room-1", rooms.get(0));
+        assertEquals("room-0", rooms.get(2));
+        ServerResponse last = BinaryMessageCodec.decodeResponse(frames.get(999).asBinary().getPayload().array());
+        assertEquals("message 1000", last.getOriginalMessage().getMessage());
+        assertNull(last.getSeq());
+    }
+
+    @Test
+    void fullQueue_rejectsPublish() {
+        BatchingRoomBus bus = new BatchingRoomBus("test-bus", 2) {
+            @Override
+            protected void send(ByteBuffer batch) {
+            }
+        };
+        buses.add(bus);
+
+        assertTrue(bus.publish("1", frame("one", 1)));
+        assertTrue(bus.publish("1", frame("two", 2)));
+        assertFalse(bus.publish("1", frame("three", 3)));
+        assertEquals(2, bus.getBacklog());
+        assertEquals(1, bus.getRejected());
+        bus.start();
+    }
+
+    private record Node(LoopbackRoomBus bus, RoomSessionManager sessionManager, ChatWebSocketHandler handler) {
+    }
+}
@@ -0,0 +1,162 @@
+package com.chatflow.server.bus;
+
+import com.chatflow.server.codec.BinaryMessageCodec;
+import com.chatflow.server.codec.OutboundFrame;
+import com.chatflow.server.model.ChatMessage;
+import com.chatflow.server.model.ServerResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TcpRoomBusTest {
+
+    private final List<TcpRoomBus> buses = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        buses.forEach(TcpRoomBus::close);
+    }
+
+    private TcpRoomBus bus(List<InetSocketAddress> peers) throws IOException {
+        TcpRoomBus bus = new TcpRoomBus(new InetSocketAddress("127.0.0.1", 0), peers, 65536);
+        buses.add(bus);
+        return bus;
+    }
+
+    private static InetSocketAddress local(TcpRoomBus bus) {
+        return new InetSocketAddress("127.0.0.1", bus.getPort());
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.sleep(5);
+        }
+    }
+
+    private static OutboundFrame frame(String text, long seq) {
+        ChatMessage message = new ChatMessage("1", "user1", text, "2024-01-01T00:00:00Z", "TEXT");
+        return OutboundFrame.of(ServerResponse.success(message, "2024-01-01T00:00:01Z", seq));
+    }
+
+    private static String text(OutboundFrame frame) {
+        return BinaryMessageCodec.decodeResponse(frame.asBinary().getPayload().array()).getOriginalMessage().getMessage();
+    }
+
+    @Test
+    void nodes_receiveEachOthersMessagesInOrder() throws Exception {
+        TcpRoomBus a = bus(List.of());
+        TcpRoomBus b = bus(List.of(local(a)));
+        a.addPeer(local(b));
+        List<String> atA = new CopyOnWriteArrayList<>();
+        List<String> atB = new CopyOnWriteArrayList<>();
+        a.subscribe((roomId, frame) -> atA.add(roomId + ":" + text(frame)));
+        b.subscribe((roomId, frame) -> atB.add(roomId + ":" + text(frame)));
+
+        for (int i = 0; i < 500; i++) {
+            a.publish("1", frame("from a " + i, i + 1));
+        }
+        b.publish("2", frame("from b", 1));
+
+        await(() -> atB.size() == 500 && atA.size() == 1);
+        assertEquals("1:from a 0", atB.get(0));
+        assertEquals("1:from a 499", atB.get(499));
+        assertEquals(List.of("2:from b"), atA);
+        assertEquals(500, b.getReceived());
+        assertEquals(0, a.getUnsent());
+    }
+
+    @Test
+    void unreachablePeer_countsUnsentAndOthersStillReceive() throws Exception {
+        int closedPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            closedPort = socket.getLocalPort();
+        }
+        TcpRoomBus b = bus(List.of());
+        List<String> atB = new CopyOnWriteArrayList<>();
+        b.subscribe((roomId, frame) -> atB.add(text(frame)));
+        TcpRoomBus a = bus(List.of(new InetSocketAddress("127.0.0.1", closedPort), local(b)));
+        b.addPeer(local(a));
+
+        a.publish("1", frame("hello", 1));
+
+        await(() -> atB.size() == 1 && a.getUnsent() == 1);
+        assertEquals(List.of("hello"), atB);
+    }
+
+    @Test
+    void connectionFromNonPeer_refused() throws Exception {
+        TcpRoomBus b = bus(List.of(new InetSocketAddress("192.0.2.1", 7400)));
+        List<String> atB = new CopyOnWriteArrayList<>();
+        b.subscribe((roomId, frame) -> atB.add(text(frame)));
+        TcpRoomBus a = bus(List.of(local(b)));
+
+        a.publish("1", frame("hello", 1));
+
+        await(() -> b.getRefused() == 1);
+        assertEquals(0, b.getReceived());
+        assertTrue(atB.isEmpty());
+    }
+
+    @Test
+    void batchThatDoesNotDecode_droppedAndConnectionClosed() throws Exception {
+        TcpRoomBus b = bus(List.of(new InetSocketAddress("127.0.0.1", 1)));
+        List<String> atB = new CopyOnWriteArrayList<>();
+        b.subscribe((roomId, frame) -> atB.add(text(frame)));
+        byte[] payload = BinaryMessageCodec.encode(
+                ServerResponse.success(new ChatMessage("1", "user1", "hello", "2024-01-01T00:00:00Z", "TEXT"),
+                        "2024-01-01T00:00:01Z", 1));
+        // One good message, then one whose payload claims more bytes than its frame holds
+        ByteBuffer batch = ByteBuffer.allocate(4 + 4 + 2 * (2 + 1 + 4 + payload.length));
+        batch.putInt(batch.capacity() - 4).putInt(2);
+        batch.putShort((short) 1).put((byte) '1').putInt(payload.length).put(payload);
+        payload[30] = (byte) 0x7F;
+        batch.putShort((short) 1).put((byte) '1').putInt(payload.length).put(payload);
+
+        try (SocketChannel channel = SocketChannel.open(local(b))) {
+            channel.write(batch.flip());
+            ByteBuffer read = ByteBuffer.allocate(1);
+            await(() -> b.getInvalid() == 1);
+            assertEquals(-1, channel.read(read));
+        }
+        assertEquals(0, b.getReceived());
+        assertTrue(atB.isEmpty());
+    }
+
+    @Test
+    void relayedFrames_arriveWithoutSeq() throws Exception {
+        TcpRoomBus a = bus(List.of());
+        TcpRoomBus b = bus(List.of(local(a)));
+        a.addPeer(local(b));
+        List<OutboundFrame> atB = new CopyOnWriteArrayList<>();
+        b.subscribe((roomId, frame) -> atB.add(frame));
+
+        a.publish("1", frame("hello", 42));
+
+        await(() -> atB.size() == 1);
+        ServerResponse relayed = BinaryMessageCodec.decodeResponse(atB.get(0).asBinary().getPayload().array());
+        assertEquals("hello", relayed.getOriginalMessage().getMessage());
+        assertNull(relayed.getSeq());
+    }
+
+    @Test
+    void parseAddress_requiresHostAndPort() {
+        InetSocketAddress address = TcpRoomBus.parseAddress("node-2:7400");
+        assertEquals("node-2", address.getHostString());
+        assertEquals(7400, address.getPort());
+        assertThrows(IllegalArgumentException.class, () -> TcpRoomBus.parseAddress("node-2"));
+        assertThrows(IllegalArgumentException.class, () -> TcpRoomBus.parseAddress("node-2:"));
+    }
+}
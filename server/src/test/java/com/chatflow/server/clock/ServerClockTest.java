@@ -0,0 +1,58 @@
+package com.chatflow.server.clock;
+
+import com.chatflow.server.config.ClockProperties;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ServerClockTest {
+
+    private static ServerClock clock(Duration resolution) {
+        ClockProperties properties = new ClockProperties();
+        properties.setResolution(resolution);
+        return new ServerClock(properties);
+    }
+
+    @Test
+    void withinATick_bothFormsAreTheSameCachedTime() {
+        try (ServerClock clock = clock(Duration.ofHours(1))) {
+            long before = System.currentTimeMillis();
+            String iso = clock.isoString();
+
+            assertSame(iso, clock.isoString());
+            assertEquals(Instant.ofEpochMilli(clock.millis()).toString(), iso);
+            assertTrue(Math.abs(clock.millis() - before) < 1000);
+        }
+    }
+
+    @Test
+    void ticker_refreshesTheCachedTime() throws InterruptedException {
+        try (ServerClock clock = clock(Duration.ofMillis(2))) {
+            long first = clock.millis();
+            long deadline = System.nanoTime() + 5_000_000_000L;
+            while (clock.millis() == first) {
+                assertTrue(System.nanoTime() < deadline, "timed out");
+                Thread.sleep(1);
+            }
+            assertTrue(clock.millis() > first);
+            assertTrue(Math.abs(clock.millis() - System.currentTimeMillis()) < 1000);
+        }
+    }
+
+    @Test
+    void preciseMode_readsTheSystemClockEveryTime() throws InterruptedException {
+        ClockProperties properties = new ClockProperties();
+        properties.setPrecise(true);
+        try (ServerClock clock = new ServerClock(properties)) {
+            assertTrue(clock.isPrecise());
+            long first = clock.millis();
+            Thread.sleep(5);
+            assertTrue(clock.millis() > first);
+            Instant parsed = Instant.parse(clock.isoString());
+            assertTrue(Duration.between(parsed, Instant.now()).abs().toMillis() < 1000);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.chatflow.server.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HashRingTest {
+
+    private static final int ROOMS = 20_000;
+    private static final List<String> NODES = List.of("ws://node-1:8080", "ws://node-2:8080", "ws://node-3:8080");
+
+    private static Map<String, String> owners(HashRing ring) {
+        Map<String, String> owners = new HashMap<>();
+        for (int i = 0; i < ROOMS; i++) {
+            owners.put("room-" + i, ring.ownerOf("room-" + i));
+        }
+        return owners;
+    }
+
+    @Test
+    void rooms_spreadEvenlyAcrossNodes() {
+        Map<String, Integer> counts = new HashMap<>();
+        owners(new HashRing(NODES, 160)).values().forEach(node -> counts.merge(node, 1, Integer::sum));
+
+        assertEquals(3, counts.size());
+        for (int count : counts.values()) {
+            assertEquals(ROOMS / 3.0, count, ROOMS / 3.0 * 0.15);
+        }
+    }
+
+    @Test
+    void sameNodes_placeRoomsTheSameWayInAnyOrder() {
+        HashRing ring = new HashRing(NODES, 160);
+        HashRing reordered = new HashRing(List.of(NODES.get(2), NODES.get(0), NODES.get(1)), 160);
+
+        assertEquals(owners(ring), owners(reordered));
+    }
+
+    @Test
+    void nodeJoining_takesOnlyItsShareFromTheOthers() {
+        HashRing ring = new HashRing(NODES, 160);
+        Map<String, String> before = owners(ring);
+        Map<String, String> after = owners(ring.with("ws://node-4:8080"));
+
+        int moved = 0;
+        for (Map.Entry<String, String> room : before.entrySet()) {
+            if (!room.getValue().equals(after.get(room.getKey()))) {
+                assertEquals("ws://node-4:8080", after.get(room.getKey()));
+                moved++;
+            }
+        }
+        assertEquals(ROOMS / 4.0, moved, ROOMS / 4.0 * 0.15);
+    }
+
+    @Test
+    void nodeLeaving_movesOnlyItsRooms() {
+        HashRing ring = new HashRing(NODES, 160);
+        Map<String, String> before = owners(ring);
+        Map<String, String> after = owners(ring.without("ws://node-2:8080"));
+
+        for (Map.Entry<String, String> room : before.entrySet()) {
+            if (!room.getValue().equals("ws://node-2:8080")) {
+                assertEquals(room.getValue(), after.get(room.getKey()));
+            } else {
+                assertNotEquals("ws://node-2:8080", after.get(room.getKey()));
+            }
+        }
+    }
+
+    @Test
+    void emptyRing_ownsNothing() {
+        assertNull(new HashRing(List.of(), 160).ownerOf("room-1"));
+        assertEquals("ws://node-1:8080", new HashRing(List.of("ws://node-1:8080"), 1).ownerOf("room-1"));
+    }
+}
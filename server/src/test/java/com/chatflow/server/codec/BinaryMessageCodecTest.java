@@ -0,0 +1,276 @@
+package com.chatflow.server.codec;
+
+import com.chatflow.server.model.ChatMessage;
+import com.chatflow.server.model.ServerResponse;
+import com.chatflow.server.validation.MessageValidator;
+import com.chatflow.server.validation.MessageValidator.ValidationResult;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryMessageCodecTest {
+
+    private static final long TIMESTAMP = Instant.parse("2024-01-01T00:00:00.123Z").toEpochMilli();
+
+    private final BinaryMessageCodec codec = new BinaryMessageCodec(new MessageValidator());
+
+    static byte[] frame(int userId, long timestamp, int messageType, String username, String message) {
+        byte[] name = username.getBytes(StandardCharsets.UTF_8);
+        byte[] text = message.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(17 + name.length + text.length)
+                .putInt(userId)
+                .putLong(timestamp)
+                .put((byte) messageType)
+                .putShort((short) name.length)
+                .put(name)
+                .putShort((short) text.length)
+                .put(text)
+                .array();
+    }
+
+    @Test
+    void validFrame_populatesMessage() {
+        ChatMessage message = new ChatMessage();
+        ValidationResult result = codec.decode(
+                ByteBuffer.wrap(frame(42, TIMESTAMP, BinaryMessageCodec.TYPE_JOIN, "testuser", "héllo")), message);
+
+        assertTrue(result.isValid());
+        assertEquals("42", message.getUserId());
+        assertEquals("testuser", message.getUsername());
+        assertEquals("héllo", message.getMessage());
+        assertEquals("2024-01-01T00:00:00.123Z", message.getTimestamp());
+        assertEquals("JOIN", message.getMessageType());
+    }
+
+    static byte[] withMessageId(byte[] frame, String messageId) {
+        byte[] id = messageId.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(frame.length + 2 + id.length)
+                .put(frame)
+                .putShort((short) id.length)
+                .put(id)
+                .array();
+    }
+
+    @Test
+    void messageId_isOptionalTrailingField() {
+        byte[] message = withMessageId(frame(42, TIMESTAMP, 0, "testuser", "hello"), "c1-17");
+        ChatMessage decoded = new ChatMessage();
+
+        assertTrue(codec.decode(ByteBuffer.wrap(message), decoded).isValid());
+        assertEquals("c1-17", decoded.getMessageId());
+        assertSame(MessageValidator.MESSAGE_ID_LENGTH,
+                codec.validate(ByteBuffer.wrap(withMessageId(frame(42, TIMESTAMP, 0, "testuser", "hello"), ""))));
+
+        ServerResponse ack = BinaryMessageCodec.decodeResponse(
+                BinaryMessageCodec.encodeAck(TIMESTAMP, 3, ByteBuffer.wrap(message)));
+        assertEquals("c1-17", ack.getMessageId());
+        assertArrayEquals(BinaryMessageCodec.encodeAck(TIMESTAMP, 3, ByteBuffer.wrap(message)),
+                BinaryMessageCodec.encode(ServerResponse.success(decoded, Instant.ofEpochMilli(TIMESTAMP).toString(), 3)));
+    }
+
+    @Test
+    void readMessageId_correlatesInvalidFrames() {
+        byte[] invalid = withMessageId(frame(0, TIMESTAMP, 0, "testuser", "hello"), "c1-18");
+        assertEquals("c1-18", BinaryMessageCodec.readMessageId(ByteBuffer.wrap(invalid)));
+        assertNull(BinaryMessageCodec.readMessageId(ByteBuffer.wrap(frame(0, TIMESTAMP, 0, "testuser", "hello"))));
+        assertNull(BinaryMessageCodec.readMessageId(ByteBuffer.wrap(Arrays.copyOf(invalid, invalid.length - 1))));
+
+        ServerResponse error = BinaryMessageCodec.decodeResponse(
+                BinaryMessageCodec.encode(ServerResponse.error("userId is required", "c1-18")));
+        assertEquals("userId is required", error.getError());
+        assertEquals("c1-18", error.getMessageId());
+    }
+
+    @Test
+    void decode_leavesBufferPositionUnchanged() {
+        ByteBuffer buffer = ByteBuffer.wrap(frame(42, TIMESTAMP, 0, "testuser", "hello"));
+        codec.decode(buffer, new ChatMessage());
+        assertEquals(0, buffer.position());
+    }
+
+    @Test
+    void validatorRulesApplyToDecodedFields() {
+        assertSame(MessageValidator.USER_ID_OUT_OF_RANGE,
+                codec.decode(ByteBuffer.wrap(frame(0, TIMESTAMP, 0, "testuser", "hello")), new ChatMessage()));
+        assertSame(MessageValidator.USERNAME_LENGTH,
+                codec.decode(ByteBuffer.wrap(frame(1, TIMESTAMP, 0, "ab", "hello")), new ChatMessage()));
+        assertSame(MessageValidator.USERNAME_NOT_ALPHANUMERIC,
+                codec.decode(ByteBuffer.wrap(frame(1, TIMESTAMP, 0, "test_user", "hello")), new ChatMessage()));
+        assertSame(MessageValidator.MESSAGE_REQUIRED,
+                codec.decode(ByteBuffer.wrap(frame(1, TIMESTAMP, 0, "testuser", "")), new ChatMessage()));
+        assertSame(MessageValidator.MESSAGE_LENGTH,
+                codec.decode(ByteBuffer.wrap(frame(1, TIMESTAMP, 0, "testuser", "x".repeat(501))), new ChatMessage()));
+        assertSame(MessageValidator.MESSAGE_TYPE_INVALID,
+                codec.decode(ByteBuffer.wrap(frame(1, TIMESTAMP, 3, "testuser", "hello")), new ChatMessage()));
+    }
+
+    @Test
+    void malformedFrames_areInvalidFrame() {
+        byte[] valid = frame(1, TIMESTAMP, 0, "testuser", "hello");
+
+        assertSame(BinaryMessageCodec.INVALID_FRAME, codec.decode(ByteBuffer.allocate(0), new ChatMessage()));
+        assertSame(BinaryMessageCodec.INVALID_FRAME,
+                codec.decode(ByteBuffer.wrap(Arrays.copyOf(valid, valid.length - 1)), new ChatMessage()));
+        assertSame(BinaryMessageCodec.INVALID_FRAME,
+                codec.decode(ByteBuffer.wrap(Arrays.copyOf(valid, valid.length + 1)), new ChatMessage()));
+
+        byte[] badLength = valid.clone();
+        badLength[13] = (byte) 0xFF;
+        assertSame(BinaryMessageCodec.INVALID_FRAME, codec.decode(ByteBuffer.wrap(badLength), new ChatMessage()));
+    }
+
+    @Test
+    void encodeAck_echoesMessageBytesAfterHeader() {
+        byte[] message = frame(7, TIMESTAMP, 0, "testuser", "hello");
+        byte[] ack = BinaryMessageCodec.encodeAck(TIMESTAMP + 5, 42, ByteBuffer.wrap(message));
+
+        ByteBuffer in = ByteBuffer.wrap(ack);
+        assertEquals(BinaryMessageCodec.STATUS_OK, in.get());
+        assertEquals(TIMESTAMP + 5, in.getLong());
+        assertEquals(42, in.getLong());
+        assertArrayEquals(message, Arrays.copyOfRange(ack, 17, ack.length));
+        assertEquals(42, BinaryMessageCodec.readSeq(ByteBuffer.wrap(ack)));
+        assertEquals(0, BinaryMessageCodec.readSeq(
+                ByteBuffer.wrap(BinaryMessageCodec.encode(ServerResponse.error("userId is required")))));
+    }
+
+    @Test
+    void encode_jsonOriginResponseMatchesBinaryOrigin() {
+        byte[] message = frame(7, TIMESTAMP, BinaryMessageCodec.TYPE_LEAVE, "testuser", "hello");
+        ChatMessage decoded = new ChatMessage();
+        assertTrue(codec.decode(ByteBuffer.wrap(message), decoded).isValid());
+
+        ServerResponse response = ServerResponse.success(decoded, "2024-01-01T00:00:01Z", 9);
+        long serverTimestamp = Instant.parse("2024-01-01T00:00:01Z").toEpochMilli();
+
+        assertArrayEquals(BinaryMessageCodec.encodeAck(serverTimestamp, 9, ByteBuffer.wrap(message)),
+                BinaryMessageCodec.encode(response));
+    }
+
+    @Test
+    void decodeResponse_roundTripsAck() {
+        byte[] message = frame(7, TIMESTAMP, BinaryMessageCodec.TYPE_TEXT, "testuser", "hello");
+        long serverTimestamp = Instant.parse("2024-01-01T00:00:01Z").toEpochMilli();
+
+        ServerResponse response = BinaryMessageCodec.decodeResponse(
+                BinaryMessageCodec.encodeAck(serverTimestamp, 12, ByteBuffer.wrap(message)));
+
+        assertEquals("OK", response.getStatus());
+        assertEquals(12L, response.getSeq());
+        assertEquals("2024-01-01T00:00:01Z", response.getServerTimestamp());
+        assertEquals("7", response.getOriginalMessage().getUserId());
+        assertEquals("hello", response.getOriginalMessage().getMessage());
+        assertEquals("TEXT", response.getOriginalMessage().getMessageType());
+    }
+
+    @Test
+    void encode_errorResponse() {
+        byte[] encoded = BinaryMessageCodec.encode(ServerResponse.error("userId is required"));
+
+        ByteBuffer in = ByteBuffer.wrap(encoded);
+        assertEquals(BinaryMessageCodec.STATUS_ERROR, in.get());
+        byte[] error = new byte[in.getShort()];
+        in.get(error);
+        assertEquals("userId is required", new String(error, StandardCharsets.UTF_8));
+        assertFalse(in.hasRemaining());
+    }
+
+    @Test
+    void encode_batchResponse() {
+        ChatMessage accepted = new ChatMessage();
+        assertTrue(codec.decode(ByteBuffer.wrap(frame(7, TIMESTAMP, 0, "testuser", "hello")), accepted).isValid());
+        ServerResponse batch = ServerResponse.batch(List.of(
+                ServerResponse.success(accepted, null, 4),
+                ServerResponse.error("userId is required")), "2024-01-01T00:00:01Z");
+
+        ByteBuffer in = ByteBuffer.wrap(BinaryMessageCodec.encode(batch));
+
+        assertEquals(BinaryMessageCodec.STATUS_BATCH, in.get());
+        assertEquals(Instant.parse("2024-01-01T00:00:01Z").toEpochMilli(), in.getLong());
+        assertEquals(2, in.getShort());
+        assertEquals(BinaryMessageCodec.STATUS_OK, in.get());
+        assertEquals(4, in.getLong());
+        byte[] message = frame(7, TIMESTAMP, 0, "testuser", "hello");
+        byte[] item = new byte[message.length];
+        in.get(item);
+        assertArrayEquals(message, item);
+        assertEquals(BinaryMessageCodec.STATUS_ERROR, in.get());
+        byte[] error = new byte[in.getShort()];
+        in.get(error);
+        assertEquals("userId is required", new String(error, StandardCharsets.UTF_8));
+        assertFalse(in.hasRemaining());
+    }
+
+    @Test
+    void decodeResponse_roundTripsBatch() {
+        ChatMessage accepted = new ChatMessage();
+        assertTrue(codec.decode(ByteBuffer.wrap(frame(7, TIMESTAMP, 0, "testuser", "hello")), accepted).isValid());
+        ServerResponse batch = ServerResponse.batch(List.of(
+                ServerResponse.success(accepted, null, 4),
+                ServerResponse.error("userId is required"),
+                ServerResponse.success(accepted, null, 5)), "2024-01-01T00:00:01Z");
+
+        ServerResponse decoded = BinaryMessageCodec.decodeResponse(BinaryMessageCodec.encode(batch));
+
+        assertEquals("2024-01-01T00:00:01Z", decoded.getServerTimestamp());
+        assertEquals(3, decoded.getResults().size());
+        assertEquals(4L, decoded.getResults().get(0).getSeq());
+        assertEquals("hello", decoded.getResults().get(0).getOriginalMessage().getMessage());
+        assertEquals("7", decoded.getResults().get(0).getOriginalMessage().getUserId());
+        assertEquals("userId is required", decoded.getResults().get(1).getError());
+        assertEquals(5L, decoded.getResults().get(2).getSeq());
+    }
+
+    @Test
+    void decodeResponse_roundTripsPresence() {
+        ServerResponse presence = ServerResponse.presence(new int[] {3, 9}, new int[] {100000}, 12,
+                "2024-01-01T00:00:01Z");
+
+        ServerResponse decoded = BinaryMessageCodec.decodeResponse(BinaryMessageCodec.encode(presence));
+
+        assertEquals("PRESENCE", decoded.getStatus());
+        assertEquals("2024-01-01T00:00:01Z", decoded.getServerTimestamp());
+        assertEquals(12, decoded.getMemberCount());
+        assertArrayEquals(new int[] {3, 9}, decoded.getJoined());
+        assertArrayEquals(new int[] {100000}, decoded.getLeft());
+        assertEquals(0, BinaryMessageCodec.readSeq(ByteBuffer.wrap(BinaryMessageCodec.encode(presence))));
+    }
+
+    @Test
+    void relayed_clearsSeqsOfAcksAndBatches() {
+        ChatMessage accepted = new ChatMessage();
+        assertTrue(codec.decode(ByteBuffer.wrap(frame(7, TIMESTAMP, 0, "testuser", "hello")), accepted).isValid());
+        byte[] ack = BinaryMessageCodec.encodeAck(TIMESTAMP, 12, ByteBuffer.wrap(frame(7, TIMESTAMP, 0, "testuser", "hello")));
+        byte[] batch = BinaryMessageCodec.encode(ServerResponse.batch(List.of(
+                ServerResponse.success(accepted, null, 4),
+                ServerResponse.error("userId is required")), "2024-01-01T00:00:01Z"));
+
+        ServerResponse relayedAck = BinaryMessageCodec.decodeResponse(BinaryMessageCodec.relayed(ByteBuffer.wrap(ack)));
+        ServerResponse relayedBatch = BinaryMessageCodec.decodeResponse(BinaryMessageCodec.relayed(ByteBuffer.wrap(batch)));
+
+        assertEquals("hello", relayedAck.getOriginalMessage().getMessage());
+        assertNull(relayedAck.getSeq());
+        assertNull(relayedBatch.getResults().get(0).getSeq());
+        assertEquals("userId is required", relayedBatch.getResults().get(1).getError());
+        assertEquals(12, BinaryMessageCodec.readSeq(ByteBuffer.wrap(ack)));
+    }
+
+    @Test
+    void relayed_rejectsOtherLayouts() {
+        byte[] ack = BinaryMessageCodec.encodeAck(TIMESTAMP, 12, ByteBuffer.wrap(frame(7, TIMESTAMP, 0, "testuser", "hello")));
+        byte[] presence = BinaryMessageCodec.encode(ServerResponse.presence(new int[] {3}, new int[0], 1,
+                "2024-01-01T00:00:01Z"));
+
+        assertNull(BinaryMessageCodec.relayed(ByteBuffer.wrap(ack, 0, ack.length - 1)));
+        assertNull(BinaryMessageCodec.relayed(ByteBuffer.wrap(presence)));
+        assertNull(BinaryMessageCodec.relayed(ByteBuffer.allocate(0)));
+        ack[17 + 12] = 9;
+        assertNull(BinaryMessageCodec.relayed(ByteBuffer.wrap(ack)));
+    }
+}
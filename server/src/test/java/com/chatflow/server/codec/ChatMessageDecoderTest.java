@@ -0,0 +1,220 @@
+package com.chatflow.server.codec;
+
+import com.chatflow.server.model.ChatMessage;
+import com.chatflow.server.validation.MessageValidator;
+import com.chatflow.server.validation.MessageValidator.ValidationResult;
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChatMessageDecoderTest {
+
+    private static final String VALID = """
+            {"userId":"1","username":"testuser","message":"hello world","timestamp":"2024-01-01T00:00:00Z","messageType":"TEXT"}
+            """;
+
+    private final MessageValidator validator = new MessageValidator();
+    private final ChatMessageDecoder decoder = new ChatMessageDecoder(validator);
+    private final Gson gson = new Gson();
+
+    /**
+     * The ruling the handler produced before the decoder existed.
+     */
+    private String gsonRuling(String json) {
+        try {
+            ValidationResult result = validator.validate(gson.fromJson(json, ChatMessage.class));
+            return result.isValid() ? "VALID" : result.getErrorMessage();
+        } catch (JsonSyntaxException e) {
+            return "Invalid JSON format";
+        }
+    }
+
+    private String decoderRuling(String json) {
+        ValidationResult result = decoder.decode(json, new ChatMessage());
+        return result.isValid() ? "VALID" : result.getErrorMessage();
+    }
+
+    @Test
+    void validMessage_populatesAllFields() {
+        ChatMessage msg = new ChatMessage();
+        assertTrue(decoder.decode(VALID, msg).isValid());
+        assertEquals("1", msg.getUserId());
+        assertEquals("testuser", msg.getUsername());
+        assertEquals("hello world", msg.getMessage());
+        assertEquals("2024-01-01T00:00:00Z", msg.getTimestamp());
+        assertEquals("TEXT", msg.getMessageType());
+    }
+
+    @Test
+    void messageId_isReadButOptional() {
+        ChatMessage msg = new ChatMessage();
+        assertTrue(decoder.decode(VALID.replace("{", "{\"messageId\":\"c1-42\","), msg).isValid());
+        assertEquals("c1-42", msg.getMessageId());
+
+        msg = new ChatMessage();
+        assertTrue(decoder.decode(VALID, msg).isValid());
+        assertNull(msg.getMessageId());
+
+        // Structured values are skipped like unknown keys
+        assertTrue(decoder.decode(VALID.replace("{", "{\"messageId\":{\"a\":1},"), new ChatMessage()).isValid());
+    }
+
+    @Test
+    void messageId_setEvenWhenInvalid() {
+        ChatMessage msg = new ChatMessage();
+        ValidationResult result = decoder.decode(
+                VALID.replace("{", "{\"messageId\":\"c1-43\",").replace("\"1\"", "\"0\""), msg);
+        assertSame(MessageValidator.USER_ID_OUT_OF_RANGE, result);
+        assertEquals("c1-43", msg.getMessageId());
+
+        assertSame(MessageValidator.MESSAGE_ID_LENGTH,
+                decoder.decode(VALID.replace("{", "{\"messageId\":\"" + "x".repeat(65) + "\","), new ChatMessage()));
+    }
+
+    @Test
+    void escapedStrings_areUnescaped() {
+        ChatMessage msg = new ChatMessage();
+        String json = """
+                {"userId":"1","username":"testuser","message":"line\\nbreak \\"quoted\\" \\u00e9","timestamp":"2024-01-01T00:00:00Z","messageType":"TEXT"}
+                """;
+        assertTrue(decoder.decode(json, msg).isValid());
+        assertEquals(gson.fromJson(json, ChatMessage.class).getMessage(), msg.getMessage());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "",
+            "   ",
+            "null",
+            "null trailing",
+            "not json",
+            "[]",
+            "\"string\"",
+            "42",
+            "{}",
+            "{",
+            "{\"userId\":\"1\"",
+            "{\"userId\":\"1\",}",
+            "{\"userId\" \"1\"}",
+            "{\"userId\":\"1\" \"username\":\"abc\"}",
+            "{\"userId\":}",
+            "{\"userId\":{\"nested\":1}}",
+            "{\"userId\":[1]}",
+            "{\"userId\":1,\"username\":\"testuser\",\"message\":\"hi\",\"timestamp\":\"2024-01-01T00:00:00Z\",\"messageType\":\"TEXT\"}",
+            "{\"userId\":007,\"username\":\"testuser\",\"message\":\"hi\",\"timestamp\":\"2024-01-01T00:00:00Z\",\"messageType\":\"TEXT\"}",
+            "{\"userId\":true,\"username\":\"testuser\",\"message\":\"hi\",\"timestamp\":\"2024-01-01T00:00:00Z\",\"messageType\":\"TEXT\"}",
+            "{\"userId\":null,\"username\":\"testuser\",\"message\":\"hi\",\"timestamp\":\"2024-01-01T00:00:00Z\",\"messageType\":\"TEXT\"}",
+            "{\"userId\":\"1\",\"username\":\"testuser\",\"message\":\"hi\",\"timestamp\":\"2024-01-01T00:00:00Z\",\"messageType\":\"TEXT\",\"roomId\":5}",
+            "{\"roomId\":{\"a\":[1,{\"b\":\"}\"}]},\"userId\":\"1\",\"username\":\"testuser\",\"message\":\"hi\",\"timestamp\":\"2024-01-01T00:00:00Z\",\"messageType\":\"TEXT\"}",
+            "{\"userId\":\"1\",\"userId\":\"0\",\"username\":\"testuser\",\"message\":\"hi\",\"timestamp\":\"2024-01-01T00:00:00Z\",\"messageType\":\"TEXT\"}",
+            "{\"messageType\":\"BAD\",\"timestamp\":\"bad\",\"username\":\"x\",\"userId\":\"abc\"}",
+            "{\"messageType\":\"BAD\",\"message\":\"\",\"username\":\"testuser\",\"userId\":\"5\"}",
+            "{'userId':'1','username':'testuser','message':'hi','timestamp':'2024-01-01T00:00:00Z','messageType':'TEXT'}",
+            "{userId:1,username:testuser,message:hi,timestamp:\"2024-01-01T00:00:00Z\",messageType:TEXT}",
+            "{\"user\\u0049d\":\"1\",\"username\":\"testuser\",\"message\":\"hi\",\"timestamp\":\"2024-01-01T00:00:00Z\",\"messageType\":\"TEXT\"}",
+            "{\"userId\":\"1\",\"username\":\"testuser\",\"message\":\"bad \\q escape\",\"timestamp\":\"2024-01-01T00:00:00Z\",\"messageType\":\"TEXT\"}",
+            "{\"userId\":\"1\",\"username\":\"testuser\",\"message\":\"hi\",\"timestamp\":\"2024-01-01T00:00:00Z\",\"messageType\":\"TEXT\"} {}",
+            "{\"userId\":\"1\",\"username\":\"testuser\",\"message\":\"hi\",\"timestamp\":\"2024-01-01T00:00:00Z\",\"messageType\":\"TEXT\"} trailing",
+            "  {\"userId\" : \"100000\" ,\n\t\"username\" : \"abc\" , \"message\" : \"x\" , \"timestamp\" : \"2024-12-31T23:59:59Z\" , \"messageType\" : \"LEAVE\" }  "
+    })
+    void rulingsMatchGsonAndValidator(String json) {
+        assertEquals(gsonRuling(json), decoderRuling(json), () -> "payload: " + json);
+    }
+
+    @Test
+    void batch_itemsRuledIndividually() {
+        String invalidUserId = VALID.replace("\"userId\":\"1\"", "\"userId\":\"0\"");
+        String json = "[" + VALID + ", " + invalidUserId + ", null]";
+        List<ChatMessage> messages = new ArrayList<>();
+        List<ValidationResult> results = new ArrayList<>();
+
+        assertTrue(decoder.decodeBatch(json, 10, messages, results).isValid());
+
+        assertEquals(3, results.size());
+        assertTrue(results.get(0).isValid());
+        assertEquals("testuser", messages.get(0).getUsername());
+        assertSame(MessageValidator.USER_ID_OUT_OF_RANGE, results.get(1));
+        assertSame(MessageValidator.NULL_MESSAGE, results.get(2));
+        assertNull(messages.get(2));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "[",
+            "[42]",
+            "[\"string\"]",
+            "[{\"userId\":\"1\"}",
+            "[{\"userId\":\"1\"},]",
+            "[{\"userId\":\"1\"} {\"userId\":\"2\"}]",
+            "[{\"userId\":\"1\"}] trailing",
+            "[] trailing",
+            "[{\"userId\":}]"
+    })
+    void batch_malformedJsonRejectsWholeFrame(String json) {
+        assertSame(ChatMessageDecoder.INVALID_JSON,
+                decoder.decodeBatch(json, 10, new ArrayList<>(), new ArrayList<>()));
+    }
+
+    @Test
+    void batch_sizeLimits() {
+        assertSame(ChatMessageDecoder.BATCH_EMPTY,
+                decoder.decodeBatch(" [ ] ", 10, new ArrayList<>(), new ArrayList<>()));
+        String three = "[" + VALID + "," + VALID + "," + VALID + "]";
+        assertSame(ChatMessageDecoder.BATCH_TOO_LARGE,
+                decoder.decodeBatch(three, 2, new ArrayList<>(), new ArrayList<>()));
+        assertTrue(decoder.decodeBatch(three, 3, new ArrayList<>(), new ArrayList<>()).isValid());
+    }
+
+    @Test
+    void isBatch_detectsLeadingBracket() {
+        assertTrue(ChatMessageDecoder.isBatch(" \n[" + VALID + "]"));
+        assertFalse(ChatMessageDecoder.isBatch(VALID));
+        assertFalse(ChatMessageDecoder.isBatch("   "));
+    }
+
+    @Test
+    void decoderParsingAllocatesLessThanHalfOfGson() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        int iterations = 20_000;
+        ChatMessage parsed = gson.fromJson(VALID, ChatMessage.class);
+
+        // Warm all paths so class loading and JIT compilation do not skew the counts
+        for (int i = 0; i < iterations; i++) {
+            validator.validate(gson.fromJson(VALID, ChatMessage.class));
+            decoder.decode(VALID, new ChatMessage());
+        }
+
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < iterations; i++) {
+            validator.validate(parsed);
+        }
+        long validationBytes = threads.getThreadAllocatedBytes(threadId) - before;
+
+        before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < iterations; i++) {
+            validator.validate(gson.fromJson(VALID, ChatMessage.class));
+        }
+        long gsonBytes = threads.getThreadAllocatedBytes(threadId) - before - validationBytes;
+
+        before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < iterations; i++) {
+            decoder.decode(VALID, new ChatMessage());
+        }
+        long decoderBytes = threads.getThreadAllocatedBytes(threadId) - before - validationBytes;
+
+        // Validation is shared by both paths, so only the parsing share is compared
+        assertTrue(decoderBytes * 2 <= gsonBytes,
+                "decoder parsing allocated " + decoderBytes / iterations + " B/msg, gson "
+                        + gsonBytes / iterations + " B/msg");
+    }
+}
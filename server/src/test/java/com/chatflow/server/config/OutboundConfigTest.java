@@ -0,0 +1,59 @@
+package com.chatflow.server.config;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutboundConfigTest {
+
+    private final ApplicationContextRunner runner =
+            new ApplicationContextRunner().withUserConfiguration(OutboundConfig.class);
+
+    private static Thread threadOf(Executor executor) throws Exception {
+        CompletableFuture<Thread> thread = new CompletableFuture<>();
+        executor.execute(() -> thread.complete(Thread.currentThread()));
+        return thread.get();
+    }
+
+    @Test
+    void platformThreadPoolByDefault() {
+        runner.run(context -> {
+            Executor executor = context.getBean("outboundExecutor", Executor.class);
+            assertInstanceOf(ThreadPoolExecutor.class, executor);
+            assertTrue(threadOf(executor).getName().startsWith("outbound-"));
+        });
+    }
+
+    @Test
+    void platformThreadPoolBoundedByThreads() {
+        runner.withPropertyValues("chatflow.outbound.threads=3").run(context -> {
+            ThreadPoolExecutor executor = context.getBean("outboundExecutor", ThreadPoolExecutor.class);
+            assertEquals(3, executor.getMaximumPoolSize());
+        });
+    }
+
+    @Test
+    @EnabledForJreRange(max = JRE.JAVA_20)
+    void virtualThreadsIgnoredBeforeJava21() {
+        runner.withPropertyValues("spring.threads.virtual.enabled=true").run(context ->
+                assertInstanceOf(ThreadPoolExecutor.class, context.getBean("outboundExecutor", Executor.class)));
+    }
+
+    @Test
+    @EnabledForJreRange(min = JRE.JAVA_21)
+    void virtualThreadsWhenEnabled() {
+        runner.withPropertyValues("spring.threads.virtual.enabled=true").run(context -> {
+            Thread thread = threadOf(context.getBean("outboundExecutor", Executor.class));
+            // Thread.isVirtual() is Java 21 API and the default build targets 17
+            assertTrue((boolean) Thread.class.getMethod("isVirtual").invoke(thread));
+            assertTrue(thread.getName().startsWith("outbound-"));
+        });
+    }
+}
@@ -0,0 +1,169 @@
+package com.chatflow.server.handler;
+
+import com.chatflow.server.codec.BinaryMessageCodec;
+import com.chatflow.server.config.InboundProperties;
+import com.chatflow.server.config.RateLimitProperties;
+import com.chatflow.server.model.ServerResponse;
+import com.chatflow.server.ratelimit.RateLimiter;
+import com.chatflow.server.session.RoomSessionManager;
+import com.chatflow.server.support.StubWebSocketSession;
+import com.chatflow.server.validation.MessageValidator;
+import com.google.gson.Gson;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChatBinaryWebSocketHandlerTest {
+
+    private static final long TIMESTAMP = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+
+    private ChatBinaryWebSocketHandler binaryHandler;
+    private ChatWebSocketHandler textHandler;
+    private final Gson gson = new Gson();
+
+    @BeforeEach
+    void setUp() {
+        RoomSessionManager sessionManager = RoomSessionManager.builder().build();
+        MessageValidator validator = new MessageValidator();
+        ChatMessageProcessor processor = ChatMessageProcessor.builder(validator, sessionManager).build();
+        binaryHandler = new ChatBinaryWebSocketHandler(processor, sessionManager, new InboundProperties());
+        textHandler = new ChatWebSocketHandler(processor, sessionManager, new InboundProperties());
+    }
+
+    private StubWebSocketSession createSession(String id, String path) {
+        return new StubWebSocketSession(id, URI.create("ws://localhost:8080" + path));
+    }
+
+    private static byte[] frame(int userId, String username, String message) {
+        byte[] name = username.getBytes(StandardCharsets.UTF_8);
+        byte[] text = message.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(17 + name.length + text.length)
+                .putInt(userId)
+                .putLong(TIMESTAMP)
+                .put(BinaryMessageCodec.TYPE_TEXT)
+                .putShort((short) name.length)
+                .put(name)
+                .putShort((short) text.length)
+                .put(text)
+                .array();
+    }
+
+    @Test
+    void validMessage_returnsBinaryAck() throws Exception {
+        StubWebSocketSession session = createSession("s1", "/chat-bin/1");
+        binaryHandler.afterConnectionEstablished(session);
+
+        byte[] message = frame(1, "testuser", "hello");
+        binaryHandler.handleBinaryMessage(session, new BinaryMessage(message));
+
+        assertEquals(1, session.getSentBinaryMessages().size());
+        byte[] ack = session.getSentBinaryMessages().get(0);
+        assertEquals(BinaryMessageCodec.STATUS_OK, ack[0]);
+        assertArrayEquals(message, Arrays.copyOfRange(ack, 17, ack.length));
+    }
+
+    @Test
+    void invalidMessage_returnsBinaryErrorToSenderOnly() throws Exception {
+        StubWebSocketSession sender = createSession("s1", "/chat-bin/1");
+        StubWebSocketSession listener = createSession("s2", "/chat-bin/1");
+        binaryHandler.afterConnectionEstablished(sender);
+        binaryHandler.afterConnectionEstablished(listener);
+
+        binaryHandler.handleBinaryMessage(sender, new BinaryMessage(frame(0, "testuser", "hello")));
+
+        assertEquals(1, sender.getSentBinaryMessages().size());
+        assertEquals(BinaryMessageCodec.STATUS_ERROR, sender.getSentBinaryMessages().get(0)[0]);
+        assertTrue(listener.getSentBinaryMessages().isEmpty());
+    }
+
+    @Test
+    void overUserRateLimit_returnsBinaryError() throws Exception {
+        RateLimitProperties limits = new RateLimitProperties();
+        limits.setUserRate(0.001);
+        limits.setUserBurst(1);
+        RoomSessionManager sessionManager = RoomSessionManager.builder().build();
+        InboundProperties properties = new InboundProperties();
+        binaryHandler = new ChatBinaryWebSocketHandler(ChatMessageProcessor.builder(new MessageValidator(), sessionManager)
+                .inboundProperties(properties).rateLimiter(new RateLimiter(limits)).build(), sessionManager, properties);
+        StubWebSocketSession sender = createSession("s1", "/chat-bin/1");
+        binaryHandler.afterConnectionEstablished(sender);
+
+        binaryHandler.handleBinaryMessage(sender, new BinaryMessage(frame(9, "testuser", "hello")));
+        binaryHandler.handleBinaryMessage(sender, new BinaryMessage(frame(9, "testuser", "again")));
+        binaryHandler.handleBinaryMessage(sender, new BinaryMessage(frame(10, "testuser", "hello")));
+
+        assertEquals(BinaryMessageCodec.STATUS_OK, sender.getSentBinaryMessages().get(0)[0]);
+        ServerResponse limited = BinaryMessageCodec.decodeResponse(sender.getSentBinaryMessages().get(1));
+        assertEquals(RateLimiter.RATE_LIMITED.getErrorMessage(), limited.getError());
+        assertEquals(BinaryMessageCodec.STATUS_OK, sender.getSentBinaryMessages().get(2)[0]);
+    }
+
+    @Test
+    void retriedFrame_getsOriginalAckWithoutSecondDelivery() throws Exception {
+        StubWebSocketSession sender = createSession("s1", "/chat-bin/1");
+        StubWebSocketSession listener = createSession("s2", "/chat-bin/1");
+        binaryHandler.afterConnectionEstablished(sender);
+        binaryHandler.afterConnectionEstablished(listener);
+
+        byte[] message = withMessageId(frame(5, "testuser", "hello"), "c5-1");
+        binaryHandler.handleBinaryMessage(sender, new BinaryMessage(message));
+        binaryHandler.handleBinaryMessage(sender, new BinaryMessage(message));
+
+        assertEquals(1, listener.getSentBinaryMessages().size());
+        assertEquals(2, sender.getSentBinaryMessages().size());
+        assertArrayEquals(sender.getSentBinaryMessages().get(0), sender.getSentBinaryMessages().get(1));
+    }
+
+    private static byte[] withMessageId(byte[] frame, String messageId) {
+        byte[] id = messageId.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(frame.length + 2 + id.length)
+                .put(frame)
+                .putShort((short) id.length)
+                .put(id)
+                .array();
+    }
+
+    @Test
+    void binaryMessage_reachesTextSessionsInSameRoomAsJson() throws Exception {
+        StubWebSocketSession binarySession = createSession("s1", "/chat-bin/1");
+        StubWebSocketSession textSession = createSession("s2", "/chat/1");
+        binaryHandler.afterConnectionEstablished(binarySession);
+        textHandler.afterConnectionEstablished(textSession);
+
+        binaryHandler.handleBinaryMessage(binarySession, new BinaryMessage(frame(5, "testuser", "hello")));
+
+        assertEquals(1, binarySession.getSentBinaryMessages().size());
+        assertEquals(1, textSession.getSentMessages().size());
+        ServerResponse response = gson.fromJson(textSession.getSentMessages().get(0), ServerResponse.class);
+        assertEquals("OK", response.getStatus());
+        assertEquals("5", response.getOriginalMessage().getUserId());
+        assertEquals("2024-01-01T00:00:00Z", response.getOriginalMessage().getTimestamp());
+    }
+
+    @Test
+    void textMessage_reachesBinarySessionsInSameRoomAsBinary() throws Exception {
+        StubWebSocketSession textSession = createSession("s1", "/chat/1");
+        StubWebSocketSession binarySession = createSession("s2", "/chat-bin/1");
+        textHandler.afterConnectionEstablished(textSession);
+        binaryHandler.afterConnectionEstablished(binarySession);
+
+        String validJson = """
+                {"userId":"1","username":"testuser","message":"hello","timestamp":"2024-01-01T00:00:00Z","messageType":"TEXT"}
+                """;
+        textHandler.handleTextMessage(textSession, new TextMessage(validJson));
+
+        assertEquals(1, textSession.getSentMessages().size());
+        assertEquals(1, binarySession.getSentBinaryMessages().size());
+        byte[] ack = binarySession.getSentBinaryMessages().get(0);
+        assertArrayEquals(frame(1, "testuser", "hello"), Arrays.copyOfRange(ack, 17, ack.length));
+    }
+}
@@ -1,25 +1,31 @@
 package com.chatflow.server.handler;
 
+import com.chatflow.server.admission.AdmissionControl;
+import com.chatflow.server.clock.ServerClock;
+import com.chatflow.server.codec.OutboundFrame;
+import com.chatflow.server.config.HistoryProperties;
+import com.chatflow.server.config.InboundProperties;
+import com.chatflow.server.config.OutboundProperties;
+import com.chatflow.server.config.RateLimitProperties;
+import com.chatflow.server.metrics.Phase;
+import com.chatflow.server.metrics.ServerMetrics;
 import com.chatflow.server.model.ServerResponse;
+import com.chatflow.server.ratelimit.RateLimiter;
+import com.chatflow.server.session.PresenceBroadcaster;
+import com.chatflow.server.session.Room;
 import com.chatflow.server.session.RoomSessionManager;
+import com.chatflow.server.store.MessageLog;
+import com.chatflow.server.support.StubWebSocketSession;
 import com.chatflow.server.validation.MessageValidator;
 import com.google.gson.Gson;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.springframework.http.HttpHeaders;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
-import org.springframework.web.socket.WebSocketExtension;
-import org.springframework.web.socket.WebSocketSession;
 
-import java.io.IOException;
-import java.net.InetSocketAddress;
 import java.net.URI;
-import java.security.Principal;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -31,9 +37,10 @@ class ChatWebSocketHandlerTest {
 
     @BeforeEach
     void setUp() {
-        sessionManager = new RoomSessionManager();
+        sessionManager = RoomSessionManager.builder().build();
         MessageValidator validator = new MessageValidator();
-        handler = new ChatWebSocketHandler(validator, sessionManager);
+        handler = new ChatWebSocketHandler(ChatMessageProcessor.builder(validator, sessionManager).build(),
+                sessionManager, new InboundProperties());
     }
 
     private StubWebSocketSession createSession(String id, String roomId) {
@@ -46,7 +53,19 @@ class ChatWebSocketHandlerTest {
         handler.afterConnectionEstablished(session);
 
         assertEquals(1, sessionManager.getTotalConnections());
-        assertTrue(sessionManager.getSessions("1").contains(session));
+        assertTrue(sessionManager.getSessionIds("1").contains(session.getId()));
+    }
+
+    @Test
+    void invalidRoomId_closesSessionWithoutJoining() throws Exception {
+        StubWebSocketSession session = createSession("s1", "no.dots");
+        handler.afterConnectionEstablished(session);
+        handler.handleTextMessage(session, new TextMessage(message("1")));
+
+        assertFalse(session.isOpen());
+        assertEquals(CloseStatus.BAD_DATA.getCode(), session.getCloseStatus().getCode());
+        assertEquals(0, sessionManager.getTotalConnections());
+        assertTrue(session.getSentMessages().isEmpty());
     }
 
     @Test
@@ -75,6 +94,27 @@ class ChatWebSocketHandlerTest {
         assertEquals("testuser", response.getOriginalMessage().getUsername());
     }
 
+    @Test
+    void messageId_echoedInOkAndErrorResponses() throws Exception {
+        StubWebSocketSession session = createSession("s1", "1");
+        handler.afterConnectionEstablished(session);
+
+        handler.handleTextMessage(session, new TextMessage("""
+                {"messageId":"c1-1","userId":"1","username":"testuser","message":"hello","timestamp":"2024-01-01T00:00:00Z","messageType":"TEXT"}
+                """));
+        handler.handleTextMessage(session, new TextMessage("""
+                {"messageId":"c1-2","userId":"0","username":"testuser","message":"hello","timestamp":"2024-01-01T00:00:00Z","messageType":"TEXT"}
+                """));
+
+        ServerResponse ok = gson.fromJson(session.getSentMessages().get(0), ServerResponse.class);
+        assertEquals("OK", ok.getStatus());
+        assertEquals("c1-1", ok.getMessageId());
+        assertFalse(session.getSentMessages().get(0).contains("\"originalMessage\":{\"messageId\""));
+        ServerResponse error = gson.fromJson(session.getSentMessages().get(1), ServerResponse.class);
+        assertEquals("ERROR", error.getStatus());
+        assertEquals("c1-2", error.getMessageId());
+    }
+
     @Test
     void invalidJson_returnsErrorResponse() throws Exception {
         StubWebSocketSession session = createSession("s1", "1");
@@ -112,50 +152,489 @@ class ChatWebSocketHandlerTest {
         handler.afterConnectionEstablished(session2);
 
         assertEquals(2, sessionManager.getTotalConnections());
-        assertEquals(1, sessionManager.getSessions("1").size());
-        assertEquals(1, sessionManager.getSessions("2").size());
-    }
-
-    /**
-     * Hand-written stub replacing Mockito mock.
-     * Captures sent messages for assertion.
-     */
-    static class StubWebSocketSession implements WebSocketSession {
-        private final String id;
-        private final URI uri;
-        private boolean open = true;
-        private final List<String> sentMessages = new ArrayList<>();
-
-        StubWebSocketSession(String id, URI uri) {
-            this.id = id;
-            this.uri = uri;
+        assertEquals(1, sessionManager.getSessionIds("1").size());
+        assertEquals(1, sessionManager.getSessionIds("2").size());
+    }
+
+    @Test
+    void validMessage_broadcastToAllSessionsInRoom() throws Exception {
+        StubWebSocketSession sender = createSession("s1", "1");
+        StubWebSocketSession listener = createSession("s2", "1");
+        StubWebSocketSession otherRoom = createSession("s3", "2");
+        handler.afterConnectionEstablished(sender);
+        handler.afterConnectionEstablished(listener);
+        handler.afterConnectionEstablished(otherRoom);
+
+        String validJson = """
+                {"userId":"1","username":"testuser","message":"hello","timestamp":"2024-01-01T00:00:00Z","messageType":"TEXT"}
+                """;
+        handler.handleTextMessage(sender, new TextMessage(validJson));
+
+        assertEquals(1, sender.getSentMessages().size());
+        assertEquals(1, listener.getSentMessages().size());
+        assertTrue(otherRoom.getSentMessages().isEmpty());
+        // Encoded once: every recipient receives the same payload instance
+        assertSame(sender.getSentMessages().get(0), listener.getSentMessages().get(0));
+    }
+
+    @Test
+    void invalidMessage_errorSentOnlyToSender() throws Exception {
+        StubWebSocketSession sender = createSession("s1", "1");
+        StubWebSocketSession listener = createSession("s2", "1");
+        handler.afterConnectionEstablished(sender);
+        handler.afterConnectionEstablished(listener);
+
+        handler.handleTextMessage(sender, new TextMessage("not json"));
+
+        assertEquals(1, sender.getSentMessages().size());
+        assertTrue(listener.getSentMessages().isEmpty());
+    }
+
+    @Test
+    void closedSession_skippedDuringBroadcast() throws Exception {
+        StubWebSocketSession sender = createSession("s1", "1");
+        StubWebSocketSession closed = createSession("s2", "1");
+        handler.afterConnectionEstablished(sender);
+        handler.afterConnectionEstablished(closed);
+        closed.close();
+
+        String validJson = """
+                {"userId":"1","username":"testuser","message":"hello","timestamp":"2024-01-01T00:00:00Z","messageType":"TEXT"}
+                """;
+        handler.handleTextMessage(sender, new TextMessage(validJson));
+
+        assertEquals(1, sender.getSentMessages().size());
+        assertTrue(closed.getSentMessages().isEmpty());
+    }
+
+    private static String message(String userId) {
+        return """
+                {"userId":"%s","username":"testuser","message":"hello","timestamp":"2024-01-01T00:00:00Z","messageType":"TEXT"}
+                """.formatted(userId);
+    }
+
+    @Test
+    void batch_broadcastsOneResponseWithResultPerItem() throws Exception {
+        StubWebSocketSession sender = createSession("s1", "1");
+        StubWebSocketSession listener = createSession("s2", "1");
+        handler.afterConnectionEstablished(sender);
+        handler.afterConnectionEstablished(listener);
+
+        String batch = "[" + message("1") + "," + message("0") + "," + message("2") + "]";
+        handler.handleTextMessage(sender, new TextMessage(batch));
+
+        assertEquals(1, sender.getSentMessages().size());
+        assertEquals(1, listener.getSentMessages().size());
+        ServerResponse response = gson.fromJson(sender.getSentMessages().get(0), ServerResponse.class);
+        assertEquals("OK", response.getStatus());
+        assertNotNull(response.getServerTimestamp());
+        assertEquals(3, response.getResults().size());
+        assertEquals("OK", response.getResults().get(0).getStatus());
+        assertEquals("ERROR", response.getResults().get(1).getStatus());
+        assertTrue(response.getResults().get(1).getError().contains("userId"));
+        assertEquals("2", response.getResults().get(2).getOriginalMessage().getUserId());
+    }
+
+    @Test
+    void batch_itemsEchoMessageIds() throws Exception {
+        StubWebSocketSession sender = createSession("s1", "1");
+        handler.afterConnectionEstablished(sender);
+
+        String first = message("1").replace("{", "{\"messageId\":\"c1-1\",");
+        String second = message("0").replace("{", "{\"messageId\":\"c1-2\",");
+        handler.handleTextMessage(sender, new TextMessage("[" + first + "," + second + "]"));
+
+        ServerResponse response = gson.fromJson(sender.getSentMessages().get(0), ServerResponse.class);
+        assertNull(response.getMessageId());
+        assertEquals("c1-1", response.getResults().get(0).getMessageId());
+        assertEquals("c1-2", response.getResults().get(1).getMessageId());
+    }
+
+    @Test
+    void batch_nothingAccepted_sentOnlyToSender() throws Exception {
+        StubWebSocketSession sender = createSession("s1", "1");
+        StubWebSocketSession listener = createSession("s2", "1");
+        handler.afterConnectionEstablished(sender);
+        handler.afterConnectionEstablished(listener);
+
+        handler.handleTextMessage(sender, new TextMessage("[" + message("0") + ",null]"));
+
+        assertEquals(1, sender.getSentMessages().size());
+        assertTrue(listener.getSentMessages().isEmpty());
+        ServerResponse response = gson.fromJson(sender.getSentMessages().get(0), ServerResponse.class);
+        assertEquals(2, response.getResults().size());
+        assertEquals("ERROR", response.getResults().get(1).getStatus());
+    }
+
+    @Test
+    void batch_overLimit_rejectedAsWhole() throws Exception {
+        InboundProperties properties = new InboundProperties();
+        properties.setMaxBatchSize(2);
+        handler = new ChatWebSocketHandler(ChatMessageProcessor.builder(new MessageValidator(), sessionManager)
+                .inboundProperties(properties).build(), sessionManager, properties);
+        StubWebSocketSession sender = createSession("s1", "1");
+        handler.afterConnectionEstablished(sender);
+
+        handler.handleTextMessage(sender, new TextMessage("[" + message("1") + "," + message("2") + "," + message("3") + "]"));
+
+        ServerResponse response = gson.fromJson(sender.getSentMessages().get(0), ServerResponse.class);
+        assertEquals("ERROR", response.getStatus());
+        assertNull(response.getResults());
+    }
+
+    @Test
+    void acceptedMessages_handedToMessageLog() throws Exception {
+        List<String> logged = new ArrayList<>();
+        MessageLog messageLog = new MessageLog() {
+            @Override
+            public boolean append(String roomId, OutboundFrame frame) {
+                logged.add(roomId + ":" + gson.fromJson(frame.asText().getPayload(), ServerResponse.class)
+                        .getOriginalMessage().getUserId());
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        InboundProperties properties = new InboundProperties();
+        handler = new ChatWebSocketHandler(ChatMessageProcessor.builder(new MessageValidator(), sessionManager)
+                .inboundProperties(properties).messageLog(messageLog).build(), sessionManager, properties);
+        StubWebSocketSession sender = createSession("s1", "1");
+        handler.afterConnectionEstablished(sender);
+
+        handler.handleTextMessage(sender, new TextMessage(message("1")));
+        handler.handleTextMessage(sender, new TextMessage("not json"));
+        handler.handleTextMessage(sender, new TextMessage("[" + message("2") + ",null," + message("3") + "]"));
+
+        // Batch items are logged one by one; rejected messages are not logged
+        assertEquals(List.of("1:1", "1:2", "1:3"), logged);
+    }
+
+    @Test
+    void lateJoiner_receivesRecentRoomHistoryInOrder() throws Exception {
+        OutboundProperties outbound = new OutboundProperties();
+        HistoryProperties history = new HistoryProperties();
+        history.setSize(2);
+        sessionManager = RoomSessionManager.builder().outboundProperties(outbound).historyProperties(history).build();
+        handler = new ChatWebSocketHandler(ChatMessageProcessor.builder(new MessageValidator(), sessionManager).build(),
+                sessionManager, new InboundProperties());
+        StubWebSocketSession sender = createSession("s1", "1");
+        handler.afterConnectionEstablished(sender);
+        for (String userId : List.of("1", "2", "3")) {
+            handler.handleTextMessage(sender, new TextMessage(message(userId)));
         }
+        handler.handleTextMessage(sender, new TextMessage("not json"));
 
-        List<String> getSentMessages() { return sentMessages; }
+        StubWebSocketSession joiner = createSession("s2", "1");
+        handler.afterConnectionEstablished(joiner);
+        StubWebSocketSession otherRoom = createSession("s3", "2");
+        handler.afterConnectionEstablished(otherRoom);
 
-        @Override public String getId() { return id; }
-        @Override public URI getUri() { return uri; }
-        @Override public boolean isOpen() { return open; }
+        List<String> replayed = joiner.getSentMessages().stream()
+                .map(json -> gson.fromJson(json, ServerResponse.class).getOriginalMessage().getUserId())
+                .toList();
+        assertEquals(List.of("2", "3"), replayed);
+        assertTrue(otherRoom.getSentMessages().isEmpty());
+    }
 
-        @Override
-        public void sendMessage(org.springframework.web.socket.WebSocketMessage<?> message) throws IOException {
-            sentMessages.add(message.getPayload().toString());
+    @Test
+    void reconnectWithSince_resumesFromHistoryThenLog() throws Exception {
+        List<OutboundFrame> logged = new ArrayList<>();
+        MessageLog messageLog = new MessageLog() {
+            @Override
+            public boolean append(String roomId, OutboundFrame frame) {
+                return logged.add(frame);
+            }
+
+            @Override
+            public List<OutboundFrame> read(String roomId, long after, long before, int max) {
+                return logged.stream().filter(frame -> seqOf(frame) > after && seqOf(frame) < before).toList();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        HistoryProperties history = new HistoryProperties();
+        history.setSize(2);
+        InboundProperties properties = new InboundProperties();
+        sessionManager = RoomSessionManager.builder().historyProperties(history).messageLog(messageLog).build();
+        handler = new ChatWebSocketHandler(ChatMessageProcessor.builder(new MessageValidator(), sessionManager)
+                .inboundProperties(properties).messageLog(messageLog).build(), sessionManager, properties);
+        StubWebSocketSession sender = createSession("s1", "1");
+        handler.afterConnectionEstablished(sender);
+        for (String userId : List.of("1", "2", "3", "4", "5")) {
+            handler.handleTextMessage(sender, new TextMessage(message(userId)));
         }
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L), seqs(sender));
+
+        // 2 and 3 are only in the log, 4 and 5 still in the history
+        StubWebSocketSession resumed = new StubWebSocketSession("s2", URI.create("ws://localhost:8080/chat/1?since=1"));
+        handler.afterConnectionEstablished(resumed);
+        assertEquals(List.of(2L, 3L, 4L, 5L), seqs(resumed));
+
+        StubWebSocketSession upToDate = new StubWebSocketSession("s3", URI.create("ws://localhost:8080/chat/1?since=5"));
+        handler.afterConnectionEstablished(upToDate);
+        assertTrue(upToDate.getSentMessages().isEmpty());
+
+        StubWebSocketSession malformed = new StubWebSocketSession("s4", URI.create("ws://localhost:8080/chat/1?since=x"));
+        handler.afterConnectionEstablished(malformed);
+        assertEquals(List.of(4L, 5L), seqs(malformed));
+    }
+
+    @Test
+    void metrics_timePhasesAndCountRejectionsByReason() throws Exception {
+        ServerMetrics metrics = new ServerMetrics();
+        InboundProperties properties = new InboundProperties();
+        handler = new ChatWebSocketHandler(ChatMessageProcessor.builder(new MessageValidator(), sessionManager)
+                .inboundProperties(properties).metrics(metrics).build(), sessionManager, properties);
+        StubWebSocketSession sender = createSession("s1", "1");
+        StubWebSocketSession listener = createSession("s2", "1");
+        handler.afterConnectionEstablished(sender);
+        handler.afterConnectionEstablished(listener);
+
+        handler.handleTextMessage(sender, new TextMessage(message("1")));
+        handler.handleTextMessage(sender, new TextMessage("not json"));
+        handler.handleTextMessage(sender, new TextMessage("[" + message("2") + "," + message("0") + "]"));
+
+        // Every frame is parsed; only the two that were broadcast are serialized and sent
+        assertEquals(3, metrics.getCount(Phase.PARSE));
+        assertEquals(2, metrics.getCount(Phase.SERIALIZE));
+        assertEquals(2, metrics.getCount(Phase.SEND));
+        assertEquals(1, metrics.getErrorCount(MessageValidator.USER_ID_OUT_OF_RANGE.getErrorMessage()));
+        assertEquals(1, metrics.getErrorCount("Invalid JSON format"));
+
+        Room room = sessionManager.getRoom("1");
+        assertEquals(2, room.getReceived());
+        assertEquals(4, room.getDelivered());
+    }
+
+    @Test
+    void overRateLimit_rejectedWithoutBroadcast() throws Exception {
+        RateLimitProperties limits = new RateLimitProperties();
+        limits.setUserRate(0.001);
+        limits.setUserBurst(2);
+        InboundProperties properties = new InboundProperties();
+        ServerMetrics metrics = new ServerMetrics();
+        handler = new ChatWebSocketHandler(ChatMessageProcessor.builder(new MessageValidator(), sessionManager)
+                .inboundProperties(properties).metrics(metrics).rateLimiter(new RateLimiter(limits)).build(),
+                sessionManager, properties);
+        StubWebSocketSession sender = createSession("s1", "1");
+        StubWebSocketSession listener = createSession("s2", "1");
+        handler.afterConnectionEstablished(sender);
+        handler.afterConnectionEstablished(listener);
+
+        handler.handleTextMessage(sender, new TextMessage(message("1")));
+        String limited = message("1").replace("{", "{\"messageId\":\"c1-2\",");
+        handler.handleTextMessage(sender, new TextMessage("[" + message("1") + "," + limited + "]"));
+        handler.handleTextMessage(sender, new TextMessage(limited));
+        // Another user is not affected
+        handler.handleTextMessage(sender, new TextMessage(message("2")));
+
+        assertEquals(3, listener.getSentMessages().size());
+        ServerResponse batch = gson.fromJson(sender.getSentMessages().get(1), ServerResponse.class);
+        assertEquals("OK", batch.getResults().get(0).getStatus());
+        assertEquals("ERROR", batch.getResults().get(1).getStatus());
+        assertEquals(RateLimiter.RATE_LIMITED.getErrorMessage(), batch.getResults().get(1).getError());
+        ServerResponse rejected = gson.fromJson(sender.getSentMessages().get(2), ServerResponse.class);
+        assertEquals("ERROR", rejected.getStatus());
+        assertEquals(RateLimiter.RATE_LIMITED.getErrorMessage(), rejected.getError());
+        assertEquals("c1-2", rejected.getMessageId());
+        assertEquals("2", gson.fromJson(sender.getSentMessages().get(3), ServerResponse.class)
+                .getOriginalMessage().getUserId());
+        assertEquals(2, metrics.getErrorCount(RateLimiter.RATE_LIMITED.getErrorMessage()));
+    }
+
+    @Test
+    void overloaded_rejectedEarlyWithMessageIdAndWithoutBroadcast() throws Exception {
+        InboundProperties properties = new InboundProperties();
+        ServerMetrics metrics = new ServerMetrics();
+        // At most one message in flight, and one is held by the test
+        AdmissionControl admission = new AdmissionControl(0, 1, 1, false);
+        handler = new ChatWebSocketHandler(ChatMessageProcessor.builder(new MessageValidator(), sessionManager)
+                .inboundProperties(properties).metrics(metrics).admission(admission).build(), sessionManager, properties);
+        StubWebSocketSession sender = createSession("s1", "1");
+        StubWebSocketSession listener = createSession("s2", "1");
+        handler.afterConnectionEstablished(sender);
+        handler.afterConnectionEstablished(listener);
+        assertTrue(admission.tryAdmit());
+
+        handler.handleTextMessage(sender, new TextMessage(message("1").replace("{", "{\"messageId\":\"c1-1\",")));
+        handler.handleTextMessage(sender, new TextMessage("[" + message("1") + "]"));
+        admission.finished();
+        handler.handleTextMessage(sender, new TextMessage(message("1")));
+
+        assertEquals(1, listener.getSentMessages().size());
+        ServerResponse rejected = gson.fromJson(sender.getSentMessages().get(0), ServerResponse.class);
+        assertEquals("ERROR", rejected.getStatus());
+        assertEquals(AdmissionControl.OVERLOADED.getErrorMessage(), rejected.getError());
+        assertEquals("c1-1", rejected.getMessageId());
+        ServerResponse batch = gson.fromJson(sender.getSentMessages().get(1), ServerResponse.class);
+        assertEquals(AdmissionControl.OVERLOADED.getErrorMessage(), batch.getError());
+        assertEquals("OK", gson.fromJson(sender.getSentMessages().get(2), ServerResponse.class).getStatus());
+        assertEquals(2, metrics.getErrorCount(AdmissionControl.OVERLOADED.getErrorMessage()));
+        assertEquals(2, admission.getRejected());
+        assertEquals(0, admission.getInFlight());
+    }
+
+    @Test
+    void retriedMessage_getsOriginalAckWithoutSecondDelivery() throws Exception {
+        ServerMetrics metrics = new ServerMetrics();
+        InboundProperties properties = new InboundProperties();
+        handler = new ChatWebSocketHandler(ChatMessageProcessor.builder(new MessageValidator(), sessionManager)
+                .inboundProperties(properties).metrics(metrics).build(), sessionManager, properties);
+        StubWebSocketSession sender = createSession("s1", "1");
+        StubWebSocketSession listener = createSession("s2", "1");
+        handler.afterConnectionEstablished(sender);
+        handler.afterConnectionEstablished(listener);
+
+        String first = message("1").replace("{", "{\"messageId\":\"c1-1\",");
+        handler.handleTextMessage(sender, new TextMessage(first));
+        // The retry arrives on a new connection after the first one was lost
+        StubWebSocketSession reconnected = createSession("s3", "1");
+        handler.afterConnectionEstablished(reconnected);
+        handler.handleTextMessage(reconnected, new TextMessage(first));
+        // The same id from another user is a different message
+        handler.handleTextMessage(sender, new TextMessage(message("2").replace("{", "{\"messageId\":\"c1-1\",")));
+
+        // The new connection was replayed the original on joining, then acked with it again
+        assertEquals(sender.getSentMessages().get(0), reconnected.getSentMessages().get(1));
+        assertEquals(List.of(1L, 2L), seqs(listener));
+        assertEquals(List.of(1L, 1L, 2L), seqs(reconnected));
+        assertEquals(1, metrics.getRetryCount());
+    }
+
+    @Test
+    void retriedBatch_itemsGetOriginalSequenceNumbers() throws Exception {
+        StubWebSocketSession sender = createSession("s1", "1");
+        StubWebSocketSession listener = createSession("s2", "1");
+        handler.afterConnectionEstablished(sender);
+        handler.afterConnectionEstablished(listener);
+
+        String first = message("1").replace("{", "{\"messageId\":\"c1-1\",");
+        String second = message("1").replace("{", "{\"messageId\":\"c1-2\",");
+        handler.handleTextMessage(sender, new TextMessage("[" + first + "," + second + "]"));
+        handler.handleTextMessage(sender, new TextMessage("[" + first + "," + second + "]"));
+        // A retry of one item on its own
+        handler.handleTextMessage(sender, new TextMessage(second));
+
+        assertEquals(1, listener.getSentMessages().size());
+        assertEquals(3, sender.getSentMessages().size());
+        ServerResponse retried = gson.fromJson(sender.getSentMessages().get(1), ServerResponse.class);
+        assertEquals("OK", retried.getResults().get(0).getStatus());
+        assertEquals(1L, retried.getResults().get(0).getSeq());
+        assertEquals(2L, retried.getResults().get(1).getSeq());
+        ServerResponse single = gson.fromJson(sender.getSentMessages().get(2), ServerResponse.class);
+        assertEquals("c1-2", single.getMessageId());
+        assertEquals(2L, single.getSeq());
+    }
+
+    @Test
+    void retriedMessage_notRateLimited() throws Exception {
+        RateLimitProperties limits = new RateLimitProperties();
+        limits.setUserRate(0.001);
+        limits.setUserBurst(1);
+        InboundProperties properties = new InboundProperties();
+        handler = new ChatWebSocketHandler(ChatMessageProcessor.builder(new MessageValidator(), sessionManager)
+                .inboundProperties(properties).rateLimiter(new RateLimiter(limits)).build(), sessionManager, properties);
+        StubWebSocketSession sender = createSession("s1", "1");
+        handler.afterConnectionEstablished(sender);
+
+        String first = message("1").replace("{", "{\"messageId\":\"c1-1\",");
+        handler.handleTextMessage(sender, new TextMessage(first));
+        handler.handleTextMessage(sender, new TextMessage(first));
+
+        assertEquals(sender.getSentMessages().get(0), sender.getSentMessages().get(1));
+    }
+
+    @Test
+    void join_ackedToSenderOnlyAndAnnouncedOnce() throws Exception {
+        PresenceBroadcaster broadcaster = new PresenceBroadcaster(sessionManager, ServerClock.PRECISE, 0);
+        StubWebSocketSession listener = createSession("s0", "1");
+        handler.afterConnectionEstablished(listener);
+        for (int i = 1; i <= 50; i++) {
+            StubWebSocketSession joiner = createSession("s" + i, "1");
+            handler.afterConnectionEstablished(joiner);
+            handler.handleTextMessage(joiner, new TextMessage(message(Integer.toString(i)).replace("TEXT", "JOIN")));
+            ServerResponse ack = gson.fromJson(joiner.getSentMessages().get(0), ServerResponse.class);
+            assertEquals("OK", ack.getStatus());
+            assertNull(ack.getSeq());
+        }
+        assertTrue(listener.getSentMessages().isEmpty());
+
+        assertEquals(1, broadcaster.flush());
+
+        assertEquals(1, listener.getSentMessages().size());
+        ServerResponse update = gson.fromJson(listener.getSentMessages().get(0), ServerResponse.class);
+        assertEquals("PRESENCE", update.getStatus());
+        assertEquals(50, update.getMemberCount());
+        assertEquals(50, update.getJoined().length);
+        assertEquals(0, update.getLeft().length);
+        assertEquals(50, sessionManager.getRoom("1").getPresence().count());
+    }
+
+    @Test
+    void joinThenLeaveWithinInterval_notAnnounced() throws Exception {
+        PresenceBroadcaster broadcaster = new PresenceBroadcaster(sessionManager, ServerClock.PRECISE, 0);
+        StubWebSocketSession sender = createSession("s1", "1");
+        StubWebSocketSession listener = createSession("s2", "1");
+        handler.afterConnectionEstablished(sender);
+        handler.afterConnectionEstablished(listener);
+
+        handler.handleTextMessage(sender, new TextMessage(message("7").replace("TEXT", "JOIN")));
+        handler.handleTextMessage(sender, new TextMessage(message("7").replace("TEXT", "LEAVE")));
+        broadcaster.flush();
+
+        assertTrue(listener.getSentMessages().isEmpty());
+        assertEquals(0, sessionManager.getRoom("1").getPresence().count());
+    }
+
+    @Test
+    void connectionClosed_removesUsersJoinedThroughIt() throws Exception {
+        PresenceBroadcaster broadcaster = new PresenceBroadcaster(sessionManager, ServerClock.PRECISE, 0);
+        StubWebSocketSession sender = createSession("s1", "1");
+        StubWebSocketSession listener = createSession("s2", "1");
+        handler.afterConnectionEstablished(sender);
+        handler.afterConnectionEstablished(listener);
+        handler.handleTextMessage(sender, new TextMessage(message("7").replace("TEXT", "JOIN")));
+        handler.handleTextMessage(listener, new TextMessage(message("8").replace("TEXT", "JOIN")));
+        broadcaster.flush();
+
+        handler.afterConnectionClosed(sender, CloseStatus.NORMAL);
+        broadcaster.flush();
+
+        ServerResponse update = gson.fromJson(listener.getSentMessages().get(2), ServerResponse.class);
+        assertArrayEquals(new int[] {7}, update.getLeft());
+        assertEquals(1, update.getMemberCount());
+        assertArrayEquals(new int[] {8}, sessionManager.getRoom("1").getPresence().userIds());
+    }
+
+    @Test
+    void batchOfJoins_answeredToSenderOnly() throws Exception {
+        StubWebSocketSession sender = createSession("s1", "1");
+        StubWebSocketSession listener = createSession("s2", "1");
+        handler.afterConnectionEstablished(sender);
+        handler.afterConnectionEstablished(listener);
+
+        String join = message("1").replace("TEXT", "JOIN");
+        String otherJoin = message("2").replace("TEXT", "JOIN");
+        handler.handleTextMessage(sender, new TextMessage("[" + join + "," + otherJoin + "]"));
+
+        assertTrue(listener.getSentMessages().isEmpty());
+        ServerResponse response = gson.fromJson(sender.getSentMessages().get(0), ServerResponse.class);
+        assertEquals("OK", response.getResults().get(1).getStatus());
+        assertNull(response.getResults().get(1).getSeq());
+        assertEquals(2, sessionManager.getRoom("1").getPresence().count());
+    }
+
+    private long seqOf(OutboundFrame frame) {
+        return gson.fromJson(frame.asText().getPayload(), ServerResponse.class).getSeq();
+    }
 
-        @Override public void close() { open = false; }
-        @Override public void close(CloseStatus status) { open = false; }
-
-        // --- unused interface methods ---
-        @Override public HttpHeaders getHandshakeHeaders() { return new HttpHeaders(); }
-        @Override public Map<String, Object> getAttributes() { return Collections.emptyMap(); }
-        @Override public Principal getPrincipal() { return null; }
-        @Override public InetSocketAddress getLocalAddress() { return null; }
-        @Override public InetSocketAddress getRemoteAddress() { return null; }
-        @Override public String getAcceptedProtocol() { return null; }
-        @Override public void setTextMessageSizeLimit(int i) {}
-        @Override public int getTextMessageSizeLimit() { return 0; }
-        @Override public void setBinaryMessageSizeLimit(int i) {}
-        @Override public int getBinaryMessageSizeLimit() { return 0; }
-        @Override public List<WebSocketExtension> getExtensions() { return Collections.emptyList(); }
+    private List<Long> seqs(StubWebSocketSession session) {
+        return session.getSentMessages().stream()
+                .map(json -> gson.fromJson(json, ServerResponse.class).getSeq())
+                .toList();
     }
 }
@@ -0,0 +1,45 @@
+package com.chatflow.server.handler;
+
+import com.chatflow.server.support.StubWebSocketSession;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PartialFramesTest {
+
+    private final PartialFrames frames = new PartialFrames(10);
+    private final StubWebSocketSession session = new StubWebSocketSession("s1", URI.create("ws://localhost:8080/chat/1"));
+
+    @Test
+    void wholeFrame_passesThroughWithoutBuffering() throws Exception {
+        TextMessage message = new TextMessage("hello");
+        assertSame(message.getPayload(), frames.text(session, message));
+        assertTrue(session.getAttributes().isEmpty());
+    }
+
+    @Test
+    void parts_reassembledOnLastPart() throws Exception {
+        assertNull(frames.text(session, new TextMessage("hel", false)));
+        assertNull(frames.text(session, new TextMessage("lo ", false)));
+        assertEquals("hello you", frames.text(session, new TextMessage("you", true)));
+        assertTrue(session.getAttributes().isEmpty());
+
+        assertNull(frames.binary(session, new BinaryMessage(new byte[] {1, 2}, false)));
+        assertEquals(ByteBuffer.wrap(new byte[] {1, 2, 3}), frames.binary(session, new BinaryMessage(new byte[] {3}, true)));
+    }
+
+    @Test
+    void oversizedFrame_closesSession() throws Exception {
+        assertNull(frames.text(session, new TextMessage("123456", false)));
+        assertNull(frames.text(session, new TextMessage("789012", true)));
+
+        assertEquals(CloseStatus.TOO_BIG_TO_PROCESS, session.getCloseStatus());
+        assertTrue(session.getAttributes().isEmpty());
+    }
+}
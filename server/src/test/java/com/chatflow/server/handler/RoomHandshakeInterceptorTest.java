@@ -0,0 +1,117 @@
+package com.chatflow.server.handler;
+
+import com.chatflow.server.admission.AdmissionControl;
+import com.chatflow.server.cluster.RoomPlacement;
+import com.chatflow.server.config.ClusterProperties;
+import com.chatflow.server.session.RoomSessionManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoomHandshakeInterceptorTest {
+
+    private static final String SELF = "ws://node-1:8080";
+    private static final String OTHER = "ws://node-2:8080";
+
+    private final RoomSessionManager sessionManager = RoomSessionManager.builder().build();
+
+    private static RoomPlacement placement(boolean redirect) {
+        ClusterProperties properties = new ClusterProperties();
+        properties.setSelf(SELF);
+        properties.setNodes(List.of(SELF, OTHER));
+        properties.setRedirect(redirect);
+        return new RoomPlacement(properties);
+    }
+
+    // A room id the ring gives to the given node
+    private static String roomOwnedBy(RoomPlacement placement, String node) {
+        for (int i = 0; ; i++) {
+            if (placement.ownerOf("room-" + i).equals(node)) {
+                return "room-" + i;
+            }
+        }
+    }
+
+    private static MockHttpServletRequest request(String path, String query) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+        request.setQueryString(query);
+        return request;
+    }
+
+    private boolean handshake(RoomHandshakeInterceptor interceptor, MockHttpServletRequest request,
+                              MockHttpServletResponse response, Map<String, Object> attributes) {
+        ServletServerHttpResponse serverResponse = new ServletServerHttpResponse(response);
+        boolean accepted = interceptor.beforeHandshake(new ServletServerHttpRequest(request), serverResponse,
+                null, attributes);
+        // Headers reach the servlet response when it is flushed, as the handshake handler does
+        serverResponse.close();
+        return accepted;
+    }
+
+    @Test
+    void roomOwnedElsewhere_redirectedToOwnerWithPathAndQuery() {
+        RoomPlacement placement = placement(true);
+        RoomHandshakeInterceptor interceptor = new RoomHandshakeInterceptor(placement);
+        String roomId = roomOwnedBy(placement, OTHER);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        Map<String, Object> attributes = new HashMap<>();
+
+        assertFalse(handshake(interceptor, request("/chat-bin/" + roomId, "since=42"), response, attributes));
+
+        assertEquals(HttpStatus.TEMPORARY_REDIRECT.value(), response.getStatus());
+        assertEquals(OTHER + "/chat-bin/" + roomId + "?since=42", response.getHeader(HttpHeaders.LOCATION));
+        assertTrue(attributes.isEmpty());
+    }
+
+    @Test
+    void roomOwnedHere_acceptedWithoutCreatingRoom() {
+        RoomPlacement placement = placement(true);
+        RoomHandshakeInterceptor interceptor = new RoomHandshakeInterceptor(placement);
+        String roomId = roomOwnedBy(placement, SELF);
+        Map<String, Object> attributes = new HashMap<>();
+
+        assertTrue(handshake(interceptor, request("/chat/" + roomId, null), new MockHttpServletResponse(), attributes));
+
+        assertEquals(roomId, attributes.get(RoomIds.ROOM_ID_ATTRIBUTE));
+        // Created by the session joining it, not by the handshake
+        assertNull(sessionManager.getRoom(roomId));
+    }
+
+    @Test
+    void redirectsOff_acceptsEveryRoom() {
+        RoomPlacement placement = placement(false);
+        RoomHandshakeInterceptor interceptor = new RoomHandshakeInterceptor(placement);
+        String roomId = roomOwnedBy(placement, OTHER);
+
+        assertTrue(handshake(interceptor, request("/chat/" + roomId, null), new MockHttpServletResponse(),
+                new HashMap<>()));
+        assertFalse(placement.isLocal(roomId));
+    }
+
+    @Test
+    void overloadedAndRefusingHandshakes_serviceUnavailable() {
+        RoomPlacement placement = placement(false);
+        AdmissionControl admission = new AdmissionControl(0, 1, 1, true);
+        RoomHandshakeInterceptor interceptor = new RoomHandshakeInterceptor(placement, admission);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        Map<String, Object> attributes = new HashMap<>();
+        admission.tryAdmit();
+
+        assertFalse(handshake(interceptor, request("/chat/1", null), response, attributes));
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE.value(), response.getStatus());
+        assertTrue(attributes.isEmpty());
+        admission.finished();
+        assertTrue(handshake(interceptor, request("/chat/1", null), new MockHttpServletResponse(), attributes));
+    }
+}
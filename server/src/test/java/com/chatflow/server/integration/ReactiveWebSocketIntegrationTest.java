@@ -0,0 +1,145 @@
+package com.chatflow.server.integration;
+
+import com.chatflow.server.ChatServerApplication;
+import com.chatflow.server.codec.BinaryMessageCodec;
+import com.chatflow.server.model.ServerResponse;
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.boot.web.embedded.netty.NettyWebServer;
+import org.springframework.boot.web.reactive.context.ReactiveWebServerApplicationContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+import org.springframework.web.reactive.socket.WebSocketSession;
+import org.springframework.web.reactive.socket.client.ReactorNettyWebSocketClient;
+import reactor.core.publisher.Flux;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The same endpoints served by Reactor Netty under the {@code reactive} profile.
+ */
+@SpringBootTest(
+        classes = ChatServerApplication.class,
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        // Rooms are shared across tests, so replayed history would precede each response
+        properties = {"chatflow.log.directory=target/test-log/reactive", "chatflow.history.size=0"}
+)
+@ActiveProfiles("reactive")
+class ReactiveWebSocketIntegrationTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private ReactiveWebServerApplicationContext context;
+
+    private final Gson gson = new Gson();
+
+    private static final String VALID_MESSAGE = """
+            {"userId":"1","username":"testuser","message":"hello world","timestamp":"2024-01-01T00:00:00Z","messageType":"TEXT"}
+            """;
+
+    /**
+     * Helper: connect to a path, send the frames the session builds, and collect
+     * the first {@code count} responses.
+     */
+    private List<WebSocketMessage.Type> exchange(String path, int count,
+                                                 Function<WebSocketSession, List<WebSocketMessage>> frames,
+                                                 List<byte[]> responses) {
+        List<WebSocketMessage.Type> types = new ArrayList<>();
+        new ReactorNettyWebSocketClient().execute(URI.create("ws://localhost:" + port + path), session ->
+                session.send(Flux.fromIterable(frames.apply(session)))
+                        .thenMany(session.receive().take(count).doOnNext(message -> {
+                            types.add(message.getType());
+                            byte[] bytes = new byte[message.getPayload().readableByteCount()];
+                            message.getPayload().read(bytes);
+                            responses.add(bytes);
+                        }))
+                        .then()
+        ).block(Duration.ofSeconds(5));
+        return types;
+    }
+
+    @Test
+    void servedByNetty() {
+        assertInstanceOf(NettyWebServer.class, context.getWebServer());
+    }
+
+    @Test
+    void validMessage_getsEchoedBack() {
+        List<byte[]> responses = new ArrayList<>();
+        exchange("/chat/1", 1, session -> List.of(session.textMessage(VALID_MESSAGE)), responses);
+
+        ServerResponse serverResponse = gson.fromJson(new String(responses.get(0), StandardCharsets.UTF_8),
+                ServerResponse.class);
+        assertEquals("OK", serverResponse.getStatus());
+        assertNotNull(serverResponse.getServerTimestamp());
+        assertEquals("hello world", serverResponse.getOriginalMessage().getMessage());
+    }
+
+    @Test
+    void invalidMessage_getsErrorResponse() {
+        List<byte[]> responses = new ArrayList<>();
+        exchange("/chat/1", 1, session -> List.of(session.textMessage("not valid json at all")), responses);
+
+        ServerResponse serverResponse = gson.fromJson(new String(responses.get(0), StandardCharsets.UTF_8),
+                ServerResponse.class);
+        assertEquals("ERROR", serverResponse.getStatus());
+    }
+
+    @Test
+    void multipleMessages_allGetResponsesInOrder() {
+        List<byte[]> responses = new ArrayList<>();
+        exchange("/chat/2", 10, session -> IntStream.range(0, 10)
+                .mapToObj(i -> session.textMessage(VALID_MESSAGE.replace("hello world", "msg " + i)))
+                .toList(), responses);
+
+        assertEquals(10, responses.size());
+        for (int i = 0; i < 10; i++) {
+            ServerResponse sr = gson.fromJson(new String(responses.get(i), StandardCharsets.UTF_8),
+                    ServerResponse.class);
+            assertEquals("msg " + i, sr.getOriginalMessage().getMessage());
+        }
+    }
+
+    @Test
+    void binaryEndpoint_acksBinaryFrame() {
+        byte[] username = "testuser".getBytes(StandardCharsets.UTF_8);
+        byte[] text = "hello world".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer frame = ByteBuffer.allocate(17 + username.length + text.length)
+                .putInt(1)
+                .putLong(System.currentTimeMillis())
+                .put(BinaryMessageCodec.TYPE_TEXT)
+                .putShort((short) username.length)
+                .put(username)
+                .putShort((short) text.length)
+                .put(text)
+                .flip();
+
+        List<byte[]> responses = new ArrayList<>();
+        List<WebSocketMessage.Type> types = exchange("/chat-bin/1", 1, session -> List.of(
+                session.binaryMessage(factory -> factory.wrap(frame.duplicate()))), responses);
+
+        assertEquals(WebSocketMessage.Type.BINARY, types.get(0));
+        assertEquals(BinaryMessageCodec.STATUS_OK, responses.get(0)[0]);
+        assertEquals(17 + frame.limit(), responses.get(0).length);
+    }
+
+    @Test
+    void invalidRoomId_refusedAtHandshake() {
+        assertThrows(RuntimeException.class,
+                () -> exchange("/chat/bad.id", 1, session -> List.of(session.textMessage(VALID_MESSAGE)), new ArrayList<>()));
+    }
+}
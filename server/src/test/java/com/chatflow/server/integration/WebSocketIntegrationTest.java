@@ -1,27 +1,38 @@
 package com.chatflow.server.integration;
 
 import com.chatflow.server.ChatServerApplication;
+import com.chatflow.server.codec.BinaryMessageCodec;
 import com.chatflow.server.model.ServerResponse;
 import com.google.gson.Gson;
+import jakarta.websocket.ContainerProvider;
+import jakarta.websocket.WebSocketContainer;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.web.socket.BinaryMessage;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketHttpHeaders;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.handler.BinaryWebSocketHandler;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 @SpringBootTest(
         classes = ChatServerApplication.class,
-        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        // Rooms are shared across tests, so replayed history or presence updates would precede each response
+        properties = {"chatflow.log.directory=target/test-log/servlet", "chatflow.history.size=0",
+                "chatflow.presence.interval=0"}
 )
 class WebSocketIntegrationTest {
 
@@ -38,7 +49,10 @@ class WebSocketIntegrationTest {
      * Helper: connect to a room and collect responses in a queue.
      */
     private WebSocketSession connectToRoom(String roomId, BlockingQueue<String> responses) throws Exception {
-        StandardWebSocketClient client = new StandardWebSocketClient();
+        // Batch responses exceed the client container's 8KB default buffer
+        WebSocketContainer container = ContainerProvider.getWebSocketContainer();
+        container.setDefaultMaxTextMessageBufferSize(256 * 1024);
+        StandardWebSocketClient client = new StandardWebSocketClient(container);
         URI uri = new URI("ws://localhost:" + port + "/chat/" + roomId);
 
         return client.execute(new TextWebSocketHandler() {
@@ -166,4 +180,69 @@ class WebSocketIntegrationTest {
 
         session.close();
     }
+
+    @Test
+    void batchLargerThanDefaultFrameLimit_getsBatchResponse() throws Exception {
+        BlockingQueue<String> responses = new ArrayBlockingQueue<>(10);
+        WebSocketSession session = connectToRoom("1", responses);
+
+        StringBuilder batch = new StringBuilder("[");
+        for (int i = 0; i < 100; i++) {
+            batch.append(i > 0 ? "," : "").append(String.format(
+                    "{\"userId\":\"%d\",\"username\":\"user%d\",\"message\":\"%s\","
+                            + "\"timestamp\":\"2024-01-01T00:00:00Z\",\"messageType\":\"TEXT\"}",
+                    i + 1, i + 1, "x".repeat(100)));
+        }
+        String payload = batch.append("]").toString();
+        assertTrue(payload.length() > 8192);
+        session.sendMessage(new TextMessage(payload));
+
+        String response = responses.poll(5, TimeUnit.SECONDS);
+        assertNotNull(response, "Should receive a batch response");
+        ServerResponse serverResponse = gson.fromJson(response, ServerResponse.class);
+        assertEquals(100, serverResponse.getResults().size());
+        assertTrue(serverResponse.getResults().stream().allMatch(r -> "OK".equals(r.getStatus())));
+
+        session.close();
+    }
+
+    @Test
+    void binaryEndpoint_acksBinaryFrame() throws Exception {
+        BlockingQueue<ByteBuffer> responses = new ArrayBlockingQueue<>(10);
+        StandardWebSocketClient client = new StandardWebSocketClient();
+        WebSocketSession session = client.execute(new BinaryWebSocketHandler() {
+            @Override
+            protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) {
+                responses.offer(message.getPayload());
+            }
+        }, new WebSocketHttpHeaders(), new URI("ws://localhost:" + port + "/chat-bin/1")).get(5, TimeUnit.SECONDS);
+
+        byte[] username = "testuser".getBytes(StandardCharsets.UTF_8);
+        byte[] text = "hello world".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer frame = ByteBuffer.allocate(17 + username.length + text.length)
+                .putInt(1)
+                .putLong(System.currentTimeMillis())
+                .put(BinaryMessageCodec.TYPE_TEXT)
+                .putShort((short) username.length)
+                .put(username)
+                .putShort((short) text.length)
+                .put(text)
+                .flip();
+        session.sendMessage(new BinaryMessage(frame));
+
+        ByteBuffer response = responses.poll(5, TimeUnit.SECONDS);
+        assertNotNull(response, "Should receive a binary response");
+        assertEquals(BinaryMessageCodec.STATUS_OK, response.get());
+        assertEquals(17 + frame.limit(), response.limit());
+
+        session.close();
+    }
+
+    @Test
+    void invalidRoomId_refusedAtHandshake() {
+        BlockingQueue<String> responses = new ArrayBlockingQueue<>(1);
+
+        assertThrows(ExecutionException.class, () -> connectToRoom("bad.id", responses));
+        assertThrows(ExecutionException.class, () -> connectToRoom("x".repeat(65), responses));
+    }
 }
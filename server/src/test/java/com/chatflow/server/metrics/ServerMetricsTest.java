@@ -0,0 +1,55 @@
+package com.chatflow.server.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ServerMetricsTest {
+
+    private final ServerMetrics metrics = new ServerMetrics();
+
+    private String scrape() {
+        PrometheusWriter out = new PrometheusWriter();
+        metrics.writeTo(out);
+        return out.toString();
+    }
+
+    @Test
+    void scrape_reportsQuantilesSinceLastScrapeAndCumulativeCounts() {
+        for (int i = 1; i <= 100; i++) {
+            metrics.record(Phase.PARSE, i * 1_000L);
+        }
+
+        String first = scrape();
+        assertTrue(first.contains("# TYPE chatflow_phase_seconds summary\n"));
+        assertTrue(first.contains("chatflow_phase_seconds{phase=\"parse\",quantile=\"0.5\"} 5.00"), first);
+        assertTrue(first.contains("chatflow_phase_seconds_count{phase=\"parse\"} 100\n"));
+        assertTrue(first.contains("chatflow_phase_seconds{phase=\"send\",quantile=\"0.99\"} NaN\n"));
+
+        metrics.record(Phase.PARSE, 2_000_000L);
+        String second = scrape();
+        assertTrue(second.contains("chatflow_phase_seconds{phase=\"parse\",quantile=\"0.5\"} 0.0020"), second);
+        assertTrue(second.contains("chatflow_phase_seconds_count{phase=\"parse\"} 101\n"));
+    }
+
+    @Test
+    void outOfRangeValues_areClamped() {
+        metrics.record(Phase.SEND, -5);
+        metrics.record(Phase.SEND, Long.MAX_VALUE);
+
+        assertEquals(2, metrics.getCount(Phase.SEND));
+    }
+
+    @Test
+    void errors_countedByReasonWithEscapedLabels() {
+        metrics.recordError("userId is required");
+        metrics.recordError("userId is required");
+        metrics.recordError("say \"hi\"\\n");
+
+        assertEquals(2, metrics.getErrorCount("userId is required"));
+        assertEquals(0, metrics.getErrorCount("unknown"));
+        String text = scrape();
+        assertTrue(text.contains("chatflow_rejected_messages_total{reason=\"userId is required\"} 2\n"));
+        assertTrue(text.contains("chatflow_rejected_messages_total{reason=\"say \\\"hi\\\"\\\\n\"} 1\n"));
+    }
+}
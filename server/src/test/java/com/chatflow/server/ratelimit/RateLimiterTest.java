@@ -0,0 +1,116 @@
+package com.chatflow.server.ratelimit;
+
+import com.chatflow.server.config.RateLimitProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimiterTest {
+
+    private static RateLimiter limiter(double userRate, int userBurst, double sessionRate, int sessionBurst) {
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setUserRate(userRate);
+        properties.setUserBurst(userBurst);
+        properties.setSessionRate(sessionRate);
+        properties.setSessionBurst(sessionBurst);
+        return new RateLimiter(properties);
+    }
+
+    @Test
+    void user_getsBurstThenIsRefused() {
+        RateLimiter limiter = limiter(0.001, 3, 0, 0);
+        RateLimiter.Bucket session = limiter.newSessionBucket();
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(limiter.tryAcquire(session, 7));
+        }
+        assertFalse(limiter.tryAcquire(session, 7));
+        // Other users, and ids outside the range, have their own allowance
+        assertTrue(limiter.tryAcquire(session, 8));
+        assertTrue(limiter.tryAcquire(limiter.newSessionBucket(), 0));
+        assertTrue(limiter.tryAcquire(limiter.newSessionBucket(), Integer.MAX_VALUE));
+    }
+
+    @Test
+    void session_limitedAcrossUsers() {
+        RateLimiter limiter = limiter(0, 0, 0.001, 2);
+        RateLimiter.Bucket session = limiter.newSessionBucket();
+
+        assertTrue(limiter.tryAcquire(session, 1));
+        assertTrue(limiter.tryAcquire(session, 2));
+        assertFalse(limiter.tryAcquire(session, 3));
+        assertTrue(limiter.tryAcquire(limiter.newSessionBucket(), 3));
+    }
+
+    @Test
+    void userRefusal_doesNotSpendSessionToken() {
+        RateLimiter limiter = limiter(0.001, 1, 0.001, 2);
+        RateLimiter.Bucket session = limiter.newSessionBucket();
+
+        assertTrue(limiter.tryAcquire(session, 1));
+        for (int i = 0; i < 5; i++) {
+            assertFalse(limiter.tryAcquire(session, 1));
+        }
+        // The session still has the second token of its burst
+        assertTrue(limiter.tryAcquire(session, 2));
+        assertFalse(limiter.tryAcquire(session, 3));
+    }
+
+    @Test
+    void tokens_refillAtTheRate() throws InterruptedException {
+        RateLimiter limiter = limiter(100, 1, 0, 0);
+        RateLimiter.Bucket session = limiter.newSessionBucket();
+
+        assertTrue(limiter.tryAcquire(session, 1));
+        assertFalse(limiter.tryAcquire(session, 1));
+        Thread.sleep(20);
+        assertTrue(limiter.tryAcquire(session, 1));
+    }
+
+    @Test
+    void zeroRate_disablesLimit() {
+        RateLimiter limiter = limiter(0, 1, 0, 1);
+        RateLimiter.Bucket session = limiter.newSessionBucket();
+
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(limiter.tryAcquire(session, 1));
+        }
+    }
+
+    @Test
+    void concurrentSenders_shareOneUserBurstExactly() throws InterruptedException {
+        int burst = 1000;
+        RateLimiter limiter = limiter(0.001, burst, 0, 0);
+        AtomicInteger granted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> senders = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            RateLimiter.Bucket session = limiter.newSessionBucket();
+            Thread sender = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < burst; i++) {
+                    if (limiter.tryAcquire(session, 42)) {
+                        granted.incrementAndGet();
+                    }
+                }
+            });
+            sender.start();
+            senders.add(sender);
+        }
+        start.countDown();
+        for (Thread sender : senders) {
+            sender.join();
+        }
+
+        assertEquals(burst, granted.get());
+    }
+}
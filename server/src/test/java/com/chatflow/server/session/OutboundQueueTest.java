@@ -0,0 +1,152 @@
+package com.chatflow.server.session;
+
+import com.chatflow.server.codec.FrameFormat;
+import com.chatflow.server.support.StubWebSocketSession;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutboundQueueTest {
+
+    private StubWebSocketSession session;
+    private ManualExecutor executor;
+    private LongAdder dropped;
+    private LongAdder disconnects;
+
+    @BeforeEach
+    void setUp() {
+        session = new StubWebSocketSession("s1", URI.create("ws://localhost:8080/chat/1"));
+        executor = new ManualExecutor();
+        dropped = new LongAdder();
+        disconnects = new LongAdder();
+    }
+
+    private OutboundQueue queue(OverflowPolicy policy, int maxMessages, long maxBytes) {
+        return new OutboundQueue(session, FrameFormat.TEXT, policy, maxMessages, maxBytes, executor, dropped, disconnects);
+    }
+
+    private static TextMessage frame(String payload) {
+        return new TextMessage(payload.getBytes());
+    }
+
+    @Test
+    void framesDeliveredInOrderByDrainTask() {
+        OutboundQueue queue = queue(OverflowPolicy.DROP_OLDEST, 10, 1024);
+        queue.offer(frame("a"));
+        queue.offer(frame("b"));
+
+        assertEquals(2, queue.getDepth());
+        assertTrue(session.getSentMessages().isEmpty(), "Producer must not write to the socket");
+
+        executor.runAll();
+
+        assertEquals(List.of("a", "b"), session.getSentMessages());
+        assertEquals(0, queue.getDepth());
+        assertEquals(0, queue.getQueuedBytes());
+    }
+
+    @Test
+    void dropOldest_evictsHeadOfBacklog() {
+        OutboundQueue queue = queue(OverflowPolicy.DROP_OLDEST, 2, 1024);
+        queue.offer(frame("a"));
+        queue.offer(frame("b"));
+        assertTrue(queue.offer(frame("c")));
+
+        executor.runAll();
+
+        assertEquals(List.of("b", "c"), session.getSentMessages());
+        assertEquals(1, queue.getDropped());
+        assertEquals(1, dropped.sum());
+    }
+
+    @Test
+    void dropNewest_rejectsIncomingFrame() {
+        OutboundQueue queue = queue(OverflowPolicy.DROP_NEWEST, 2, 1024);
+        queue.offer(frame("a"));
+        queue.offer(frame("b"));
+        assertFalse(queue.offer(frame("c")));
+
+        executor.runAll();
+
+        assertEquals(List.of("a", "b"), session.getSentMessages());
+        assertEquals(1, dropped.sum());
+    }
+
+    @Test
+    void byteLimit_enforcedIndependentlyOfCount() {
+        OutboundQueue queue = queue(OverflowPolicy.DROP_NEWEST, 100, 5);
+        assertTrue(queue.offer(frame("abc")));
+        assertFalse(queue.offer(frame("def")));
+        assertEquals(3, queue.getQueuedBytes());
+    }
+
+    @Test
+    void disconnect_closesSlowConsumer() {
+        OutboundQueue queue = queue(OverflowPolicy.DISCONNECT, 1, 1024);
+        queue.offer(frame("a"));
+        assertFalse(queue.offer(frame("b")));
+
+        executor.runAll();
+
+        assertTrue(queue.isClosed());
+        assertEquals(CloseStatus.SESSION_NOT_RELIABLE, session.getCloseStatus());
+        assertEquals(1, disconnects.sum());
+        assertTrue(session.getSentMessages().isEmpty());
+    }
+
+    @Test
+    void closedSession_rejectsFrames() {
+        OutboundQueue queue = queue(OverflowPolicy.DROP_OLDEST, 10, 1024);
+        session.close();
+        assertFalse(queue.offer(frame("a")));
+        assertEquals(0, queue.getDepth());
+    }
+
+    /**
+     * Holds submitted tasks until the test runs them, standing in for a stalled socket.
+     */
+    @Test
+    void longBacklog_drainYieldsThreadAfterLimit() {
+        OutboundQueue queue = queue(OverflowPolicy.DROP_OLDEST, 1000, 1 << 20);
+        for (int i = 0; i < OutboundQueue.MAX_FRAMES_PER_DRAIN + 1; i++) {
+            queue.offer(frame(Integer.toString(i)));
+        }
+
+        executor.runNext();
+
+        assertEquals(OutboundQueue.MAX_FRAMES_PER_DRAIN, session.getSentMessages().size());
+        assertEquals(1, queue.getDepth());
+        executor.runAll();
+        assertEquals(OutboundQueue.MAX_FRAMES_PER_DRAIN + 1, session.getSentMessages().size());
+    }
+
+    static class ManualExecutor implements Executor {
+        private final Queue<Runnable> tasks = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        void runNext() {
+            tasks.remove().run();
+        }
+
+        void runAll() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+        }
+    }
+}
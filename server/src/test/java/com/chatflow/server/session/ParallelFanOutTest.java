@@ -0,0 +1,128 @@
+package com.chatflow.server.session;
+
+import com.chatflow.server.codec.FrameFormat;
+import com.chatflow.server.codec.OutboundFrame;
+import com.chatflow.server.model.ServerResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelFanOutTest {
+
+    private static final OutboundLimits LIMITS = new OutboundLimits(OverflowPolicy.DROP_OLDEST, 1024, 1 << 20,
+            new LongAdder(), new LongAdder(), new LongAdder());
+
+    @Test
+    void coldRoom_deliveredOnCallingThread() {
+        ParallelFanOut fanOut = new ParallelFanOut(4, Long.MAX_VALUE, 8);
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        Room room = roomOf(100, threads);
+
+        assertEquals(100, fanOut.fanOut(room, frame("a")));
+
+        assertEquals(Set.of(Thread.currentThread()), threads);
+        assertEquals(0, fanOut.getParallelBroadcasts());
+        fanOut.close();
+    }
+
+    @Test
+    void hotRoom_splitAcrossThreadsInOrderPerMember() {
+        // Any measured cost makes the room hot
+        ParallelFanOut fanOut = new ParallelFanOut(4, 1, 8);
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        Room room = roomOf(1000, threads);
+        List<RecordingQueue> queues = new ArrayList<>();
+        for (AbstractOutboundQueue queue : room.queues()) {
+            queues.add((RecordingQueue) queue);
+        }
+
+        for (int i = 0; i < 20; i++) {
+            assertEquals(1000, fanOut.fanOut(room, frame(Integer.toString(i))));
+        }
+
+        // The first broadcast has no cost to go by yet, so it is delivered inline
+        assertEquals(19, fanOut.getParallelBroadcasts());
+        assertTrue(threads.stream().anyMatch(thread -> thread.getName().startsWith("fanout-")));
+        for (RecordingQueue queue : queues) {
+            assertEquals(20, queue.received.size());
+            for (int i = 0; i < 20; i++) {
+                assertTrue(queue.received.get(i).contains("\"error\":\"" + i + "\""));
+            }
+        }
+        fanOut.close();
+    }
+
+    @Test
+    void memberJoiningHotRoom_receivesNextBroadcast() {
+        ParallelFanOut fanOut = new ParallelFanOut(4, 1, 8);
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        Room room = roomOf(100, threads);
+        fanOut.fanOut(room, frame("warm-up"));
+        fanOut.fanOut(room, frame("warm-up"));
+
+        RecordingQueue late = new RecordingQueue("late", threads);
+        room.add(late, () -> { });
+
+        assertEquals(101, fanOut.fanOut(room, frame("after")));
+        assertEquals(1, late.received.size());
+        assertEquals(2, fanOut.getParallelBroadcasts());
+        fanOut.close();
+    }
+
+    private static Room roomOf(int members, Set<Thread> threads) {
+        Room room = new Room("1", new RoomHistory(0), null);
+        for (int i = 0; i < members; i++) {
+            room.add(new RecordingQueue("s" + i, threads), () -> { });
+        }
+        return room;
+    }
+
+    private static OutboundFrame frame(String marker) {
+        return OutboundFrame.of(ServerResponse.error(marker));
+    }
+
+    /**
+     * Keeps what it is offered, noting the threads that offered it.
+     */
+    private static final class RecordingQueue extends AbstractOutboundQueue {
+
+        private final String sessionId;
+        private final Set<Thread> threads;
+        // Offered by one broadcast at a time, each complete before the next
+        private final List<String> received = new ArrayList<>();
+
+        RecordingQueue(String sessionId, Set<Thread> threads) {
+            super(FrameFormat.TEXT, LIMITS);
+            this.sessionId = sessionId;
+            this.threads = threads;
+        }
+
+        @Override
+        public String getSessionId() { return sessionId; }
+
+        @Override
+        protected boolean isSessionOpen() { return true; }
+
+        @Override
+        protected void onEnqueued() {
+            threads.add(Thread.currentThread());
+            WebSocketMessage<?> frame;
+            while ((frame = poll()) != null) {
+                synchronized (received) {
+                    received.add(frame.getPayload().toString());
+                }
+            }
+        }
+
+        @Override
+        protected void closeSlowConsumer() {
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.chatflow.server.session;
+
+import com.chatflow.server.validation.MessageValidator;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PresenceSetTest {
+
+    @Test
+    void addAndRemove_reportChangesAndKeepSize() {
+        PresenceSet set = new PresenceSet();
+
+        assertTrue(set.add(1));
+        assertFalse(set.add(1));
+        assertTrue(set.add(MessageValidator.MAX_USER_ID));
+        assertTrue(set.add(4096));
+        assertTrue(set.contains(4096));
+        assertFalse(set.contains(4095));
+        assertTrue(set.remove(1));
+        assertFalse(set.remove(1));
+        assertFalse(set.remove(50000));
+
+        assertEquals(2, set.size());
+        assertArrayEquals(new int[] {4096, MessageValidator.MAX_USER_ID}, set.toArray());
+        assertThrows(IllegalArgumentException.class, () -> set.add(MessageValidator.MAX_USER_ID + 1));
+    }
+
+    @Test
+    void drain_returnsAndClearsEveryId() {
+        PresenceSet set = new PresenceSet();
+        set.add(300);
+        set.add(2);
+        set.add(70000);
+
+        assertArrayEquals(new int[] {2, 300, 70000}, set.drain());
+        assertEquals(0, set.size());
+        assertArrayEquals(new int[0], set.drain());
+    }
+
+    @Test
+    void concurrentAdds_allCounted() throws InterruptedException {
+        PresenceSet set = new PresenceSet();
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int offset = t;
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                // Neighbouring ids share words, so the threads contend on every CAS
+                for (int userId = 1 + offset; userId <= MessageValidator.MAX_USER_ID; userId += threads) {
+                    set.add(userId);
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertEquals(MessageValidator.MAX_USER_ID, set.size());
+        assertEquals(MessageValidator.MAX_USER_ID, set.toArray().length);
+    }
+}
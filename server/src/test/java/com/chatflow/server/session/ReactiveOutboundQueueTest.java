@@ -0,0 +1,115 @@
+package com.chatflow.server.session;
+
+import com.chatflow.server.codec.FrameFormat;
+import com.chatflow.server.support.StubReactiveWebSocketSession;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import reactor.core.publisher.BaseSubscriber;
+
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReactiveOutboundQueueTest {
+
+    private StubReactiveWebSocketSession session;
+    private LongAdder queued;
+    private LongAdder dropped;
+    private LongAdder disconnects;
+    private Recorder recorder;
+
+    @BeforeEach
+    void setUp() {
+        session = new StubReactiveWebSocketSession("s1", URI.create("ws://localhost:8080/chat/1"));
+        queued = new LongAdder();
+        dropped = new LongAdder();
+        disconnects = new LongAdder();
+        recorder = new Recorder();
+    }
+
+    private ReactiveOutboundQueue queue(OverflowPolicy policy, int maxMessages) {
+        return new ReactiveOutboundQueue(session, FrameFormat.TEXT,
+                new OutboundLimits(policy, maxMessages, 1024, queued, dropped, disconnects));
+    }
+
+    private static TextMessage frame(String payload) {
+        return new TextMessage(payload.getBytes());
+    }
+
+    @Test
+    void framesEmittedOnlyAsRequested() {
+        ReactiveOutboundQueue queue = queue(OverflowPolicy.DROP_OLDEST, 10);
+        queue.frames().subscribe(recorder);
+        queue.offer(frame("a"));
+        queue.offer(frame("b"));
+        queue.offer(frame("c"));
+
+        assertTrue(recorder.received.isEmpty(), "Nothing is written without demand");
+        assertEquals(3, queue.getDepth());
+        assertEquals(3, queued.sum());
+
+        recorder.request(2);
+        assertEquals(List.of("a", "b"), recorder.received);
+        assertEquals(1, queue.getDepth());
+        assertEquals(1, queued.sum());
+
+        recorder.request(5);
+        queue.offer(frame("d"));
+        assertEquals(List.of("a", "b", "c", "d"), recorder.received);
+        assertEquals(0, queue.getDepth());
+        assertEquals(0, queued.sum());
+    }
+
+    @Test
+    void noDemand_overflowPolicyApplies() {
+        ReactiveOutboundQueue queue = queue(OverflowPolicy.DROP_OLDEST, 2);
+        queue.frames().subscribe(recorder);
+        queue.offer(frame("a"));
+        queue.offer(frame("b"));
+        queue.offer(frame("c"));
+
+        recorder.request(10);
+
+        assertEquals(List.of("b", "c"), recorder.received);
+        assertEquals(1, dropped.sum());
+    }
+
+    @Test
+    void disconnectPolicy_closesSessionAndCompletesFrames() {
+        ReactiveOutboundQueue queue = queue(OverflowPolicy.DISCONNECT, 1);
+        queue.frames().subscribe(recorder);
+        queue.offer(frame("a"));
+
+        assertFalse(queue.offer(frame("b")));
+
+        assertEquals(CloseStatus.SESSION_NOT_RELIABLE.getCode(), session.getCloseStatus().getCode());
+        assertTrue(recorder.completed);
+        assertEquals(1, disconnects.sum());
+    }
+
+    // Requests nothing until told to, like a transport whose socket is not writable
+    private static final class Recorder extends BaseSubscriber<WebSocketMessage> {
+        final List<String> received = new CopyOnWriteArrayList<>();
+        volatile boolean completed;
+
+        @Override
+        protected void hookOnSubscribe(org.reactivestreams.Subscription subscription) {
+        }
+
+        @Override
+        protected void hookOnNext(WebSocketMessage message) {
+            received.add(message.getPayloadAsText());
+        }
+
+        @Override
+        protected void hookOnComplete() {
+            completed = true;
+        }
+    }
+}
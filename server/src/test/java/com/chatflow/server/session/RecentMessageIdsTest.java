@@ -0,0 +1,95 @@
+package com.chatflow.server.session;
+
+import com.chatflow.server.codec.OutboundFrame;
+import com.chatflow.server.model.ServerResponse;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecentMessageIdsTest {
+
+    private static final long WINDOW = TimeUnit.SECONDS.toNanos(60);
+
+    private final AtomicLong now = new AtomicLong();
+
+    @Test
+    void rememberedId_foundWithItsAck() {
+        RecentMessageIds ids = new RecentMessageIds(WINDOW, 100, now::get);
+        RecentMessageIds.Entry entry = new RecentMessageIds.Entry(7);
+        assertNull(ids.find("m-1"));
+
+        assertNull(ids.remember("m-1", entry));
+        OutboundFrame ack = OutboundFrame.of(ServerResponse.error("placeholder"));
+        entry.complete(3, ack);
+
+        RecentMessageIds.Entry found = ids.find("m-1");
+        assertSame(entry, found);
+        assertEquals(7, found.getUserId());
+        assertEquals(3, found.getSeq());
+        assertSame(ack, found.getAck());
+        assertNull(ids.find("m-2"));
+    }
+
+    @Test
+    void rememberingTakenId_returnsFirstEntry() {
+        RecentMessageIds ids = new RecentMessageIds(WINDOW, 100, now::get);
+        RecentMessageIds.Entry first = new RecentMessageIds.Entry(7);
+        ids.remember("m-1", first);
+
+        assertSame(first, ids.remember("m-1", new RecentMessageIds.Entry(7)));
+    }
+
+    @Test
+    void ids_forgottenAfterTwoGenerationsOfEntries() {
+        RecentMessageIds ids = new RecentMessageIds(WINDOW, 4, now::get);
+        ids.remember("a", new RecentMessageIds.Entry(1));
+        ids.remember("b", new RecentMessageIds.Entry(1));
+        // The first generation is full; "c" starts the next and "a" is still remembered
+        ids.remember("c", new RecentMessageIds.Entry(1));
+        assertNotNull(ids.find("a"));
+        assertNotNull(ids.remember("a", new RecentMessageIds.Entry(1)));
+
+        ids.remember("d", new RecentMessageIds.Entry(1));
+        ids.remember("e", new RecentMessageIds.Entry(1));
+        assertNull(ids.find("a"));
+        assertNull(ids.find("b"));
+        assertNotNull(ids.find("c"));
+        assertNotNull(ids.find("e"));
+    }
+
+    @Test
+    void ids_forgottenAfterTheWindow() {
+        RecentMessageIds ids = new RecentMessageIds(WINDOW, 100, now::get);
+        ids.remember("a", new RecentMessageIds.Entry(1));
+
+        now.addAndGet(WINDOW / 2);
+        ids.remember("b", new RecentMessageIds.Entry(1));
+        assertNotNull(ids.find("a"));
+
+        now.addAndGet(WINDOW / 2);
+        ids.remember("c", new RecentMessageIds.Entry(1));
+        assertNull(ids.find("a"));
+        assertNotNull(ids.find("b"));
+    }
+
+    @Test
+    void manyIds_allFoundWithinCapacity() {
+        RecentMessageIds ids = new RecentMessageIds(WINDOW, 20_000, now::get);
+        for (int i = 0; i < 10_000; i++) {
+            ids.remember("client-" + i, new RecentMessageIds.Entry(i));
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(i, ids.find("client-" + i).getUserId());
+        }
+        int found = 0;
+        for (int i = 10_000; i < 20_000; i++) {
+            if (ids.find("client-" + i) != null) {
+                found++;
+            }
+        }
+        assertEquals(0, found);
+    }
+}
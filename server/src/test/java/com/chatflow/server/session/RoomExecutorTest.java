@@ -0,0 +1,108 @@
+package com.chatflow.server.session;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoomExecutorTest {
+
+    private static Room room(String id) {
+        return new Room(id, new RoomHistory(0), null);
+    }
+
+    @Test
+    void tasksOfOneRoom_runInSubmissionOrderWithoutOverlap() throws InterruptedException {
+        RoomExecutor executor = new RoomExecutor(4, 8);
+        Room room = room("1");
+        int producers = 4;
+        int perProducer = 5000;
+        List<List<Integer>> seen = new ArrayList<>();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger overlaps = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(producers * perProducer);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            List<Integer> order = new ArrayList<>();
+            seen.add(order);
+            Thread producer = new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    int n = i;
+                    executor.execute(room, () -> {
+                        if (running.incrementAndGet() > 1) {
+                            overlaps.incrementAndGet();
+                        }
+                        // Not synchronized: tasks of the room are run by one thread at a time
+                        order.add(n);
+                        running.decrementAndGet();
+                        done.countDown();
+                    });
+                }
+            });
+            producer.start();
+            threads.add(producer);
+        }
+        for (Thread producer : threads) {
+            producer.join();
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(0, overlaps.get());
+        for (List<Integer> order : seen) {
+            assertEquals(perProducer, order.size());
+            for (int i = 0; i < perProducer; i++) {
+                assertEquals(i, order.get(i));
+            }
+        }
+        assertEquals(0, executor.getQueued());
+        executor.close();
+    }
+
+    @Test
+    void blockedRoom_doesNotHoldUpOthers() throws InterruptedException {
+        RoomExecutor executor = new RoomExecutor(2, 8);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch otherRan = new CountDownLatch(1);
+
+        executor.execute(room("1"), () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        executor.execute(room("2"), otherRan::countDown);
+
+        assertTrue(otherRan.await(5, TimeUnit.SECONDS));
+        release.countDown();
+        executor.close();
+    }
+
+    @Test
+    void close_runsQueuedTasksAndLaterOnesRunOnCaller() {
+        RoomExecutor executor = new RoomExecutor(1, 2);
+        Room room = room("1");
+        AtomicInteger ran = new AtomicInteger();
+        for (int i = 0; i < 100; i++) {
+            executor.execute(room, ran::incrementAndGet);
+        }
+
+        executor.close();
+        assertEquals(100, ran.get());
+        executor.execute(room, ran::incrementAndGet);
+        assertEquals(101, ran.get());
+    }
+
+    @Test
+    void inline_runsOnCallingThread() {
+        Thread[] ranOn = new Thread[1];
+        RoomExecutor.INLINE.execute(room("1"), () -> ranOn[0] = Thread.currentThread());
+
+        assertSame(Thread.currentThread(), ranOn[0]);
+    }
+}
@@ -0,0 +1,71 @@
+package com.chatflow.server.session;
+
+import com.chatflow.server.codec.OutboundFrame;
+import com.chatflow.server.model.ServerResponse;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoomHistoryTest {
+
+    private static OutboundFrame frame(String error) {
+        return OutboundFrame.of(ServerResponse.error(error));
+    }
+
+    @Test
+    void snapshot_beforeWrapping_returnsAllInOrder() {
+        RoomHistory history = new RoomHistory(4);
+        OutboundFrame a = frame("a");
+        OutboundFrame b = frame("b");
+        history.record(a);
+        history.record(b);
+
+        assertArrayEquals(new OutboundFrame[]{a, b}, history.snapshot());
+    }
+
+    @Test
+    void snapshot_afterWrapping_keepsNewestOldestFirst() {
+        RoomHistory history = new RoomHistory(3);
+        OutboundFrame[] frames = new OutboundFrame[5];
+        for (int i = 0; i < frames.length; i++) {
+            frames[i] = frame(String.valueOf(i));
+            history.record(frames[i]);
+        }
+
+        assertArrayEquals(new OutboundFrame[]{frames[2], frames[3], frames[4]}, history.snapshot());
+    }
+
+    @Test
+    void snapshot_empty() {
+        assertEquals(0, new RoomHistory(3).snapshot().length);
+    }
+
+    @Test
+    void snapshotSince_skipsNumbersNotYetRecorded() {
+        RoomHistory history = new RoomHistory(4);
+        long first = history.nextSequence(3);
+        OutboundFrame a = frame("a");
+        OutboundFrame c = frame("c");
+        // The sender of first + 1 has taken its number but not recorded yet
+        history.record(first + 2, c);
+        history.record(first, a);
+
+        RoomHistory.Snapshot snapshot = history.snapshot(0);
+        assertEquals(1, first);
+        assertEquals(1, snapshot.firstSequence());
+        assertArrayEquals(new OutboundFrame[]{a, c}, snapshot.frames());
+        assertArrayEquals(new OutboundFrame[]{c}, history.snapshot(first + 1).frames());
+    }
+
+    @Test
+    void continuesFromLastSequence_withEarlierNumbersOutsideTheRing() {
+        RoomHistory history = new RoomHistory(3, 10);
+        OutboundFrame frame = frame("a");
+        history.record(frame);
+
+        RoomHistory.Snapshot snapshot = history.snapshot(5);
+        assertEquals(11, history.getLastSequence());
+        assertEquals(11, snapshot.firstSequence());
+        assertArrayEquals(new OutboundFrame[]{frame}, snapshot.frames());
+    }
+}
@@ -0,0 +1,46 @@
+package com.chatflow.server.session;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoomPresenceTest {
+
+    private final RoomPresence presence = new RoomPresence();
+
+    @Test
+    void closingSession_removesUsersWhoJoinedThroughIt() {
+        presence.join("a", 7);
+        presence.join("a", 8);
+        presence.join("b", 9);
+
+        presence.sessionClosed("a");
+
+        assertArrayEquals(new int[] {9}, presence.userIds());
+    }
+
+    @Test
+    void leaveAndRejoinThroughAnotherSession_survivesFirstSessionClosing() {
+        presence.join("a", 7);
+        presence.leave("b", 7);
+        presence.join("b", 7);
+
+        presence.sessionClosed("a");
+
+        assertTrue(presence.contains(7));
+        presence.sessionClosed("b");
+        assertFalse(presence.contains(7));
+    }
+
+    @Test
+    void joinThroughAnotherSession_takesUserOver() {
+        presence.join("a", 7);
+        presence.join("b", 7);
+
+        presence.sessionClosed("a");
+
+        assertTrue(presence.contains(7));
+        presence.sessionClosed("b");
+        assertEquals(0, presence.count());
+    }
+}
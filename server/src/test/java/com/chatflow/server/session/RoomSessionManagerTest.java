@@ -0,0 +1,279 @@
+package com.chatflow.server.session;
+
+import com.chatflow.server.bus.RoomBus;
+import com.chatflow.server.cluster.RoomPlacement;
+import com.chatflow.server.codec.BinaryMessageCodec;
+import com.chatflow.server.codec.FrameFormat;
+import com.chatflow.server.codec.OutboundFrame;
+import com.chatflow.server.config.ClusterProperties;
+import com.chatflow.server.model.ChatMessage;
+import com.chatflow.server.model.ServerResponse;
+import com.chatflow.server.store.MessageLog;
+import com.chatflow.server.support.StubWebSocketSession;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoomSessionManagerTest {
+
+    private final RoomSessionManager manager = RoomSessionManager.builder().build();
+
+    private static StubWebSocketSession session(String id, String roomId) {
+        return new StubWebSocketSession(id, URI.create("ws://localhost:8080/chat/" + roomId));
+    }
+
+    @Test
+    void counts_followJoinsAndLeaves() {
+        StubWebSocketSession a = session("a", "1");
+        StubWebSocketSession b = session("b", "1");
+        StubWebSocketSession c = session("c", "2");
+        manager.addSession("1", a);
+        manager.addSession("1", b);
+        manager.addSession("2", c);
+        assertEquals(3, manager.getTotalConnections());
+        assertEquals(2, manager.getRoomCount());
+
+        manager.removeSession("1", a);
+        // Leaving twice, or a room the session is not in, changes nothing
+        manager.removeSession("1", a);
+        manager.removeSession("3", c);
+        assertEquals(2, manager.getTotalConnections());
+        assertEquals(2, manager.getRoomCount());
+
+        manager.removeSession("1", b);
+        assertEquals(1, manager.getTotalConnections());
+        assertEquals(1, manager.getRoomCount());
+        assertTrue(manager.getSessionIds("1").isEmpty());
+    }
+
+    private static OutboundFrame message(long seq) {
+        return OutboundFrame.of(ServerResponse.success(
+                new ChatMessage("1", "user1", "hello", "2024-01-01T00:00:00Z", "TEXT"), "2024-01-01T00:00:01Z", seq));
+    }
+
+    // Keeps only the highest sequence number appended to each room
+    private static final class LastSequenceLog implements MessageLog {
+
+        private final Map<String, Long> lastSequences = new ConcurrentHashMap<>();
+
+        @Override
+        public boolean append(String roomId, OutboundFrame frame) {
+            lastSequences.merge(roomId, frame.getSeq(), Math::max);
+            return true;
+        }
+
+        @Override
+        public long lastSequence(String roomId) {
+            return lastSequences.getOrDefault(roomId, 0L);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Test
+    void lastMemberLeaving_removesRoomWhichContinuesFromLog() {
+        LastSequenceLog messageLog = new LastSequenceLog();
+        RoomSessionManager logged = RoomSessionManager.builder().messageLog(messageLog).build();
+        StubWebSocketSession a = session("a", "1");
+        Room room = logged.addSession("1", a, FrameFormat.TEXT, RoomSessionManager.NO_SEQUENCE);
+        assertEquals(1, logged.nextSequence(room, 3));
+        messageLog.append("1", message(3));
+
+        logged.removeSession("1", a);
+        assertNull(logged.getRoom("1"));
+        assertTrue(logged.getRooms().isEmpty());
+
+        Room again = logged.addSession("1", session("b", "1"), FrameFormat.TEXT, RoomSessionManager.NO_SEQUENCE);
+        assertNotSame(room, again);
+        assertEquals(4, logged.nextSequence(again, 1));
+    }
+
+    @Test
+    void roomOnWorkers_seededFromLogBeforeNumbering() throws InterruptedException {
+        LastSequenceLog messageLog = new LastSequenceLog();
+        messageLog.append("1", message(41));
+        RoomExecutor executor = new RoomExecutor(1, 8);
+        RoomSessionManager logged = RoomSessionManager.builder().messageLog(messageLog).roomExecutor(executor).build();
+        Room room = logged.addSession("1", session("a", "1"), FrameFormat.TEXT, RoomSessionManager.NO_SEQUENCE);
+        long[] seq = new long[1];
+        CountDownLatch numbered = new CountDownLatch(1);
+        executor.execute(room, () -> {
+            seq[0] = logged.nextSequence(room, 1);
+            numbered.countDown();
+        });
+
+        assertTrue(numbered.await(5, TimeUnit.SECONDS));
+        executor.close();
+        assertEquals(42, seq[0]);
+    }
+
+    @Test
+    void emptiedRoom_keptUntilMailboxDrains() throws InterruptedException {
+        RoomExecutor executor = new RoomExecutor(1, 8);
+        StubWebSocketSession a = session("a", "1");
+        Room room = manager.addSession("1", a, FrameFormat.TEXT, RoomSessionManager.NO_SEQUENCE);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch ran = new CountDownLatch(1);
+        executor.execute(room, () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        executor.execute(room, ran::countDown);
+
+        manager.removeSession("1", a);
+        assertSame(room, manager.getRoom("1"));
+
+        release.countDown();
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+        executor.close();
+        assertNull(manager.getRoom("1"));
+    }
+
+    @Test
+    void churnInRoomThatEmpties_neverDropsJoinedSessions() throws InterruptedException {
+        int threads = 4;
+        int rounds = 20_000;
+        AtomicInteger lost = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> churners = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            StubWebSocketSession session = session("s" + t, "1");
+            Thread churner = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < rounds; i++) {
+                    manager.addSession("1", session);
+                    // Another thread emptying the room must not take this session with it
+                    if (!manager.getSessionIds("1").contains(session.getId())) {
+                        lost.incrementAndGet();
+                    }
+                    manager.removeSession("1", session);
+                }
+            });
+            churner.start();
+            churners.add(churner);
+        }
+        start.countDown();
+        for (Thread churner : churners) {
+            churner.join();
+        }
+
+        assertEquals(0, lost.get());
+        assertEquals(0, manager.getTotalConnections());
+        assertEquals(0, manager.getRoomCount());
+    }
+
+    @Test
+    void joinsRacingBroadcasts_receiveStrictlyIncreasingSequences() throws InterruptedException {
+        RoomExecutor executor = new RoomExecutor(2, 8);
+        RoomSessionManager ordered = RoomSessionManager.builder().roomExecutor(executor).build();
+        Room room = ordered.addSession("1", session("sender", "1"), FrameFormat.BINARY, RoomSessionManager.NO_SEQUENCE);
+        Thread sender = new Thread(() -> {
+            for (int i = 0; i < 2000; i++) {
+                // As the message processor does on the room's worker
+                executor.execute(room, () -> {
+                    long seq = ordered.nextSequence(room, 1);
+                    OutboundFrame frame = message(seq);
+                    ordered.record(room, seq, frame);
+                    ordered.broadcast(room, frame);
+                });
+            }
+        });
+        sender.start();
+        List<StubWebSocketSession> joiners = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            StubWebSocketSession joiner = session("j" + i, "1");
+            joiners.add(joiner);
+            ordered.addSession("1", joiner, FrameFormat.BINARY, 0);
+            Thread.yield();
+        }
+        sender.join();
+        CountDownLatch drained = new CountDownLatch(1);
+        executor.execute(room, drained::countDown);
+        assertTrue(drained.await(5, TimeUnit.SECONDS));
+        executor.close();
+
+        for (StubWebSocketSession joiner : joiners) {
+            long last = 0;
+            for (byte[] sent : joiner.getSentBinaryMessages()) {
+                long seq = BinaryMessageCodec.readSeq(ByteBuffer.wrap(sent));
+                assertTrue(seq > last, joiner.getId() + " got " + seq + " after " + last);
+                last = seq;
+            }
+            assertEquals(2000, last, joiner.getId());
+        }
+    }
+
+    private static RoomPlacement twoNodes(boolean redirect) {
+        ClusterProperties cluster = new ClusterProperties();
+        cluster.setNodes(List.of("ws://node-1:8080", "ws://node-2:8080"));
+        cluster.setSelf("ws://node-1:8080");
+        cluster.setRedirect(redirect);
+        return new RoomPlacement(cluster);
+    }
+
+    // Broadcasts once in each of 100 rooms and returns the rooms published on the bus
+    private static List<String> publishedRooms(RoomPlacement placement) {
+        List<String> published = new ArrayList<>();
+        RoomBus bus = new RoomBus() {
+            @Override
+            public boolean publish(String roomId, OutboundFrame frame) {
+                return published.add(roomId);
+            }
+
+            @Override
+            public void subscribe(Subscriber subscriber) {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        RoomSessionManager placed = RoomSessionManager.builder().roomBus(bus).placement(placement).build();
+        for (int i = 0; i < 100; i++) {
+            String roomId = Integer.toString(i);
+            Room room = placed.addSession(roomId, session("s" + i, roomId), FrameFormat.TEXT,
+                    RoomSessionManager.NO_SEQUENCE);
+            placed.broadcast(room, message(1));
+        }
+        return published;
+    }
+
+    @Test
+    void redirecting_publishesOnlyRoomsOwnedElsewhere() {
+        RoomPlacement placement = twoNodes(true);
+
+        List<String> published = publishedRooms(placement);
+
+        assertFalse(published.isEmpty());
+        assertTrue(published.size() < 100);
+        for (int i = 0; i < 100; i++) {
+            String roomId = Integer.toString(i);
+            assertEquals(!placement.isLocal(roomId), published.contains(roomId), roomId);
+        }
+    }
+
+    @Test
+    void notRedirecting_publishesEveryRoom() {
+        assertEquals(100, publishedRooms(twoNodes(false)).size());
+        assertEquals(100, publishedRooms(new RoomPlacement()).size());
+    }
+}
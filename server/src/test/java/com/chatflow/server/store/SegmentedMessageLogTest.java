@@ -0,0 +1,288 @@
+package com.chatflow.server.store;
+
+import com.chatflow.server.codec.BinaryMessageCodec;
+import com.chatflow.server.codec.OutboundFrame;
+import com.chatflow.server.config.MessageLogProperties;
+import com.chatflow.server.model.ChatMessage;
+import com.chatflow.server.model.ServerResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentedMessageLogTest {
+
+    @TempDir
+    Path directory;
+
+    private MessageLogProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        properties = new MessageLogProperties();
+        properties.setDirectory(directory.toString());
+        properties.setSegmentSize(DataSize.ofKilobytes(64));
+        properties.setFsyncPolicy(FsyncPolicy.ALWAYS);
+    }
+
+    private static OutboundFrame frame(String text) {
+        return frame(text, 1);
+    }
+
+    private static OutboundFrame frame(String text, long seq) {
+        ChatMessage message = new ChatMessage("1", "user1", text, "2024-01-01T00:00:00Z", "TEXT");
+        return OutboundFrame.of(ServerResponse.success(message, "2024-01-01T00:00:01Z", seq));
+    }
+
+    // Parses the records of every segment in the room, in order, as the format documents
+    private List<String> readRoom(String roomId) throws IOException {
+        List<Path> segments;
+        try (Stream<Path> files = Files.list(directory.resolve(RoomLog.directoryName(roomId)))) {
+            segments = files.sorted().toList();
+        }
+        List<String> messages = new ArrayList<>();
+        CRC32C crc = new CRC32C();
+        for (Path segment : segments) {
+            ByteBuffer buffer;
+            try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            int length;
+            while (buffer.remaining() >= 8 && (length = buffer.getInt()) > 0) {
+                int checksum = buffer.getInt();
+                ByteBuffer payload = buffer.slice(buffer.position(), length);
+                crc.reset();
+                crc.update(payload.duplicate());
+                assertEquals(checksum, (int) crc.getValue());
+                byte[] bytes = new byte[length];
+                payload.get(bytes);
+                messages.add(BinaryMessageCodec.decodeResponse(bytes).getOriginalMessage().getMessage());
+                buffer.position(buffer.position() + length);
+            }
+        }
+        return messages;
+    }
+
+    @Test
+    void appendedMessages_writtenToTheirRoomsInOrder() throws IOException {
+        SegmentedMessageLog messageLog = new SegmentedMessageLog(properties);
+        assertTrue(messageLog.append("1", frame("a")));
+        assertTrue(messageLog.append("2", frame("b")));
+        assertTrue(messageLog.append("1", frame("c")));
+        messageLog.close();
+
+        assertEquals(List.of("a", "c"), readRoom("1"));
+        assertEquals(List.of("b"), readRoom("2"));
+        assertEquals(3, messageLog.getWritten());
+        assertEquals(0, messageLog.getBacklog());
+    }
+
+    @Test
+    void reopenedLog_appendsAfterExistingRecords() throws IOException {
+        SegmentedMessageLog first = new SegmentedMessageLog(properties);
+        first.append("1", frame("a"));
+        first.append("1", frame("b"));
+        first.close();
+
+        SegmentedMessageLog second = new SegmentedMessageLog(properties);
+        second.append("1", frame("c"));
+        second.close();
+
+        assertEquals(List.of("a", "b", "c"), readRoom("1"));
+    }
+
+    @Test
+    void tornRecord_discardedOnRecovery() throws IOException {
+        SegmentedMessageLog first = new SegmentedMessageLog(properties);
+        first.append("1", frame("a"));
+        first.close();
+
+        // A record whose length was written but whose payload never made it
+        Path segment = directory.resolve("1").resolve(LogSegment.fileName(0));
+        int end = endOfRecords(segment);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(12).putInt(4).putInt(12345).putInt(0xDEADBEEF).flip(), end);
+        }
+
+        LogSegment reopened = LogSegment.open(segment);
+        assertEquals(1, reopened.getCount());
+        reopened.close();
+
+        SegmentedMessageLog second = new SegmentedMessageLog(properties);
+        second.append("1", frame("b"));
+        second.close();
+        assertEquals(List.of("a", "b"), readRoom("1"));
+    }
+
+    @Test
+    void fullSegment_rollsOverToNextIndex() throws IOException {
+        properties.setSegmentSize(DataSize.ofBytes(128));
+        SegmentedMessageLog messageLog = new SegmentedMessageLog(properties);
+        for (int i = 0; i < 10; i++) {
+            messageLog.append("1", frame("message " + i));
+        }
+        messageLog.close();
+
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            expected.add("message " + i);
+        }
+        assertEquals(expected, readRoom("1"));
+        try (Stream<Path> files = Files.list(directory.resolve("1"))) {
+            List<Long> baseIndexes = files.map(LogSegment::baseIndex).sorted().toList();
+            assertTrue(baseIndexes.size() > 1);
+            assertEquals(0L, baseIndexes.get(0));
+        }
+    }
+
+    @Test
+    void roomIdOutsideSafeCharacters_staysInsideLogDirectory() {
+        assertEquals("%2E%2E", RoomLog.directoryName(".."));
+        assertEquals("a%2Fb", RoomLog.directoryName("a/b"));
+        assertEquals("room-1_x", RoomLog.directoryName("room-1_x"));
+        assertEquals("a/b", RoomLog.roomId(RoomLog.directoryName("a/b")));
+    }
+
+    @Test
+    void closedLog_rejectsAppends() throws IOException {
+        SegmentedMessageLog messageLog = new SegmentedMessageLog(properties);
+        messageLog.close();
+
+        assertFalse(messageLog.append("1", frame("a")));
+        assertEquals(1, messageLog.getRejected());
+    }
+
+    @Test
+    void read_returnsSequenceRangeAcrossSegments() throws IOException {
+        properties.setSegmentSize(DataSize.ofBytes(128));
+        SegmentedMessageLog first = new SegmentedMessageLog(properties);
+        for (int seq = 1; seq <= 10; seq++) {
+            first.append("1", frame("message " + seq, seq));
+        }
+        first.close();
+
+        SegmentedMessageLog reopened = new SegmentedMessageLog(properties);
+        assertEquals(10, reopened.lastSequence("1"));
+        assertEquals(0, reopened.lastSequence("2"));
+        assertEquals(List.of(4L, 5L, 6L, 7L, 8L), seqs(reopened.read("1", 3, 9, 100)));
+        // Capped to the most recent
+        assertEquals(List.of(8L, 9L, 10L), seqs(reopened.read("1", 0, 11, 3)));
+        assertTrue(reopened.read("2", 0, 11, 100).isEmpty());
+        reopened.close();
+    }
+
+    @Test
+    void lastSequence_raisedAsWrittenAndIndexedOnReopen() throws Exception {
+        SegmentedMessageLog first = new SegmentedMessageLog(properties);
+        first.append("a.b", frame("x", 7));
+        first.append("a.b", frame("y", 5));
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (first.getWritten() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(7, first.lastSequence("a.b"));
+        first.close();
+
+        SegmentedMessageLog reopened = new SegmentedMessageLog(properties);
+        assertEquals(7, reopened.lastSequence("a.b"));
+        assertEquals(0, reopened.lastSequence("a"));
+        reopened.close();
+    }
+
+    @Test
+    void lastSequence_raisedOnAppendAndScannedOnceRoomLogClosed() throws Exception {
+        properties.setMaxOpenRooms(1);
+        SegmentedMessageLog messageLog = new SegmentedMessageLog(properties);
+        messageLog.append("a", frame("x", 7));
+        // Known before the writer gets to it
+        assertEquals(7, messageLog.lastSequence("a"));
+        messageLog.append("b", frame("y", 3));
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (messageLog.getWritten() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+
+        // Room a's log was closed to open b's; its number now comes from its segment
+        assertEquals(7, messageLog.lastSequence("a"));
+        assertEquals(3, messageLog.lastSequence("b"));
+        assertEquals(0, messageLog.lastSequence("c"));
+        messageLog.close();
+    }
+
+    @Test
+    void roomsBeyondOpenCap_leastRecentClosedAndReopenedOnWrite() throws Exception {
+        properties.setMaxOpenRooms(4);
+        SegmentedMessageLog messageLog = new SegmentedMessageLog(properties);
+        for (int room = 0; room < 10; room++) {
+            messageLog.append(String.valueOf(room), frame("first"));
+        }
+        messageLog.append("0", frame("second"));
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (messageLog.getWritten() < 11 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(4, messageLog.getOpenRooms());
+        messageLog.close();
+
+        assertEquals(0, messageLog.getOpenRooms());
+        assertEquals(List.of("first", "second"), readRoom("0"));
+        for (int room = 1; room < 10; room++) {
+            assertEquals(List.of("first"), readRoom(String.valueOf(room)));
+        }
+    }
+
+    @Test
+    void newRoom_startsWithSmallSegmentThatDoublesOnRollover() throws IOException {
+        properties.setSegmentSize(DataSize.ofMegabytes(1));
+        SegmentedMessageLog messageLog = new SegmentedMessageLog(properties);
+        messageLog.append("1", frame("a"));
+        messageLog.close();
+
+        Path first = directory.resolve("1").resolve(LogSegment.fileName(0));
+        assertEquals(RoomLog.FIRST_SEGMENT_BYTES, Files.size(first));
+
+        RoomLog room = RoomLog.open(directory, "1", 1024 * 1024);
+        ByteBuffer payload = ByteBuffer.allocate(RoomLog.FIRST_SEGMENT_BYTES / 2);
+        room.append(payload.duplicate());
+        room.append(payload.duplicate());
+        room.close();
+        try (Stream<Path> files = Files.list(directory.resolve("1"))) {
+            List<Long> sizes = files.sorted().map(path -> {
+                try {
+                    return Files.size(path);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }).toList();
+            assertEquals(List.of((long) RoomLog.FIRST_SEGMENT_BYTES, 2L * RoomLog.FIRST_SEGMENT_BYTES), sizes);
+        }
+    }
+
+    private static List<Long> seqs(List<OutboundFrame> frames) {
+        return frames.stream().map(frame -> BinaryMessageCodec.readSeq(frame.asBinary().getPayload())).toList();
+    }
+
+    private static int endOfRecords(Path segment) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int length;
+            while ((length = buffer.getInt(buffer.position())) > 0) {
+                buffer.position(buffer.position() + 8 + length);
+            }
+            return buffer.position();
+        }
+    }
+}
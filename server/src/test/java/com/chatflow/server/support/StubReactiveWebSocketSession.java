@@ -0,0 +1,57 @@
+package com.chatflow.server.support;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.reactive.socket.CloseStatus;
+import org.springframework.web.reactive.socket.HandshakeInfo;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+import org.springframework.web.reactive.socket.adapter.AbstractWebSocketSession;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+
+/**
+ * Hand-written stub of a reactive session. Outbound frames are not written anywhere;
+ * tests subscribe to the outbound queue's frames directly and control the demand.
+ */
+public class StubReactiveWebSocketSession extends AbstractWebSocketSession<Object> {
+    private volatile boolean open = true;
+    private volatile CloseStatus closeStatus;
+
+    public StubReactiveWebSocketSession(String id, URI uri) {
+        super(new Object(), id, new HandshakeInfo(uri, new HttpHeaders(), Mono.empty(), null),
+                DefaultDataBufferFactory.sharedInstance);
+    }
+
+    public CloseStatus getCloseStatus() { return closeStatus; }
+
+    @Override
+    public Flux<WebSocketMessage> receive() {
+        return Flux.never();
+    }
+
+    @Override
+    public Mono<Void> send(Publisher<WebSocketMessage> messages) {
+        return Mono.empty();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public Mono<Void> close(CloseStatus status) {
+        return Mono.fromRunnable(() -> {
+            open = false;
+            closeStatus = status;
+        });
+    }
+
+    @Override
+    public Mono<CloseStatus> closeStatus() {
+        return Mono.justOrEmpty(closeStatus);
+    }
+}
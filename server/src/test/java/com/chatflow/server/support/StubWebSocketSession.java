@@ -0,0 +1,79 @@
+package com.chatflow.server.support;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.security.Principal;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Hand-written stub replacing Mockito mock.
+ * Captures sent messages for assertion; binary frames are kept separately.
+ */
+public class StubWebSocketSession implements WebSocketSession {
+    private final String id;
+    private final URI uri;
+    private volatile boolean open = true;
+    private volatile CloseStatus closeStatus;
+    private final List<String> sentMessages = new CopyOnWriteArrayList<>();
+    private final List<byte[]> sentBinaryMessages = new CopyOnWriteArrayList<>();
+    private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+
+    public StubWebSocketSession(String id, URI uri) {
+        this.id = id;
+        this.uri = uri;
+    }
+
+    public List<String> getSentMessages() { return sentMessages; }
+    public List<byte[]> getSentBinaryMessages() { return sentBinaryMessages; }
+    public CloseStatus getCloseStatus() { return closeStatus; }
+
+    @Override public String getId() { return id; }
+    @Override public URI getUri() { return uri; }
+    @Override public boolean isOpen() { return open; }
+    @Override public Map<String, Object> getAttributes() { return attributes; }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) throws IOException {
+        if (message instanceof BinaryMessage binary) {
+            ByteBuffer payload = binary.getPayload();
+            byte[] bytes = new byte[payload.remaining()];
+            payload.get(bytes);
+            sentBinaryMessages.add(bytes);
+            return;
+        }
+        sentMessages.add(message.getPayload().toString());
+    }
+
+    @Override public void close() { close(CloseStatus.NORMAL); }
+
+    @Override
+    public void close(CloseStatus status) {
+        open = false;
+        closeStatus = status;
+    }
+
+    // --- unused interface methods ---
+    @Override public HttpHeaders getHandshakeHeaders() { return new HttpHeaders(); }
+    @Override public Principal getPrincipal() { return null; }
+    @Override public InetSocketAddress getLocalAddress() { return null; }
+    @Override public InetSocketAddress getRemoteAddress() { return null; }
+    @Override public String getAcceptedProtocol() { return null; }
+    @Override public void setTextMessageSizeLimit(int i) {}
+    @Override public int getTextMessageSizeLimit() { return 0; }
+    @Override public void setBinaryMessageSizeLimit(int i) {}
+    @Override public int getBinaryMessageSizeLimit() { return 0; }
+    @Override public List<WebSocketExtension> getExtensions() { return Collections.emptyList(); }
+}
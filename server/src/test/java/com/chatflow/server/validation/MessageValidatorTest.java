@@ -5,6 +5,11 @@ import com.chatflow.server.validation.MessageValidator.ValidationResult;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Random;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class MessageValidatorTest {
@@ -182,4 +187,94 @@ class MessageValidatorTest {
     void nullMessage_shouldFail() {
         assertFalse(validator.validate(null).isValid());
     }
+
+    // --- equivalence with the reference parsers ---
+
+    @Test
+    void userIdRulings_matchIntegerParseInt() {
+        String[] inputs = {"1", "100000", "0", "100001", "-1", "+5", "+", "-", "007", " 5", "5 ", "1.0", "1e3",
+                "2147483647", "2147483648", "-2147483648", "-2147483649", "99999999999999999999",
+                "\u0661\u0662", "\uff11", "abc", "12a"};
+        for (String input : inputs) {
+            assertEquals(referenceUserIdRuling(input), ruling(validator.validateUserId(input)), input);
+        }
+    }
+
+    @Test
+    void timestampRulings_matchInstantParse() {
+        String[] inputs = {"2024-01-01T00:00:00Z", "2024-01-01t00:00:00z", "2024-01-01T00:00:00.123Z",
+                "2024-01-01T00:00:00.123456789Z", "2024-01-01T00:00:00.1234567890Z", "2024-01-01T00:00:00.Z",
+                "2024-01-01T00:00:00+01:00", "2024-01-01T00:00:00-18:00", "2024-01-01T00:00:00+18:01",
+                "2024-01-01T00:00:00+01:00:30", "2024-01-01T00:00:00+01", "2024-01-01T00:00:00+0100",
+                "2024-02-29T00:00:00Z", "2023-02-29T00:00:00Z", "1900-02-29T00:00:00Z", "2000-02-29T00:00:00Z",
+                "2024-04-31T00:00:00Z", "2024-13-01T00:00:00Z", "2024-00-01T00:00:00Z", "2024-01-00T00:00:00Z",
+                "2024-01-01T24:00:00Z", "2024-01-01T24:00:01Z", "2024-12-31T23:59:60Z", "2024-01-01T12:59:60Z",
+                "2024-01-01T00:60:00Z", "2024-01-01T00:00Z", "2024-01-01 00:00:00Z", "2024-01-01T00:00:00",
+                "+12024-01-01T00:00:00Z", "-2024-01-01T00:00:00Z", "0000-01-01T00:00:00Z", "-0000-01-01T00:00:00Z",
+                "24-01-01T00:00:00Z", "2024-1-01T00:00:00Z", "2024-01-01T00:00:00ZZ", "not-a-timestamp"};
+        for (String input : inputs) {
+            assertEquals(referenceTimestampRuling(input), ruling(validator.validateTimestamp(input)), input);
+        }
+    }
+
+    @Test
+    void timestampRulings_matchInstantParse_randomized() {
+        Random random = new Random(42);
+        String alphabet = "0123456789-:.TZtz+ ";
+        for (int i = 0; i < 50_000; i++) {
+            char[] chars = "2024-02-29T23:59:59.123+05:30".toCharArray();
+            int mutations = 1 + random.nextInt(3);
+            for (int m = 0; m < mutations; m++) {
+                chars[random.nextInt(chars.length)] = alphabet.charAt(random.nextInt(alphabet.length()));
+            }
+            String input = new String(chars, 0, 19 + random.nextInt(chars.length - 18));
+            assertEquals(referenceTimestampRuling(input), ruling(validator.validateTimestamp(input)), input);
+        }
+    }
+
+    @Test
+    void validMessage_allocatesNothing() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        ChatMessage msg = validMessage();
+        int iterations = 100_000;
+        for (int i = 0; i < iterations; i++) {
+            validator.validate(msg);
+        }
+
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < iterations; i++) {
+            validator.validate(msg);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        // Allow for the bookkeeping of the measurement itself
+        assertTrue(allocated < iterations, "allocated " + allocated + " bytes over " + iterations + " calls");
+    }
+
+    private static String ruling(ValidationResult result) {
+        return result.isValid() ? "VALID" : result.getErrorMessage();
+    }
+
+    private static String referenceUserIdRuling(String userId) {
+        try {
+            int id = Integer.parseInt(userId);
+            return id < 1 || id > 100000 ? "userId must be between 1 and 100000" : "VALID";
+        } catch (NumberFormatException e) {
+            return "userId must be a numeric string";
+        }
+    }
+
+    private static String referenceTimestampRuling(String timestamp) {
+        if (timestamp.isBlank()) {
+            return "timestamp is required";
+        }
+        try {
+            Instant.parse(timestamp);
+            return "VALID";
+        } catch (DateTimeParseException e) {
+            return "timestamp must be valid ISO-8601";
+        }
+    }
 }